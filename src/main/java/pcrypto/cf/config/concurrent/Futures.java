@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.config.concurrent;
+
+import pcrypto.cf.exception.BlockchainServiceException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Blocking waits on the futures returned by the asynchronous blockchain clients.
+ */
+public final class Futures
+{
+    private Futures()
+    {
+    }
+
+
+    /**
+     * Wait for a future which times out on its own, unwrapping any failure into a {@link BlockchainServiceException}.
+     */
+    public static <T> T await( final CompletableFuture<T> future )
+    {
+        return await( future, Long.MAX_VALUE );
+    }
+
+    /**
+     * Wait at most the given time for a future, unwrapping any failure into a {@link BlockchainServiceException}.
+     */
+    public static <T> T await( final CompletableFuture<T> future,
+                               final long timeoutMs )
+    {
+        try
+        {
+            return future.get( timeoutMs, TimeUnit.MILLISECONDS );
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+        catch ( final TimeoutException e )
+        {
+            throw new BlockchainServiceException( "No response after " + timeoutMs + "ms", e );
+        }
+        catch ( final ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            while ( cause instanceof CompletionException && null != cause.getCause() )
+            {
+                cause = cause.getCause();
+            }
+            if ( cause instanceof BlockchainServiceException )
+            {
+                throw (BlockchainServiceException) cause;
+            }
+            throw new BlockchainServiceException( cause.getMessage(), cause );
+        }
+    }
+}
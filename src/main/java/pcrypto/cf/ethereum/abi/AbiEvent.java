@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.abi;
+
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.DynamicBytes;
+import org.web3j.abi.datatypes.Int;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Uint;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Bytes32;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+
+/**
+ * A contract event whose topic and decoders are worked out once, when the ABI is parsed. Indexed parameters are
+ * read from the log's topics and the rest are ABI decoded from its data.
+ * <p>
+ * Indexed parameters of dynamic types (strings, bytes and arrays) are only stored as a hash in their topic, so
+ * that hash is what they decode to.
+ */
+public final class AbiEvent
+{
+    private final String name;
+    private final String signature;
+    private final String topic;
+    private final List<Input> inputs;
+    private final List<TypeReference<Type>> dataTypes;
+
+
+    AbiEvent( final String name,
+              final List<Input> inputs )
+    {
+        this.name = name;
+        this.inputs = Collections.unmodifiableList( new ArrayList<>( inputs ) );
+
+        final List<String> inputTypes = new ArrayList<>();
+        final List<TypeReference<Type>> nonIndexedTypes = new ArrayList<>();
+        boolean decodable = true;
+        for ( final Input input : inputs )
+        {
+            inputTypes.add( input.type );
+            if ( !input.indexed )
+            {
+                final Class<? extends Type> dataClass = dataClassFor( input.type );
+                if ( null == dataClass )
+                {
+                    decodable = false;
+                }
+                else
+                {
+                    nonIndexedTypes.add( typeReference( dataClass ) );
+                }
+            }
+        }
+        this.signature = name + "(" + String.join( ",", inputTypes ) + ")";
+        this.topic = Hash.sha3String( signature );
+
+        // Without the type of every data parameter we can't find where any dynamic value starts, so decode none
+        this.dataTypes = decodable ? Collections.unmodifiableList( nonIndexedTypes ) : null;
+    }
+
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getSignature()
+    {
+        return signature;
+    }
+
+    /**
+     * The first topic of every (non anonymous) log of this event.
+     */
+    public String getTopic()
+    {
+        return topic;
+    }
+
+    /**
+     * Decode a log of this event.
+     *
+     * @param topics the log's topics, the first of which is {@link #getTopic()}
+     * @param data   the log's data
+     * @return the parameter values by name, in declaration order; values which can't be decoded are left out
+     */
+    public Map<String, String> decode( final List<String> topics,
+                                       final String data )
+    {
+        List<Type> dataValues = Collections.emptyList();
+        if ( null != dataTypes && !dataTypes.isEmpty() && null != data && Numeric.cleanHexPrefix( data ).length() > 0 )
+        {
+            dataValues = FunctionReturnDecoder.decode( data, dataTypes );
+        }
+
+        final Map<String, String> values = new LinkedHashMap<>();
+        int topicIndex = 1;
+        int dataIndex = 0;
+        for ( int i = 0; i < inputs.size(); i++ )
+        {
+            final Input input = inputs.get( i );
+            final String key = input.name.isEmpty() ? String.valueOf( i ) : input.name;
+            if ( input.indexed )
+            {
+                if ( topicIndex < topics.size() )
+                {
+                    values.put( key, topicToString( input.type, topics.get( topicIndex ) ) );
+                }
+                topicIndex++;
+            }
+            else
+            {
+                if ( dataIndex < dataValues.size() )
+                {
+                    values.put( key, valueToString( input.type, dataValues.get( dataIndex ) ) );
+                }
+                dataIndex++;
+            }
+        }
+        return values;
+    }
+
+
+    @SuppressWarnings( "unchecked" )
+    private static TypeReference<Type> typeReference( final Class<? extends Type> dataClass )
+    {
+        return TypeReference.create( (Class<Type>) dataClass );
+    }
+
+    /**
+     * The class to ABI decode a type as, or null for types we can't decode (arrays and tuples).
+     */
+    private static Class<? extends Type> dataClassFor( final String type )
+    {
+        if ( "address".equals( type ) )
+        {
+            return Address.class;
+        }
+        if ( "bool".equals( type ) )
+        {
+            return Bool.class;
+        }
+        if ( "string".equals( type ) )
+        {
+            return Utf8String.class;
+        }
+        if ( "bytes".equals( type ) )
+        {
+            return DynamicBytes.class;
+        }
+        if ( type.matches( "uint\\d*" ) )
+        {
+            return Uint.class;
+        }
+        if ( type.matches( "int\\d*" ) )
+        {
+            return Int.class;
+        }
+        if ( type.matches( "bytes\\d+" ) )
+        {
+            // bytesN is left aligned in its 32 byte slot; the padding is trimmed off afterwards
+            return Bytes32.class;
+        }
+        return null;
+    }
+
+    private static String topicToString( final String type,
+                                         final String topic )
+    {
+        final byte[] bytes = Numeric.hexStringToByteArray( topic );
+        if ( "address".equals( type ) )
+        {
+            return Numeric.toHexString( Arrays.copyOfRange( bytes, bytes.length - 20, bytes.length ) );
+        }
+        if ( "bool".equals( type ) )
+        {
+            return String.valueOf( BigInteger.ZERO.compareTo( new BigInteger( 1, bytes ) ) != 0 );
+        }
+        if ( type.matches( "uint\\d*" ) )
+        {
+            return new BigInteger( 1, bytes ).toString();
+        }
+        if ( type.matches( "int\\d*" ) )
+        {
+            return new BigInteger( bytes ).toString();
+        }
+        if ( type.matches( "bytes\\d+" ) )
+        {
+            return Numeric.toHexString( Arrays.copyOf( bytes, Integer.parseInt( type.substring( 5 ) ) ) );
+        }
+        return topic;
+    }
+
+    private static String valueToString( final String type,
+                                         final Type value )
+    {
+        if ( value instanceof Address )
+        {
+            return value.toString();
+        }
+        if ( value instanceof Bytes32 )
+        {
+            return Numeric.toHexString( Arrays.copyOf( ( (Bytes32) value ).getValue(), Integer.parseInt( type.substring( 5 ) ) ) );
+        }
+        if ( value instanceof DynamicBytes )
+        {
+            return Numeric.toHexString( ( (DynamicBytes) value ).getValue() );
+        }
+        return String.valueOf( value.getValue() );
+    }
+
+
+    static final class Input
+    {
+        private final String name;
+        private final String type;
+        private final boolean indexed;
+
+        Input( final String name,
+               final String type,
+               final boolean indexed )
+        {
+            this.name = name;
+            this.type = type;
+            this.indexed = indexed;
+        }
+    }
+}
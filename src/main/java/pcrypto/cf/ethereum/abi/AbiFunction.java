@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.abi;
+
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.DynamicBytes;
+import org.web3j.abi.datatypes.Int;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Uint;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Bytes32;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+import pcrypto.cf.exception.BadRequestException;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+
+/**
+ * A contract function (or constructor) whose selector and parameter converters are worked out once, when the ABI
+ * is parsed. Encoding a call then only converts each parameter and ABI encodes the values.
+ */
+public final class AbiFunction
+{
+    private final String signature;
+    private final String selector;
+    private final List<String> inputTypes;
+    private final List<Function<String, Type>> converters;
+
+
+    AbiFunction( final String name,
+                 final List<String> inputTypes,
+                 final boolean constructor )
+    {
+        this.signature = name + "(" + String.join( ",", inputTypes ) + ")";
+        this.selector = constructor ? "" : Numeric.cleanHexPrefix( Hash.sha3String( signature ) ).substring( 0, 8 );
+        this.inputTypes = Collections.unmodifiableList( new ArrayList<>( inputTypes ) );
+
+        final List<Function<String, Type>> inputConverters = new ArrayList<>();
+        for ( final String inputType : inputTypes )
+        {
+            inputConverters.add( converterFor( inputType ) );
+        }
+        this.converters = Collections.unmodifiableList( inputConverters );
+    }
+
+
+    public String getSignature()
+    {
+        return signature;
+    }
+
+    /**
+     * ABI encode a call to this function.
+     *
+     * @param params the parameter values, as strings (numbers may be decimal or 0x prefixed hex)
+     * @return the 0x prefixed call data (for a constructor, just the encoded parameters)
+     * @throws BadRequestException if the parameters don't match the function's inputs
+     */
+    public String encode( final List<String> params )
+    {
+        if ( params.size() != converters.size() )
+        {
+            throw new BadRequestException( signature + " takes " + converters.size() + " parameters, but " + params.size() + " were given." );
+        }
+
+        final List<Type> values = new ArrayList<>( params.size() );
+        for ( int i = 0; i < params.size(); i++ )
+        {
+            try
+            {
+                values.add( converters.get( i ).apply( params.get( i ) ) );
+            }
+            catch ( final BadRequestException e )
+            {
+                throw e;
+            }
+            catch ( final RuntimeException e )
+            {
+                throw new BadRequestException( "Invalid value for parameter " + i + " (" + inputTypes.get( i ) + ") of " + signature + ": " + e.getMessage(), e );
+            }
+        }
+
+        return Numeric.prependHexPrefix( selector + FunctionEncoder.encodeConstructor( values ) );
+    }
+
+
+    private static Function<String, Type> converterFor( final String type )
+    {
+        if ( "address".equals( type ) )
+        {
+            return Address::new;
+        }
+        if ( "bool".equals( type ) )
+        {
+            return value -> new Bool( Boolean.parseBoolean( value.trim() ) );
+        }
+        if ( "string".equals( type ) )
+        {
+            return Utf8String::new;
+        }
+        if ( "bytes".equals( type ) )
+        {
+            return value -> new DynamicBytes( Numeric.hexStringToByteArray( value ) );
+        }
+        if ( type.matches( "u?int\\d*" ) )
+        {
+            final boolean unsigned = type.startsWith( "u" );
+            final String digits = type.substring( unsigned ? 4 : 3 );
+            final int bits = digits.isEmpty() ? 256 : digits.length() > 3 ? 0 : Integer.parseInt( digits );
+            if ( bits < 8 || bits > 256 || bits % 8 != 0 )
+            {
+                throw new BadRequestException( "ABI parameter type '" + type + "' is not a valid integer type." );
+            }
+            return value -> {
+                final BigInteger number = toBigInteger( value );
+                if ( unsigned ? number.signum() < 0 || number.bitLength() > bits : number.bitLength() > bits - 1 )
+                {
+                    throw new IllegalArgumentException( "out of range" );
+                }
+                return unsigned ? new Uint( number ) : new Int( number );
+            };
+        }
+        if ( type.matches( "bytes\\d+" ) )
+        {
+            final int size = Integer.parseInt( type.substring( 5 ) );
+            return value -> {
+                final byte[] bytes = Numeric.hexStringToByteArray( value );
+                if ( bytes.length > size )
+                {
+                    throw new IllegalArgumentException( "more than " + size + " bytes" );
+                }
+                // bytesN is left aligned in its 32 byte slot, so it encodes exactly as a right padded bytes32
+                return new Bytes32( Arrays.copyOf( bytes, 32 ) );
+            };
+        }
+
+        // Arrays and tuples; reported only if someone actually calls a function that takes one
+        return value -> {
+            throw new BadRequestException( "ABI parameter type '" + type + "' is not supported." );
+        };
+    }
+
+    private static BigInteger toBigInteger( final String value )
+    {
+        final String trimmed = value.trim();
+        return Numeric.containsHexPrefix( trimmed ) ? Numeric.toBigInt( trimmed ) : new BigInteger( trimmed );
+    }
+}
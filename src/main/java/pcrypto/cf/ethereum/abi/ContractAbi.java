@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.abi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pcrypto.cf.exception.BadRequestException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * A parsed contract ABI: every function, looked up by signature (ex. 'transfer(address,uint256)') or by name
+ * alone when the name is not overloaded, and every event, looked up by its topic.
+ */
+public final class ContractAbi
+{
+    private final Map<String, AbiFunction> functionsBySignature;
+    private final Map<String, AbiFunction> functionsByName;
+    private final AbiFunction constructor;
+    private final Map<String, AbiEvent> eventsByTopic;
+
+
+    private ContractAbi( final Map<String, AbiFunction> functionsBySignature,
+                         final Map<String, AbiFunction> functionsByName,
+                         final AbiFunction constructor,
+                         final Map<String, AbiEvent> eventsByTopic )
+    {
+        this.functionsBySignature = functionsBySignature;
+        this.functionsByName = functionsByName;
+        this.constructor = constructor;
+        this.eventsByTopic = eventsByTopic;
+    }
+
+
+    /**
+     * Parse a Solidity ABI, as generated by 'solcjs --abi'.
+     *
+     * @throws BadRequestException if the ABI is not valid
+     */
+    public static ContractAbi parse( final ObjectMapper objectMapper,
+                                     final String abiJson )
+    {
+        final JsonNode abi;
+        try
+        {
+            abi = objectMapper.readTree( abiJson );
+        }
+        catch ( final IOException e )
+        {
+            throw new BadRequestException( "Unable to parse the contract ABI.", e );
+        }
+        if ( null == abi || !abi.isArray() )
+        {
+            throw new BadRequestException( "The contract ABI must be a JSON array." );
+        }
+
+        final Map<String, AbiFunction> functionsBySignature = new HashMap<>();
+        final Map<String, AbiFunction> functionsByName = new HashMap<>();
+        final Set<String> overloadedNames = new HashSet<>();
+        final Map<String, AbiEvent> eventsByTopic = new HashMap<>();
+        AbiFunction constructor = null;
+        for ( final JsonNode entry : abi )
+        {
+            final String type = entry.path( "type" ).asText( "function" );
+            final List<String> inputTypes = new ArrayList<>();
+            for ( final JsonNode input : entry.path( "inputs" ) )
+            {
+                inputTypes.add( input.path( "type" ).asText() );
+            }
+
+            if ( "constructor".equals( type ) )
+            {
+                constructor = new AbiFunction( "constructor", inputTypes, true );
+            }
+            else if ( "function".equals( type ) )
+            {
+                final String name = entry.path( "name" ).asText();
+                final AbiFunction function = new AbiFunction( name, inputTypes, false );
+                functionsBySignature.put( function.getSignature(), function );
+                if ( null != functionsByName.put( name, function ) )
+                {
+                    overloadedNames.add( name );
+                }
+            }
+            else if ( "event".equals( type ) && !entry.path( "anonymous" ).asBoolean( false ) )
+            {
+                final List<AbiEvent.Input> eventInputs = new ArrayList<>();
+                for ( final JsonNode input : entry.path( "inputs" ) )
+                {
+                    eventInputs.add( new AbiEvent.Input( input.path( "name" ).asText(), input.path( "type" ).asText(), input.path( "indexed" ).asBoolean( false ) ) );
+                }
+                final AbiEvent event = new AbiEvent( entry.path( "name" ).asText(), eventInputs );
+                eventsByTopic.put( event.getTopic(), event );
+            }
+        }
+        functionsByName.keySet().removeAll( overloadedNames );
+
+        return new ContractAbi( functionsBySignature,
+                                functionsByName,
+                                null == constructor ? new AbiFunction( "constructor", Collections.emptyList(), true ) : constructor,
+                                eventsByTopic );
+    }
+
+
+    /**
+     * Find a function by its signature, or by its name if it is not overloaded.
+     *
+     * @throws BadRequestException if there is no such function
+     */
+    public AbiFunction getFunction( final String methodSignature )
+    {
+        final String key = null == methodSignature ? "" : methodSignature.replaceAll( "\\s", "" );
+        final AbiFunction function = key.contains( "(" ) ? functionsBySignature.get( key ) : functionsByName.get( key );
+        if ( null == function )
+        {
+            throw new BadRequestException( "Contract has no function '" + methodSignature + "'. Overloaded functions must be called by their full signature." );
+        }
+        return function;
+    }
+
+    public AbiFunction getConstructor()
+    {
+        return constructor;
+    }
+
+    /**
+     * Find an event by the first topic of its logs.
+     *
+     * @return the event, or null if the ABI has no event with that topic
+     */
+    public AbiEvent getEvent( final String topic )
+    {
+        return null == topic ? null : eventsByTopic.get( topic.toLowerCase() );
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.abi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pcrypto.cf.common.domain.TenantDomain;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Parsed ABIs of registered contracts, so each ABI is only parsed (and its selectors hashed) once.
+ */
+@Component
+public class ContractAbiCache
+{
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, ContractAbi> abis = new ConcurrentHashMap<>();
+
+
+    @Autowired
+    public ContractAbiCache( final ObjectMapper objectMapper )
+    {
+        this.objectMapper = objectMapper;
+    }
+
+
+    /**
+     * Get the parsed ABI of a contract, parsing it if this is the first time it has been asked for.
+     *
+     * @param tenantDomain the tenant which registered the contract
+     * @param contractId   the id of the contract's db record
+     * @param abiJson      the contract's ABI
+     */
+    public ContractAbi get( final TenantDomain tenantDomain,
+                            final Long contractId,
+                            final String abiJson )
+    {
+        return abis.computeIfAbsent( tenantDomain.getId() + ":" + contractId, key -> ContractAbi.parse( objectMapper, abiJson ) );
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.abi;
+
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.List;
+
+
+/**
+ * Call data for a Disperse contract (https://disperse.app), which splits one payment of Ether or an ERC-20 token
+ * across many recipients in a single transaction. Token payouts are pulled from the sender with 'transferFrom', so
+ * the sender must first approve the Disperse contract for the total.
+ * <p>
+ * The calls are encoded by hand since their layout is fixed: a head of offsets followed by the two arrays.
+ */
+public final class DisperseCalls
+{
+    // disperseEther(address[],uint256[])
+    private static final String DISPERSE_ETHER_SELECTOR = "e63d38ed";
+
+    // disperseToken(address,address[],uint256[])
+    private static final String DISPERSE_TOKEN_SELECTOR = "c73a2d60";
+
+
+    private DisperseCalls()
+    {
+    }
+
+
+    /**
+     * Encode a call sending each recipient its amount of Ether. The transaction's value must be the total.
+     */
+    public static String encodeDisperseEther( final List<String> recipients,
+                                              final List<BigInteger> amounts )
+    {
+        final StringBuilder data = new StringBuilder( "0x" ).append( DISPERSE_ETHER_SELECTOR );
+        appendArrays( data, 2, recipients, amounts );
+        return data.toString();
+    }
+
+
+    /**
+     * Encode a call sending each recipient its amount of the token, in the token's base units.
+     */
+    public static String encodeDisperseToken( final String tokenAddress,
+                                              final List<String> recipients,
+                                              final List<BigInteger> amounts )
+    {
+        final StringBuilder data = new StringBuilder( "0x" ).append( DISPERSE_TOKEN_SELECTOR );
+        data.append( word( Numeric.toBigInt( tokenAddress ) ) );
+        appendArrays( data, 3, recipients, amounts );
+        return data.toString();
+    }
+
+
+    private static void appendArrays( final StringBuilder data,
+                                      final int headWords,
+                                      final List<String> recipients,
+                                      final List<BigInteger> amounts )
+    {
+        if ( recipients.size() != amounts.size() )
+        {
+            throw new IllegalArgumentException( "Every recipient needs exactly one amount." );
+        }
+
+        // Offsets of the two arrays, from the start of the parameters
+        final int recipientsOffset = headWords * 32;
+        final int amountsOffset = recipientsOffset + ( 1 + recipients.size() ) * 32;
+        data.append( word( BigInteger.valueOf( recipientsOffset ) ) );
+        data.append( word( BigInteger.valueOf( amountsOffset ) ) );
+
+        data.append( word( BigInteger.valueOf( recipients.size() ) ) );
+        for ( final String recipient : recipients )
+        {
+            data.append( word( Numeric.toBigInt( recipient ) ) );
+        }
+        data.append( word( BigInteger.valueOf( amounts.size() ) ) );
+        for ( final BigInteger amount : amounts )
+        {
+            data.append( word( amount ) );
+        }
+    }
+
+    private static String word( final BigInteger value )
+    {
+        return Numeric.toHexStringNoPrefixZeroPadded( value, 64 );
+    }
+}
@@ -43,9 +43,13 @@ import pcrypto.cf.common.api.controller.ApiController;
 import pcrypto.cf.common.domain.TenantDomain;
 import pcrypto.cf.docs.SwaggerTags;
 import pcrypto.cf.ethereum.api.model.EthereumAccount;
-import pcrypto.cf.ethereum.client.EthereumAccountClient;
+import pcrypto.cf.ethereum.api.model.EthereumAccountBalances;
+import pcrypto.cf.ethereum.api.model.EthereumAccountBalancesRequest;
+import pcrypto.cf.ethereum.cache.EthereumBalanceCache;
+import pcrypto.cf.ethereum.client.dto.EthereumBalancesDto;
 import pcrypto.cf.ethereum.domain.entity.EthereumAccountDomain;
 import pcrypto.cf.ethereum.domain.repository.EthereumAccountRepository;
+import pcrypto.cf.ethereum.service.EthereumTokenBalanceService;
 import pcrypto.cf.ethereum.vault.dto.VaultEthereumAccountDomain;
 import pcrypto.cf.exception.BadRequestException;
 import pcrypto.cf.exception.NotFoundException;
@@ -55,10 +59,14 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 
 @Api( tags = { SwaggerTags.ETH_ACCOUNTS } )
@@ -72,7 +80,9 @@ public class EthereumAccountsApiController
 
     private final EthereumAccountRepository ethereumAccountRepository;
 
-    private final EthereumAccountClient ethereumAccountClient;
+    private final EthereumBalanceCache ethereumBalanceCache;
+
+    private final EthereumTokenBalanceService ethereumTokenBalanceService;
 
     private final VaultOperations vaultOperations;
 
@@ -81,12 +91,14 @@ public class EthereumAccountsApiController
     public EthereumAccountsApiController( final AccountRepository accountRepository,
                                           final VaultOperations vaultOperations,
                                           final EthereumAccountRepository ethereumAccountRepository,
-                                          final EthereumAccountClient ethereumAccountClient )
+                                          final EthereumBalanceCache ethereumBalanceCache,
+                                          final EthereumTokenBalanceService ethereumTokenBalanceService )
     {
         this.accountRepository = accountRepository;
         this.vaultOperations = vaultOperations;
         this.ethereumAccountRepository = ethereumAccountRepository;
-        this.ethereumAccountClient = ethereumAccountClient;
+        this.ethereumBalanceCache = ethereumBalanceCache;
+        this.ethereumTokenBalanceService = ethereumTokenBalanceService;
     }
 
 
@@ -147,13 +159,85 @@ public class EthereumAccountsApiController
         ethereumAccount.setLastModifiedDate( ethereumAccountDomain.get().getLastModifiedDate() );
 
         // Add balance to EthereumAccount object
-        final BigInteger accountBalance = ethereumAccountClient.getAccountBalance( ethereumAccount.getAddress() );
+        final BigInteger accountBalance = ethereumBalanceCache.getBalance( ethereumAccount.getAddress() );
         ethereumAccount.setBalance( new BigDecimal( accountBalance ) );
 
+        // Add the balances of the tenant's registered ERC-20 tokens
+        final Map<String, List<EthereumAccount.TokenBalance>> tokenBalances = ethereumTokenBalanceService.getTokenBalances( Collections.singletonList( ethereumAccount.getAddress() ) );
+        ethereumAccount.setTokenBalances( tokenBalances.get( ethereumAccount.getAddress() ) );
+
         return new ResponseEntity<>( ethereumAccount, HttpStatus.OK );
     }
 
 
+    @ApiOperation( value = "Get Ethereum account balances",
+                   nickname = "getEthereumAccountBalances",
+                   notes = "Returns the balances of many Ethereum accounts in one call. All balances are read from the same " +
+                           "block, which is included in the response.",
+                   response = EthereumAccountBalances.class,
+                   authorizations = {
+                         @Authorization( value = "OAuth2",
+                                         scopes = {
+                                               @AuthorizationScope( scope = "read:ethereum_accounts",
+                                                                    description = "Ability to read Ethereum accounts" )
+                                         } ),
+                         @Authorization( value = "ApiKey" )
+                   },
+                   tags = { SwaggerTags.ETH_ACCOUNTS } )
+    @ApiResponses( value = {
+          @ApiResponse( code = 200,
+                        message = "Ethereum account balances",
+                        response = EthereumAccountBalances.class ) } )
+    @RequestMapping( value = "/ethereum/accounts/balances",
+                     produces = { "application/json" },
+                     consumes = { "application/json" },
+                     method = RequestMethod.POST )
+    public ResponseEntity<EthereumAccountBalances> getEthereumAccountBalances( final Authentication authentication,
+                                                                               @ApiParam( value = "Accounts to get balances for.",
+                                                                                          required = true ) @Valid @RequestBody final EthereumAccountBalancesRequest balancesRequest )
+    {
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        // Obtain all of the ethereum account db records at once
+        final Set<Long> cfAccountIds = new LinkedHashSet<>( balancesRequest.getCfAccountIds() );
+        final Map<Long, String> addressesByCfAccountId = new HashMap<>();
+        for ( final EthereumAccountDomain ethereumAccountDomain : ethereumAccountRepository.findByCfAccountIdIn( cfAccountIds ) )
+        {
+            if ( ethereumAccountDomain.getTenantDomain().equals( tenantDomain ) )
+            {
+                addressesByCfAccountId.put( ethereumAccountDomain.getAccountDomain().getId(), ethereumAccountDomain.getEthereumAddress() );
+            }
+        }
+
+        final List<String> addresses = new ArrayList<>();
+        for ( final Long cfAccountId : cfAccountIds )
+        {
+            final String address = addressesByCfAccountId.get( cfAccountId );
+            if ( null == address )
+            {
+                throw new NotFoundException( "Ethereum account for cfAccountId " + cfAccountId + " not found." );
+            }
+            addresses.add( address );
+        }
+
+        // Fetch every balance in as few round trips as possible
+        final EthereumBalancesDto balancesDto = ethereumBalanceCache.getBalances( addresses );
+
+        final EthereumAccountBalances accountBalances = new EthereumAccountBalances();
+        accountBalances.setBlockNumber( balancesDto.getBlockNumber() );
+        for ( final Long cfAccountId : cfAccountIds )
+        {
+            final String address = addressesByCfAccountId.get( cfAccountId );
+            final BigInteger balance = balancesDto.getBalances().get( address );
+            accountBalances.getBalances().add( new EthereumAccountBalances.Balance( cfAccountId, address, new BigDecimal( balance ) ) );
+        }
+
+        return new ResponseEntity<>( accountBalances, HttpStatus.OK );
+    }
+
+
     @ApiOperation( value = "Create an Ethereum account",
                    nickname = "createEthereumAccount",
                    notes = "Create a new Ethereum account. The private and public key are created from a high entropy " +
@@ -241,7 +325,7 @@ public class EthereumAccountsApiController
         createdAccount.setCreatedDate( persistedEthereumAccountDomain.getCreatedDate() );
 
         // Add balance to EthereumAccount object
-        final BigInteger accountBalance = ethereumAccountClient.getAccountBalance( createdAccount.getAddress() );
+        final BigInteger accountBalance = ethereumBalanceCache.getBalance( createdAccount.getAddress() );
         createdAccount.setBalance( new BigDecimal( accountBalance ) );
 
         return new ResponseEntity<>( createdAccount, HttpStatus.CREATED );
@@ -16,6 +16,7 @@
 
 package pcrypto.cf.ethereum.api.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -24,8 +25,12 @@ import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Authorization;
 import io.swagger.annotations.AuthorizationScope;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -34,19 +39,48 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.web3j.utils.Numeric;
+import pcrypto.cf.account.domain.entity.AccountDomain;
+import pcrypto.cf.account.domain.repository.AccountRepository;
 import pcrypto.cf.common.api.controller.ApiController;
+import pcrypto.cf.common.domain.TenantDomain;
 import pcrypto.cf.docs.SwaggerTags;
+import pcrypto.cf.ethereum.abi.AbiFunction;
+import pcrypto.cf.ethereum.abi.ContractAbi;
+import pcrypto.cf.ethereum.abi.ContractAbiCache;
 import pcrypto.cf.ethereum.api.model.EthereumContract;
 import pcrypto.cf.ethereum.api.model.EthereumContractRequest;
+import pcrypto.cf.ethereum.api.model.EthereumContractStatus;
 import pcrypto.cf.ethereum.api.model.EthereumContracts;
+import pcrypto.cf.ethereum.api.model.EthereumEvent;
+import pcrypto.cf.ethereum.api.model.EthereumEvents;
 import pcrypto.cf.ethereum.api.model.EthereumTransaction;
+import pcrypto.cf.ethereum.api.model.EthereumTransactionStatus;
+import pcrypto.cf.ethereum.domain.entity.EthereumAccountDomain;
+import pcrypto.cf.ethereum.domain.entity.EthereumContractDomain;
+import pcrypto.cf.ethereum.domain.entity.EthereumEventLogDomain;
+import pcrypto.cf.ethereum.domain.entity.EthereumTransactionRequestApproverDomain;
+import pcrypto.cf.ethereum.domain.entity.EthereumTransactionRequestDomain;
+import pcrypto.cf.ethereum.domain.repository.EthereumAccountRepository;
+import pcrypto.cf.ethereum.domain.repository.EthereumContractRepository;
+import pcrypto.cf.ethereum.domain.repository.EthereumEventLogRepository;
+import pcrypto.cf.ethereum.service.EthereumTransactionService;
 import pcrypto.cf.exception.ApiError;
+import pcrypto.cf.exception.BadRequestException;
+import pcrypto.cf.exception.ConflictException;
+import pcrypto.cf.exception.NotFoundException;
+import pcrypto.cf.mfa.api.model.Approval;
+import pcrypto.cf.mfa.api.model.ApprovalStatus;
+import pcrypto.cf.security.domain.CustomUserDetails;
+import pcrypto.cf.security.service.IdempotencyService;
 
-import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.io.IOException;
-
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Optional;
 
 @Api( tags = { SwaggerTags.ETH_CONTRACTS } )
 @ApiController
@@ -55,17 +89,36 @@ public class EthereumContractsApiController
 
     private static final Logger log = LoggerFactory.getLogger( EthereumContractsApiController.class );
 
-    private final ObjectMapper objectMapper;
+    private static final int MAX_EVENT_PAGE_SIZE = 500;
 
-    private final HttpServletRequest request;
+    private final AccountRepository accountRepository;
+    private final EthereumAccountRepository ethereumAccountRepository;
+    private final EthereumContractRepository ethereumContractRepository;
+    private final EthereumEventLogRepository ethereumEventLogRepository;
+    private final EthereumTransactionService ethereumTransactionService;
+    private final ContractAbiCache contractAbiCache;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
 
 
-    @org.springframework.beans.factory.annotation.Autowired
-    public EthereumContractsApiController( ObjectMapper objectMapper,
-                                           HttpServletRequest request )
+    @Autowired
+    public EthereumContractsApiController( final AccountRepository accountRepository,
+                                           final EthereumAccountRepository ethereumAccountRepository,
+                                           final EthereumContractRepository ethereumContractRepository,
+                                           final EthereumEventLogRepository ethereumEventLogRepository,
+                                           final EthereumTransactionService ethereumTransactionService,
+                                           final ContractAbiCache contractAbiCache,
+                                           final IdempotencyService idempotencyService,
+                                           final ObjectMapper objectMapper )
     {
+        this.accountRepository = accountRepository;
+        this.ethereumAccountRepository = ethereumAccountRepository;
+        this.ethereumContractRepository = ethereumContractRepository;
+        this.ethereumEventLogRepository = ethereumEventLogRepository;
+        this.ethereumTransactionService = ethereumTransactionService;
+        this.contractAbiCache = contractAbiCache;
+        this.idempotencyService = idempotencyService;
         this.objectMapper = objectMapper;
-        this.request = request;
     }
 
 
@@ -94,21 +147,20 @@ public class EthereumContractsApiController
                                                            @ApiParam( value = "Account identifier",
                                                                       required = true ) @PathVariable final Long cfAccountId )
     {
-        String accept = request.getHeader( "Accept" );
-        if ( accept != null && accept.contains( "application/json" ) )
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        final EthereumContracts ethereumContracts = new EthereumContracts();
+        for ( final EthereumContractDomain ethereumContractDomain : ethereumContractRepository.findByCfAccountId( cfAccountId ) )
         {
-            try
-            {
-                return new ResponseEntity<EthereumContracts>( objectMapper.readValue( "\"\"", EthereumContracts.class ), HttpStatus.NOT_IMPLEMENTED );
-            }
-            catch ( IOException e )
+            if ( ethereumContractDomain.getTenantDomain().equals( tenantDomain ) )
             {
-                log.error( "Couldn't serialize response for content type application/json", e );
-                return new ResponseEntity<EthereumContracts>( HttpStatus.INTERNAL_SERVER_ERROR );
+                ethereumContracts.add( convertDomainToModel( ethereumContractDomain ) );
             }
         }
 
-        return new ResponseEntity<EthereumContracts>( HttpStatus.NOT_IMPLEMENTED );
+        return new ResponseEntity<>( ethereumContracts, HttpStatus.OK );
     }
 
 
@@ -140,21 +192,13 @@ public class EthereumContractsApiController
                                                          @ApiParam( value = "Name of contract",
                                                                     required = true ) @PathVariable( "contractName" ) String contractName )
     {
-        String accept = request.getHeader( "Accept" );
-        if ( accept != null && accept.contains( "application/json" ) )
-        {
-            try
-            {
-                return new ResponseEntity<EthereumContract>( objectMapper.readValue( "{  \"address\" : \"address\",  \"name\" : \"name\",  \"last_modified_date\" : \"2000-01-23T04:56:07.000+00:00\",  \"created_date\" : \"2000-01-23T04:56:07.000+00:00\",  \"transactionHash\" : \"transactionHash\",  \"status\" : \"ACTIVE\"}", EthereumContract.class ), HttpStatus.NOT_IMPLEMENTED );
-            }
-            catch ( IOException e )
-            {
-                log.error( "Couldn't serialize response for content type application/json", e );
-                return new ResponseEntity<EthereumContract>( HttpStatus.INTERNAL_SERVER_ERROR );
-            }
-        }
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
 
-        return new ResponseEntity<EthereumContract>( HttpStatus.NOT_IMPLEMENTED );
+        final EthereumContractDomain ethereumContractDomain = getContractDomain( tenantDomain, cfAccountId, contractName );
+
+        return new ResponseEntity<>( convertDomainToModel( ethereumContractDomain ), HttpStatus.OK );
     }
 
 
@@ -198,21 +242,46 @@ public class EthereumContractsApiController
                                                                           required = true ) @PathVariable( "contractName" ) final String contractName,
                                                                @ApiParam( value = "ABI payload indicating the function and data to call on the contract." ) @Valid @RequestBody EthereumContractRequest contractRequest )
     {
-        String accept = request.getHeader( "Accept" );
-        if ( accept != null && accept.contains( "application/json" ) )
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        final EthereumContractDomain ethereumContractDomain = getContractDomain( tenantDomain, cfAccountId, contractName );
+        if ( !EthereumContractStatus.ACTIVE.name().equals( ethereumContractDomain.getStatus() ) )
         {
-            try
-            {
-                return new ResponseEntity<EthereumTransaction>( objectMapper.readValue( "{  \"gasLimit\" : 6.02745618307040320615897144307382404804229736328125,  \"amount\" : 100.0,  \"sourceAddress\" : \"sourceAddress\",  \"destinationAddress\" : \"destinationAddress\",  \"signedTransaction\" : \"signedTransaction\",  \"nonce\" : 1.46581298050294517310021547018550336360931396484375,  \"transactionHash\" : \"transactionHash\",  \"gasPrice\" : 0.80082819046101150206595775671303272247314453125}", EthereumTransaction.class ), HttpStatus.NOT_IMPLEMENTED );
-            }
-            catch ( IOException e )
-            {
-                log.error( "Couldn't serialize response for content type application/json", e );
-                return new ResponseEntity<EthereumTransaction>( HttpStatus.INTERNAL_SERVER_ERROR );
-            }
+            throw new BadRequestException( "Contract '" + contractName + "' is " + ethereumContractDomain.getStatus() + " and can't be invoked." );
         }
 
-        return new ResponseEntity<EthereumTransaction>( HttpStatus.NOT_IMPLEMENTED );
+        // Encode the call with the contract's cached ABI
+        final ContractAbi contractAbi = contractAbiCache.get( tenantDomain, ethereumContractDomain.getId(), ethereumContractDomain.getSolidityAbi() );
+        final AbiFunction function = contractAbi.getFunction( contractRequest.getMethodSignature() );
+        final String data = function.encode( contractRequest.getParams() );
+
+        // Validate the idempotency key
+        if ( !idempotencyService.processIdempotencyKey( authentication, idempotencyKey, cfAccountId ) )
+        {
+            throw new ConflictException( "A transaction has already been created with this idempotency key" );
+        }
+
+        // Validate and process all the signing approvals
+        final EthereumTransactionRequestDomain ethereumTransactionRequestDomain =
+              ethereumTransactionService.processContractRequest( authentication,
+                                                                 contractRequest,
+                                                                 ethereumContractDomain.getAccountDomain(),
+                                                                 ethereumContractDomain.getContractAddress(),
+                                                                 data,
+                                                                 null,
+                                                                 contractRequest.getGasLimit(),
+                                                                 "call " + function.getSignature() + " on contract " + contractName,
+                                                                 null );
+
+        final EthereumTransaction transaction = new EthereumTransaction();
+        transaction.setId( ethereumTransactionRequestDomain.getUuid().toString() );
+        transaction.setStatus( EthereumTransactionStatus.PENDING );
+        transaction.setDestinationAddress( ethereumContractDomain.getContractAddress() );
+        addApprovals( transaction, ethereumTransactionRequestDomain );
+
+        return new ResponseEntity<>( transaction, HttpStatus.ACCEPTED );
     }
 
 
@@ -232,31 +301,250 @@ public class EthereumContractsApiController
     @ApiResponses( value = {
           @ApiResponse( code = 201,
                         message = "Contract created successfully",
-                        response = EthereumContract.class ) } )
+                        response = EthereumContract.class ),
+          @ApiResponse( code = 409,
+                        message = "Contract already submitted (duplicate idempotency key)",
+                        response = ApiError.class ) } )
     @ResponseStatus( HttpStatus.CREATED )
     @RequestMapping( value = "/accounts/{cfAccountId}/ethereum/contracts",
                      produces = { "application/json" },
                      consumes = { "application/json" },
                      method = RequestMethod.POST )
     public ResponseEntity<EthereumContract> createContract( final Authentication authentication,
+                                                            @ApiParam( value = "Client generated unique key to guarantee this contract is only created once." )
+                                                            @RequestHeader( value = "X-Idempotency-Key",
+                                                                            required = true ) final String idempotencyKey,
                                                             @ApiParam( value = "Account identifier",
                                                                        required = true ) @PathVariable final Long cfAccountId,
                                                             @ApiParam( value = "The contract to create." ) @Valid @RequestBody EthereumContract ethereumContract )
     {
-        String accept = request.getHeader( "Accept" );
-        if ( accept != null && accept.contains( "application/json" ) )
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        // Obtain the chainfront account, which must have an Ethereum account to own (or deploy) the contract
+        final Optional<AccountDomain> accountDomain = accountRepository.findById( cfAccountId );
+        accountDomain.orElseThrow( () -> new NotFoundException( "Account " + cfAccountId + " not found." ) );
+        final Optional<EthereumAccountDomain> ethereumAccountDomain = ethereumAccountRepository.findByCfAccountId( cfAccountId );
+        if ( !ethereumAccountDomain.isPresent() || !ethereumAccountDomain.get().getTenantDomain().equals( tenantDomain ) )
+        {
+            throw new NotFoundException( "Ethereum account for cfAccountId " + cfAccountId + " not found." );
+        }
+
+        if ( StringUtils.isBlank( ethereumContract.getName() ) )
+        {
+            throw new BadRequestException( "A contract name is required." );
+        }
+        if ( ethereumContractRepository.findByCfAccountIdAndName( cfAccountId, ethereumContract.getName() ).isPresent() )
+        {
+            throw new BadRequestException( "A contract named '" + ethereumContract.getName() + "' already exists for this account." );
+        }
+
+        // Parse the ABI up front so a bad ABI is rejected now rather than on the first invocation
+        final ContractAbi contractAbi = ContractAbi.parse( objectMapper, ethereumContract.getSolidityAbi() );
+
+        // Validate the idempotency key
+        if ( !idempotencyService.processIdempotencyKey( authentication, idempotencyKey, cfAccountId ) )
+        {
+            throw new ConflictException( "A contract has already been created with this idempotency key" );
+        }
+
+        final EthereumContractDomain ethereumContractDomain = new EthereumContractDomain();
+        ethereumContractDomain.setAccountDomain( accountDomain.get() );
+        ethereumContractDomain.setTenantDomain( tenantDomain );
+        ethereumContractDomain.setName( ethereumContract.getName() );
+        ethereumContractDomain.setSolidityAbi( ethereumContract.getSolidityAbi() );
+
+        final EthereumContractDomain persistedContractDomain;
+        if ( StringUtils.isNotBlank( ethereumContract.getAddress() ) )
+        {
+            // Register a contract which is already deployed
+            ethereumContractDomain.setContractAddress( ethereumContract.getAddress() );
+            ethereumContractDomain.setStatus( EthereumContractStatus.ACTIVE.name() );
+            persistedContractDomain = ethereumContractRepository.save( ethereumContractDomain );
+        }
+        else
+        {
+            if ( StringUtils.isBlank( ethereumContract.getSolidityBytecode() ) )
+            {
+                throw new BadRequestException( "Either the address of a deployed contract or the contract bytecode is required." );
+            }
+
+            // Deploy the contract; its init code is the bytecode followed by the encoded constructor parameters
+            final String data = Numeric.prependHexPrefix( ethereumContract.getSolidityBytecode() )
+                                + Numeric.cleanHexPrefix( contractAbi.getConstructor().encode( ethereumContract.getParams() ) );
+
+            // The contract is saved as pending along with the transaction request
+            ethereumTransactionService.processContractRequest( authentication,
+                                                               ethereumContract,
+                                                               accountDomain.get(),
+                                                               null,
+                                                               data,
+                                                               ethereumContract.getValue(),
+                                                               ethereumContract.getGasLimit(),
+                                                               "deploy contract " + ethereumContract.getName(),
+                                                               ethereumContractDomain );
+            persistedContractDomain = ethereumContractDomain;
+        }
+
+        return new ResponseEntity<>( convertDomainToModel( persistedContractDomain ), HttpStatus.CREATED );
+    }
+
+
+    @ApiOperation( value = "List events",
+                   nickname = "ethereumEventsGet",
+                   notes = "Returns a page of the events concerning this account, newest first: those emitted by its contracts, and those naming the account (ex. ERC-20 transfers). " +
+                           "Events are indexed once their block is final, so the most recent blocks are not included.",
+                   response = EthereumEvents.class,
+                   authorizations = {
+                         @Authorization( value = "OAuth2",
+                                         scopes = {
+                                               @AuthorizationScope( scope = "read:ethereum_contracts",
+                                                                    description = "Ability to read contracts" )
+                                         } ),
+                         @Authorization( value = "ApiKey" )
+                   },
+                   tags = { SwaggerTags.ETH_CONTRACTS } )
+    @ApiResponses( value = {
+          @ApiResponse( code = 200,
+                        message = "A page of events",
+                        response = EthereumEvents.class ) } )
+    @RequestMapping( value = "/accounts/{cfAccountId}/ethereum/events",
+                     produces = { "application/json" },
+                     method = RequestMethod.GET )
+    public ResponseEntity<EthereumEvents> getEvents( final Authentication authentication,
+                                                     @ApiParam( value = "Account identifier",
+                                                                required = true ) @PathVariable final Long cfAccountId,
+                                                     @ApiParam( value = "Only events emitted by this contract." )
+                                                     @RequestParam( value = "contractName",
+                                                                    required = false ) final String contractName,
+                                                     @ApiParam( value = "Only events with this name (ex. 'Transfer')." )
+                                                     @RequestParam( value = "eventName",
+                                                                    required = false ) final String eventName,
+                                                     @ApiParam( value = "Page number, starting from 0." )
+                                                     @RequestParam( value = "page",
+                                                                    defaultValue = "0" ) final int page,
+                                                     @ApiParam( value = "Page size." )
+                                                     @RequestParam( value = "size",
+                                                                    defaultValue = "50" ) final int size )
+    {
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        final Optional<EthereumAccountDomain> ethereumAccountDomain = ethereumAccountRepository.findByCfAccountId( cfAccountId );
+        if ( !ethereumAccountDomain.isPresent() || !ethereumAccountDomain.get().getTenantDomain().equals( tenantDomain ) )
+        {
+            throw new NotFoundException( "Ethereum account for cfAccountId " + cfAccountId + " not found." );
+        }
+        if ( page < 0 || size < 1 || size > MAX_EVENT_PAGE_SIZE )
+        {
+            throw new BadRequestException( "Page must be 0 or more, and size between 1 and " + MAX_EVENT_PAGE_SIZE + "." );
+        }
+
+        final PageRequest pageRequest = PageRequest.of( page, size );
+        final Slice<EthereumEventLogDomain> eventLogDomains;
+        if ( StringUtils.isNotBlank( contractName ) )
+        {
+            final Long contractId = getContractDomain( tenantDomain, cfAccountId, contractName ).getId();
+            eventLogDomains = StringUtils.isNotBlank( eventName )
+                              ? ethereumEventLogRepository.findByCfAccountIdAndContractIdAndEventName( cfAccountId, contractId, eventName, pageRequest )
+                              : ethereumEventLogRepository.findByCfAccountIdAndContractId( cfAccountId, contractId, pageRequest );
+        }
+        else
+        {
+            eventLogDomains = StringUtils.isNotBlank( eventName )
+                              ? ethereumEventLogRepository.findByCfAccountIdAndEventName( cfAccountId, eventName, pageRequest )
+                              : ethereumEventLogRepository.findByCfAccountId( cfAccountId, pageRequest );
+        }
+
+        final EthereumEvents ethereumEvents = new EthereumEvents();
+        ethereumEvents.setPage( page );
+        ethereumEvents.setSize( size );
+        ethereumEvents.setHasMore( eventLogDomains.hasNext() );
+        for ( final EthereumEventLogDomain eventLogDomain : eventLogDomains )
+        {
+            ethereumEvents.getEvents().add( convertEventDomainToModel( eventLogDomain ) );
+        }
+
+        return new ResponseEntity<>( ethereumEvents, HttpStatus.OK );
+    }
+
+
+    private EthereumContractDomain getContractDomain( final TenantDomain tenantDomain,
+                                                      final Long cfAccountId,
+                                                      final String contractName )
+    {
+        final Optional<EthereumContractDomain> ethereumContractDomain = ethereumContractRepository.findByCfAccountIdAndName( cfAccountId, contractName );
+        if ( !ethereumContractDomain.isPresent() || !ethereumContractDomain.get().getTenantDomain().equals( tenantDomain ) )
+        {
+            throw new NotFoundException( "Contract '" + contractName + "' not found for cfAccountId " + cfAccountId + "." );
+        }
+        return ethereumContractDomain.get();
+    }
+
+    private void addApprovals( final EthereumTransaction transaction,
+                               final EthereumTransactionRequestDomain ethereumTransactionRequestDomain )
+    {
+        for ( final EthereumTransactionRequestApproverDomain approverDomain : ethereumTransactionRequestDomain.getApproverDomains() )
+        {
+            final Approval approval = new Approval();
+            approval.setUserName( approverDomain.getAccountDomain().getUserName() );
+            approval.setEmail( approverDomain.getAccountDomain().getEmail() );
+            approval.setApprovalStatus( ApprovalStatus.PENDING );
+
+            transaction.addApproval( approval );
+        }
+    }
+
+    private EthereumEvent convertEventDomainToModel( final EthereumEventLogDomain eventLogDomain )
+    {
+        final EthereumEvent ethereumEvent = new EthereumEvent();
+        if ( null != eventLogDomain.getContractDomain() )
+        {
+            ethereumEvent.setContractName( eventLogDomain.getContractDomain().getName() );
+        }
+        ethereumEvent.setContractAddress( eventLogDomain.getContractAddress() );
+        ethereumEvent.setEventName( eventLogDomain.getEventName() );
+        ethereumEvent.setEventSignature( eventLogDomain.getEventSignature() );
+        if ( null != eventLogDomain.getEventParams() )
         {
             try
             {
-                return new ResponseEntity<EthereumContract>( objectMapper.readValue( "{  \"address\" : \"address\",  \"name\" : \"name\",  \"last_modified_date\" : \"2000-01-23T04:56:07.000+00:00\",  \"created_date\" : \"2000-01-23T04:56:07.000+00:00\",  \"transactionHash\" : \"transactionHash\",  \"status\" : \"ACTIVE\"}", EthereumContract.class ), HttpStatus.NOT_IMPLEMENTED );
+                ethereumEvent.setParams( objectMapper.readValue( eventLogDomain.getEventParams(), new TypeReference<LinkedHashMap<String, String>>()
+                {
+                } ) );
             }
-            catch ( IOException e )
+            catch ( final IOException e )
             {
-                log.error( "Couldn't serialize response for content type application/json", e );
-                return new ResponseEntity<EthereumContract>( HttpStatus.INTERNAL_SERVER_ERROR );
+                log.warn( "Unable to read parameters of event {}: {}", eventLogDomain.getId(), e.getMessage() );
             }
         }
+        for ( final String topic : Arrays.asList( eventLogDomain.getTopic0(), eventLogDomain.getTopic1(), eventLogDomain.getTopic2(), eventLogDomain.getTopic3() ) )
+        {
+            if ( null != topic )
+            {
+                ethereumEvent.getTopics().add( topic );
+            }
+        }
+        ethereumEvent.setData( eventLogDomain.getData() );
+        ethereumEvent.setBlockNumber( eventLogDomain.getBlockNumber() );
+        ethereumEvent.setBlockHash( eventLogDomain.getBlockHash() );
+        ethereumEvent.setTransactionHash( eventLogDomain.getTransactionHash() );
+        ethereumEvent.setLogIndex( eventLogDomain.getLogIndex() );
+        return ethereumEvent;
+    }
 
-        return new ResponseEntity<EthereumContract>( HttpStatus.NOT_IMPLEMENTED );
+    private EthereumContract convertDomainToModel( final EthereumContractDomain ethereumContractDomain )
+    {
+        final EthereumContract ethereumContract = new EthereumContract();
+        ethereumContract.setName( ethereumContractDomain.getName() );
+        ethereumContract.setAddress( ethereumContractDomain.getContractAddress() );
+        ethereumContract.setTransactionHash( ethereumContractDomain.getTransactionHash() );
+        ethereumContract.setStatus( EthereumContractStatus.fromString( ethereumContractDomain.getStatus() ) );
+        ethereumContract.setSolidityAbi( ethereumContractDomain.getSolidityAbi() );
+        ethereumContract.setCreatedDate( ethereumContractDomain.getCreatedDate() );
+        ethereumContract.setLastModifiedDate( ethereumContractDomain.getLastModifiedDate() );
+        return ethereumContract;
     }
 }
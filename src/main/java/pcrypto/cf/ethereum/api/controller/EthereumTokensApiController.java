@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.api.controller;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import io.swagger.annotations.Authorization;
+import io.swagger.annotations.AuthorizationScope;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.web3j.crypto.WalletUtils;
+import pcrypto.cf.common.api.controller.ApiController;
+import pcrypto.cf.common.domain.TenantDomain;
+import pcrypto.cf.docs.SwaggerTags;
+import pcrypto.cf.ethereum.api.model.EthereumToken;
+import pcrypto.cf.ethereum.api.model.EthereumTokens;
+import pcrypto.cf.ethereum.domain.entity.EthereumTokenDomain;
+import pcrypto.cf.ethereum.domain.repository.EthereumTokenRepository;
+import pcrypto.cf.exception.BadRequestException;
+import pcrypto.cf.exception.NotFoundException;
+import pcrypto.cf.security.domain.CustomUserDetails;
+
+import javax.validation.Valid;
+import java.util.Optional;
+
+
+/**
+ * Manages the tenant's registry of ERC-20 tokens, whose balances are reported with every Ethereum account.
+ */
+@Api( tags = { SwaggerTags.ETH_ACCOUNTS } )
+@ApiController
+public class EthereumTokensApiController
+{
+    // ERC-20 decimals are a uint8
+    private static final int MAX_DECIMALS = 255;
+
+    private final EthereumTokenRepository ethereumTokenRepository;
+
+
+    @Autowired
+    public EthereumTokensApiController( final EthereumTokenRepository ethereumTokenRepository )
+    {
+        this.ethereumTokenRepository = ethereumTokenRepository;
+    }
+
+
+    @ApiOperation( value = "List tokens",
+                   nickname = "getEthereumTokens",
+                   notes = "Returns every ERC-20 token whose balances are reported for Ethereum accounts.",
+                   response = EthereumTokens.class,
+                   authorizations = {
+                         @Authorization( value = "OAuth2",
+                                         scopes = {
+                                               @AuthorizationScope( scope = "read:ethereum_accounts",
+                                                                    description = "Ability to read Ethereum accounts" )
+                                         } ),
+                         @Authorization( value = "ApiKey" )
+                   },
+                   tags = { SwaggerTags.ETH_ACCOUNTS } )
+    @ApiResponses( value = {
+          @ApiResponse( code = 200,
+                        message = "A list of tokens",
+                        response = EthereumTokens.class ) } )
+    @RequestMapping( value = "/ethereum/tokens",
+                     produces = { "application/json" },
+                     method = RequestMethod.GET )
+    public ResponseEntity<EthereumTokens> getTokens( final Authentication authentication )
+    {
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        final EthereumTokens ethereumTokens = new EthereumTokens();
+        for ( final EthereumTokenDomain ethereumTokenDomain : ethereumTokenRepository.findAll() )
+        {
+            if ( ethereumTokenDomain.getTenantDomain().equals( tenantDomain ) )
+            {
+                ethereumTokens.add( convertDomainToModel( ethereumTokenDomain ) );
+            }
+        }
+
+        return new ResponseEntity<>( ethereumTokens, HttpStatus.OK );
+    }
+
+
+    @ApiOperation( value = "Get token",
+                   nickname = "getEthereumToken",
+                   notes = "Returns the token with the given id.",
+                   response = EthereumToken.class,
+                   authorizations = {
+                         @Authorization( value = "OAuth2",
+                                         scopes = {
+                                               @AuthorizationScope( scope = "read:ethereum_accounts",
+                                                                    description = "Ability to read Ethereum accounts" )
+                                         } ),
+                         @Authorization( value = "ApiKey" )
+                   },
+                   tags = { SwaggerTags.ETH_ACCOUNTS } )
+    @ApiResponses( value = {
+          @ApiResponse( code = 200,
+                        message = "Token details",
+                        response = EthereumToken.class ) } )
+    @RequestMapping( value = "/ethereum/tokens/{tokenId}",
+                     produces = { "application/json" },
+                     method = RequestMethod.GET )
+    public ResponseEntity<EthereumToken> getToken( final Authentication authentication,
+                                                   @ApiParam( value = "Token identifier",
+                                                              required = true ) @PathVariable final Long tokenId )
+    {
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        final EthereumTokenDomain ethereumTokenDomain = getTokenDomain( tenantDomain, tokenId );
+
+        return new ResponseEntity<>( convertDomainToModel( ethereumTokenDomain ), HttpStatus.OK );
+    }
+
+
+    @ApiOperation( value = "Add token",
+                   nickname = "createEthereumToken",
+                   notes = "Add an ERC-20 token to the registry, so its balances are reported for Ethereum accounts.",
+                   response = EthereumToken.class,
+                   authorizations = {
+                         @Authorization( value = "OAuth2",
+                                         scopes = {
+                                               @AuthorizationScope( scope = "write:ethereum_accounts",
+                                                                    description = "Ability to create Ethereum accounts" )
+                                         } ),
+                         @Authorization( value = "ApiKey" )
+                   },
+                   tags = { SwaggerTags.ETH_ACCOUNTS } )
+    @ApiResponses( value = {
+          @ApiResponse( code = 201,
+                        message = "Token added successfully",
+                        response = EthereumToken.class ) } )
+    @ResponseStatus( HttpStatus.CREATED )
+    @RequestMapping( value = "/ethereum/tokens",
+                     produces = { "application/json" },
+                     consumes = { "application/json" },
+                     method = RequestMethod.POST )
+    public ResponseEntity<EthereumToken> createToken( final Authentication authentication,
+                                                      @ApiParam( value = "The token to add." ) @Valid @RequestBody EthereumToken ethereumToken )
+    {
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        validate( ethereumToken, null );
+
+        final EthereumTokenDomain ethereumTokenDomain = new EthereumTokenDomain();
+        ethereumTokenDomain.setTenantDomain( tenantDomain );
+        ethereumTokenDomain.setSymbol( ethereumToken.getSymbol() );
+        ethereumTokenDomain.setContractAddress( ethereumToken.getContractAddress() );
+        ethereumTokenDomain.setDecimals( ethereumToken.getDecimals() );
+
+        final EthereumTokenDomain persistedTokenDomain = ethereumTokenRepository.save( ethereumTokenDomain );
+
+        return new ResponseEntity<>( convertDomainToModel( persistedTokenDomain ), HttpStatus.CREATED );
+    }
+
+
+    @ApiOperation( value = "Update token",
+                   nickname = "updateEthereumToken",
+                   notes = "Update the symbol, contract address or decimals of a token in the registry.",
+                   response = EthereumToken.class,
+                   authorizations = {
+                         @Authorization( value = "OAuth2",
+                                         scopes = {
+                                               @AuthorizationScope( scope = "write:ethereum_accounts",
+                                                                    description = "Ability to create Ethereum accounts" )
+                                         } ),
+                         @Authorization( value = "ApiKey" )
+                   },
+                   tags = { SwaggerTags.ETH_ACCOUNTS } )
+    @ApiResponses( value = {
+          @ApiResponse( code = 200,
+                        message = "Token updated successfully",
+                        response = EthereumToken.class ) } )
+    @RequestMapping( value = "/ethereum/tokens/{tokenId}",
+                     produces = { "application/json" },
+                     consumes = { "application/json" },
+                     method = RequestMethod.PUT )
+    public ResponseEntity<EthereumToken> updateToken( final Authentication authentication,
+                                                      @ApiParam( value = "Token identifier",
+                                                                 required = true ) @PathVariable final Long tokenId,
+                                                      @ApiParam( value = "The token's new details." ) @Valid @RequestBody EthereumToken ethereumToken )
+    {
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        final EthereumTokenDomain ethereumTokenDomain = getTokenDomain( tenantDomain, tokenId );
+
+        validate( ethereumToken, tokenId );
+
+        ethereumTokenDomain.setSymbol( ethereumToken.getSymbol() );
+        ethereumTokenDomain.setContractAddress( ethereumToken.getContractAddress() );
+        ethereumTokenDomain.setDecimals( ethereumToken.getDecimals() );
+
+        final EthereumTokenDomain persistedTokenDomain = ethereumTokenRepository.save( ethereumTokenDomain );
+
+        return new ResponseEntity<>( convertDomainToModel( persistedTokenDomain ), HttpStatus.OK );
+    }
+
+
+    @ApiOperation( value = "Remove token",
+                   nickname = "deleteEthereumToken",
+                   notes = "Remove a token from the registry, so its balances are no longer reported.",
+                   authorizations = {
+                         @Authorization( value = "OAuth2",
+                                         scopes = {
+                                               @AuthorizationScope( scope = "write:ethereum_accounts",
+                                                                    description = "Ability to create Ethereum accounts" )
+                                         } ),
+                         @Authorization( value = "ApiKey" )
+                   },
+                   tags = { SwaggerTags.ETH_ACCOUNTS } )
+    @ApiResponses( value = {
+          @ApiResponse( code = 204,
+                        message = "Token removed successfully" ) } )
+    @ResponseStatus( HttpStatus.NO_CONTENT )
+    @RequestMapping( value = "/ethereum/tokens/{tokenId}",
+                     method = RequestMethod.DELETE )
+    public ResponseEntity<Void> deleteToken( final Authentication authentication,
+                                             @ApiParam( value = "Token identifier",
+                                                        required = true ) @PathVariable final Long tokenId )
+    {
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        final EthereumTokenDomain ethereumTokenDomain = getTokenDomain( tenantDomain, tokenId );
+        ethereumTokenRepository.delete( ethereumTokenDomain );
+
+        return new ResponseEntity<>( HttpStatus.NO_CONTENT );
+    }
+
+
+    private EthereumTokenDomain getTokenDomain( final TenantDomain tenantDomain,
+                                                final Long tokenId )
+    {
+        final Optional<EthereumTokenDomain> ethereumTokenDomain = ethereumTokenRepository.findById( tokenId );
+        if ( !ethereumTokenDomain.isPresent() || !ethereumTokenDomain.get().getTenantDomain().equals( tenantDomain ) )
+        {
+            throw new NotFoundException( "Token " + tokenId + " not found." );
+        }
+        return ethereumTokenDomain.get();
+    }
+
+    /**
+     * @param tokenId the token being updated, or null for a new one
+     */
+    private void validate( final EthereumToken ethereumToken,
+                           final Long tokenId )
+    {
+        if ( StringUtils.isBlank( ethereumToken.getSymbol() ) )
+        {
+            throw new BadRequestException( "A token symbol is required." );
+        }
+        if ( null == ethereumToken.getContractAddress() || !WalletUtils.isValidAddress( ethereumToken.getContractAddress() ) )
+        {
+            throw new BadRequestException( "A valid token contract address is required." );
+        }
+        if ( null == ethereumToken.getDecimals() || ethereumToken.getDecimals() < 0 || ethereumToken.getDecimals() > MAX_DECIMALS )
+        {
+            throw new BadRequestException( "decimals must be between 0 and " + MAX_DECIMALS + "." );
+        }
+
+        final Optional<EthereumTokenDomain> existing = ethereumTokenRepository.findByContractAddressIgnoreCase( ethereumToken.getContractAddress() );
+        if ( existing.isPresent() && !existing.get().getId().equals( tokenId ) )
+        {
+            throw new BadRequestException( "The token at " + ethereumToken.getContractAddress() + " is already registered." );
+        }
+    }
+
+    private EthereumToken convertDomainToModel( final EthereumTokenDomain ethereumTokenDomain )
+    {
+        final EthereumToken ethereumToken = new EthereumToken();
+        ethereumToken.setId( ethereumTokenDomain.getId() );
+        ethereumToken.setSymbol( ethereumTokenDomain.getSymbol() );
+        ethereumToken.setContractAddress( ethereumTokenDomain.getContractAddress() );
+        ethereumToken.setDecimals( ethereumTokenDomain.getDecimals() );
+        return ethereumToken;
+    }
+}
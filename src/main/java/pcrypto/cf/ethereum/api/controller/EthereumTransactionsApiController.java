@@ -37,19 +37,20 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseStatus;
-import org.web3j.protocol.core.methods.response.Log;
-import org.web3j.protocol.core.methods.response.TransactionReceipt;
 import pcrypto.cf.account.api.model.AccountIdentifier;
 import pcrypto.cf.account.domain.entity.AccountDomain;
 import pcrypto.cf.account.domain.service.AccountService;
 import pcrypto.cf.common.api.controller.ApiController;
 import pcrypto.cf.common.domain.TenantDomain;
 import pcrypto.cf.docs.SwaggerTags;
+import pcrypto.cf.ethereum.api.model.EthereumBatchPaymentRequest;
 import pcrypto.cf.ethereum.api.model.EthereumPaymentRequest;
+import pcrypto.cf.ethereum.api.model.EthereumPayout;
+import pcrypto.cf.ethereum.api.model.EthereumPayoutStatus;
 import pcrypto.cf.ethereum.api.model.EthereumTokenPaymentRequest;
 import pcrypto.cf.ethereum.api.model.EthereumTransaction;
 import pcrypto.cf.ethereum.api.model.EthereumTransactionStatus;
-import pcrypto.cf.ethereum.client.EthereumTransactionClient;
+import pcrypto.cf.ethereum.domain.entity.EthereumPayoutDomain;
 import pcrypto.cf.ethereum.domain.entity.EthereumTransactionRequestApproverDomain;
 import pcrypto.cf.ethereum.domain.entity.EthereumTransactionRequestDomain;
 import pcrypto.cf.ethereum.domain.entity.EthereumTransactionResponseDomain;
@@ -63,12 +64,9 @@ import pcrypto.cf.security.service.IdempotencyService;
 
 import javax.validation.Valid;
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 
 @Api( tags = { SwaggerTags.ETH_TRANSACTIONS } )
@@ -81,7 +79,6 @@ public class EthereumTransactionsApiController
     private final VaultOperations vaultOperations;
     private final AccountService accountService;
     private final EthereumTransactionService ethereumTransactionService;
-    private final EthereumTransactionClient ethereumTransactionClient;
     private final IdempotencyService idempotencyService;
 
 
@@ -89,13 +86,11 @@ public class EthereumTransactionsApiController
     public EthereumTransactionsApiController( final VaultOperations vaultOperations,
                                               final AccountService accountService,
                                               final EthereumTransactionService ethereumTransactionService,
-                                              final EthereumTransactionClient ethereumTransactionClient,
                                               final IdempotencyService idempotencyService )
     {
         this.vaultOperations = vaultOperations;
         this.accountService = accountService;
         this.ethereumTransactionService = ethereumTransactionService;
-        this.ethereumTransactionClient = ethereumTransactionClient;
         this.idempotencyService = idempotencyService;
     }
 
@@ -231,6 +226,100 @@ public class EthereumTransactionsApiController
     }
 
 
+    @ApiOperation( value = "Create a single transaction which pays many accounts",
+                   nickname = "createBatchPayment",
+                   notes = "Pays Ether, or an ERC-20 token, from one account to many accounts in a single transaction through the Disperse contract. " +
+                           "Either every payment is made or none are. For token payments the source account must first approve the Disperse contract for the total.",
+                   response = EthereumTransaction.class,
+                   authorizations = {
+                         @Authorization( value = "OAuth2",
+                                         scopes = {
+                                               @AuthorizationScope( scope = "write:ethereum_txs",
+                                                                    description = "Ability to create payment transactions" )
+                                         } ),
+                         @Authorization( value = "ApiKey" )
+                   },
+                   tags = { SwaggerTags.ETH_TRANSACTIONS } )
+    @ApiResponses( value = {
+          @ApiResponse( code = 202,
+                        message = "Accepted",
+                        response = EthereumTransaction.class ),
+          @ApiResponse( code = 409,
+                        message = "Transaction already submitted (duplicate idempotency key)",
+                        response = ApiError.class ) } )
+    @ResponseStatus( HttpStatus.ACCEPTED )
+    @RequestMapping( value = "/ethereum/transactions/batchpayments",
+                     produces = { "application/json" },
+                     consumes = { "application/json" },
+                     method = RequestMethod.POST )
+    public ResponseEntity<EthereumTransaction> createBatchPayment( final Authentication authentication,
+                                                                   @ApiParam( value = "Client generated unique key to guarantee this transaction is only applied once." )
+                                                                   @RequestHeader( value = "X-Idempotency-Key",
+                                                                                   required = true ) final String idempotencyKey,
+                                                                   @ApiParam( value = "When using APP_TOTP approval, pass the TOTP code in this header." ) @RequestHeader( value = "X-TOTP-Code",
+                                                                                                                                                                           required = false,
+                                                                                                                                                                           defaultValue = "" ) final String totpCode,
+                                                                   @ApiParam( value = "Batch payment request object",
+                                                                              required = true ) @Valid @RequestBody final EthereumBatchPaymentRequest batchPaymentRequest )
+    {
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        // Get the source account
+        final AccountIdentifier sourceCfAccountIdentifier = batchPaymentRequest.getSourceCfAccountIdentifier();
+        final AccountDomain sourceAccountDomain = accountService.getCfAccountDomainByIdentifier( tenantDomain, sourceCfAccountIdentifier );
+
+        // Get the destination accounts, in payment order
+        final List<AccountDomain> destAccountDomains = new ArrayList<>();
+        for ( final EthereumBatchPaymentRequest.Payment payment : batchPaymentRequest.getPayments() )
+        {
+            destAccountDomains.add( accountService.getCfAccountDomainByIdentifier( tenantDomain, payment.getDestinationCfAccountIdentifier() ) );
+        }
+
+        // Get the additional signer accounts
+        final List<AccountDomain> additionalSignerAccounts = new ArrayList<>();
+        for ( final AccountIdentifier additionalSigner : batchPaymentRequest.getAdditionalSigners() )
+        {
+            final AccountDomain additionalSignerAccountDomain = accountService.getCfAccountDomainByIdentifier( tenantDomain, additionalSigner );
+            additionalSignerAccounts.add( additionalSignerAccountDomain );
+        }
+
+        // Validate the idempotency key
+        if ( !idempotencyService.processIdempotencyKey( authentication, idempotencyKey, sourceAccountDomain.getId() ) )
+        {
+            throw new ConflictException( "A transaction has already been created with this idempotency key" );
+        }
+
+        // Validate and process all the signing approvals
+        final EthereumTransactionRequestDomain ethereumTransactionRequestDomain =
+              ethereumTransactionService.processBatchPaymentRequest( authentication,
+                                                                     batchPaymentRequest,
+                                                                     sourceAccountDomain,
+                                                                     destAccountDomains,
+                                                                     additionalSignerAccounts );
+
+        final EthereumTransaction transaction = new EthereumTransaction();
+        transaction.setId( ethereumTransactionRequestDomain.getUuid().toString() );
+        transaction.setStatus( EthereumTransactionStatus.PENDING );
+
+        final List<EthereumTransactionRequestApproverDomain> approverDomains = ethereumTransactionRequestDomain.getApproverDomains();
+        for ( final EthereumTransactionRequestApproverDomain approverDomain : approverDomains )
+        {
+            final Approval approval = new Approval();
+            approval.setUserName( approverDomain.getAccountDomain().getUserName() );
+            approval.setEmail( approverDomain.getAccountDomain().getEmail() );
+            approval.setApprovalStatus( ApprovalStatus.PENDING );
+
+            transaction.addApproval( approval );
+        }
+
+        addPayouts( transaction, ethereumTransactionRequestDomain );
+
+        return new ResponseEntity<>( transaction, HttpStatus.ACCEPTED );
+    }
+
+
     @ApiOperation( value = "Check the status of an Ethereum transaction.",
                    nickname = "getEthereumTransaction",
                    notes = "Queries the status of an Ethereum transaction based on the ChainFront transaction id.",
@@ -287,35 +376,55 @@ public class EthereumTransactionsApiController
         final String transactionHash = ethereumTransactionResponseDomain.getTransactionHash();
         transaction.setTransactionHash( transactionHash );
 
-        // If we have a transaction hash we know that the tx was submitted to the Ethereum network. So we fetch the details here.
-        if ( null != transactionHash )
+        // The receipt tracker records the details once the tx is mined, and confirms it once its block is deep enough
+        if ( null != ethereumTransactionResponseDomain.getLedger() )
         {
-            final Optional<TransactionReceipt> transactionReceiptOptional = ethereumTransactionClient.getTransaction( transactionHash );
-            if ( transactionReceiptOptional.isPresent() )
+            if ( null != ethereumTransactionResponseDomain.getTransactionIndex() )
             {
-                transaction.setNonce( new BigDecimal( transactionReceiptOptional.get().getTransactionIndex() ) );
-                transaction.setGasPrice( new BigDecimal( transactionReceiptOptional.get().getGasUsed() ) );
-                transaction.setSourceAddress( transactionReceiptOptional.get().getFrom() );
-                transaction.setDestinationAddress( transactionReceiptOptional.get().getTo() );
-                final BigInteger blockNumber = transactionReceiptOptional.get().getBlockNumber();
-                if ( blockNumber != null && blockNumber.intValue() > 0 )
-                {
-                    transaction.setStatus( EthereumTransactionStatus.COMPLETE );
-                }
-
-                // Get the logs and convert them to strings
-                final List<Log> logs = transactionReceiptOptional.get().getLogs();
-                final List<String> logStrings = logs.stream()
-                                                    .map( Log::toString )
-                                                    .collect( Collectors.toList() );
-                transaction.setLogs( logStrings );
+                transaction.setNonce( new BigDecimal( ethereumTransactionResponseDomain.getTransactionIndex() ) );
             }
+            if ( null != ethereumTransactionResponseDomain.getGasUsed() )
+            {
+                transaction.setGasPrice( new BigDecimal( ethereumTransactionResponseDomain.getGasUsed() ) );
+            }
+            transaction.setSourceAddress( ethereumTransactionResponseDomain.getFromAddress() );
+            transaction.setDestinationAddress( ethereumTransactionResponseDomain.getToAddress() );
+            transaction.setLogs( ethereumTransactionService.getTransactionLogs( ethereumTransactionResponseDomain ) );
+        }
+        if ( Boolean.TRUE.equals( ethereumTransactionResponseDomain.getConfirmed() ) )
+        {
+            transaction.setStatus( EthereumTransactionStatus.COMPLETE );
+        }
+        else if ( Boolean.TRUE.equals( ethereumTransactionResponseDomain.getDropped() ) )
+        {
+            transaction.setStatus( EthereumTransactionStatus.TIMEOUT );
         }
 
+        addPayouts( transaction, ethereumTransactionRequestDomain );
+
         return new ResponseEntity<>( transaction, HttpStatus.OK );
     }
 
 
+    /**
+     * Add the individual payments of a batch payment transaction (there are none for other transactions).
+     */
+    private void addPayouts( final EthereumTransaction transaction,
+                             final EthereumTransactionRequestDomain ethereumTransactionRequestDomain )
+    {
+        for ( final EthereumPayoutDomain ethereumPayoutDomain : ethereumTransactionService.getEthereumPayouts( ethereumTransactionRequestDomain.getUuid() ) )
+        {
+            final EthereumPayout payout = new EthereumPayout();
+            payout.setCfAccountId( ethereumPayoutDomain.getDestAccountDomain().getId() );
+            payout.setDestinationAddress( ethereumPayoutDomain.getDestinationAddress() );
+            payout.setAmount( ethereumPayoutDomain.getAmount() );
+            payout.setStatus( EthereumPayoutStatus.valueOf( ethereumPayoutDomain.getStatus() ) );
+
+            transaction.addPayout( payout );
+        }
+    }
+
+
     private EthereumTransaction vaultResponseToTransaction( final VaultResponse vaultResponse )
     {
         final Map<String, Object> data = vaultResponse.getData();
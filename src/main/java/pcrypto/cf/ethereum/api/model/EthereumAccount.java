@@ -49,6 +49,12 @@ public class EthereumAccount
                        readOnly = true )
     private BigDecimal balance;
 
+    @ApiModelProperty( value = "Current balances of this account in the ERC-20 tokens registered for the tenant.",
+                       position = 40,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private List<TokenBalance> tokenBalances = new ArrayList<>();
+
     @ApiModelProperty( value = "An optional list of addresses for which this account is prohibited to transact.",
                        position = 100 )
     private List<String> blacklistAddresses = new ArrayList<>();
@@ -104,6 +110,16 @@ public class EthereumAccount
         this.balance = balance;
     }
 
+    public List<TokenBalance> getTokenBalances()
+    {
+        return tokenBalances;
+    }
+
+    public void setTokenBalances( final List<TokenBalance> tokenBalances )
+    {
+        this.tokenBalances = tokenBalances;
+    }
+
     public List<String> getBlacklistAddresses()
     {
         return blacklistAddresses;
@@ -143,5 +159,35 @@ public class EthereumAccount
     {
         this.lastModifiedDate = lastModifiedDate;
     }
-}
 
+    public static final class TokenBalance
+    {
+        private String symbol;
+        private String contractAddress;
+        private BigDecimal amount;
+
+        public TokenBalance( final String pSymbol,
+                             final String pContractAddress,
+                             final BigDecimal pAmount )
+        {
+            symbol = pSymbol;
+            contractAddress = pContractAddress;
+            amount = pAmount;
+        }
+
+        public String getSymbol()
+        {
+            return symbol;
+        }
+
+        public String getContractAddress()
+        {
+            return contractAddress;
+        }
+
+        public BigDecimal getAmount()
+        {
+            return amount;
+        }
+    }
+}
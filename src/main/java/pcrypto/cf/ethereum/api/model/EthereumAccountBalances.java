@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+
+@ApiModel
+public class EthereumAccountBalances
+{
+
+    @ApiModelProperty( value = "The block number all balances were read at.",
+                       position = 10,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private BigInteger blockNumber;
+
+    @ApiModelProperty( value = "The balance of each requested account, in the order requested.",
+                       position = 20,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private List<Balance> balances = new ArrayList<>();
+
+
+    public BigInteger getBlockNumber()
+    {
+        return blockNumber;
+    }
+
+    public void setBlockNumber( final BigInteger blockNumber )
+    {
+        this.blockNumber = blockNumber;
+    }
+
+    public List<Balance> getBalances()
+    {
+        return balances;
+    }
+
+    public void setBalances( final List<Balance> balances )
+    {
+        this.balances = balances;
+    }
+
+    public static final class Balance
+    {
+        private Long cfAccountId;
+        private String address;
+        private BigDecimal balance;
+
+        public Balance( final Long pCfAccountId,
+                        final String pAddress,
+                        final BigDecimal pBalance )
+        {
+            cfAccountId = pCfAccountId;
+            address = pAddress;
+            balance = pBalance;
+        }
+
+        public Long getCfAccountId()
+        {
+            return cfAccountId;
+        }
+
+        public String getAddress()
+        {
+            return address;
+        }
+
+        public BigDecimal getBalance()
+        {
+            return balance;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * EthereumAccountBalancesRequest
+ */
+@Getter
+@Setter
+@ApiModel
+public class EthereumAccountBalancesRequest
+{
+
+    @NotNull
+    @Size( min = 1,
+           max = 5000 )
+    @ApiModelProperty( required = true,
+                       value = "The ChainFront accounts to get Ethereum balances for.",
+                       position = 10 )
+    private List<Long> cfAccountIds = new ArrayList<>();
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import pcrypto.cf.account.api.model.AccountIdentifier;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * BatchPaymentRequest
+ */
+@Getter
+@Setter
+@ApiModel
+public class EthereumBatchPaymentRequest
+{
+
+    @NotNull
+    @ApiModelProperty( required = true,
+                       value = "Identifier of the ChainFront source account.",
+                       position = 10 )
+    private AccountIdentifier sourceCfAccountIdentifier = null;
+
+    @NotNull
+    @Size( min = 1,
+           max = 1000 )
+    @Valid
+    @ApiModelProperty( required = true,
+                       value = "The payments to make, all in a single transaction.",
+                       position = 20 )
+    private List<Payment> payments = new ArrayList<>();
+
+    @ApiModelProperty( value = "Address of the ERC-20 token contract to pay in. If not set, the payments are in Ether. " +
+                               "The source account must have approved the Disperse contract for the total amount.",
+                       position = 30 )
+    private String tokenContractAddress = null;
+
+    @ApiModelProperty( value = "An optional list of ChainFront accounts required to sign this transaction.",
+                       position = 40 )
+    private List<AccountIdentifier> additionalSigners = new ArrayList<>();
+
+    @ApiModelProperty( value = "An optional memo to include with this transaction.",
+                       position = 80 )
+    private String memo;
+
+    @ApiModelProperty( value = "The gas limit for the transaction. If not set, it is estimated from the number of payments.",
+                       position = 100 )
+    @Valid
+    private BigDecimal gasLimit = null;
+
+    @ApiModelProperty( value = "How quickly the transaction should be mined (SLOW, STANDARD or FAST), which sets the gas price " +
+                               "from recent network activity. If not set, STANDARD is used.",
+                       position = 110 )
+    private EthereumGasPriority gasPriority = EthereumGasPriority.STANDARD;
+
+
+    @Getter
+    @Setter
+    @ApiModel( "EthereumBatchPayment" )
+    public static class Payment
+    {
+        @NotNull
+        @ApiModelProperty( required = true,
+                           value = "Identifier of the ChainFront destination account.",
+                           position = 10 )
+        private AccountIdentifier destinationCfAccountIdentifier = null;
+
+        @NotNull
+        @ApiModelProperty( example = "100.0",
+                           required = true,
+                           value = "Amount to pay, in wei (or the token's base units)",
+                           position = 20 )
+        private BigDecimal amount = null;
+    }
+}
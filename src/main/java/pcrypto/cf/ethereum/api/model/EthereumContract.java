@@ -34,6 +34,28 @@ import java.util.List;
 public class EthereumContract
 {
 
+    @ApiModelProperty( value = "Name of this contract, unique within the account.",
+                       required = true,
+                       position = 1 )
+    private String name = null;
+
+    @ApiModelProperty( value = "Address of the contract. When creating, set this to register a contract which is already deployed; " +
+                               "otherwise the contract is deployed from the bytecode and its address is assigned once submitted.",
+                       position = 2 )
+    private String address = null;
+
+    @ApiModelProperty( value = "Hash of the transaction which deployed this contract.",
+                       position = 3,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String transactionHash = null;
+
+    @ApiModelProperty( value = "Status of the contract.",
+                       position = 4,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private EthereumContractStatus status = null;
+
     @ApiModelProperty( value = "Solidity ABI of this contract. Generated by 'solcjs --abi my_contract.sol.'",
                        required = true,
                        position = 10 )
@@ -67,6 +89,53 @@ public class EthereumContract
     @JsonProperty( "createdDate" )
     private OffsetDateTime createdDate = null;
 
+    @ApiModelProperty( value = "Date the contract was last updated.",
+                       position = 1010,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    @JsonProperty( "lastModifiedDate" )
+    private OffsetDateTime lastModifiedDate = null;
+
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName( final String name )
+    {
+        this.name = name;
+    }
+
+    public String getAddress()
+    {
+        return address;
+    }
+
+    public void setAddress( final String address )
+    {
+        this.address = address;
+    }
+
+    public String getTransactionHash()
+    {
+        return transactionHash;
+    }
+
+    public void setTransactionHash( final String transactionHash )
+    {
+        this.transactionHash = transactionHash;
+    }
+
+    public EthereumContractStatus getStatus()
+    {
+        return status;
+    }
+
+    public void setStatus( final EthereumContractStatus status )
+    {
+        this.status = status;
+    }
 
     public String getSolidityAbi()
     {
@@ -127,5 +196,14 @@ public class EthereumContract
     {
         this.createdDate = createdDate;
     }
-}
 
+    public OffsetDateTime getLastModifiedDate()
+    {
+        return lastModifiedDate;
+    }
+
+    public void setLastModifiedDate( final OffsetDateTime lastModifiedDate )
+    {
+        this.lastModifiedDate = lastModifiedDate;
+    }
+}
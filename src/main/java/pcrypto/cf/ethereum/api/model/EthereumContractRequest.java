@@ -42,7 +42,7 @@ public class EthereumContractRequest
     @Valid
     private List<String> params = new ArrayList<>();
 
-    @ApiModelProperty( value = "The gas limit in wei for the transaction.",
+    @ApiModelProperty( value = "The gas limit for the transaction. If not set, it is estimated.",
                        position = 100 )
     @Valid
     private BigDecimal gasLimit = null;
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+@ApiModel
+public class EthereumEvent
+{
+
+    @ApiModelProperty( value = "Name of the registered contract which emitted the event, if any.",
+                       position = 10,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String contractName = null;
+
+    @ApiModelProperty( value = "Address of the contract which emitted the event.",
+                       position = 20,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String contractAddress = null;
+
+    @ApiModelProperty( value = "Name of the event, if it could be decoded.",
+                       position = 30,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String eventName = null;
+
+    @ApiModelProperty( value = "Signature of the event (ex. 'Transfer(address,address,uint256)'), if it could be decoded.",
+                       position = 40,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String eventSignature = null;
+
+    @ApiModelProperty( value = "Decoded event parameters by name.",
+                       position = 50,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private Map<String, String> params = new LinkedHashMap<>();
+
+    @ApiModelProperty( value = "Raw topics of the log.",
+                       position = 60,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private List<String> topics = new ArrayList<>();
+
+    @ApiModelProperty( value = "Raw data of the log.",
+                       position = 70,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String data = null;
+
+    @ApiModelProperty( value = "Number of the block the event was emitted in.",
+                       position = 80,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private Long blockNumber = null;
+
+    @ApiModelProperty( value = "Hash of the block the event was emitted in.",
+                       position = 90,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String blockHash = null;
+
+    @ApiModelProperty( value = "Hash of the transaction which emitted the event.",
+                       position = 100,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String transactionHash = null;
+
+    @ApiModelProperty( value = "Position of the log in its block.",
+                       position = 110,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private Long logIndex = null;
+
+
+    public String getContractName()
+    {
+        return contractName;
+    }
+
+    public void setContractName( final String contractName )
+    {
+        this.contractName = contractName;
+    }
+
+    public String getContractAddress()
+    {
+        return contractAddress;
+    }
+
+    public void setContractAddress( final String contractAddress )
+    {
+        this.contractAddress = contractAddress;
+    }
+
+    public String getEventName()
+    {
+        return eventName;
+    }
+
+    public void setEventName( final String eventName )
+    {
+        this.eventName = eventName;
+    }
+
+    public String getEventSignature()
+    {
+        return eventSignature;
+    }
+
+    public void setEventSignature( final String eventSignature )
+    {
+        this.eventSignature = eventSignature;
+    }
+
+    public Map<String, String> getParams()
+    {
+        return params;
+    }
+
+    public void setParams( final Map<String, String> params )
+    {
+        this.params = params;
+    }
+
+    public List<String> getTopics()
+    {
+        return topics;
+    }
+
+    public void setTopics( final List<String> topics )
+    {
+        this.topics = topics;
+    }
+
+    public String getData()
+    {
+        return data;
+    }
+
+    public void setData( final String data )
+    {
+        this.data = data;
+    }
+
+    public Long getBlockNumber()
+    {
+        return blockNumber;
+    }
+
+    public void setBlockNumber( final Long blockNumber )
+    {
+        this.blockNumber = blockNumber;
+    }
+
+    public String getBlockHash()
+    {
+        return blockHash;
+    }
+
+    public void setBlockHash( final String blockHash )
+    {
+        this.blockHash = blockHash;
+    }
+
+    public String getTransactionHash()
+    {
+        return transactionHash;
+    }
+
+    public void setTransactionHash( final String transactionHash )
+    {
+        this.transactionHash = transactionHash;
+    }
+
+    public Long getLogIndex()
+    {
+        return logIndex;
+    }
+
+    public void setLogIndex( final Long logIndex )
+    {
+        this.logIndex = logIndex;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+@ApiModel
+public class EthereumEvents
+{
+
+    @ApiModelProperty( value = "The events on this page, newest first.",
+                       position = 10,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private List<EthereumEvent> events = new ArrayList<>();
+
+    @ApiModelProperty( value = "The page number, starting from 0.",
+                       position = 20,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private Integer page = null;
+
+    @ApiModelProperty( value = "The maximum number of events on a page.",
+                       position = 30,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private Integer size = null;
+
+    @ApiModelProperty( value = "Whether there is a next page.",
+                       position = 40,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private Boolean hasMore = null;
+
+
+    public List<EthereumEvent> getEvents()
+    {
+        return events;
+    }
+
+    public void setEvents( final List<EthereumEvent> events )
+    {
+        this.events = events;
+    }
+
+    public Integer getPage()
+    {
+        return page;
+    }
+
+    public void setPage( final Integer page )
+    {
+        this.page = page;
+    }
+
+    public Integer getSize()
+    {
+        return size;
+    }
+
+    public void setSize( final Integer size )
+    {
+        this.size = size;
+    }
+
+    public Boolean getHasMore()
+    {
+        return hasMore;
+    }
+
+    public void setHasMore( final Boolean hasMore )
+    {
+        this.hasMore = hasMore;
+    }
+}
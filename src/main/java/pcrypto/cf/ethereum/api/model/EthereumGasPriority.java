@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.api.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import org.apache.commons.lang3.StringUtils;
+import pcrypto.cf.exception.BadRequestException;
+
+import java.util.Arrays;
+
+
+/**
+ * How quickly a transaction should be mined, which selects the gas price paid.
+ */
+public enum EthereumGasPriority
+{
+    SLOW( 1 ),
+    STANDARD( 2 ),
+    FAST( 3 );
+
+
+    private int id;
+
+    EthereumGasPriority( final int id )
+    {
+        this.id = id;
+    }
+
+    public static EthereumGasPriority valueOfIgnoreCase( final String typeString )
+    {
+        try
+        {
+            return valueOf( StringUtils.upperCase( typeString ) );
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Control Jackson serialization to do case-insensitive serialization.
+     *
+     * @param string original value
+     * @return the Enum
+     * @throws BadRequestException if an invalid value was sent
+     */
+    @JsonCreator
+    public static EthereumGasPriority fromString( final String string )
+    {
+        final EthereumGasPriority enumType = valueOfIgnoreCase( string );
+        if ( enumType == null )
+        {
+            throw new IllegalArgumentException( string + " must be one of " + Arrays.toString( EthereumGasPriority.values() ) );
+        }
+        return enumType;
+    }
+
+    public static EthereumGasPriority fromId( final int id )
+    {
+        switch ( id )
+        {
+            case 1:
+                return EthereumGasPriority.SLOW;
+
+            case 2:
+                return EthereumGasPriority.STANDARD;
+
+            case 3:
+                return EthereumGasPriority.FAST;
+
+            default:
+                throw new IllegalArgumentException( "EthereumGasPriority id [" + id + "] not supported." );
+        }
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A log emitted by a transaction, as recorded from its receipt.
+ */
+@Getter
+@Setter
+@ApiModel
+public class EthereumLog
+{
+    @ApiModelProperty( value = "Address of the contract which emitted the log.",
+                       position = 10,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String address = null;
+
+    @ApiModelProperty( value = "Raw topics of the log.",
+                       position = 20,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private List<String> topics = new ArrayList<>();
+
+    @ApiModelProperty( value = "Raw data of the log.",
+                       position = 30,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String data = null;
+
+    @ApiModelProperty( value = "Position of the log in its block.",
+                       position = 40,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private Long logIndex = null;
+}
@@ -66,9 +66,14 @@ public class EthereumPaymentRequest
                        position = 80 )
     private String memo;
 
-    @ApiModelProperty( value = "The gas limit in wei for the transaction. If not set, the gas limit will be 21000 wei.",
+    @ApiModelProperty( value = "The gas limit for the transaction. If not set, it is estimated from the gas used by similar transactions.",
                        position = 100 )
     @Valid
-    private BigDecimal gasLimit = new BigDecimal( 21000 );
+    private BigDecimal gasLimit = null;
+
+    @ApiModelProperty( value = "How quickly the transaction should be mined (SLOW, STANDARD or FAST), which sets the gas price " +
+                               "from recent network activity. If not set, STANDARD is used.",
+                       position = 110 )
+    private EthereumGasPriority gasPriority = EthereumGasPriority.STANDARD;
 }
 
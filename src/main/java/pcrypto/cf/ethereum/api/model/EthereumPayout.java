@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+
+/**
+ * The outcome of one payment in a batch payment transaction.
+ */
+@Getter
+@Setter
+@ApiModel
+public class EthereumPayout
+{
+    @ApiModelProperty( value = "The ChainFront account paid.",
+                       position = 10,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private Long cfAccountId = null;
+
+    @ApiModelProperty( value = "The Ethereum address paid.",
+                       position = 20,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String destinationAddress = null;
+
+    @ApiModelProperty( value = "The amount paid, in wei (or the token's base units).",
+                       position = 30,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private BigDecimal amount = null;
+
+    @ApiModelProperty( value = "Whether the payment has been made.",
+                       position = 40,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private EthereumPayoutStatus status = null;
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.api.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Arrays;
+
+
+public enum EthereumPayoutStatus
+{
+    // The batch transaction is not yet confirmed
+    PENDING,
+    PAID,
+    // The batch transaction was mined but reverted, so no payout in it was made
+    FAILED;
+
+
+    public static EthereumPayoutStatus valueOfIgnoreCase( final String typeString )
+    {
+        try
+        {
+            return valueOf( StringUtils.upperCase( typeString ) );
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            return null;
+        }
+    }
+
+    @JsonCreator
+    public static EthereumPayoutStatus fromString( final String string )
+    {
+        final EthereumPayoutStatus enumType = valueOfIgnoreCase( string );
+        if ( enumType == null )
+        {
+            throw new IllegalArgumentException( string + " must be one of " + Arrays.toString( EthereumPayoutStatus.values() ) );
+        }
+        return enumType;
+    }
+}
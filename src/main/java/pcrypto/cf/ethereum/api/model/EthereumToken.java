@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+
+/**
+ * An ERC-20 token in the tenant's token registry
+ */
+@Getter
+@Setter
+@ApiModel
+public class EthereumToken
+{
+    @ApiModelProperty( value = "A unique ChainFront id for this token.",
+                       position = 10,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private Long id = null;
+
+    @ApiModelProperty( value = "The token's symbol (ex. 'DAI').",
+                       required = true,
+                       position = 20 )
+    private String symbol = null;
+
+    @ApiModelProperty( value = "Address of the token's contract.",
+                       required = true,
+                       position = 30 )
+    private String contractAddress = null;
+
+    @ApiModelProperty( value = "Number of decimals of the token, which balances are scaled by.",
+                       required = true,
+                       position = 40 )
+    private Integer decimals = null;
+}
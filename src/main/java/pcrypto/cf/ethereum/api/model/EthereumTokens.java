@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ethereum.api.model;
+
+import io.swagger.annotations.ApiModel;
+
+import java.util.ArrayList;
+import java.util.Objects;
+
+
+/**
+ * EthereumTokens
+ */
+@ApiModel
+public class EthereumTokens
+      extends ArrayList<EthereumToken>
+{
+
+    @Override
+    public boolean equals( java.lang.Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( o == null || getClass() != o.getClass() )
+        {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash( super.hashCode() );
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "class EthereumTokens {\n" );
+        sb.append( "    " ).append( toIndentedString( super.toString() ) ).append( "\n" );
+        sb.append( "}" );
+        return sb.toString();
+    }
+
+    /**
+     * Convert the given object to string with each line indented by 4 spaces
+     * (except the first line).
+     */
+    private String toIndentedString( java.lang.Object o )
+    {
+        if ( o == null )
+        {
+            return "null";
+        }
+        return o.toString().replace( "\n", "\n    " );
+    }
+}
+
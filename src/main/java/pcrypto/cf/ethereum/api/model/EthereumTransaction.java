@@ -93,11 +93,11 @@ public class EthereumTransaction
     @Valid
     private BigDecimal gasPrice = null;
 
-    @ApiModelProperty( value = "A list of log messages from the Ethereum network for the operations executed as part of this transaction.",
+    @ApiModelProperty( value = "The logs emitted by the operations executed as part of this transaction.",
                        position = 180,
                        accessMode = ApiModelProperty.AccessMode.READ_ONLY,
                        readOnly = true )
-    private List<String> logs = new ArrayList<>();
+    private List<EthereumLog> logs = new ArrayList<>();
 
     @ApiModelProperty( value = "The signed encoded transaction.",
                        position = 200,
@@ -105,10 +105,21 @@ public class EthereumTransaction
                        readOnly = true )
     private String signedTransaction = null;
 
+    @ApiModelProperty( value = "For batch payments, the outcome of each payment.",
+                       position = 210,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private List<EthereumPayout> payouts = new ArrayList<>();
+
 
     public void addApproval( final Approval approval )
     {
         approvals.add( approval );
     }
+
+    public void addPayout( final EthereumPayout payout )
+    {
+        payouts.add( payout );
+    }
 }
 
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.core.methods.response.Transaction;
+import org.web3j.utils.Numeric;
+import pcrypto.cf.ethereum.client.EthereumAccountClient;
+import pcrypto.cf.ethereum.client.EthereumTokenClient;
+import pcrypto.cf.ethereum.client.EthereumTransactionClient;
+import pcrypto.cf.ethereum.client.dto.EthereumBalancesDto;
+
+import javax.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * In-memory cache of Ether and ERC-20 token balances which is kept current by following new blocks.
+ * <p>
+ * A balance is read at the last block we have scanned, and stays valid until a later block touches the address:
+ * as the sender, recipient or created contract of one of its transactions, as its miner, or (for token balances)
+ * as the sender or recipient of one of its ERC-20 Transfer logs. Only those entries are dropped, so reading an
+ * untouched account costs nothing upstream no matter how many blocks go by.
+ * <p>
+ * Ether moved by contract internal calls doesn't show up in a block's transactions, so entries are also dropped
+ * after 'ethereum.balance-cache.max-age-ms'. If we fall too far behind, see a reorg, or can't reach the node, the
+ * whole cache is dropped (and reads go straight to the node until we catch up again).
+ */
+@Slf4j
+@Component
+public class EthereumBalanceCache
+{
+    // Transfer(address,address,uint256)
+    private static final String TRANSFER_TOPIC = "0xddf252ad1be2c89b69c2b068fc378daa952ba7f163c4a11628f55a4df523b3ef";
+
+    private final EthereumTransactionClient ethereumTransactionClient;
+    private final EthereumAccountClient ethereumAccountClient;
+    private final EthereumTokenClient ethereumTokenClient;
+
+    // Keyed by lower case address, and by lower case holder and token address
+    private final Map<String, CachedBalance> balances = new ConcurrentHashMap<>();
+    private final Map<String, CachedBalance> tokenBalances = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService pollScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "ethereum-balance-cache" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    // The last block whose changes have been applied to the cache
+    private volatile long scannedBlockNumber = -1;
+    private volatile String scannedBlockHash;
+    private volatile long scannedAtMillis;
+
+    @Value( "${ethereum.balance-cache.poll-interval-ms:3000}" )
+    private long pollIntervalMs;
+
+    @Value( "${ethereum.balance-cache.max-scan-blocks:50}" )
+    private long maxScanBlocks;
+
+    @Value( "${ethereum.balance-cache.max-staleness-ms:60000}" )
+    private long maxStalenessMs;
+
+    @Value( "${ethereum.balance-cache.max-age-ms:300000}" )
+    private long maxAgeMs;
+
+
+    @Autowired
+    public EthereumBalanceCache( final EthereumTransactionClient ethereumTransactionClient,
+                                 final EthereumAccountClient ethereumAccountClient,
+                                 final EthereumTokenClient ethereumTokenClient )
+    {
+        this.ethereumTransactionClient = ethereumTransactionClient;
+        this.ethereumAccountClient = ethereumAccountClient;
+        this.ethereumTokenClient = ethereumTokenClient;
+    }
+
+
+    @EventListener( ApplicationReadyEvent.class )
+    public void start()
+    {
+        pollScheduler.scheduleWithFixedDelay( this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS );
+    }
+
+
+    @PreDestroy
+    public void close()
+    {
+        pollScheduler.shutdownNow();
+    }
+
+
+    /**
+     * Get the Ether balance of an address, in wei.
+     */
+    public BigInteger getBalance( final String ethAddress )
+    {
+        return getBalances( Collections.singletonList( ethAddress ) ).getBalances().get( ethAddress );
+    }
+
+
+    /**
+     * Get the Ether balances of many addresses, fetching only those we don't have in a single batch.
+     *
+     * @return the balances, all as of the same block
+     */
+    public EthereumBalancesDto getBalances( final List<String> ethAddresses )
+    {
+        final long blockNumber = scannedBlockNumber;
+        if ( !isFollowing() )
+        {
+            return ethereumAccountClient.getAccountBalances( ethAddresses );
+        }
+
+        final EthereumBalancesDto balancesDto = new EthereumBalancesDto();
+        balancesDto.setBlockNumber( BigInteger.valueOf( blockNumber ) );
+
+        final List<String> missing = new ArrayList<>();
+        for ( final String ethAddress : ethAddresses )
+        {
+            final BigInteger balance = getUsable( balances, ethAddress.toLowerCase() );
+            if ( null == balance )
+            {
+                missing.add( ethAddress );
+            }
+            balancesDto.getBalances().put( ethAddress, balance );
+        }
+
+        if ( !missing.isEmpty() )
+        {
+            final EthereumBalancesDto fetched = ethereumAccountClient.getAccountBalances( missing, BigInteger.valueOf( blockNumber ) );
+            for ( final Map.Entry<String, BigInteger> entry : fetched.getBalances().entrySet() )
+            {
+                balancesDto.getBalances().put( entry.getKey(), entry.getValue() );
+                cache( balances, entry.getKey().toLowerCase(), new CachedBalance( blockNumber, entry.getValue() ) );
+            }
+        }
+        return balancesDto;
+    }
+
+
+    /**
+     * Get the balances of (holder, token) pairs, fetching only those we don't have.
+     *
+     * @param holderAddresses the addresses to get balances of
+     * @param tokenAddresses  the token contracts, one per holder address
+     * @return the balances in the order of the pairs; null where the token contract did not answer 'balanceOf'
+     */
+    public List<BigInteger> getTokenBalances( final List<String> holderAddresses,
+                                              final List<String> tokenAddresses )
+    {
+        final long blockNumber = scannedBlockNumber;
+        if ( !isFollowing() )
+        {
+            return ethereumTokenClient.getTokenBalances( holderAddresses, tokenAddresses, ethereumTransactionClient.getBlockNumber() );
+        }
+
+        final List<BigInteger> result = new ArrayList<>();
+        final List<Integer> missingIndexes = new ArrayList<>();
+        final List<String> missingHolders = new ArrayList<>();
+        final List<String> missingTokens = new ArrayList<>();
+        for ( int i = 0; i < holderAddresses.size(); i++ )
+        {
+            final BigInteger balance = getUsable( tokenBalances, tokenKey( holderAddresses.get( i ), tokenAddresses.get( i ) ) );
+            if ( null == balance )
+            {
+                missingIndexes.add( i );
+                missingHolders.add( holderAddresses.get( i ) );
+                missingTokens.add( tokenAddresses.get( i ) );
+            }
+            result.add( balance );
+        }
+
+        if ( !missingIndexes.isEmpty() )
+        {
+            final List<BigInteger> fetched = ethereumTokenClient.getTokenBalances( missingHolders, missingTokens, BigInteger.valueOf( blockNumber ) );
+            for ( int i = 0; i < fetched.size(); i++ )
+            {
+                result.set( missingIndexes.get( i ), fetched.get( i ) );
+                if ( null != fetched.get( i ) )
+                {
+                    cache( tokenBalances, tokenKey( missingHolders.get( i ), missingTokens.get( i ) ), new CachedBalance( blockNumber, fetched.get( i ) ) );
+                }
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Apply every block since the last poll to the cache.
+     */
+    void poll()
+    {
+        try
+        {
+            final long head = ethereumTransactionClient.getBlockNumber().longValue();
+            final long scanned = scannedBlockNumber;
+            if ( head == scanned )
+            {
+                scannedAtMillis = System.currentTimeMillis();
+                return;
+            }
+            if ( scanned < 0 || head < scanned || head - scanned > maxScanBlocks )
+            {
+                // Starting out, the chain went backwards, or we are too far behind to catch up block by block
+                reset( head );
+                return;
+            }
+
+            final List<EthBlock.Block> blocks = ethereumTransactionClient.getBlocks( scanned + 1, head, true );
+            String parentHash = scannedBlockHash;
+            final Set<String> touched = new HashSet<>();
+            for ( final EthBlock.Block block : blocks )
+            {
+                if ( !block.getParentHash().equals( parentHash ) )
+                {
+                    log.warn( "Ethereum reorg detected at block {}, dropping cached balances", block.getNumber() );
+                    reset( head );
+                    return;
+                }
+                parentHash = block.getHash();
+
+                addAddress( touched, block.getMiner() );
+                for ( final EthBlock.TransactionResult<?> transactionResult : block.getTransactions() )
+                {
+                    final Transaction transaction = (Transaction) transactionResult.get();
+                    addAddress( touched, transaction.getFrom() );
+                    addAddress( touched, transaction.getTo() );
+                    addAddress( touched, transaction.getCreates() );
+                }
+            }
+
+            final Set<String> touchedTokens = new HashSet<>();
+            final EthFilter transferFilter = new EthFilter( DefaultBlockParameter.valueOf( BigInteger.valueOf( scanned + 1 ) ),
+                                                            DefaultBlockParameter.valueOf( BigInteger.valueOf( head ) ),
+                                                            new ArrayList<>() );
+            transferFilter.addSingleTopic( TRANSFER_TOPIC );
+            for ( final Log transferLog : ethereumTransactionClient.getLogs( Collections.singletonList( transferFilter ) ) )
+            {
+                final List<String> topics = transferLog.getTopics();
+                for ( int i = 1; i < Math.min( 3, topics.size() ); i++ )
+                {
+                    touchedTokens.add( tokenKey( topicToAddress( topics.get( i ) ), transferLog.getAddress() ) );
+                }
+            }
+
+            // Move the scanned block first, so that a balance read at an older block while we invalidate is dropped
+            // by the reader (see cache())
+            scannedBlockNumber = head;
+            scannedBlockHash = parentHash;
+            scannedAtMillis = System.currentTimeMillis();
+            touched.forEach( balances::remove );
+            touchedTokens.forEach( tokenBalances::remove );
+        }
+        catch ( final Exception e )
+        {
+            log.warn( "Unable to follow Ethereum blocks for the balance cache: {}", e.getMessage() );
+        }
+    }
+
+
+    private boolean isFollowing()
+    {
+        return scannedBlockNumber >= 0 && System.currentTimeMillis() - scannedAtMillis <= maxStalenessMs;
+    }
+
+    private void reset( final long head )
+    {
+        final EthBlock.Block block = ethereumTransactionClient.getBlocks( head, head, false ).get( 0 );
+        scannedBlockNumber = head;
+        scannedBlockHash = block.getHash();
+        scannedAtMillis = System.currentTimeMillis();
+        balances.clear();
+        tokenBalances.clear();
+    }
+
+    private BigInteger getUsable( final Map<String, CachedBalance> cache,
+                                  final String key )
+    {
+        final CachedBalance cached = cache.get( key );
+        if ( null == cached || System.currentTimeMillis() - cached.readAtMillis > maxAgeMs )
+        {
+            return null;
+        }
+        return cached.balance;
+    }
+
+    /**
+     * Keep a balance read at the given block, unless a newer block was scanned in the meantime (it may have
+     * changed the balance after we read it).
+     */
+    private void cache( final Map<String, CachedBalance> cache,
+                        final String key,
+                        final CachedBalance cachedBalance )
+    {
+        cache.put( key, cachedBalance );
+        if ( scannedBlockNumber != cachedBalance.blockNumber )
+        {
+            cache.remove( key, cachedBalance );
+        }
+    }
+
+    private static void addAddress( final Set<String> addresses,
+                                    final String address )
+    {
+        if ( null != address )
+        {
+            addresses.add( address.toLowerCase() );
+        }
+    }
+
+    private static String topicToAddress( final String topic )
+    {
+        final String hex = Numeric.cleanHexPrefix( topic );
+        return "0x" + hex.substring( Math.max( 0, hex.length() - 40 ) );
+    }
+
+    private static String tokenKey( final String holderAddress,
+                                    final String tokenAddress )
+    {
+        return holderAddress.toLowerCase() + ":" + tokenAddress.toLowerCase();
+    }
+
+
+    private static final class CachedBalance
+    {
+        private final long blockNumber;
+        private final BigInteger balance;
+        private final long readAtMillis = System.currentTimeMillis();
+
+        private CachedBalance( final long blockNumber,
+                               final BigInteger balance )
+        {
+            this.blockNumber = blockNumber;
+            this.balance = balance;
+        }
+    }
+}
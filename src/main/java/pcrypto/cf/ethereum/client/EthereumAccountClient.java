@@ -17,43 +17,98 @@
 package pcrypto.cf.ethereum.client;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
 import org.web3j.protocol.core.methods.response.EthGetBalance;
-import org.web3j.protocol.http.HttpService;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import pcrypto.cf.ethereum.client.dto.EthereumBalancesDto;
 import pcrypto.cf.exception.BlockchainServiceException;
 
 import java.math.BigInteger;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.ArrayList;
+import java.util.List;
 
 
 @Slf4j
 @Service
 public class EthereumAccountClient
 {
-    @Value( "${ethereum.geth-url}" )
-    private String ethereumUrl;
+    private final EthereumRpc ethereumRpc;
+
+
+    @Autowired
+    public EthereumAccountClient( final EthereumRpc ethereumRpc )
+    {
+        this.ethereumRpc = ethereumRpc;
+    }
+
 
     public BigInteger getAccountBalance( final String ethAddress )
     {
-        final Web3j client = Web3j.build( new HttpService( ethereumUrl ) );
+        final EthGetBalance ethGetBalance = ethereumRpc.send( ethereumRpc.getWeb3j().ethGetBalance( ethAddress, DefaultBlockParameter.valueOf( "latest" ) ) );
+
+        return ethGetBalance.getBalance();
+    }
 
-        final Request<?, EthGetBalance> balanceRequest = client.ethGetBalance( ethAddress, DefaultBlockParameter.valueOf( "latest" ) );
-        final CompletableFuture<EthGetBalance> future = balanceRequest.sendAsync();
-        final EthGetBalance ethGetBalance;
-        try
+    /**
+     * The next nonce for the address, counting transactions still in the node's pending pool.
+     */
+    public BigInteger getPendingTransactionCount( final String ethAddress )
+    {
+        final EthGetTransactionCount ethGetTransactionCount = ethereumRpc.send( ethereumRpc.getWeb3j().ethGetTransactionCount( ethAddress, DefaultBlockParameterName.PENDING ) );
+        if ( ethGetTransactionCount.hasError() )
         {
-            ethGetBalance = future.get();
+            throw new BlockchainServiceException( "Unable to get the transaction count of " + ethAddress + ": " + ethGetTransactionCount.getError().getMessage(), null );
         }
-        catch ( final InterruptedException | ExecutionException e )
+
+        return ethGetTransactionCount.getTransactionCount();
+    }
+
+
+    /**
+     * Get the balances of many addresses at once, in as few JSON-RPC batches as possible. Every lookup is pinned to
+     * the same block so the balances are consistent with each other.
+     */
+    public EthereumBalancesDto getAccountBalances( final List<String> ethAddresses )
+    {
+        final EthBlockNumber ethBlockNumber = ethereumRpc.send( ethereumRpc.getWeb3j().ethBlockNumber() );
+        if ( ethBlockNumber.hasError() )
         {
-            throw new BlockchainServiceException( e.getMessage(), e );
+            throw new BlockchainServiceException( "Unable to get the current block number: " + ethBlockNumber.getError().getMessage(), null );
         }
+        return getAccountBalances( ethAddresses, ethBlockNumber.getBlockNumber() );
+    }
 
-        return ethGetBalance.getBalance();
+    /**
+     * Get the balances of many addresses as of the given block, in as few JSON-RPC batches as possible.
+     */
+    public EthereumBalancesDto getAccountBalances( final List<String> ethAddresses,
+                                                   final BigInteger blockNumber )
+    {
+        final DefaultBlockParameter block = DefaultBlockParameter.valueOf( blockNumber );
+
+        final List<Request<?, EthGetBalance>> requests = new ArrayList<>();
+        for ( final String ethAddress : ethAddresses )
+        {
+            requests.add( ethereumRpc.getWeb3j().ethGetBalance( ethAddress, block ) );
+        }
+        final List<EthGetBalance> responses = ethereumRpc.sendBatch( requests );
+
+        final EthereumBalancesDto balancesDto = new EthereumBalancesDto();
+        balancesDto.setBlockNumber( blockNumber );
+        for ( int i = 0; i < ethAddresses.size(); i++ )
+        {
+            final EthGetBalance ethGetBalance = responses.get( i );
+            if ( ethGetBalance.hasError() )
+            {
+                throw new BlockchainServiceException( "Unable to get balance of " + ethAddresses.get( i ) + ": " + ethGetBalance.getError().getMessage(), null );
+            }
+            balancesDto.getBalances().put( ethAddresses.get( i ), ethGetBalance.getBalance() );
+        }
+        return balancesDto;
     }
 }
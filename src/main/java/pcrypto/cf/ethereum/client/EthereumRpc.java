@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ethereum.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import pcrypto.cf.config.concurrent.Futures;
+import pcrypto.cf.exception.BlockchainServiceException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Sends JSON-RPC requests to geth over the shared {@link Web3j} client, recording the latency of each call by
+ * method and outcome under 'ethereum.rpc'. Requests can also be combined into a single JSON-RPC batch, which is
+ * posted over the same pooled HTTP client.
+ */
+@Component
+public class EthereumRpc
+{
+    private static final MediaType JSON_MEDIA_TYPE = MediaType.parse( "application/json; charset=utf-8" );
+
+    private final Web3j web3j;
+    private final OkHttpClient httpClient;
+    private final MeterRegistry meterRegistry;
+
+    // Web3j's own mapper, so batch responses deserialize exactly as single responses do
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+    @Value( "${ethereum.geth-url}" )
+    private String ethereumUrl;
+
+    @Value( "${ethereum.batch.max-size:100}" )
+    private int maxBatchSize;
+
+    // Includes time spent queued behind other calls in the HTTP client
+    @Value( "${ethereum.batch.timeout-ms:60000}" )
+    private long batchTimeoutMs;
+
+
+    @Autowired
+    public EthereumRpc( final Web3j web3j,
+                        @Qualifier( "ethereumHttpClient" ) final OkHttpClient httpClient,
+                        final MeterRegistry meterRegistry )
+    {
+        this.web3j = web3j;
+        this.httpClient = httpClient;
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    public Web3j getWeb3j()
+    {
+        return web3j;
+    }
+
+    /**
+     * Send a request built from {@link #getWeb3j()} and wait for the response.
+     */
+    public <T extends Response<?>> T send( final Request<?, T> request )
+    {
+        final Timer.Sample sample = Timer.start( meterRegistry );
+        String outcome = "failure";
+        try
+        {
+            final T response = request.send();
+            outcome = response.hasError() ? "error" : "success";
+            return response;
+        }
+        catch ( final IOException e )
+        {
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+        finally
+        {
+            sample.stop( meterRegistry.timer( "ethereum.rpc", "method", request.getMethod(), "outcome", outcome ) );
+        }
+    }
+
+
+    /**
+     * Send any number of requests built from {@link #getWeb3j()} and wait for the responses. The requests are packed
+     * into JSON-RPC batches of at most 'ethereum.batch.max-size', which are all sent concurrently.
+     *
+     * @return the responses in the same order as the requests
+     */
+    public <T extends Response<?>> List<T> sendBatch( final List<Request<?, T>> requests )
+    {
+        final List<CompletableFuture<List<T>>> batches = new ArrayList<>();
+        final int batchSize = Math.max( 1, maxBatchSize );
+        for ( int start = 0; start < requests.size(); start += batchSize )
+        {
+            batches.add( sendBatchAsync( requests.subList( start, Math.min( start + batchSize, requests.size() ) ) ) );
+        }
+
+        final List<T> results = new ArrayList<>( requests.size() );
+        for ( final CompletableFuture<List<T>> batch : batches )
+        {
+            results.addAll( Futures.await( batch, batchTimeoutMs ) );
+        }
+        return results;
+    }
+
+    /**
+     * Send several requests built from {@link #getWeb3j()} as one JSON-RPC batch. The HTTP call is made
+     * asynchronously, so many batches can be in flight at once.
+     *
+     * @param requests the requests to send; each must have a distinct id (web3j assigns these)
+     * @return a future which completes with the responses in the same order as the requests
+     */
+    public <T extends Response<?>> CompletableFuture<List<T>> sendBatchAsync( final List<Request<?, T>> requests )
+    {
+        final CompletableFuture<List<T>> future = new CompletableFuture<>();
+        if ( requests.isEmpty() )
+        {
+            future.complete( new ArrayList<>() );
+            return future;
+        }
+
+        final byte[] body;
+        try
+        {
+            body = objectMapper.writeValueAsBytes( requests );
+        }
+        catch ( final JsonProcessingException e )
+        {
+            future.completeExceptionally( new BlockchainServiceException( e.getMessage(), e ) );
+            return future;
+        }
+
+        final okhttp3.Request httpRequest = new okhttp3.Request.Builder()
+              .url( ethereumUrl )
+              .post( RequestBody.create( JSON_MEDIA_TYPE, body ) )
+              .build();
+
+        final Timer.Sample sample = Timer.start( meterRegistry );
+        httpClient.newCall( httpRequest ).enqueue( new Callback()
+        {
+            @Override
+            public void onFailure( final Call call,
+                                   final IOException e )
+            {
+                sample.stop( meterRegistry.timer( "ethereum.rpc", "method", "batch", "outcome", "failure" ) );
+                future.completeExceptionally( new BlockchainServiceException( e.getMessage(), e ) );
+            }
+
+            @Override
+            public void onResponse( final Call call,
+                                    final okhttp3.Response response )
+            {
+                String outcome = "failure";
+                try ( final ResponseBody responseBody = response.body() )
+                {
+                    if ( !response.isSuccessful() || null == responseBody )
+                    {
+                        throw new BlockchainServiceException( "Batch request to geth failed with HTTP " + response.code(), null );
+                    }
+
+                    // Responses to a batch may come back in any order, so match them up by id
+                    final Map<Long, JsonNode> responsesById = new HashMap<>();
+                    for ( final JsonNode responseNode : objectMapper.readTree( responseBody.byteStream() ) )
+                    {
+                        responsesById.put( responseNode.path( "id" ).asLong(), responseNode );
+                    }
+
+                    final List<T> results = new ArrayList<>( requests.size() );
+                    outcome = "success";
+                    for ( final Request<?, T> request : requests )
+                    {
+                        final JsonNode responseNode = responsesById.get( request.getId() );
+                        if ( null == responseNode )
+                        {
+                            throw new BlockchainServiceException( "No response from geth for batched " + request.getMethod() + " request " + request.getId(), null );
+                        }
+                        final T result = objectMapper.treeToValue( responseNode, request.getResponseType() );
+                        if ( result.hasError() )
+                        {
+                            outcome = "error";
+                        }
+                        results.add( result );
+                    }
+                    future.complete( results );
+                }
+                catch ( final IOException e )
+                {
+                    outcome = "failure";
+                    future.completeExceptionally( new BlockchainServiceException( e.getMessage(), e ) );
+                }
+                catch ( final BlockchainServiceException e )
+                {
+                    outcome = "failure";
+                    future.completeExceptionally( e );
+                }
+                catch ( final RuntimeException e )
+                {
+                    outcome = "failure";
+                    future.completeExceptionally( new BlockchainServiceException( e.getMessage(), e ) );
+                }
+                finally
+                {
+                    sample.stop( meterRegistry.timer( "ethereum.rpc", "method", "batch", "outcome", outcome ) );
+                }
+            }
+        } );
+
+        return future;
+    }
+}
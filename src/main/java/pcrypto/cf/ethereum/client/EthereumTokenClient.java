@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.utils.Numeric;
+import pcrypto.cf.exception.BlockchainServiceException;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Reads ERC-20 token balances. Each 'balanceOf' is an 'eth_call', and many of them are sent at once: either packed
+ * into a single call to a Multicall aggregate contract, if 'ethereum.tokens.multicall-address' is set, or else as
+ * individual calls in JSON-RPC batches.
+ */
+@Slf4j
+@Service
+public class EthereumTokenClient
+{
+    // aggregate((address,bytes)[])
+    private static final String AGGREGATE_SELECTOR = "252dba42";
+
+    private final EthereumRpc ethereumRpc;
+
+    @Value( "${ethereum.tokens.multicall-address:}" )
+    private String multicallAddress;
+
+    @Value( "${ethereum.tokens.multicall-max-calls:500}" )
+    private int multicallMaxCalls;
+
+
+    @Autowired
+    public EthereumTokenClient( final EthereumRpc ethereumRpc )
+    {
+        this.ethereumRpc = ethereumRpc;
+    }
+
+
+    /**
+     * Get the balance of each (holder, token) pair at the given block.
+     *
+     * @param holderAddresses the accounts holding the tokens
+     * @param tokenAddresses  the token contracts, one per holder address
+     * @param blockNumber     the block to read the balances at
+     * @return the balances in the order of the pairs; null where the token contract did not answer 'balanceOf'
+     */
+    public List<BigInteger> getTokenBalances( final List<String> holderAddresses,
+                                              final List<String> tokenAddresses,
+                                              final BigInteger blockNumber )
+    {
+        final DefaultBlockParameter block = DefaultBlockParameter.valueOf( blockNumber );
+        if ( StringUtils.isNotBlank( multicallAddress ) )
+        {
+            try
+            {
+                return getTokenBalancesByMulticall( holderAddresses, tokenAddresses, block );
+            }
+            catch ( final BlockchainServiceException e )
+            {
+                // A single reverting token fails the whole aggregate, so fall back to calling each one
+                log.warn( "Multicall aggregate failed ({}), falling back to batched eth_call", e.getMessage() );
+            }
+        }
+        return getTokenBalancesByBatch( holderAddresses, tokenAddresses, block );
+    }
+
+
+    private List<BigInteger> getTokenBalancesByBatch( final List<String> holderAddresses,
+                                                      final List<String> tokenAddresses,
+                                                      final DefaultBlockParameter block )
+    {
+        final List<Request<?, EthCall>> requests = new ArrayList<>();
+        for ( int i = 0; i < holderAddresses.size(); i++ )
+        {
+            final Transaction call = Transaction.createEthCallTransaction( null, tokenAddresses.get( i ), encodeBalanceOf( holderAddresses.get( i ) ) );
+            requests.add( ethereumRpc.getWeb3j().ethCall( call, block ) );
+        }
+
+        final List<BigInteger> balances = new ArrayList<>();
+        for ( final EthCall ethCall : ethereumRpc.sendBatch( requests ) )
+        {
+            balances.add( ethCall.hasError() || null == ethCall.getValue() ? null : decodeBalance( Numeric.cleanHexPrefix( ethCall.getValue() ) ) );
+        }
+        return balances;
+    }
+
+    private List<BigInteger> getTokenBalancesByMulticall( final List<String> holderAddresses,
+                                                          final List<String> tokenAddresses,
+                                                          final DefaultBlockParameter block )
+    {
+        // Very large aggregates can exceed the node's gas cap for eth_call, so split them up
+        final List<Request<?, EthCall>> requests = new ArrayList<>();
+        final int chunkSize = Math.max( 1, multicallMaxCalls );
+        for ( int start = 0; start < holderAddresses.size(); start += chunkSize )
+        {
+            final int end = Math.min( start + chunkSize, holderAddresses.size() );
+            final String data = encodeAggregate( holderAddresses.subList( start, end ), tokenAddresses.subList( start, end ) );
+            requests.add( ethereumRpc.getWeb3j().ethCall( Transaction.createEthCallTransaction( null, multicallAddress, data ), block ) );
+        }
+
+        final List<BigInteger> balances = new ArrayList<>();
+        for ( final EthCall ethCall : ethereumRpc.sendBatch( requests ) )
+        {
+            if ( ethCall.hasError() )
+            {
+                throw new BlockchainServiceException( ethCall.getError().getMessage(), null );
+            }
+            balances.addAll( decodeAggregate( ethCall.getValue() ) );
+        }
+        return balances;
+    }
+
+
+    static String encodeBalanceOf( final String holderAddress )
+    {
+        final Function balanceOf = new Function( "balanceOf",
+                                                 Collections.singletonList( new Address( holderAddress ) ),
+                                                 Collections.singletonList( new TypeReference<Uint256>()
+                                                 {
+                                                 } ) );
+        return FunctionEncoder.encode( balanceOf );
+    }
+
+    /**
+     * ABI encode a call to aggregate((address,bytes)[]) which calls 'balanceOf' on each token.
+     */
+    static String encodeAggregate( final List<String> holderAddresses,
+                                   final List<String> tokenAddresses )
+    {
+        final List<String> elements = new ArrayList<>();
+        for ( int i = 0; i < holderAddresses.size(); i++ )
+        {
+            final String callData = Numeric.cleanHexPrefix( encodeBalanceOf( holderAddresses.get( i ) ) );
+            elements.add( word( Numeric.toBigInt( tokenAddresses.get( i ) ) )
+                          + word( BigInteger.valueOf( 64 ) )
+                          + word( BigInteger.valueOf( callData.length() / 2 ) )
+                          + StringUtils.rightPad( callData, ( callData.length() + 63 ) / 64 * 64, '0' ) );
+        }
+
+        final StringBuilder data = new StringBuilder( AGGREGATE_SELECTOR );
+        data.append( word( BigInteger.valueOf( 32 ) ) );
+        data.append( word( BigInteger.valueOf( elements.size() ) ) );
+
+        // Each element is a dynamic tuple, so the array starts with the offset of each one
+        long offset = elements.size() * 32L;
+        for ( final String element : elements )
+        {
+            data.append( word( BigInteger.valueOf( offset ) ) );
+            offset += element.length() / 2;
+        }
+        for ( final String element : elements )
+        {
+            data.append( element );
+        }
+        return Numeric.prependHexPrefix( data.toString() );
+    }
+
+    /**
+     * Decode the (uint256 blockNumber, bytes[] returnData) returned by aggregate, where each entry of returnData is
+     * the uint256 returned by 'balanceOf'.
+     */
+    static List<BigInteger> decodeAggregate( final String value )
+    {
+        final String data = Numeric.cleanHexPrefix( value );
+        final int arrayStart = readInt( data, 64 ) * 2;
+        final int count = readInt( data, arrayStart );
+        final int elementsStart = arrayStart + 64;
+
+        final List<BigInteger> balances = new ArrayList<>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            final int elementStart = elementsStart + readInt( data, elementsStart + i * 64 ) * 2;
+            final int length = readInt( data, elementStart );
+            balances.add( decodeBalance( data.substring( elementStart + 64, elementStart + 64 + length * 2 ) ) );
+        }
+        return balances;
+    }
+
+
+    private static BigInteger decodeBalance( final String data )
+    {
+        if ( null == data || data.length() < 64 )
+        {
+            // Not an ERC-20 token (or not a contract at all)
+            return null;
+        }
+        return new BigInteger( data.substring( 0, 64 ), 16 );
+    }
+
+    private static String word( final BigInteger value )
+    {
+        return Numeric.toHexStringNoPrefixZeroPadded( value, 64 );
+    }
+
+    private static int readInt( final String data,
+                                final int position )
+    {
+        return new BigInteger( data.substring( position, position + 64 ), 16 ).intValueExact();
+    }
+}
@@ -17,19 +17,28 @@
 package pcrypto.cf.ethereum.client;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthEstimateGas;
+import org.web3j.protocol.core.methods.response.EthGetCode;
 import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.EthLog;
 import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.Log;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
-import org.web3j.protocol.http.HttpService;
 import pcrypto.cf.exception.BlockchainServiceException;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
 
 
 /**
@@ -39,43 +48,153 @@ import java.util.concurrent.ExecutionException;
 @Service
 public class EthereumTransactionClient
 {
-    @Value( "${ethereum.geth-url}" )
-    private String ethereumUrl;
+    private final EthereumRpc ethereumRpc;
+
+
+    @Autowired
+    public EthereumTransactionClient( final EthereumRpc ethereumRpc )
+    {
+        this.ethereumRpc = ethereumRpc;
+    }
 
 
     public EthSendTransaction submitTransaction( final String signedTx )
     {
-        final Web3j client = Web3j.build( new HttpService( ethereumUrl ) );
+        return ethereumRpc.send( ethereumRpc.getWeb3j().ethSendRawTransaction( signedTx ) );
+    }
 
-        final Request<?, EthSendTransaction> request = client.ethSendRawTransaction( signedTx );
-        final CompletableFuture<EthSendTransaction> future = request.sendAsync();
+    public Optional<TransactionReceipt> getTransaction( final String transactionHash )
+    {
+        final EthGetTransactionReceipt ethGetTransactionReceipt = ethereumRpc.send( ethereumRpc.getWeb3j().ethGetTransactionReceipt( transactionHash ) );
+        return ethGetTransactionReceipt.getTransactionReceipt();
+    }
 
-        try
+    /**
+     * Get the receipts of many transactions at once, in as few JSON-RPC batches as possible.
+     *
+     * @return the receipts in the same order as the hashes; empty for transactions not yet in a block
+     */
+    public List<Optional<TransactionReceipt>> getTransactions( final List<String> transactionHashes )
+    {
+        final List<Request<?, EthGetTransactionReceipt>> requests = new ArrayList<>();
+        for ( final String transactionHash : transactionHashes )
         {
-            final EthSendTransaction ethSendTransaction = future.get();
-            return ethSendTransaction;
+            requests.add( ethereumRpc.getWeb3j().ethGetTransactionReceipt( transactionHash ) );
         }
-        catch ( final InterruptedException | ExecutionException e )
+
+        final List<Optional<TransactionReceipt>> receipts = new ArrayList<>();
+        for ( final EthGetTransactionReceipt ethGetTransactionReceipt : ethereumRpc.sendBatch( requests ) )
         {
-            throw new BlockchainServiceException( e.getMessage(), e );
+            if ( ethGetTransactionReceipt.hasError() )
+            {
+                throw new BlockchainServiceException( "Unable to get transaction receipt: " + ethGetTransactionReceipt.getError().getMessage(), null );
+            }
+            receipts.add( ethGetTransactionReceipt.getTransactionReceipt() );
         }
+        return receipts;
     }
 
-    public Optional<TransactionReceipt> getTransaction( final String transactionHash )
+    /**
+     * Run several log filters at once, in as few JSON-RPC batches as possible.
+     *
+     * @return the matching logs of every filter, in filter order (a log matched by more than one filter appears more
+     * than once)
+     */
+    public List<Log> getLogs( final List<EthFilter> filters )
     {
-        final Web3j client = Web3j.build( new HttpService( ethereumUrl ) );
+        final List<Request<?, EthLog>> requests = new ArrayList<>();
+        for ( final EthFilter filter : filters )
+        {
+            requests.add( ethereumRpc.getWeb3j().ethGetLogs( filter ) );
+        }
 
-        final Request<?, EthGetTransactionReceipt> request = client.ethGetTransactionReceipt( transactionHash );
-        final CompletableFuture<EthGetTransactionReceipt> future = request.sendAsync();
+        final List<Log> logs = new ArrayList<>();
+        for ( final EthLog ethLog : ethereumRpc.sendBatch( requests ) )
+        {
+            if ( ethLog.hasError() )
+            {
+                throw new BlockchainServiceException( "Unable to get logs: " + ethLog.getError().getMessage(), null );
+            }
+            for ( final EthLog.LogResult<?> logResult : ethLog.getLogs() )
+            {
+                logs.add( (Log) logResult.get() );
+            }
+        }
+        return logs;
+    }
 
-        try
+    /**
+     * Get a range of blocks, in as few JSON-RPC batches as possible.
+     *
+     * @param fullTransactions whether to include whole transactions rather than just their hashes
+     * @return the blocks in order
+     */
+    public List<EthBlock.Block> getBlocks( final long fromBlockNumber,
+                                           final long toBlockNumber,
+                                           final boolean fullTransactions )
+    {
+        final List<Request<?, EthBlock>> requests = new ArrayList<>();
+        for ( long blockNumber = fromBlockNumber; blockNumber <= toBlockNumber; blockNumber++ )
         {
-            final EthGetTransactionReceipt ethGetTransactionReceipt = future.get();
-            return ethGetTransactionReceipt.getTransactionReceipt();
+            requests.add( ethereumRpc.getWeb3j().ethGetBlockByNumber( DefaultBlockParameter.valueOf( BigInteger.valueOf( blockNumber ) ), fullTransactions ) );
         }
-        catch ( final InterruptedException | ExecutionException e )
+
+        final List<EthBlock.Block> blocks = new ArrayList<>();
+        for ( final EthBlock ethBlock : ethereumRpc.sendBatch( requests ) )
+        {
+            if ( ethBlock.hasError() )
+            {
+                throw new BlockchainServiceException( "Unable to get block: " + ethBlock.getError().getMessage(), null );
+            }
+            if ( null == ethBlock.getBlock() )
+            {
+                throw new BlockchainServiceException( "Block not available yet.", null );
+            }
+            blocks.add( ethBlock.getBlock() );
+        }
+        return blocks;
+    }
+
+    /**
+     * Ask the node how much gas a transaction would use if it were mined now.
+     *
+     * @param toAddress the destination, or null for a contract deployment
+     * @param data      the call data (or deployment bytecode), or null for none
+     */
+    public BigInteger estimateGas( final String fromAddress,
+                                   final String toAddress,
+                                   final BigInteger value,
+                                   final String data )
+    {
+        final Transaction transaction = Transaction.createFunctionCallTransaction( fromAddress, null, null, null, toAddress, value, data );
+        final EthEstimateGas ethEstimateGas = ethereumRpc.send( ethereumRpc.getWeb3j().ethEstimateGas( transaction ) );
+        if ( ethEstimateGas.hasError() )
+        {
+            throw new BlockchainServiceException( "Unable to estimate gas: " + ethEstimateGas.getError().getMessage(), null );
+        }
+        return ethEstimateGas.getAmountUsed();
+    }
+
+    /**
+     * Get the code deployed at an address ('0x' for an externally owned account).
+     */
+    public String getCode( final String address )
+    {
+        final EthGetCode ethGetCode = ethereumRpc.send( ethereumRpc.getWeb3j().ethGetCode( address, DefaultBlockParameterName.LATEST ) );
+        if ( ethGetCode.hasError() )
+        {
+            throw new BlockchainServiceException( "Unable to get code: " + ethGetCode.getError().getMessage(), null );
+        }
+        return ethGetCode.getCode();
+    }
+
+    public BigInteger getBlockNumber()
+    {
+        final EthBlockNumber ethBlockNumber = ethereumRpc.send( ethereumRpc.getWeb3j().ethBlockNumber() );
+        if ( ethBlockNumber.hasError() )
         {
-            throw new BlockchainServiceException( e.getMessage(), e );
+            throw new BlockchainServiceException( "Unable to get the current block number: " + ethBlockNumber.getError().getMessage(), null );
         }
+        return ethBlockNumber.getBlockNumber();
     }
 }
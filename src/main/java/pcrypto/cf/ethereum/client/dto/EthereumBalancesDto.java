@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.client.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+@Getter
+@Setter
+public class EthereumBalancesDto
+{
+    // The block every balance was read at
+    private BigInteger blockNumber;
+
+    // Balance in wei keyed by address, in the order requested
+    private Map<String, BigInteger> balances = new LinkedHashMap<>();
+}
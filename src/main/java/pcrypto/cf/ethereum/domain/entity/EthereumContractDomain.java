@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.domain.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import pcrypto.cf.account.domain.entity.AccountDomain;
+import pcrypto.cf.common.domain.AbstractAuditableDomain;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.util.UUID;
+
+
+@Data
+@EqualsAndHashCode( callSuper = false )
+@Entity
+@Table( name = "ethereum_contract" )
+public class EthereumContractDomain
+      extends AbstractAuditableDomain
+{
+    @Id
+    @GeneratedValue( strategy = GenerationType.SEQUENCE,
+                     generator = "ethereum_contract_id_gen" )
+    @SequenceGenerator( name = "ethereum_contract_id_gen",
+                        sequenceName = "ethereum_contract_seq",
+                        allocationSize = 1 )
+    private Long id;
+
+    // The account which owns (and for deployments, deployed) the contract
+    @ManyToOne
+    @JoinColumn( name = "account_id" )
+    private AccountDomain accountDomain;
+
+    private String name;
+    private String contractAddress;
+    private String solidityAbi;
+    private String status;
+
+    // Set for contracts we deployed
+    private UUID ethereumTransactionRequestUuid;
+    private String transactionHash;
+}
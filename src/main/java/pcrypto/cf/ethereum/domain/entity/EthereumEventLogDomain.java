@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.domain.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import pcrypto.cf.account.domain.entity.AccountDomain;
+import pcrypto.cf.common.domain.AbstractAuditableDomain;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+
+/**
+ * A log emitted by a registered contract, or naming one of our accounts in its topics. A log which concerns more
+ * than one account is stored once for each of them.
+ */
+@Data
+@EqualsAndHashCode( callSuper = false )
+@Entity
+@Table( name = "ethereum_event_log" )
+public class EthereumEventLogDomain
+      extends AbstractAuditableDomain
+{
+    @Id
+    @GeneratedValue( strategy = GenerationType.SEQUENCE,
+                     generator = "ethereum_event_log_id_gen" )
+    @SequenceGenerator( name = "ethereum_event_log_id_gen",
+                        sequenceName = "ethereum_event_log_seq",
+                        allocationSize = 1 )
+    private Long id;
+
+    // The account the log concerns
+    @ManyToOne
+    @JoinColumn( name = "account_id" )
+    private AccountDomain accountDomain;
+
+    // The registered contract which emitted the log, if any
+    @ManyToOne
+    @JoinColumn( name = "contract_id" )
+    private EthereumContractDomain contractDomain;
+
+    private String contractAddress;
+    private Long blockNumber;
+    private String blockHash;
+    private String transactionHash;
+    private Long transactionIndex;
+    private Long logIndex;
+
+    private String topic0;
+    private String topic1;
+    private String topic2;
+    private String topic3;
+    private String data;
+
+    // Set when the log could be decoded with the contract's ABI (or as a standard ERC-20 event)
+    private String eventName;
+    private String eventSignature;
+    private String eventParams;
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.domain.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import pcrypto.cf.common.domain.AbstractAuditableDomain;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+
+/**
+ * An ERC-20 token whose balances are reported for the tenant's Ethereum accounts.
+ */
+@Data
+@EqualsAndHashCode( callSuper = false )
+@Entity
+@Table( name = "ethereum_token" )
+public class EthereumTokenDomain
+      extends AbstractAuditableDomain
+{
+    @Id
+    @GeneratedValue( strategy = GenerationType.SEQUENCE,
+                     generator = "ethereum_token_id_gen" )
+    @SequenceGenerator( name = "ethereum_token_id_gen",
+                        sequenceName = "ethereum_token_seq",
+                        allocationSize = 1 )
+    private Long id;
+
+    private String symbol;
+    private String contractAddress;
+    private Integer decimals;
+}
@@ -61,8 +61,15 @@ public class EthereumTransactionRequestDomain
 
     private BigDecimal gasLimit;
 
+    // Id of the requested EthereumGasPriority
+    private Integer gasPriority;
+
     private String memo;
 
+    // For contract calls (destAccountDomain is then null); a deployment has call data but no contract address
+    private String contractAddress;
+    private String data;
+
     @OneToMany( mappedBy = "ethereumTransactionRequest",
                 cascade = CascadeType.ALL )
     private List<EthereumTransactionRequestApproverDomain> approverDomains;
@@ -59,4 +59,20 @@ public class EthereumTransactionResponseDomain
     private Long ledger;
     private String signedTransaction;
     private OffsetDateTime createdDate;
+
+    // Set by the receipt tracker once the transaction is in a block ('ledger' holds the block number)
+    private String blockHash;
+    private Long transactionIndex;
+    private Long gasUsed;
+    private String receiptStatus;
+    private String fromAddress;
+    private String toAddress;
+    private String logs;
+
+    // Set once the block is deep enough that it will not be reorganized away
+    private Boolean confirmed;
+    private OffsetDateTime confirmedDate;
+
+    // Set if the transaction was not mined within 'ethereum.receipt-tracker.max-pending-ms'
+    private Boolean dropped;
 }
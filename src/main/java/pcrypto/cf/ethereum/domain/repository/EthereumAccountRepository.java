@@ -20,6 +20,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import pcrypto.cf.ethereum.domain.entity.EthereumAccountDomain;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -28,4 +30,7 @@ public interface EthereumAccountRepository
 {
     @Query( "SELECT s FROM EthereumAccountDomain s WHERE s.accountDomain.id = ?1" )
     Optional<EthereumAccountDomain> findByCfAccountId( Long cfAccountId );
+
+    @Query( "SELECT s FROM EthereumAccountDomain s WHERE s.accountDomain.id IN ?1" )
+    List<EthereumAccountDomain> findByCfAccountIdIn( Collection<Long> cfAccountIds );
 }
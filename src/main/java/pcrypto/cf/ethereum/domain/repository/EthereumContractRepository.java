@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.domain.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
+import pcrypto.cf.ethereum.domain.entity.EthereumContractDomain;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+
+public interface EthereumContractRepository
+      extends CrudRepository<EthereumContractDomain, Long>
+{
+    @Query( "SELECT s FROM EthereumContractDomain s WHERE s.accountDomain.id = ?1" )
+    List<EthereumContractDomain> findByCfAccountId( Long cfAccountId );
+
+    @Query( "SELECT s FROM EthereumContractDomain s WHERE s.accountDomain.id = ?1 AND s.name = ?2" )
+    Optional<EthereumContractDomain> findByCfAccountIdAndName( Long cfAccountId,
+                                                               String name );
+
+    Optional<EthereumContractDomain> findByEthereumTransactionRequestUuid( UUID ethereumTransactionRequestUuid );
+
+    @Transactional
+    @Modifying
+    @Query( "UPDATE EthereumContractDomain s SET s.status = ?3 WHERE s.ethereumTransactionRequestUuid = ?1 AND s.status = ?2" )
+    int updateStatusByTransactionRequestUUID( UUID transactionRequestUUID,
+                                              String fromStatus,
+                                              String toStatus );
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.domain.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
+import pcrypto.cf.ethereum.domain.entity.EthereumEventLogDomain;
+
+import java.util.List;
+
+
+/**
+ * Queries are newest first and always bounded by account, so they are served from the
+ * (account_id, block_number, log_index) index.
+ */
+public interface EthereumEventLogRepository
+      extends CrudRepository<EthereumEventLogDomain, Long>
+{
+    @Query( "SELECT s FROM EthereumEventLogDomain s WHERE s.accountDomain.id = ?1 ORDER BY s.blockNumber DESC, s.logIndex DESC" )
+    Slice<EthereumEventLogDomain> findByCfAccountId( Long cfAccountId,
+                                                     Pageable pageable );
+
+    @Query( "SELECT s FROM EthereumEventLogDomain s WHERE s.accountDomain.id = ?1 AND s.contractDomain.id = ?2 ORDER BY s.blockNumber DESC, s.logIndex DESC" )
+    Slice<EthereumEventLogDomain> findByCfAccountIdAndContractId( Long cfAccountId,
+                                                                  Long contractId,
+                                                                  Pageable pageable );
+
+    @Query( "SELECT s FROM EthereumEventLogDomain s WHERE s.accountDomain.id = ?1 AND s.eventName = ?2 ORDER BY s.blockNumber DESC, s.logIndex DESC" )
+    Slice<EthereumEventLogDomain> findByCfAccountIdAndEventName( Long cfAccountId,
+                                                                 String eventName,
+                                                                 Pageable pageable );
+
+    @Query( "SELECT s FROM EthereumEventLogDomain s WHERE s.accountDomain.id = ?1 AND s.contractDomain.id = ?2 AND s.eventName = ?3 ORDER BY s.blockNumber DESC, s.logIndex DESC" )
+    Slice<EthereumEventLogDomain> findByCfAccountIdAndContractIdAndEventName( Long cfAccountId,
+                                                                              Long contractId,
+                                                                              String eventName,
+                                                                              Pageable pageable );
+
+    @Query( "SELECT MAX(s.blockNumber) FROM EthereumEventLogDomain s" )
+    Long findMaxBlockNumber();
+
+    @Transactional
+    @Modifying
+    @Query( "DELETE FROM EthereumEventLogDomain s WHERE s.blockNumber BETWEEN ?1 AND ?2" )
+    int deleteByBlockNumberBetween( Long fromBlockNumber,
+                                    Long toBlockNumber );
+
+    /**
+     * Replace the logs of a range of blocks in one transaction, so a failure never leaves the range half indexed.
+     */
+    @Transactional
+    default void replaceBlockRange( final Long fromBlockNumber,
+                                    final Long toBlockNumber,
+                                    final List<EthereumEventLogDomain> eventLogDomains )
+    {
+        deleteByBlockNumberBetween( fromBlockNumber, toBlockNumber );
+        saveAll( eventLogDomains );
+    }
+}
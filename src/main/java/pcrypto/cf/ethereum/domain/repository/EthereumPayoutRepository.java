@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.domain.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
+import pcrypto.cf.ethereum.domain.entity.EthereumPayoutDomain;
+
+import java.util.List;
+import java.util.UUID;
+
+
+public interface EthereumPayoutRepository
+      extends CrudRepository<EthereumPayoutDomain, Long>
+{
+    @Query( "SELECT s FROM EthereumPayoutDomain s WHERE s.ethereumTransactionRequest.uuid = ?1 ORDER BY s.id" )
+    List<EthereumPayoutDomain> findByTransactionRequestUUID( UUID transactionRequestUUID );
+
+    @Transactional
+    @Modifying
+    @Query( "UPDATE EthereumPayoutDomain s SET s.status = ?2 WHERE s.ethereumTransactionRequest.uuid = ?1" )
+    int updateStatusByTransactionRequestUUID( UUID transactionRequestUUID,
+                                              String status );
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.domain.repository;
+
+import org.springframework.data.repository.CrudRepository;
+import pcrypto.cf.ethereum.domain.entity.EthereumTokenDomain;
+
+import java.util.Optional;
+
+
+public interface EthereumTokenRepository
+      extends CrudRepository<EthereumTokenDomain, Long>
+{
+    Optional<EthereumTokenDomain> findByContractAddressIgnoreCase( String contractAddress );
+}
@@ -20,6 +20,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import pcrypto.cf.ethereum.domain.entity.EthereumTransactionResponseDomain;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -29,4 +31,10 @@ public interface EthereumTransactionResponseRepository
 {
     @Query( "SELECT s FROM EthereumTransactionResponseDomain s WHERE s.ethereumTransactionRequest.uuid = ?1" )
     Optional<EthereumTransactionResponseDomain> findByTransactionRequestUUID( UUID transactionRequestUUID );
+
+    @Query( "SELECT s FROM EthereumTransactionResponseDomain s LEFT JOIN FETCH s.ethereumTransactionRequest WHERE s.transactionHash IN ?1" )
+    List<EthereumTransactionResponseDomain> findByTransactionHashIn( Collection<String> transactionHashes );
+
+    @Query( "SELECT s FROM EthereumTransactionResponseDomain s WHERE s.transactionHash IS NOT NULL AND s.success = true AND ( s.confirmed IS NULL OR s.confirmed = false ) AND ( s.dropped IS NULL OR s.dropped = false )" )
+    List<EthereumTransactionResponseDomain> findPending();
 }
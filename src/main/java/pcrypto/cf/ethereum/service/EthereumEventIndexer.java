@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+import pcrypto.cf.account.domain.entity.AccountDomain;
+import pcrypto.cf.common.domain.TenantDomain;
+import pcrypto.cf.ethereum.abi.AbiEvent;
+import pcrypto.cf.ethereum.abi.ContractAbi;
+import pcrypto.cf.ethereum.abi.ContractAbiCache;
+import pcrypto.cf.ethereum.api.model.EthereumContractStatus;
+import pcrypto.cf.ethereum.client.EthereumTransactionClient;
+import pcrypto.cf.ethereum.domain.entity.EthereumAccountDomain;
+import pcrypto.cf.ethereum.domain.entity.EthereumContractDomain;
+import pcrypto.cf.ethereum.domain.entity.EthereumEventLogDomain;
+import pcrypto.cf.ethereum.domain.repository.EthereumAccountRepository;
+import pcrypto.cf.ethereum.domain.repository.EthereumContractRepository;
+import pcrypto.cf.ethereum.domain.repository.EthereumEventLogRepository;
+import pcrypto.cf.security.web.TenantContext;
+
+import javax.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Indexes the logs of registered contracts, and logs naming one of our accounts in their topics (ex. ERC-20
+ * transfers to or from the account), into the ethereum_event_log table so that event history is an indexed query.
+ * <p>
+ * Each tenant is scanned block range by block range with batched eth_getLogs calls, only ever reaching blocks that
+ * are 'ethereum.event-indexer.confirmations' deep so that indexed logs are never undone by a reorg. Logs are
+ * decoded with the emitting contract's cached ABI, falling back to the standard ERC-20 events. A scanned range is
+ * cleared before its logs are written, so a range that is scanned again (ex. after a restart, which resumes from
+ * the highest indexed block) is not indexed twice.
+ */
+@Slf4j
+@Component
+public class EthereumEventIndexer
+{
+    private static final String STANDARD_EVENTS_ABI = "["
+                                                      + "{\"type\":\"event\",\"name\":\"Transfer\",\"inputs\":["
+                                                      + "{\"name\":\"from\",\"type\":\"address\",\"indexed\":true},"
+                                                      + "{\"name\":\"to\",\"type\":\"address\",\"indexed\":true},"
+                                                      + "{\"name\":\"value\",\"type\":\"uint256\",\"indexed\":false}]},"
+                                                      + "{\"type\":\"event\",\"name\":\"Approval\",\"inputs\":["
+                                                      + "{\"name\":\"owner\",\"type\":\"address\",\"indexed\":true},"
+                                                      + "{\"name\":\"spender\",\"type\":\"address\",\"indexed\":true},"
+                                                      + "{\"name\":\"value\",\"type\":\"uint256\",\"indexed\":false}]}"
+                                                      + "]";
+
+    private final EthereumTransactionClient ethereumTransactionClient;
+    private final EthereumEventLogRepository ethereumEventLogRepository;
+    private final EthereumContractRepository ethereumContractRepository;
+    private final EthereumAccountRepository ethereumAccountRepository;
+    private final ContractAbiCache contractAbiCache;
+    private final ObjectMapper objectMapper;
+    private final ContractAbi standardEvents;
+
+    // The last block indexed for each tenant
+    private final Map<String, Long> indexedBlockNumbers = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService pollScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "ethereum-event-indexer" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    @Value( "${ethereum.event-indexer.poll-interval-ms:15000}" )
+    private long pollIntervalMs;
+
+    @Value( "${ethereum.event-indexer.confirmations:12}" )
+    private long confirmations;
+
+    @Value( "${ethereum.event-indexer.max-block-range:1000}" )
+    private long maxBlockRange;
+
+    @Value( "${ethereum.event-indexer.max-filter-addresses:500}" )
+    private int maxFilterAddresses;
+
+    @Value( "${cf.tenants:}" )
+    private String[] tenants;
+
+
+    @Autowired
+    public EthereumEventIndexer( final EthereumTransactionClient ethereumTransactionClient,
+                                 final EthereumEventLogRepository ethereumEventLogRepository,
+                                 final EthereumContractRepository ethereumContractRepository,
+                                 final EthereumAccountRepository ethereumAccountRepository,
+                                 final ContractAbiCache contractAbiCache,
+                                 final ObjectMapper objectMapper )
+    {
+        this.ethereumTransactionClient = ethereumTransactionClient;
+        this.ethereumEventLogRepository = ethereumEventLogRepository;
+        this.ethereumContractRepository = ethereumContractRepository;
+        this.ethereumAccountRepository = ethereumAccountRepository;
+        this.contractAbiCache = contractAbiCache;
+        this.objectMapper = objectMapper;
+        this.standardEvents = ContractAbi.parse( objectMapper, STANDARD_EVENTS_ABI );
+    }
+
+
+    @EventListener( ApplicationReadyEvent.class )
+    public void start()
+    {
+        pollScheduler.scheduleWithFixedDelay( this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS );
+    }
+
+
+    @PreDestroy
+    public void close()
+    {
+        pollScheduler.shutdownNow();
+    }
+
+
+    /**
+     * Index the next range of confirmed blocks for every tenant.
+     */
+    void poll()
+    {
+        final long confirmedBlockNumber;
+        try
+        {
+            confirmedBlockNumber = ethereumTransactionClient.getBlockNumber().longValue() - confirmations + 1;
+        }
+        catch ( final Exception e )
+        {
+            log.error( "Unable to get the current block number for event indexing", e );
+            return;
+        }
+
+        for ( final String tenant : tenants )
+        {
+            TenantContext.setCurrentTenant( tenant.toLowerCase() );
+            try
+            {
+                indexTenant( tenant.toLowerCase(), confirmedBlockNumber );
+            }
+            catch ( final Exception e )
+            {
+                log.error( "Error indexing Ethereum events for tenant " + tenant, e );
+            }
+            finally
+            {
+                TenantContext.clear();
+            }
+        }
+    }
+
+
+    private void indexTenant( final String tenant,
+                              final long confirmedBlockNumber )
+    {
+        Long indexedBlockNumber = indexedBlockNumbers.get( tenant );
+        if ( null == indexedBlockNumber )
+        {
+            // Resume from the highest block we have logs for, or start from now if we have never indexed anything
+            final Long maxBlockNumber = ethereumEventLogRepository.findMaxBlockNumber();
+            indexedBlockNumber = null == maxBlockNumber ? confirmedBlockNumber : maxBlockNumber - 1;
+            indexedBlockNumbers.put( tenant, indexedBlockNumber );
+        }
+
+        final long fromBlockNumber = indexedBlockNumber + 1;
+        final long toBlockNumber = Math.min( confirmedBlockNumber, indexedBlockNumber + maxBlockRange );
+        if ( fromBlockNumber > toBlockNumber )
+        {
+            return;
+        }
+
+        // The contracts and accounts whose logs we index, keyed by lower case address
+        final Map<String, EthereumContractDomain> contracts = new HashMap<>();
+        for ( final EthereumContractDomain contractDomain : ethereumContractRepository.findAll() )
+        {
+            if ( null != contractDomain.getContractAddress() && !EthereumContractStatus.FAILED.name().equals( contractDomain.getStatus() ) )
+            {
+                contracts.put( contractDomain.getContractAddress().toLowerCase(), contractDomain );
+            }
+        }
+        final Map<String, EthereumAccountDomain> accounts = new HashMap<>();
+        for ( final EthereumAccountDomain ethereumAccountDomain : ethereumAccountRepository.findAll() )
+        {
+            if ( null == ethereumAccountDomain.getDeletedDate() )
+            {
+                accounts.put( ethereumAccountDomain.getEthereumAddress().toLowerCase(), ethereumAccountDomain );
+            }
+        }
+
+        final List<Log> logs = getLogs( fromBlockNumber, toBlockNumber, contracts.keySet(), accounts.keySet() );
+
+        final List<EthereumEventLogDomain> eventLogDomains = new ArrayList<>();
+        final Set<String> seen = new LinkedHashSet<>();
+        for ( final Log eventLog : logs )
+        {
+            // A log can be matched by more than one filter
+            if ( seen.add( eventLog.getTransactionHash() + ":" + eventLog.getLogIndex() ) )
+            {
+                eventLogDomains.addAll( toDomains( eventLog, contracts, accounts ) );
+            }
+        }
+
+        ethereumEventLogRepository.replaceBlockRange( fromBlockNumber, toBlockNumber, eventLogDomains );
+        indexedBlockNumbers.put( tenant, toBlockNumber );
+
+        log.debug( "Indexed {} Ethereum events in blocks {} to {} for tenant {}", eventLogDomains.size(), fromBlockNumber, toBlockNumber, tenant );
+    }
+
+    /**
+     * Fetch the logs emitted by the contracts, and those with one of the accounts as their first or second indexed
+     * parameter (topics 1 and 2).
+     */
+    private List<Log> getLogs( final long fromBlockNumber,
+                               final long toBlockNumber,
+                               final Set<String> contractAddresses,
+                               final Set<String> accountAddresses )
+    {
+        final DefaultBlockParameter fromBlock = DefaultBlockParameter.valueOf( BigInteger.valueOf( fromBlockNumber ) );
+        final DefaultBlockParameter toBlock = DefaultBlockParameter.valueOf( BigInteger.valueOf( toBlockNumber ) );
+
+        final List<EthFilter> filters = new ArrayList<>();
+        for ( final List<String> chunk : chunk( new ArrayList<>( contractAddresses ) ) )
+        {
+            filters.add( new EthFilter( fromBlock, toBlock, chunk ) );
+        }
+
+        final List<String> accountTopics = new ArrayList<>();
+        for ( final String accountAddress : accountAddresses )
+        {
+            accountTopics.add( Numeric.toHexStringWithPrefixZeroPadded( Numeric.toBigInt( accountAddress ), 64 ) );
+        }
+        for ( final List<String> chunk : chunk( accountTopics ) )
+        {
+            final EthFilter firstTopicFilter = new EthFilter( fromBlock, toBlock, new ArrayList<>() );
+            firstTopicFilter.addNullTopic();
+            firstTopicFilter.addOptionalTopics( chunk.toArray( new String[0] ) );
+            filters.add( firstTopicFilter );
+
+            final EthFilter secondTopicFilter = new EthFilter( fromBlock, toBlock, new ArrayList<>() );
+            secondTopicFilter.addNullTopic();
+            secondTopicFilter.addNullTopic();
+            secondTopicFilter.addOptionalTopics( chunk.toArray( new String[0] ) );
+            filters.add( secondTopicFilter );
+        }
+
+        if ( filters.isEmpty() )
+        {
+            return new ArrayList<>();
+        }
+        return ethereumTransactionClient.getLogs( filters );
+    }
+
+    private List<List<String>> chunk( final List<String> values )
+    {
+        final List<List<String>> chunks = new ArrayList<>();
+        for ( int i = 0; i < values.size(); i += maxFilterAddresses )
+        {
+            chunks.add( values.subList( i, Math.min( i + maxFilterAddresses, values.size() ) ) );
+        }
+        return chunks;
+    }
+
+    /**
+     * One record for each account the log concerns: the owner of the emitting contract, and any account named in
+     * its topics.
+     */
+    private List<EthereumEventLogDomain> toDomains( final Log eventLog,
+                                                    final Map<String, EthereumContractDomain> contracts,
+                                                    final Map<String, EthereumAccountDomain> accounts )
+    {
+        final List<String> topics = eventLog.getTopics();
+        final EthereumContractDomain contractDomain = contracts.get( eventLog.getAddress().toLowerCase() );
+
+        final Map<Long, AccountDomain> concernedAccounts = new LinkedHashMap<>();
+        TenantDomain tenantDomain = null;
+        if ( null != contractDomain )
+        {
+            concernedAccounts.put( contractDomain.getAccountDomain().getId(), contractDomain.getAccountDomain() );
+            tenantDomain = contractDomain.getTenantDomain();
+        }
+        for ( int i = 1; i < topics.size(); i++ )
+        {
+            final String topic = Numeric.cleanHexPrefix( topics.get( i ) );
+            if ( topic.length() == 64 )
+            {
+                final EthereumAccountDomain ethereumAccountDomain = accounts.get( "0x" + topic.substring( 24 ).toLowerCase() );
+                if ( null != ethereumAccountDomain )
+                {
+                    concernedAccounts.put( ethereumAccountDomain.getAccountDomain().getId(), ethereumAccountDomain.getAccountDomain() );
+                    tenantDomain = ethereumAccountDomain.getTenantDomain();
+                }
+            }
+        }
+
+        // Decode with the contract's own ABI if we have it, or as a standard event
+        final String topic0 = topics.isEmpty() ? null : topics.get( 0 );
+        AbiEvent event = null;
+        if ( null != contractDomain )
+        {
+            event = contractAbiCache.get( contractDomain.getTenantDomain(), contractDomain.getId(), contractDomain.getSolidityAbi() ).getEvent( topic0 );
+        }
+        if ( null == event )
+        {
+            event = standardEvents.getEvent( topic0 );
+        }
+        String eventParams = null;
+        if ( null != event )
+        {
+            try
+            {
+                eventParams = objectMapper.writeValueAsString( event.decode( topics, eventLog.getData() ) );
+            }
+            catch ( final JsonProcessingException | RuntimeException e )
+            {
+                // Ex. a log that happens to share a standard event's topic but not its layout
+                log.debug( "Unable to decode log {} of transaction {} as {}: {}", eventLog.getLogIndex(), eventLog.getTransactionHash(), event.getSignature(), e.getMessage() );
+                event = null;
+            }
+        }
+
+        final List<EthereumEventLogDomain> eventLogDomains = new ArrayList<>();
+        for ( final AccountDomain accountDomain : concernedAccounts.values() )
+        {
+            final EthereumEventLogDomain eventLogDomain = new EthereumEventLogDomain();
+            eventLogDomain.setAccountDomain( accountDomain );
+            eventLogDomain.setTenantDomain( tenantDomain );
+            eventLogDomain.setContractDomain( contractDomain );
+            eventLogDomain.setContractAddress( eventLog.getAddress() );
+            eventLogDomain.setBlockNumber( eventLog.getBlockNumber().longValue() );
+            eventLogDomain.setBlockHash( eventLog.getBlockHash() );
+            eventLogDomain.setTransactionHash( eventLog.getTransactionHash() );
+            eventLogDomain.setTransactionIndex( eventLog.getTransactionIndex().longValue() );
+            eventLogDomain.setLogIndex( eventLog.getLogIndex().longValue() );
+            eventLogDomain.setTopic0( topic0 );
+            eventLogDomain.setTopic1( topics.size() > 1 ? topics.get( 1 ) : null );
+            eventLogDomain.setTopic2( topics.size() > 2 ? topics.get( 2 ) : null );
+            eventLogDomain.setTopic3( topics.size() > 3 ? topics.get( 3 ) : null );
+            eventLogDomain.setData( eventLog.getData() );
+            if ( null != event )
+            {
+                eventLogDomain.setEventName( event.getName() );
+                eventLogDomain.setEventSignature( event.getSignature() );
+                eventLogDomain.setEventParams( eventParams );
+            }
+            eventLogDomains.add( eventLogDomain );
+        }
+        return eventLogDomains;
+    }
+}
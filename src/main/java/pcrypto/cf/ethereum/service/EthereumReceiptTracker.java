@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import pcrypto.cf.ethereum.api.model.EthereumContractStatus;
+import pcrypto.cf.ethereum.api.model.EthereumLog;
+import pcrypto.cf.ethereum.api.model.EthereumPayoutStatus;
+import pcrypto.cf.ethereum.client.EthereumTransactionClient;
+import pcrypto.cf.ethereum.domain.entity.EthereumTransactionResponseDomain;
+import pcrypto.cf.ethereum.domain.repository.EthereumContractRepository;
+import pcrypto.cf.ethereum.domain.repository.EthereumPayoutRepository;
+import pcrypto.cf.ethereum.domain.repository.EthereumTransactionResponseRepository;
+import pcrypto.cf.security.web.TenantContext;
+
+import javax.annotation.PreDestroy;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+
+/**
+ * Tracks submitted Ethereum transactions until they are confirmed, so that transaction status can be served from
+ * the database rather than by asking geth on every poll.
+ * <p>
+ * Each time the chain head moves, the receipts of all tracked transactions are fetched in JSON-RPC batches. A
+ * receipt is written when it first appears, and again if a reorg moves the transaction into a different block (or
+ * back out of the chain). Once its block is 'ethereum.receipt-tracker.confirmations' deep the transaction is marked
+ * confirmed and no longer tracked. A transaction which has gone 'ethereum.receipt-tracker.max-pending-ms' without
+ * being mined is marked dropped and no longer tracked. The payouts of a batch payment, and the contract created by a
+ * deployment, are settled at the same time.
+ */
+@Slf4j
+@Component
+public class EthereumReceiptTracker
+{
+    private final EthereumTransactionClient ethereumTransactionClient;
+    private final EthereumTransactionResponseRepository ethereumTransactionResponseRepository;
+    private final EthereumPayoutRepository ethereumPayoutRepository;
+    private final EthereumContractRepository ethereumContractRepository;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, TrackedTransaction> trackedTransactions = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService pollScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "ethereum-receipt-tracker" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    private long lastBlockNumber = -1;
+
+    @Value( "${ethereum.receipt-tracker.poll-interval-ms:3000}" )
+    private long pollIntervalMs;
+
+    @Value( "${ethereum.receipt-tracker.confirmations:12}" )
+    private long confirmations;
+
+    @Value( "${ethereum.receipt-tracker.max-pending-ms:3600000}" )
+    private long maxPendingMs;
+
+    @Value( "${cf.tenants:}" )
+    private String[] tenants;
+
+
+    @Autowired
+    public EthereumReceiptTracker( final EthereumTransactionClient ethereumTransactionClient,
+                                   final EthereumTransactionResponseRepository ethereumTransactionResponseRepository,
+                                   final EthereumPayoutRepository ethereumPayoutRepository,
+                                   final EthereumContractRepository ethereumContractRepository,
+                                   final ObjectMapper objectMapper )
+    {
+        this.ethereumTransactionClient = ethereumTransactionClient;
+        this.ethereumTransactionResponseRepository = ethereumTransactionResponseRepository;
+        this.ethereumPayoutRepository = ethereumPayoutRepository;
+        this.ethereumContractRepository = ethereumContractRepository;
+        this.objectMapper = objectMapper;
+    }
+
+
+    /**
+     * Pick up every transaction that was still unconfirmed when we last stopped, and start polling.
+     */
+    @EventListener( ApplicationReadyEvent.class )
+    public void start()
+    {
+        for ( final String tenant : tenants )
+        {
+            TenantContext.setCurrentTenant( tenant.toLowerCase() );
+            try
+            {
+                for ( final EthereumTransactionResponseDomain responseDomain : ethereumTransactionResponseRepository.findPending() )
+                {
+                    final long submittedAtMillis = null == responseDomain.getCreatedDate() ? System.currentTimeMillis() : responseDomain.getCreatedDate().toInstant().toEpochMilli();
+                    final TrackedTransaction trackedTransaction = new TrackedTransaction( tenant.toLowerCase(), submittedAtMillis );
+                    trackedTransaction.blockHash = responseDomain.getBlockHash();
+                    trackedTransactions.put( responseDomain.getTransactionHash(), trackedTransaction );
+                }
+            }
+            catch ( final Exception e )
+            {
+                log.error( "Unable to load pending Ethereum transactions for tenant " + tenant, e );
+            }
+            finally
+            {
+                TenantContext.clear();
+            }
+        }
+
+        log.info( "Tracking {} pending Ethereum transactions", trackedTransactions.size() );
+        pollScheduler.scheduleWithFixedDelay( this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS );
+    }
+
+
+    /**
+     * Start tracking a transaction which has just been submitted.
+     *
+     * @param tenant          the tenant which owns the transaction
+     * @param transactionHash the hash of the signed transaction
+     */
+    public void track( final String tenant,
+                       final String transactionHash )
+    {
+        trackedTransactions.put( transactionHash, new TrackedTransaction( tenant, System.currentTimeMillis() ) );
+    }
+
+
+    @PreDestroy
+    public void close()
+    {
+        pollScheduler.shutdownNow();
+    }
+
+
+    /**
+     * Check the receipts of every tracked transaction if a new block has arrived since the last poll.
+     */
+    void poll()
+    {
+        try
+        {
+            if ( trackedTransactions.isEmpty() )
+            {
+                return;
+            }
+
+            final long blockNumber = ethereumTransactionClient.getBlockNumber().longValue();
+            if ( blockNumber == lastBlockNumber )
+            {
+                return;
+            }
+            lastBlockNumber = blockNumber;
+
+            final List<String> hashes = new ArrayList<>( trackedTransactions.keySet() );
+            final List<Optional<TransactionReceipt>> receipts = ethereumTransactionClient.getTransactions( hashes );
+
+            final Map<String, Map<String, ReceiptUpdate>> updatesByTenant = new HashMap<>();
+            for ( int i = 0; i < hashes.size(); i++ )
+            {
+                final String hash = hashes.get( i );
+                final TrackedTransaction trackedTransaction = trackedTransactions.get( hash );
+                final ReceiptUpdate update = checkReceipt( hash, trackedTransaction, receipts.get( i ).orElse( null ), blockNumber );
+                if ( null != update )
+                {
+                    updatesByTenant.computeIfAbsent( trackedTransaction.tenant, key -> new HashMap<>() ).put( hash, update );
+                }
+            }
+
+            for ( final Map.Entry<String, Map<String, ReceiptUpdate>> entry : updatesByTenant.entrySet() )
+            {
+                try
+                {
+                    writeUpdates( entry.getKey(), entry.getValue() );
+                }
+                catch ( final Exception e )
+                {
+                    // Nothing was applied to the tracked state, so the same updates are worked out again next block
+                    log.error( "Unable to record Ethereum transaction receipts for tenant " + entry.getKey(), e );
+                }
+            }
+        }
+        catch ( final Exception e )
+        {
+            log.error( "Error tracking Ethereum transaction receipts", e );
+        }
+    }
+
+
+    /**
+     * Work out what, if anything, needs to be written for a transaction given its latest receipt. The tracked state is
+     * only updated once the write has succeeded.
+     */
+    private ReceiptUpdate checkReceipt( final String hash,
+                                        final TrackedTransaction trackedTransaction,
+                                        final TransactionReceipt receipt,
+                                        final long blockNumber )
+    {
+        if ( null == trackedTransaction )
+        {
+            return null;
+        }
+
+        if ( null == receipt )
+        {
+            if ( null == trackedTransaction.blockHash )
+            {
+                // Still waiting to be mined, unless it has been waiting so long that it must have been dropped
+                if ( System.currentTimeMillis() - trackedTransaction.pendingSinceMillis < maxPendingMs )
+                {
+                    return null;
+                }
+                log.warn( "Ethereum transaction {} was not mined within {}ms, marking it dropped", hash, maxPendingMs );
+                return new ReceiptUpdate( null, false, true );
+            }
+
+            // The block it was in has been reorganized away, so it is back in the pending pool (or gone)
+            log.warn( "Ethereum transaction {} was removed from block {} by a reorg", hash, trackedTransaction.blockHash );
+            return new ReceiptUpdate( null, false, false );
+        }
+
+        final boolean moved = !receipt.getBlockHash().equals( trackedTransaction.blockHash );
+        if ( moved && null != trackedTransaction.blockHash )
+        {
+            log.warn( "Ethereum transaction {} moved from block {} to {} by a reorg", hash, trackedTransaction.blockHash, receipt.getBlockHash() );
+        }
+
+        final boolean confirmed = blockNumber - receipt.getBlockNumber().longValue() + 1 >= confirmations;
+        if ( moved || confirmed )
+        {
+            return new ReceiptUpdate( receipt, confirmed, false );
+        }
+        return null;
+    }
+
+    private void writeUpdates( final String tenant,
+                               final Map<String, ReceiptUpdate> updates )
+    {
+        TenantContext.setCurrentTenant( tenant );
+        try
+        {
+            final List<EthereumTransactionResponseDomain> responseDomains = ethereumTransactionResponseRepository.findByTransactionHashIn( updates.keySet() );
+            for ( final EthereumTransactionResponseDomain responseDomain : responseDomains )
+            {
+                final ReceiptUpdate update = updates.get( responseDomain.getTransactionHash() );
+                final TransactionReceipt receipt = update.receipt;
+                if ( update.dropped )
+                {
+                    responseDomain.setDropped( true );
+                    ethereumPayoutRepository.updateStatusByTransactionRequestUUID( responseDomain.getEthereumTransactionRequest().getUuid(), EthereumPayoutStatus.FAILED.name() );
+                    settleContract( responseDomain.getEthereumTransactionRequest().getUuid(), false );
+                    continue;
+                }
+                if ( null == receipt )
+                {
+                    responseDomain.setLedger( null );
+                    responseDomain.setBlockHash( null );
+                    responseDomain.setTransactionIndex( null );
+                    responseDomain.setGasUsed( null );
+                    responseDomain.setReceiptStatus( null );
+                    responseDomain.setLogs( null );
+                    continue;
+                }
+
+                responseDomain.setLedger( receipt.getBlockNumber().longValue() );
+                responseDomain.setBlockHash( receipt.getBlockHash() );
+                responseDomain.setTransactionIndex( receipt.getTransactionIndex().longValue() );
+                responseDomain.setGasUsed( receipt.getGasUsed().longValue() );
+                responseDomain.setReceiptStatus( receipt.getStatus() );
+                responseDomain.setFromAddress( receipt.getFrom() );
+                responseDomain.setToAddress( receipt.getTo() );
+                responseDomain.setLogs( toLogsJson( receipt.getLogs() ) );
+                if ( update.confirmed )
+                {
+                    responseDomain.setConfirmed( true );
+                    responseDomain.setConfirmedDate( OffsetDateTime.now() );
+
+                    // A batch payment either pays everyone or (if it reverted) no one
+                    final boolean succeeded = "0x1".equals( receipt.getStatus() );
+                    final UUID transactionRequestUUID = responseDomain.getEthereumTransactionRequest().getUuid();
+                    final EthereumPayoutStatus payoutStatus = succeeded ? EthereumPayoutStatus.PAID : EthereumPayoutStatus.FAILED;
+                    ethereumPayoutRepository.updateStatusByTransactionRequestUUID( transactionRequestUUID, payoutStatus.name() );
+                    settleContract( transactionRequestUUID, succeeded );
+                }
+            }
+            ethereumTransactionResponseRepository.saveAll( responseDomains );
+
+            for ( final Map.Entry<String, ReceiptUpdate> entry : updates.entrySet() )
+            {
+                final ReceiptUpdate update = entry.getValue();
+                if ( update.confirmed || update.dropped )
+                {
+                    trackedTransactions.remove( entry.getKey() );
+                    continue;
+                }
+                final TrackedTransaction trackedTransaction = trackedTransactions.get( entry.getKey() );
+                if ( null != trackedTransaction )
+                {
+                    trackedTransaction.blockHash = null == update.receipt ? null : update.receipt.getBlockHash();
+                    if ( null == update.receipt )
+                    {
+                        trackedTransaction.pendingSinceMillis = System.currentTimeMillis();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            TenantContext.clear();
+        }
+    }
+
+    /**
+     * Settle the contract created by a deployment transaction, if this was one.
+     */
+    private void settleContract( final UUID transactionRequestUUID,
+                                 final boolean succeeded )
+    {
+        final EthereumContractStatus contractStatus = succeeded ? EthereumContractStatus.ACTIVE : EthereumContractStatus.FAILED;
+        ethereumContractRepository.updateStatusByTransactionRequestUUID( transactionRequestUUID, EthereumContractStatus.PENDING.name(), contractStatus.name() );
+    }
+
+    private String toLogsJson( final List<Log> logs )
+    {
+        final List<EthereumLog> ethereumLogs = logs.stream()
+                                                   .map( EthereumReceiptTracker::toEthereumLog )
+                                                   .collect( Collectors.toList() );
+        try
+        {
+            return objectMapper.writeValueAsString( ethereumLogs );
+        }
+        catch ( final JsonProcessingException e )
+        {
+            log.warn( "Unable to serialize Ethereum transaction logs: {}", e.getMessage() );
+            return null;
+        }
+    }
+
+    private static EthereumLog toEthereumLog( final Log receiptLog )
+    {
+        final EthereumLog ethereumLog = new EthereumLog();
+        ethereumLog.setAddress( receiptLog.getAddress() );
+        ethereumLog.setTopics( receiptLog.getTopics() );
+        ethereumLog.setData( receiptLog.getData() );
+        ethereumLog.setLogIndex( receiptLog.getLogIndex().longValue() );
+        return ethereumLog;
+    }
+
+
+    private static final class TrackedTransaction
+    {
+        private final String tenant;
+
+        // The block the transaction was last seen in, or null while it is pending
+        private String blockHash;
+
+        // When the transaction was submitted, or last reorganized out of the chain
+        private long pendingSinceMillis;
+
+        private TrackedTransaction( final String tenant,
+                                    final long pendingSinceMillis )
+        {
+            this.tenant = tenant;
+            this.pendingSinceMillis = pendingSinceMillis;
+        }
+    }
+
+    private static final class ReceiptUpdate
+    {
+        // Null if the transaction was reorganized out of the chain, or dropped
+        private final TransactionReceipt receipt;
+        private final boolean confirmed;
+        private final boolean dropped;
+
+        private ReceiptUpdate( final TransactionReceipt receipt,
+                               final boolean confirmed,
+                               final boolean dropped )
+        {
+            this.receipt = receipt;
+            this.confirmed = confirmed;
+            this.dropped = dropped;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import pcrypto.cf.ethereum.api.model.EthereumAccount;
+import pcrypto.cf.ethereum.cache.EthereumBalanceCache;
+import pcrypto.cf.ethereum.client.EthereumTokenClient;
+import pcrypto.cf.ethereum.domain.entity.EthereumTokenDomain;
+import pcrypto.cf.ethereum.domain.repository.EthereumTokenRepository;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Reports the ERC-20 token balances of Ethereum accounts, for every token in the tenant's token registry.
+ * <p>
+ * Balances come from the {@link EthereumBalanceCache}, which keeps them until a block transfers the token to or
+ * from the account. Everything missing from the cache is fetched at once by the {@link EthereumTokenClient}.
+ */
+@Service
+public class EthereumTokenBalanceService
+{
+    private final EthereumTokenRepository ethereumTokenRepository;
+    private final EthereumBalanceCache ethereumBalanceCache;
+
+
+    @Autowired
+    public EthereumTokenBalanceService( final EthereumTokenRepository ethereumTokenRepository,
+                                        final EthereumBalanceCache ethereumBalanceCache )
+    {
+        this.ethereumTokenRepository = ethereumTokenRepository;
+        this.ethereumBalanceCache = ethereumBalanceCache;
+    }
+
+
+    /**
+     * Get the token balances of the given accounts.
+     *
+     * @return the balances of each address, keyed by address; tokens whose contract did not answer are left out
+     */
+    public Map<String, List<EthereumAccount.TokenBalance>> getTokenBalances( final List<String> ethAddresses )
+    {
+        final Map<String, List<EthereumAccount.TokenBalance>> tokenBalances = new HashMap<>();
+        for ( final String ethAddress : ethAddresses )
+        {
+            tokenBalances.put( ethAddress, new ArrayList<>() );
+        }
+
+        final List<EthereumTokenDomain> tokens = new ArrayList<>();
+        ethereumTokenRepository.findAll().forEach( tokens::add );
+        if ( tokens.isEmpty() || ethAddresses.isEmpty() )
+        {
+            return tokenBalances;
+        }
+
+        final List<String> holders = new ArrayList<>();
+        final List<String> tokenAddresses = new ArrayList<>();
+        for ( final String ethAddress : ethAddresses )
+        {
+            for ( final EthereumTokenDomain token : tokens )
+            {
+                holders.add( ethAddress );
+                tokenAddresses.add( token.getContractAddress() );
+            }
+        }
+        final List<BigInteger> balances = ethereumBalanceCache.getTokenBalances( holders, tokenAddresses );
+
+        int index = 0;
+        for ( final String ethAddress : ethAddresses )
+        {
+            for ( final EthereumTokenDomain token : tokens )
+            {
+                final BigInteger balance = balances.get( index++ );
+                if ( null != balance )
+                {
+                    final int decimals = null == token.getDecimals() ? 0 : token.getDecimals();
+                    tokenBalances.get( ethAddress ).add( new EthereumAccount.TokenBalance( token.getSymbol(),
+                                                                                           token.getContractAddress(),
+                                                                                           new BigDecimal( balance, decimals ) ) );
+                }
+            }
+        }
+        return tokenBalances;
+    }
+}
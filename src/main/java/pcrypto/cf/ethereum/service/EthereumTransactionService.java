@@ -17,9 +17,11 @@
 package pcrypto.cf.ethereum.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
@@ -30,6 +32,7 @@ import org.springframework.util.MimeTypeUtils;
 import org.springframework.vault.VaultException;
 import org.springframework.vault.core.VaultOperations;
 import org.springframework.vault.support.VaultResponse;
+import org.web3j.crypto.ContractUtils;
 import org.web3j.protocol.core.Response;
 import org.web3j.protocol.core.methods.response.EthSendTransaction;
 import org.web3j.utils.Numeric;
@@ -38,11 +41,23 @@ import pcrypto.cf.account.domain.entity.AccountDomain;
 import pcrypto.cf.account.domain.repository.AccountConfigurationRepository;
 import pcrypto.cf.account.value.TxApprovalMethodEnum;
 import pcrypto.cf.common.domain.TenantDomain;
+import pcrypto.cf.ethereum.abi.DisperseCalls;
+import pcrypto.cf.ethereum.api.model.EthereumBatchPaymentRequest;
+import pcrypto.cf.ethereum.api.model.EthereumContractStatus;
+import pcrypto.cf.ethereum.api.model.EthereumGasPriority;
+import pcrypto.cf.ethereum.api.model.EthereumLog;
 import pcrypto.cf.ethereum.api.model.EthereumPaymentRequest;
+import pcrypto.cf.ethereum.api.model.EthereumPayoutStatus;
 import pcrypto.cf.ethereum.client.EthereumTransactionClient;
+import pcrypto.cf.ethereum.domain.entity.EthereumAccountDomain;
+import pcrypto.cf.ethereum.domain.entity.EthereumContractDomain;
+import pcrypto.cf.ethereum.domain.entity.EthereumPayoutDomain;
 import pcrypto.cf.ethereum.domain.entity.EthereumTransactionRequestApproverDomain;
 import pcrypto.cf.ethereum.domain.entity.EthereumTransactionRequestDomain;
 import pcrypto.cf.ethereum.domain.entity.EthereumTransactionResponseDomain;
+import pcrypto.cf.ethereum.domain.repository.EthereumAccountRepository;
+import pcrypto.cf.ethereum.domain.repository.EthereumContractRepository;
+import pcrypto.cf.ethereum.domain.repository.EthereumPayoutRepository;
 import pcrypto.cf.ethereum.domain.repository.EthereumTransactionRequestApproverRepository;
 import pcrypto.cf.ethereum.domain.repository.EthereumTransactionRequestRepository;
 import pcrypto.cf.ethereum.domain.repository.EthereumTransactionResponseRepository;
@@ -50,14 +65,21 @@ import pcrypto.cf.ethereum.stream.EthereumTransactionApprovalEvent;
 import pcrypto.cf.ethereum.stream.EthereumTransactionApprovalStream;
 import pcrypto.cf.ethereum.vault.dto.VaultEthereumPaymentDomain;
 import pcrypto.cf.exception.BadRequestException;
+import pcrypto.cf.exception.BlockchainServiceException;
 import pcrypto.cf.exception.ErrorMessage;
 import pcrypto.cf.exception.NotFoundException;
 import pcrypto.cf.mfa.service.authy.AuthyPushApprovalService;
 import pcrypto.cf.ripple.value.TransactionApprovalStatusEnum;
 import pcrypto.cf.security.domain.CustomUserDetails;
+import pcrypto.cf.security.web.TenantContext;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -68,17 +90,44 @@ import java.util.UUID;
 @Service
 public class EthereumTransactionService
 {
+    // Gas used by an Ether transfer to an externally owned account
+    private static final BigInteger PLAIN_TRANSFER_GAS = BigInteger.valueOf( 21000 );
 
     private final EthereumTransactionRequestRepository ethereumTransactionRequestRepository;
     private final EthereumTransactionRequestApproverRepository ethereumTransactionRequestApproverRepository;
     private final EthereumTransactionResponseRepository ethereumTransactionResponseRepository;
     private final EthereumTransactionApprovalStream ethereumTransactionApprovalStream;
     private final EthereumTransactionClient ethereumTransactionClient;
+    private final EthereumAccountRepository ethereumAccountRepository;
+    private final NonceManager nonceManager;
+    private final EthereumReceiptTracker ethereumReceiptTracker;
+    private final GasPriceOracle gasPriceOracle;
+    private final GasLimitEstimator gasLimitEstimator;
+    private final EthereumContractRepository ethereumContractRepository;
+    private final EthereumPayoutRepository ethereumPayoutRepository;
     private final AccountConfigurationRepository accountConfigurationRepository;
     private final AuthyPushApprovalService authyPushApprovalService;
     private final VaultOperations vaultOperations;
     private final ObjectMapper objectMapper;
 
+    @Value( "${ethereum.contracts.default-gas-limit:500000}" )
+    private long defaultContractGasLimit;
+
+    @Value( "${ethereum.disperse.contract-address:}" )
+    private String disperseContractAddress;
+
+    @Value( "${ethereum.disperse.max-payments:500}" )
+    private int maxBatchPayments;
+
+    @Value( "${ethereum.disperse.base-gas:30000}" )
+    private long batchBaseGas;
+
+    @Value( "${ethereum.disperse.ether-gas-per-payment:37000}" )
+    private long etherGasPerPayment;
+
+    @Value( "${ethereum.disperse.token-gas-per-payment:45000}" )
+    private long tokenGasPerPayment;
+
 
     @Autowired
     public EthereumTransactionService( final EthereumTransactionRequestRepository ethereumTransactionRequestRepository,
@@ -86,6 +135,13 @@ public class EthereumTransactionService
                                        final EthereumTransactionResponseRepository ethereumTransactionResponseRepository,
                                        @SuppressWarnings( "SpringJavaInjectionPointsAutowiringInspection" ) final EthereumTransactionApprovalStream ethereumTransactionApprovalStream,
                                        final EthereumTransactionClient ethereumTransactionClient,
+                                       final EthereumAccountRepository ethereumAccountRepository,
+                                       final NonceManager nonceManager,
+                                       final EthereumReceiptTracker ethereumReceiptTracker,
+                                       final GasPriceOracle gasPriceOracle,
+                                       final GasLimitEstimator gasLimitEstimator,
+                                       final EthereumContractRepository ethereumContractRepository,
+                                       final EthereumPayoutRepository ethereumPayoutRepository,
                                        final AccountConfigurationRepository accountConfigurationRepository,
                                        final AuthyPushApprovalService authyPushApprovalService,
                                        final VaultOperations vaultOperations,
@@ -96,6 +152,13 @@ public class EthereumTransactionService
         this.ethereumTransactionResponseRepository = ethereumTransactionResponseRepository;
         this.ethereumTransactionApprovalStream = ethereumTransactionApprovalStream;
         this.ethereumTransactionClient = ethereumTransactionClient;
+        this.ethereumAccountRepository = ethereumAccountRepository;
+        this.nonceManager = nonceManager;
+        this.ethereumReceiptTracker = ethereumReceiptTracker;
+        this.gasPriceOracle = gasPriceOracle;
+        this.gasLimitEstimator = gasLimitEstimator;
+        this.ethereumContractRepository = ethereumContractRepository;
+        this.ethereumPayoutRepository = ethereumPayoutRepository;
         this.accountConfigurationRepository = accountConfigurationRepository;
         this.authyPushApprovalService = authyPushApprovalService;
         this.vaultOperations = vaultOperations;
@@ -129,6 +192,10 @@ public class EthereumTransactionService
         transactionRequest.setTenantDomain( tenantDomain );
         transactionRequest.setAmount( paymentRequest.getAmount() );
         transactionRequest.setGasLimit( paymentRequest.getGasLimit() );
+        if ( null != paymentRequest.getGasPriority() )
+        {
+            transactionRequest.setGasPriority( paymentRequest.getGasPriority().getId() );
+        }
         transactionRequest.setMemo( paymentRequest.getMemo() );
 
         // Add all of the approver objects to our transaction request (source account, payment channel, and additional signers)
@@ -136,16 +203,240 @@ public class EthereumTransactionService
         approvers.add( sourceAccountDomain );
         approvers.addAll( additionalSignerAccounts );
 
+        final String reason = "Transaction: payment of " + paymentRequest.getAmount() + " tokens to account " + paymentRequest.getDestinationCfAccountIdentifier() + ".";
+
+        return processTransactionRequest( tenantDomain, transactionRequest, approvers, reason );
+    }
+
+
+    /**
+     * Create a single transaction which pays many accounts through the Disperse contract. Disperse reverts the whole
+     * transaction if any one transfer fails, so every payout shares the fate of the transaction.
+     *
+     * @param destAccountDomains the destination account of each payment, in the same order as the payments
+     */
+    @Transactional
+    public EthereumTransactionRequestDomain processBatchPaymentRequest( final Authentication authentication,
+                                                                        final EthereumBatchPaymentRequest batchPaymentRequest,
+                                                                        final AccountDomain sourceAccountDomain,
+                                                                        final List<AccountDomain> destAccountDomains,
+                                                                        final List<AccountDomain> additionalSignerAccounts )
+    {
+        if ( null == disperseContractAddress || disperseContractAddress.trim().isEmpty() )
+        {
+            throw new BadRequestException( "Batch payments are not available. No Disperse contract has been configured." );
+        }
+
+        final List<EthereumBatchPaymentRequest.Payment> payments = batchPaymentRequest.getPayments();
+        if ( payments.size() > maxBatchPayments )
+        {
+            throw new BadRequestException( "A batch payment may contain at most " + maxBatchPayments + " payments." );
+        }
+
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        // Look up the Ethereum addresses of all of the destination accounts at once
+        final List<Long> destAccountIds = new ArrayList<>();
+        for ( final AccountDomain destAccountDomain : destAccountDomains )
+        {
+            destAccountIds.add( destAccountDomain.getId() );
+        }
+        final Map<Long, String> addressesByAccountId = new HashMap<>();
+        for ( final EthereumAccountDomain ethereumAccountDomain : ethereumAccountRepository.findByCfAccountIdIn( destAccountIds ) )
+        {
+            addressesByAccountId.put( ethereumAccountDomain.getAccountDomain().getId(), ethereumAccountDomain.getEthereumAddress() );
+        }
+
+        final List<String> recipients = new ArrayList<>();
+        final List<BigInteger> amounts = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for ( int i = 0; i < payments.size(); i++ )
+        {
+            final String destinationAddress = addressesByAccountId.get( destAccountDomains.get( i ).getId() );
+            if ( null == destinationAddress )
+            {
+                throw new BadRequestException( "Destination account " + payments.get( i ).getDestinationCfAccountIdentifier() + " does not have an Ethereum address." );
+            }
+            final BigDecimal amount = payments.get( i ).getAmount();
+            if ( amount.signum() <= 0 || amount.stripTrailingZeros().scale() > 0 )
+            {
+                throw new BadRequestException( "Payment amounts must be whole numbers greater than zero." );
+            }
+            recipients.add( destinationAddress );
+            amounts.add( amount.toBigIntegerExact() );
+            total = total.add( amount );
+        }
+
+        final String tokenAddress = batchPaymentRequest.getTokenContractAddress();
+        final boolean isToken = null != tokenAddress && !tokenAddress.trim().isEmpty();
+        final String data;
+        final long gasPerPayment;
+        if ( isToken )
+        {
+            data = DisperseCalls.encodeDisperseToken( tokenAddress.trim(), recipients, amounts );
+            gasPerPayment = tokenGasPerPayment;
+        }
+        else
+        {
+            data = DisperseCalls.encodeDisperseEther( recipients, amounts );
+            gasPerPayment = etherGasPerPayment;
+        }
+
+        // Create our transaction request object
+        final EthereumTransactionRequestDomain transactionRequest = new EthereumTransactionRequestDomain();
+        try
+        {
+            transactionRequest.setEthereumPaymentRequest( objectMapper.writeValueAsString( batchPaymentRequest ) );
+        }
+        catch ( final JsonProcessingException e )
+        {
+            throw new BadRequestException( "Unable to process batch payment request json. Please check for errors.", e );
+        }
+        transactionRequest.setAccountDomain( sourceAccountDomain );
+        transactionRequest.setTenantDomain( tenantDomain );
+        transactionRequest.setContractAddress( disperseContractAddress.trim() );
+        transactionRequest.setData( data );
+        // Tokens are pulled by the contract, so only an Ether batch carries a value
+        transactionRequest.setAmount( isToken ? BigDecimal.ZERO : total );
+        transactionRequest.setGasLimit( null != batchPaymentRequest.getGasLimit()
+                                        ? batchPaymentRequest.getGasLimit()
+                                        : BigDecimal.valueOf( batchBaseGas + gasPerPayment * payments.size() ) );
+        if ( null != batchPaymentRequest.getGasPriority() )
+        {
+            transactionRequest.setGasPriority( batchPaymentRequest.getGasPriority().getId() );
+        }
+        transactionRequest.setMemo( batchPaymentRequest.getMemo() );
+
+        final List<AccountDomain> approvers = new ArrayList<>();
+        approvers.add( sourceAccountDomain );
+        approvers.addAll( additionalSignerAccounts );
+
+        final String reason = "Transaction: batch payment of " + total + ( isToken ? " tokens of " + tokenAddress.trim() : " wei" ) + " to " + payments.size() + " accounts.";
+
+        final EthereumTransactionRequestDomain persistedTransactionRequest = saveTransactionRequest( transactionRequest, approvers );
+
+        // Record each payout so its status can be reported. They must exist before an approval can lead to the tx
+        // being submitted, since a rejected tx fails them.
+        for ( int i = 0; i < payments.size(); i++ )
+        {
+            final EthereumPayoutDomain ethereumPayoutDomain = new EthereumPayoutDomain();
+            ethereumPayoutDomain.setEthereumTransactionRequest( persistedTransactionRequest );
+            ethereumPayoutDomain.setDestAccountDomain( destAccountDomains.get( i ) );
+            ethereumPayoutDomain.setDestinationAddress( recipients.get( i ) );
+            ethereumPayoutDomain.setAmount( payments.get( i ).getAmount() );
+            ethereumPayoutDomain.setStatus( EthereumPayoutStatus.PENDING.name() );
+            ethereumPayoutRepository.save( ethereumPayoutDomain );
+        }
+
+        return sendApprovalRequests( tenantDomain, persistedTransactionRequest, approvers, reason );
+    }
+
+
+    public List<EthereumPayoutDomain> getEthereumPayouts( final UUID transactionRequestUUID )
+    {
+        return ethereumPayoutRepository.findByTransactionRequestUUID( transactionRequestUUID );
+    }
+
+
+    /**
+     * Create a transaction request which calls a contract, or deploys one if there is no contract address. It goes
+     * through the same approval, signing and submission steps as a payment.
+     *
+     * @param contractRequest     the api request, recorded with the transaction request
+     * @param sourceAccountDomain the account which sends (and signs) the transaction
+     * @param contractAddress     the contract to call, or null to deploy a contract
+     * @param data                the call data, or for a deployment the bytecode followed by the constructor parameters
+     * @param value               wei to send with the call, or null for none
+     * @param gasLimit            the gas limit, or null to estimate it
+     * @param description         describes the call in approval requests
+     * @param contractDomain      the contract being deployed, or null for a call. It is saved as pending before any
+     *                            approval is sent, so it is there to record the deployment once it is submitted.
+     */
+    @Transactional
+    public EthereumTransactionRequestDomain processContractRequest( final Authentication authentication,
+                                                                    final Object contractRequest,
+                                                                    final AccountDomain sourceAccountDomain,
+                                                                    final String contractAddress,
+                                                                    final String data,
+                                                                    final BigDecimal value,
+                                                                    final BigDecimal gasLimit,
+                                                                    final String description,
+                                                                    final EthereumContractDomain contractDomain )
+    {
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        final EthereumTransactionRequestDomain transactionRequest = new EthereumTransactionRequestDomain();
+        try
+        {
+            transactionRequest.setEthereumPaymentRequest( objectMapper.writeValueAsString( contractRequest ) );
+        }
+        catch ( final JsonProcessingException e )
+        {
+            throw new BadRequestException( "Unable to process contract request json. Please check for errors.", e );
+        }
+        transactionRequest.setAccountDomain( sourceAccountDomain );
+        transactionRequest.setTenantDomain( tenantDomain );
+        transactionRequest.setContractAddress( contractAddress );
+        transactionRequest.setData( data );
+        transactionRequest.setAmount( null == value ? BigDecimal.ZERO : value );
+        transactionRequest.setGasLimit( gasLimit );
+        transactionRequest.setGasPriority( EthereumGasPriority.STANDARD.getId() );
+
+        final List<AccountDomain> approvers = Collections.singletonList( sourceAccountDomain );
+        final EthereumTransactionRequestDomain persistedTransactionRequest = saveTransactionRequest( transactionRequest, approvers );
+
+        if ( null != contractDomain )
+        {
+            contractDomain.setEthereumTransactionRequestUuid( persistedTransactionRequest.getUuid() );
+            contractDomain.setStatus( EthereumContractStatus.PENDING.name() );
+            ethereumContractRepository.save( contractDomain );
+        }
+
+        return sendApprovalRequests( tenantDomain, persistedTransactionRequest, approvers, "Transaction: " + description + "." );
+    }
+
+
+    /**
+     * Save a new transaction request and send out its approval requests.
+     */
+    private EthereumTransactionRequestDomain processTransactionRequest( final TenantDomain tenantDomain,
+                                                                        final EthereumTransactionRequestDomain transactionRequest,
+                                                                        final List<AccountDomain> approvers,
+                                                                        final String reason )
+    {
+        return sendApprovalRequests( tenantDomain, saveTransactionRequest( transactionRequest, approvers ), approvers, reason );
+    }
+
+    /**
+     * Validate the approvers and save a new transaction request, which generates our internal transaction id.
+     */
+    private EthereumTransactionRequestDomain saveTransactionRequest( final EthereumTransactionRequestDomain transactionRequest,
+                                                                     final List<AccountDomain> approvers )
+    {
         // Validate that all the MFA approvers are registered and/or set up properly
         validateMfaApprovers( approvers );
 
         // Save the transaction request which will generate our internal transaction id
-        final EthereumTransactionRequestDomain persistedTransactionRequest = ethereumTransactionRequestRepository.save( transactionRequest );
+        return ethereumTransactionRequestRepository.save( transactionRequest );
+    }
 
+    /**
+     * Send out the approval requests of a saved transaction request. An implicit approval can lead straight to the
+     * transaction being signed and submitted, so anything it depends on must already be saved.
+     */
+    private EthereumTransactionRequestDomain sendApprovalRequests( final TenantDomain tenantDomain,
+                                                                   final EthereumTransactionRequestDomain persistedTransactionRequest,
+                                                                   final List<AccountDomain> approvers,
+                                                                   final String reason )
+    {
         // Send out MFA approval requests
         final List<EthereumTransactionRequestApproverDomain> approverDomains = sendMfaApprovalRequests( tenantDomain,
                                                                                                         persistedTransactionRequest,
-                                                                                                        paymentRequest,
+                                                                                                        reason,
                                                                                                         approvers );
 
         // Record the approval requests in our local db
@@ -161,7 +452,7 @@ public class EthereumTransactionService
 
         // Create a placeholder linked db record to hold the transaction response
         final EthereumTransactionResponseDomain ethereumTransactionResponseDomain = new EthereumTransactionResponseDomain();
-        ethereumTransactionResponseDomain.setAccountDomain( sourceAccountDomain );
+        ethereumTransactionResponseDomain.setAccountDomain( persistedTransactionRequest.getAccountDomain() );
         ethereumTransactionResponseDomain.setEthereumTransactionRequest( persistedTransactionRequest );
         ethereumTransactionResponseRepository.save( ethereumTransactionResponseDomain );
 
@@ -244,34 +535,98 @@ public class EthereumTransactionService
                                                                 final EthereumTransactionResponseDomain ethereumTransactionResponseDomain )
     {
         final TenantDomain tenantDomain = ethereumTransactionRequestDomain.getTenantDomain();
+        final Long sourceCfAccountId = ethereumTransactionRequestDomain.getAccountDomain().getId();
+
+        // Price the tx from the oracle's current estimate for the requested priority
+        final Integer gasPriorityId = ethereumTransactionRequestDomain.getGasPriority();
+        final EthereumGasPriority gasPriority = null == gasPriorityId ? EthereumGasPriority.STANDARD : EthereumGasPriority.fromId( gasPriorityId );
+        final BigInteger gasPrice = gasPriceOracle.getGasPrice( gasPriority );
+
+        final String sourceAddress = ethereumAccountRepository.findByCfAccountId( sourceCfAccountId )
+                                                              .map( EthereumAccountDomain::getEthereumAddress )
+                                                              .orElseThrow( () -> new NotFoundException( "Ethereum account for cfAccountId " + sourceCfAccountId + " not found." ) );
+
+        // Size the tx from its estimated gas use unless the request set a limit
+        if ( null == ethereumTransactionRequestDomain.getGasLimit() )
+        {
+            ethereumTransactionRequestDomain.setGasLimit( new BigDecimal( estimateGasLimit( ethereumTransactionRequestDomain, sourceAddress ) ) );
+        }
+
+        // Reserve a nonce for the source address
+        final BigInteger nonce = nonceManager.allocate( sourceAddress );
 
         // Obtain a signed tx from Vault
         final VaultEthereumPaymentDomain paymentDomain = new VaultEthereumPaymentDomain();
-        paymentDomain.setSource( String.valueOf( ethereumTransactionRequestDomain.getAccountDomain().getId() ) );
-        paymentDomain.setDestination( String.valueOf( ethereumTransactionRequestDomain.getDestAccountDomain().getId() ) );
+        paymentDomain.setSource( String.valueOf( sourceCfAccountId ) );
+        if ( null != ethereumTransactionRequestDomain.getDestAccountDomain() )
+        {
+            paymentDomain.setDestination( String.valueOf( ethereumTransactionRequestDomain.getDestAccountDomain().getId() ) );
+        }
+        else
+        {
+            // A contract call (or, with no address, a contract deployment)
+            paymentDomain.setDestinationAddress( ethereumTransactionRequestDomain.getContractAddress() );
+            paymentDomain.setData( ethereumTransactionRequestDomain.getData() );
+        }
 
         paymentDomain.setAmount( ethereumTransactionRequestDomain.getAmount().toString() );
         paymentDomain.setGasLimit( ethereumTransactionRequestDomain.getGasLimit().toString() );
+        paymentDomain.setGasPrice( gasPrice.toString() );
         paymentDomain.setMemo( ethereumTransactionRequestDomain.getMemo() );
+        paymentDomain.setNonce( nonce.toString() );
 
-        final VaultResponse vaultResponse =
-              vaultOperations.write( getEthereumVaultPluginPath( tenantDomain ) + "/accounts/" + ethereumTransactionRequestDomain.getAccountDomain().getId() + "/debit", paymentDomain );
-        if ( null == vaultResponse )
+        final String signedTx;
+        final String transactionHash;
+        try
         {
-            throw new VaultException( "An error occurred while creating the payment transaction." );
-        }
+            final VaultResponse vaultResponse =
+                  vaultOperations.write( getEthereumVaultPluginPath( tenantDomain ) + "/accounts/" + sourceCfAccountId + "/debit", paymentDomain );
+            if ( null == vaultResponse )
+            {
+                throw new VaultException( "An error occurred while creating the payment transaction." );
+            }
 
-        final Map<String, Object> data = vaultResponse.getData();
-        if ( null == data )
+            final Map<String, Object> data = vaultResponse.getData();
+            if ( null == data )
+            {
+                throw new VaultException( "Vault response when signing transaction contained a null data map." );
+            }
+            signedTx = (String) data.get( "signed_tx" );
+            transactionHash = (String) data.get( "transaction_hash" );
+        }
+        catch ( final RuntimeException e )
         {
-            throw new VaultException( "Vault response when signing transaction contained a null data map." );
+            // Nothing was signed, so the nonce can go to the next payment
+            nonceManager.release( sourceAddress, nonce );
+            throw e;
         }
-        final String signedTx = (String) data.get( "signed_tx" );
-        final String transactionHash = (String) data.get( "transaction_hash" );
 
         // Submit the signed tx to Ethereum
         final String tx = Numeric.prependHexPrefix( signedTx );
-        final EthSendTransaction txResponse = ethereumTransactionClient.submitTransaction( tx );
+        final EthSendTransaction txResponse;
+        try
+        {
+            txResponse = ethereumTransactionClient.submitTransaction( tx );
+        }
+        catch ( final BlockchainServiceException e )
+        {
+            // We can't tell whether the node received the tx, so let it tell us where the nonce is
+            nonceManager.reset( sourceAddress );
+            throw e;
+        }
+
+        if ( txResponse.hasError() )
+        {
+            if ( isNonceError( txResponse.getError() ) )
+            {
+                nonceManager.reset( sourceAddress );
+            }
+            else
+            {
+                // Rejected outright (ex. insufficient funds), so the nonce was never used
+                nonceManager.release( sourceAddress, nonce );
+            }
+        }
 
         // Save the transaction response
         ethereumTransactionResponseDomain.setSuccess( !txResponse.hasError() );
@@ -292,10 +647,107 @@ public class EthereumTransactionService
 
         final EthereumTransactionResponseDomain savedResponse = ethereumTransactionResponseRepository.save( ethereumTransactionResponseDomain );
 
+        if ( !txResponse.hasError() )
+        {
+            ethereumReceiptTracker.track( TenantContext.getCurrentTenant(), transactionHash );
+
+            if ( null == ethereumTransactionRequestDomain.getDestAccountDomain() && null == ethereumTransactionRequestDomain.getContractAddress() )
+            {
+                recordContractDeployment( ethereumTransactionRequestDomain, sourceAddress, nonce, transactionHash );
+            }
+        }
+        else
+        {
+            // The tx will never be mined, so none of a batch payment's payouts will be made, and no contract deployed
+            ethereumPayoutRepository.updateStatusByTransactionRequestUUID( ethereumTransactionRequestDomain.getUuid(), EthereumPayoutStatus.FAILED.name() );
+            ethereumContractRepository.updateStatusByTransactionRequestUUID( ethereumTransactionRequestDomain.getUuid(),
+                                                                             EthereumContractStatus.PENDING.name(),
+                                                                             EthereumContractStatus.FAILED.name() );
+        }
+
         return savedResponse;
     }
 
 
+    private BigInteger estimateGasLimit( final EthereumTransactionRequestDomain ethereumTransactionRequestDomain,
+                                         final String sourceAddress )
+    {
+        final AccountDomain destAccountDomain = ethereumTransactionRequestDomain.getDestAccountDomain();
+        if ( null == destAccountDomain )
+        {
+            return gasLimitEstimator.getGasLimit( sourceAddress,
+                                                  ethereumTransactionRequestDomain.getContractAddress(),
+                                                  ethereumTransactionRequestDomain.getAmount().toBigInteger(),
+                                                  ethereumTransactionRequestDomain.getData(),
+                                                  BigInteger.valueOf( defaultContractGasLimit ) );
+        }
+
+        final String destAddress = ethereumAccountRepository.findByCfAccountId( destAccountDomain.getId() )
+                                                            .map( EthereumAccountDomain::getEthereumAddress )
+                                                            .orElseThrow( () -> new NotFoundException( "Ethereum account for cfAccountId " + destAccountDomain.getId() + " not found." ) );
+        return gasLimitEstimator.getGasLimit( sourceAddress,
+                                              destAddress,
+                                              ethereumTransactionRequestDomain.getAmount().toBigInteger(),
+                                              null,
+                                              PLAIN_TRANSFER_GAS );
+    }
+
+
+    /**
+     * The logs recorded from the transaction's receipt by the {@link EthereumReceiptTracker}.
+     */
+    public List<EthereumLog> getTransactionLogs( final EthereumTransactionResponseDomain ethereumTransactionResponseDomain )
+    {
+        final String logs = ethereumTransactionResponseDomain.getLogs();
+        if ( null == logs )
+        {
+            return Collections.emptyList();
+        }
+        try
+        {
+            return objectMapper.readValue( logs, new TypeReference<List<EthereumLog>>()
+            {
+            } );
+        }
+        catch ( final IOException e )
+        {
+            log.warn( "Unable to read logs of Ethereum transaction {}: {}", ethereumTransactionResponseDomain.getTransactionHash(), e.getMessage() );
+            return Collections.emptyList();
+        }
+    }
+
+
+    /**
+     * A deployed contract's address is fixed by the sender and nonce, so we can record it as soon as it's submitted.
+     */
+    private void recordContractDeployment( final EthereumTransactionRequestDomain ethereumTransactionRequestDomain,
+                                           final String sourceAddress,
+                                           final BigInteger nonce,
+                                           final String transactionHash )
+    {
+        final Optional<EthereumContractDomain> contractDomain = ethereumContractRepository.findByEthereumTransactionRequestUuid( ethereumTransactionRequestDomain.getUuid() );
+        if ( !contractDomain.isPresent() )
+        {
+            log.warn( "No contract found for deployment transaction {}", ethereumTransactionRequestDomain.getUuid() );
+            return;
+        }
+        contractDomain.get().setContractAddress( ContractUtils.generateContractAddress( sourceAddress, nonce ) );
+        contractDomain.get().setTransactionHash( transactionHash );
+        ethereumContractRepository.save( contractDomain.get() );
+    }
+
+    /**
+     * Whether the node rejected the tx because our nonce for the account has drifted from its own.
+     */
+    private boolean isNonceError( final Response.Error error )
+    {
+        final String message = null == error.getMessage() ? "" : error.getMessage().toLowerCase();
+        return message.contains( "nonce too low" )
+               || message.contains( "already known" )
+               || message.contains( "known transaction" )
+               || message.contains( "replacement transaction underpriced" );
+    }
+
     private void validateMfaApprovers( final List<AccountDomain> approvers )
     {
         final List<ErrorMessage> invalidApprovers = new ArrayList<>();
@@ -327,7 +779,7 @@ public class EthereumTransactionService
 
     private List<EthereumTransactionRequestApproverDomain> sendMfaApprovalRequests( final TenantDomain tenantDomain,
                                                                                     final EthereumTransactionRequestDomain ethereumTransactionRequestDomain,
-                                                                                    final EthereumPaymentRequest paymentRequest,
+                                                                                    final String reason,
                                                                                     final List<AccountDomain> approvers )
     {
         final UUID transactionUUID = ethereumTransactionRequestDomain.getUuid();
@@ -352,8 +804,6 @@ public class EthereumTransactionService
                 final String userName = approver.getUserName();
                 final int authyId = accountConfigurationDomain.get().getAuthyId();
 
-                final String reason = "Transaction: payment of " + paymentRequest.getAmount() + " tokens to account " + paymentRequest.getDestinationCfAccountIdentifier() + ".";
-
                 // Send the approval request
                 final String approvalRequestUUID = authyPushApprovalService.sendOneTouchToken( tenantDomain,
                                                                                                userName,
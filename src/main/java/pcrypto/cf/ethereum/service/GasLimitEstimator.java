@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Hash;
+import pcrypto.cf.ethereum.client.EthereumTransactionClient;
+import pcrypto.cf.exception.BlockchainServiceException;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Picks the gas limit for transactions which don't specify one.
+ * <p>
+ * Gas use depends on the code being run, so estimates are shared by every call of the same function on the same
+ * contract code: the key is the destination's code hash (the empty code of an externally owned account included),
+ * the function selector, and the length of the call data, since calls with dynamic arguments grow with their input.
+ * The first call for a key goes to 'eth_estimateGas' and the estimate plus 'ethereum.gas-estimator.margin-percent'
+ * is kept. Later calls skip the RPC until the entry is 'max-age-ms' old; it is then re-estimated, and a lower result
+ * only replaces the old limit after the old limit has decayed by 'decay-percent', so a single cheap estimate doesn't
+ * undercut the limits seen before. Both the code hashes and the estimates are kept in LRU maps of 'max-entries'.
+ * <p>
+ * Deployments are always estimated, since every deployment is different.
+ */
+@Slf4j
+@Component
+public class GasLimitEstimator
+{
+    private final EthereumTransactionClient ethereumTransactionClient;
+
+    private final Map<String, CachedValue<String>> codeHashes;
+    private final Map<String, CachedValue<BigInteger>> gasLimits;
+
+    @Value( "${ethereum.gas-estimator.margin-percent:50}" )
+    private int marginPercent;
+
+    @Value( "${ethereum.gas-estimator.decay-percent:10}" )
+    private int decayPercent;
+
+    @Value( "${ethereum.gas-estimator.max-age-ms:3600000}" )
+    private long maxAgeMs;
+
+
+    @Autowired
+    public GasLimitEstimator( final EthereumTransactionClient ethereumTransactionClient,
+                              @Value( "${ethereum.gas-estimator.max-entries:1000}" ) final int maxEntries )
+    {
+        this.ethereumTransactionClient = ethereumTransactionClient;
+        this.codeHashes = new LruMap<>( maxEntries );
+        this.gasLimits = new LruMap<>( maxEntries );
+    }
+
+
+    /**
+     * Get the gas limit for a transaction.
+     *
+     * @param toAddress the destination, or null for a contract deployment
+     * @param data      the call data (or deployment bytecode), or null for none
+     * @param fallback  the limit to use if the node can't estimate the transaction (ex. it would revert)
+     */
+    public BigInteger getGasLimit( final String fromAddress,
+                                   final String toAddress,
+                                   final BigInteger value,
+                                   final String data,
+                                   final BigInteger fallback )
+    {
+        try
+        {
+            if ( null == toAddress )
+            {
+                return withMargin( ethereumTransactionClient.estimateGas( fromAddress, null, value, data ) );
+            }
+
+            final String key = getCodeHash( toAddress ) + ":" + getCallSignature( data );
+            final CachedValue<BigInteger> cached = get( gasLimits, key );
+            if ( null != cached && !cached.isOlderThan( maxAgeMs ) )
+            {
+                return cached.value;
+            }
+
+            BigInteger gasLimit = withMargin( ethereumTransactionClient.estimateGas( fromAddress, toAddress, value, data ) );
+            if ( null != cached )
+            {
+                final BigInteger decayed = cached.value.multiply( BigInteger.valueOf( 100 - decayPercent ) ).divide( BigInteger.valueOf( 100 ) );
+                gasLimit = gasLimit.max( decayed );
+            }
+            put( gasLimits, key, new CachedValue<>( gasLimit ) );
+            return gasLimit;
+        }
+        catch ( final BlockchainServiceException e )
+        {
+            log.warn( "Unable to estimate gas for transaction from {} to {}, using a gas limit of {}: {}", fromAddress, toAddress, fallback, e.getMessage() );
+            return fallback;
+        }
+    }
+
+
+    /**
+     * The function selector and data length of a call ('' for a plain transfer).
+     */
+    static String getCallSignature( final String data )
+    {
+        if ( null == data || data.length() <= 2 )
+        {
+            return "";
+        }
+        final String hex = data.startsWith( "0x" ) ? data.substring( 2 ) : data;
+        return hex.substring( 0, Math.min( 8, hex.length() ) ).toLowerCase() + ":" + hex.length() / 2;
+    }
+
+
+    private String getCodeHash( final String address )
+    {
+        final String normalizedAddress = address.toLowerCase();
+        final CachedValue<String> cached = get( codeHashes, normalizedAddress );
+        if ( null != cached && !cached.isOlderThan( maxAgeMs ) )
+        {
+            return cached.value;
+        }
+
+        final String codeHash = Hash.sha3( ethereumTransactionClient.getCode( normalizedAddress ) );
+        put( codeHashes, normalizedAddress, new CachedValue<>( codeHash ) );
+        return codeHash;
+    }
+
+    private BigInteger withMargin( final BigInteger estimate )
+    {
+        return estimate.multiply( BigInteger.valueOf( 100 + marginPercent ) ).divide( BigInteger.valueOf( 100 ) );
+    }
+
+    private static <V> V get( final Map<String, V> map,
+                              final String key )
+    {
+        synchronized ( map )
+        {
+            return map.get( key );
+        }
+    }
+
+    private static <V> void put( final Map<String, V> map,
+                                 final String key,
+                                 final V value )
+    {
+        synchronized ( map )
+        {
+            map.put( key, value );
+        }
+    }
+
+
+    private static final class CachedValue<V>
+    {
+        private final V value;
+        private final long createdAtMillis = System.currentTimeMillis();
+
+        private CachedValue( final V value )
+        {
+            this.value = value;
+        }
+
+        private boolean isOlderThan( final long ageMs )
+        {
+            return System.currentTimeMillis() - createdAtMillis > ageMs;
+        }
+    }
+
+
+    private static final class LruMap<K, V>
+          extends LinkedHashMap<K, V>
+    {
+        private final int maxEntries;
+
+        private LruMap( final int maxEntries )
+        {
+            super( 16, 0.75f, true );
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry( final Map.Entry<K, V> eldest )
+        {
+            return size() > maxEntries;
+        }
+    }
+}
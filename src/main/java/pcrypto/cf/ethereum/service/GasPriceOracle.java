@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthGasPrice;
+import pcrypto.cf.ethereum.api.model.EthereumGasPriority;
+import pcrypto.cf.ethereum.client.EthereumRpc;
+import pcrypto.cf.ethereum.client.EthereumTransactionClient;
+import pcrypto.cf.exception.BlockchainServiceException;
+
+import javax.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Estimates the gas price to pay for each {@link EthereumGasPriority} from the prices paid in recent blocks.
+ * <p>
+ * The most recent 'ethereum.gas-price.sample-blocks' blocks are sampled in the background, and the configured
+ * percentile of the gas prices paid in them is kept for each priority. Payments can then be signed without a gas
+ * price RPC. Until the first sample completes, or once the estimates are older than 'ethereum.gas-price.max-age-ms'
+ * (because sampling keeps failing or no transactions are being mined), we fall back to 'eth_gasPrice'.
+ */
+@Slf4j
+@Component
+public class GasPriceOracle
+{
+    private final EthereumRpc ethereumRpc;
+    private final EthereumTransactionClient ethereumTransactionClient;
+
+    private final ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "ethereum-gas-price-oracle" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    // Gas prices paid in each sampled block, oldest first. Only touched by the refresh thread.
+    private final Deque<BlockSample> samples = new ArrayDeque<>();
+
+    private volatile Estimates estimates;
+
+    @Value( "${ethereum.gas-price.sample-blocks:20}" )
+    private int sampleBlocks;
+
+    @Value( "${ethereum.gas-price.refresh-interval-ms:5000}" )
+    private long refreshIntervalMs;
+
+    @Value( "${ethereum.gas-price.max-age-ms:60000}" )
+    private long maxAgeMs;
+
+    @Value( "${ethereum.gas-price.slow-percentile:30}" )
+    private int slowPercentile;
+
+    @Value( "${ethereum.gas-price.standard-percentile:60}" )
+    private int standardPercentile;
+
+    @Value( "${ethereum.gas-price.fast-percentile:90}" )
+    private int fastPercentile;
+
+
+    @Autowired
+    public GasPriceOracle( final EthereumRpc ethereumRpc,
+                           final EthereumTransactionClient ethereumTransactionClient )
+    {
+        this.ethereumRpc = ethereumRpc;
+        this.ethereumTransactionClient = ethereumTransactionClient;
+    }
+
+
+    @EventListener( ApplicationReadyEvent.class )
+    public void start()
+    {
+        refreshScheduler.scheduleWithFixedDelay( this::refresh, 0, refreshIntervalMs, TimeUnit.MILLISECONDS );
+    }
+
+    @PreDestroy
+    public void close()
+    {
+        refreshScheduler.shutdownNow();
+    }
+
+
+    /**
+     * The gas price, in wei, to pay for a transaction of the given priority.
+     */
+    public BigInteger getGasPrice( final EthereumGasPriority priority )
+    {
+        final Estimates current = estimates;
+        if ( null != current && System.currentTimeMillis() - current.computedAtMillis <= maxAgeMs )
+        {
+            return current.gasPrices.get( null == priority ? EthereumGasPriority.STANDARD : priority );
+        }
+
+        final EthGasPrice ethGasPrice = ethereumRpc.send( ethereumRpc.getWeb3j().ethGasPrice() );
+        if ( ethGasPrice.hasError() )
+        {
+            throw new BlockchainServiceException( "Unable to get the gas price: " + ethGasPrice.getError().getMessage(), null );
+        }
+        return ethGasPrice.getGasPrice();
+    }
+
+
+    /**
+     * Sample every block since the last refresh, and recompute the estimates.
+     */
+    void refresh()
+    {
+        try
+        {
+            final long head = ethereumTransactionClient.getBlockNumber().longValue();
+            final long lastSampled = samples.isEmpty() ? -1 : samples.getLast().blockNumber;
+            if ( head <= lastSampled )
+            {
+                return;
+            }
+
+            final long from = Math.max( lastSampled + 1, head - sampleBlocks + 1 );
+            final List<Request<?, EthBlock>> requests = new ArrayList<>();
+            for ( long blockNumber = from; blockNumber <= head; blockNumber++ )
+            {
+                requests.add( ethereumRpc.getWeb3j().ethGetBlockByNumber( DefaultBlockParameter.valueOf( BigInteger.valueOf( blockNumber ) ), true ) );
+            }
+
+            for ( final EthBlock ethBlock : ethereumRpc.sendBatch( requests ) )
+            {
+                if ( ethBlock.hasError() || null == ethBlock.getBlock() )
+                {
+                    continue;
+                }
+                samples.addLast( sample( ethBlock.getBlock() ) );
+            }
+            while ( samples.size() > sampleBlocks )
+            {
+                samples.removeFirst();
+            }
+
+            recomputeEstimates();
+        }
+        catch ( final Exception e )
+        {
+            log.warn( "Unable to sample Ethereum gas prices: {}", e.getMessage() );
+        }
+    }
+
+
+    private BlockSample sample( final EthBlock.Block block )
+    {
+        final List<EthBlock.TransactionResult> transactions = block.getTransactions();
+        final long[] gasPrices = new long[transactions.size()];
+        int count = 0;
+        for ( final EthBlock.TransactionResult transactionResult : transactions )
+        {
+            final EthBlock.TransactionObject transaction = (EthBlock.TransactionObject) transactionResult.get();
+            if ( null != transaction.getGasPrice() )
+            {
+                gasPrices[count++] = transaction.getGasPrice().longValue();
+            }
+        }
+        return new BlockSample( block.getNumber().longValue(), Arrays.copyOf( gasPrices, count ) );
+    }
+
+    private void recomputeEstimates()
+    {
+        int total = 0;
+        for ( final BlockSample sample : samples )
+        {
+            total += sample.gasPrices.length;
+        }
+        if ( total == 0 )
+        {
+            // Nothing has been mined recently, so keep what we had
+            return;
+        }
+
+        final long[] gasPrices = new long[total];
+        int position = 0;
+        for ( final BlockSample sample : samples )
+        {
+            System.arraycopy( sample.gasPrices, 0, gasPrices, position, sample.gasPrices.length );
+            position += sample.gasPrices.length;
+        }
+        Arrays.sort( gasPrices );
+
+        final Map<EthereumGasPriority, BigInteger> updated = new EnumMap<>( EthereumGasPriority.class );
+        updated.put( EthereumGasPriority.SLOW, percentile( gasPrices, slowPercentile ) );
+        updated.put( EthereumGasPriority.STANDARD, percentile( gasPrices, standardPercentile ) );
+        updated.put( EthereumGasPriority.FAST, percentile( gasPrices, fastPercentile ) );
+        estimates = new Estimates( updated, System.currentTimeMillis() );
+
+        log.debug( "Gas price estimates from {} transactions: {}", total, updated );
+    }
+
+    private static BigInteger percentile( final long[] sorted,
+                                          final int percentile )
+    {
+        final int index = (int) Math.ceil( percentile / 100.0 * sorted.length ) - 1;
+        return BigInteger.valueOf( sorted[Math.max( 0, Math.min( index, sorted.length - 1 ) )] );
+    }
+
+
+    private static final class Estimates
+    {
+        private final Map<EthereumGasPriority, BigInteger> gasPrices;
+        private final long computedAtMillis;
+
+        private Estimates( final Map<EthereumGasPriority, BigInteger> gasPrices,
+                           final long computedAtMillis )
+        {
+            this.gasPrices = gasPrices;
+            this.computedAtMillis = computedAtMillis;
+        }
+    }
+
+    private static final class BlockSample
+    {
+        private final long blockNumber;
+        private final long[] gasPrices;
+
+        private BlockSample( final long blockNumber,
+                             final long[] gasPrices )
+        {
+            this.blockNumber = blockNumber;
+            this.gasPrices = gasPrices;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pcrypto.cf.ethereum.client.EthereumAccountClient;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Hands out transaction nonces per source address, so that many payments from one account can be signed and
+ * submitted at once without colliding.
+ * <p>
+ * Each address is seeded from 'eth_getTransactionCount' (pending) on first use and nonces are then taken from an
+ * atomic counter. A nonce which never made it to the network is released and handed out again before the counter
+ * moves on, so it doesn't leave a gap that every later transaction would queue behind. The counter is periodically
+ * compared with the node, and moved forward if transactions were sent from the address some other way.
+ */
+@Slf4j
+@Component
+public class NonceManager
+{
+    private final EthereumAccountClient ethereumAccountClient;
+
+    private final Map<String, AddressNonces> nonces = new ConcurrentHashMap<>();
+
+    @Value( "${ethereum.nonce.resync-interval-ms:60000}" )
+    private long resyncIntervalMs;
+
+
+    @Autowired
+    public NonceManager( final EthereumAccountClient ethereumAccountClient )
+    {
+        this.ethereumAccountClient = ethereumAccountClient;
+    }
+
+
+    /**
+     * Reserve the next nonce for the address. The caller must either broadcast a transaction with it, or hand it back
+     * with {@link #release(String, BigInteger)}.
+     */
+    public BigInteger allocate( final String ethAddress )
+    {
+        final AddressNonces addressNonces = nonces.computeIfAbsent( ethAddress.toLowerCase(), address -> new AddressNonces() );
+
+        while ( true )
+        {
+            final long lastSynced = addressNonces.lastSyncedAt.get();
+            final long now = System.currentTimeMillis();
+            if ( addressNonces.next.get() < 0
+                 || ( now - lastSynced > resyncIntervalMs && addressNonces.lastSyncedAt.compareAndSet( lastSynced, now ) ) )
+            {
+                syncWithNode( ethAddress, addressNonces );
+            }
+
+            final Long released = addressNonces.released.pollFirst();
+            if ( null != released )
+            {
+                return BigInteger.valueOf( released );
+            }
+
+            final long nonce = addressNonces.next.getAndUpdate( next -> next < 0 ? next : next + 1 );
+            if ( nonce >= 0 )
+            {
+                return BigInteger.valueOf( nonce );
+            }
+            // Reset by another thread since we synced, so go back to the node
+        }
+    }
+
+    /**
+     * Hand back a nonce whose transaction was never broadcast (signing failed, or the node rejected it outright).
+     */
+    public void release( final String ethAddress,
+                         final BigInteger nonce )
+    {
+        final AddressNonces addressNonces = nonces.get( ethAddress.toLowerCase() );
+        if ( null == addressNonces )
+        {
+            return;
+        }
+
+        final long value = nonce.longValue();
+        // If it was the last one handed out, just wind the counter back; otherwise keep it for the next allocation
+        if ( !addressNonces.next.compareAndSet( value + 1, value ) )
+        {
+            addressNonces.released.add( value );
+        }
+    }
+
+    /**
+     * Forget what we know about the address, so that the next allocation is re-seeded from the node. Called when the
+     * node tells us a nonce is wrong (ex. 'nonce too low'), or when we can't tell whether a transaction was broadcast.
+     */
+    public void reset( final String ethAddress )
+    {
+        final AddressNonces addressNonces = nonces.get( ethAddress.toLowerCase() );
+        if ( null != addressNonces )
+        {
+            log.debug( "Resetting the nonce for Ethereum account {}", ethAddress );
+            addressNonces.next.set( -1 );
+            addressNonces.released.clear();
+        }
+    }
+
+
+    private void syncWithNode( final String ethAddress,
+                               final AddressNonces addressNonces )
+    {
+        final long pendingCount = ethereumAccountClient.getPendingTransactionCount( ethAddress ).longValue();
+        addressNonces.lastSyncedAt.set( System.currentTimeMillis() );
+
+        // Only ever move forward here: nonces we've handed out may not have reached the node's pool yet
+        final long previous = addressNonces.next.getAndAccumulate( pendingCount, Math::max );
+        if ( previous >= 0 && pendingCount > previous )
+        {
+            log.warn( "Nonce for Ethereum account {} drifted from {} to {}", ethAddress, previous, pendingCount );
+        }
+
+        // Anything released below the node's count has since been used
+        addressNonces.released.headSet( pendingCount ).clear();
+    }
+
+
+    private static final class AddressNonces
+    {
+        // Next nonce to hand out, or -1 if not yet seeded from the node
+        private final AtomicLong next = new AtomicLong( -1 );
+        private final AtomicLong lastSyncedAt = new AtomicLong();
+        private final NavigableSet<Long> released = new ConcurrentSkipListSet<>();
+    }
+}
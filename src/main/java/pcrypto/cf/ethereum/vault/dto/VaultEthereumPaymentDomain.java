@@ -29,7 +29,16 @@ public class VaultEthereumPaymentDomain
 {
     private String source;
     private String destination;
+
+    // Used instead of destination for contract calls; left empty (with data set) to deploy a contract
+    private String destinationAddress;
+    private String data;
+
     private String amount;
     private String gasLimit;
+    private String gasPrice;
     private String memo;
+
+    // Allocated by us rather than the plugin, so that many payments from one account can be signed concurrently
+    private String nonce;
 }
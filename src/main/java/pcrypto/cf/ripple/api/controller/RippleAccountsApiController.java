@@ -38,6 +38,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import pcrypto.cf.account.domain.entity.AccountDomain;
 import pcrypto.cf.account.domain.repository.AccountRepository;
@@ -49,13 +50,17 @@ import pcrypto.cf.exception.BadRequestException;
 import pcrypto.cf.exception.NotFoundException;
 import pcrypto.cf.mfa.service.totp.TotpService;
 import pcrypto.cf.ripple.api.model.RippleAccount;
+import pcrypto.cf.ripple.api.model.RippleAccountBalances;
 import pcrypto.cf.ripple.api.model.RippleAccountSet;
 import pcrypto.cf.ripple.api.model.RippleAccountTrustline;
 import pcrypto.cf.ripple.api.model.RippleTransaction;
+import pcrypto.cf.ripple.cache.RippleAccountSnapshot;
+import pcrypto.cf.ripple.cache.RippleBalanceCache;
 import pcrypto.cf.ripple.client.RippleAccountClient;
 import pcrypto.cf.ripple.client.RippleTransactionClient;
 import pcrypto.cf.ripple.client.dto.RippleAccountInfoDto;
 import pcrypto.cf.ripple.client.dto.RippleAccountLineDto;
+import pcrypto.cf.ripple.client.dto.RippleAccountLinesPageDto;
 import pcrypto.cf.ripple.client.dto.RippleSubmitResponseDto;
 import pcrypto.cf.ripple.domain.entity.RippleAccountDomain;
 import pcrypto.cf.ripple.domain.repository.RippleAccountRepository;
@@ -89,6 +94,7 @@ public class RippleAccountsApiController
 
     private final RippleAccountRepository rippleAccountRepository;
 
+    private final RippleBalanceCache rippleBalanceCache;
     private final RippleAccountClient rippleAccountClient;
     private final RippleTransactionClient rippleTransactionClient;
 
@@ -101,6 +107,7 @@ public class RippleAccountsApiController
     public RippleAccountsApiController( final VaultOperations vaultOperations,
                                         final AccountRepository accountRepository,
                                         final RippleAccountRepository rippleAccountRepository,
+                                        final RippleBalanceCache rippleBalanceCache,
                                         final RippleAccountClient rippleAccountClient,
                                         final RippleTransactionClient rippleTransactionClient,
                                         final TotpService totpService,
@@ -109,6 +116,7 @@ public class RippleAccountsApiController
         this.vaultOperations = vaultOperations;
         this.accountRepository = accountRepository;
         this.rippleAccountRepository = rippleAccountRepository;
+        this.rippleBalanceCache = rippleBalanceCache;
         this.rippleAccountClient = rippleAccountClient;
         this.rippleTransactionClient = rippleTransactionClient;
         this.totpService = totpService;
@@ -180,6 +188,96 @@ public class RippleAccountsApiController
     }
 
 
+    @ApiOperation( value = "Get Ripple account balances",
+                   nickname = "getRippleAccountBalances",
+                   notes = "Returns the balances for the given account one page at a time, for accounts holding many trust lines. " +
+                           "The first page includes the XRP balance. Pass the returned cursor to fetch the next page; all pages " +
+                           "are read from the same validated ledger.",
+                   response = RippleAccountBalances.class,
+                   authorizations = {
+                         @Authorization( value = "OAuth2",
+                                         scopes = {
+                                               @AuthorizationScope( scope = "read:ripple_accounts",
+                                                                    description = "Ability to read Ripple accounts" )
+                                         } ),
+                         @Authorization( value = "ApiKey" )
+                   },
+                   tags = { SwaggerTags.RIPPLE_ACCOUNTS } )
+    @ApiResponses( value = {
+          @ApiResponse( code = 200,
+                        message = "A page of Ripple account balances",
+                        response = RippleAccountBalances.class ) } )
+    @RequestMapping( value = "/accounts/{cfAccountId}/ripple/balances",
+                     produces = { "application/json" },
+                     method = RequestMethod.GET )
+    public ResponseEntity<RippleAccountBalances> getRippleAccountBalances( final Authentication authentication,
+                                                                           @NotNull @PathVariable final Long cfAccountId,
+                                                                           @ApiParam( value = "The maximum number of trust line balances to return (10 to 400)." )
+                                                                           @RequestParam( value = "limit", required = false, defaultValue = "200" ) final Integer limit,
+                                                                           @ApiParam( value = "The cursor returned with the previous page." )
+                                                                           @RequestParam( value = "cursor", required = false ) final String cursor )
+    {
+        // Obtain the current tenant
+        final CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        final TenantDomain tenantDomain = userDetails.getTenantDomain();
+
+        // Obtain the ripple account db record
+        final Optional<RippleAccountDomain> rippleAccountDomain = rippleAccountRepository.findByCfAccountId( cfAccountId );
+
+        if ( !rippleAccountDomain.isPresent() || !rippleAccountDomain.get().getTenantDomain().equals( tenantDomain ) )
+        {
+            throw new NotFoundException( "Ripple account for cfAccountId " + cfAccountId + " not found." );
+        }
+
+        if ( limit < 10 || limit > 400 )
+        {
+            throw new BadRequestException( "limit must be between 10 and 400." );
+        }
+
+        // The cursor is '<ledger index>:<marker>' from the previous page
+        Long ledgerIndex = null;
+        String marker = null;
+        if ( null != cursor )
+        {
+            final int separator = cursor.indexOf( ':' );
+            try
+            {
+                ledgerIndex = Long.valueOf( cursor.substring( 0, separator ) );
+                marker = cursor.substring( separator + 1 );
+            }
+            catch ( final NumberFormatException | StringIndexOutOfBoundsException e )
+            {
+                throw new BadRequestException( "Invalid cursor '" + cursor + "'.", e );
+            }
+        }
+
+        final String rippleAddress = rippleAccountDomain.get().getRippleAddress();
+
+        final RippleAccountLinesPageDto page = rippleAccountClient.getAccountLinesPage( rippleAddress, ledgerIndex, marker, limit );
+
+        final RippleAccountBalances rippleAccountBalances = new RippleAccountBalances();
+        rippleAccountBalances.setAddress( rippleAddress );
+
+        // On the first page, read the XRP balance from the same ledger as the trust lines
+        if ( null == cursor )
+        {
+            final RippleAccountInfoDto accountInfo = rippleAccountClient.getAccountInfo( rippleAddress, page.getLedgerIndex() );
+            rippleAccountBalances.getBalances().add( toXrpBalance( accountInfo.getBalance() ) );
+        }
+
+        for ( final RippleAccountLineDto rippleAccountLineDto : page.getLines() )
+        {
+            rippleAccountBalances.getBalances().add( toBalance( rippleAccountLineDto ) );
+        }
+        if ( null != page.getMarker() )
+        {
+            rippleAccountBalances.setCursor( page.getLedgerIndex() + ":" + page.getMarker() );
+        }
+
+        return new ResponseEntity<>( rippleAccountBalances, HttpStatus.OK );
+    }
+
+
     @ApiOperation( value = "Create an account on the Ripple network",
                    nickname = "createRippleAccount",
                    notes = "Create a new Ripple account. The seed, private and public key are created from a high entropy " +
@@ -259,6 +357,9 @@ public class RippleAccountsApiController
             throw e;
         }
 
+        // Start following balance changes for the new address
+        rippleBalanceCache.watch( persistedVaultRippleDomain.getAddress() );
+
         // Populate the model for return to the client
         final RippleAccount createdAccount = new RippleAccount();
         createdAccount.setCfAccountId( cfAccountId );
@@ -433,36 +534,47 @@ public class RippleAccountsApiController
     {
         final List<RippleAccount.Balance> balances = new ArrayList<>();
 
+        // Balances are served from the stream-maintained snapshot when we have a current one
+        final RippleAccountSnapshot snapshot = rippleBalanceCache.getSnapshot( rippleAccount.getAddress() );
+
         // Get the XRP balance
-        final RippleAccountInfoDto rippleAccountInfoDto = rippleAccountClient.getAccountInfo( rippleAccount.getAddress() );
-        final Amount xrpAmount = rippleAccountInfoDto.getBalance();
-        final RippleAccount.Balance xrpBalance = new RippleAccount.Balance( "native",
-                                                                            "XRP",
-                                                                            null,
-                                                                            null,
-                                                                            xrpAmount.valueText() );
-        balances.add( xrpBalance );
+        balances.add( toXrpBalance( snapshot.getBalance() ) );
 
         // Get balances for other issued currencies
-        final List<RippleAccountLineDto> rippleAccountLineDtos = rippleAccountClient.getAccountLines( rippleAccount.getAddress() );
+        final List<RippleAccountLineDto> rippleAccountLineDtos = snapshot.getAccountLines();
         for ( final RippleAccountLineDto rippleAccountLineDto : rippleAccountLineDtos )
         {
-            final Amount amount = rippleAccountLineDto.getBalance();
-            final Currency currency = rippleAccountLineDto.getCurrency();
-            final Amount limit = rippleAccountLineDto.getLimit();
-
-            final RippleAccount.Balance currencyBalance = new RippleAccount.Balance( currency.toString(),
-                                                                                     currency.humanCode(),
-                                                                                     amount.issuerString(),
-                                                                                     limit.valueText(),
-                                                                                     amount.valueText() );
-            balances.add( currencyBalance );
+            balances.add( toBalance( rippleAccountLineDto ) );
         }
 
         return balances;
     }
 
 
+    private RippleAccount.Balance toXrpBalance( final Amount xrpAmount )
+    {
+        return new RippleAccount.Balance( "native",
+                                          "XRP",
+                                          null,
+                                          null,
+                                          xrpAmount.valueText() );
+    }
+
+
+    private RippleAccount.Balance toBalance( final RippleAccountLineDto rippleAccountLineDto )
+    {
+        final Amount amount = rippleAccountLineDto.getBalance();
+        final Currency currency = rippleAccountLineDto.getCurrency();
+        final Amount limit = rippleAccountLineDto.getLimit();
+
+        return new RippleAccount.Balance( currency.toString(),
+                                          currency.humanCode(),
+                                          amount.issuerString(),
+                                          limit.valueText(),
+                                          amount.valueText() );
+    }
+
+
     private String getRippleVaultPluginPath( final Long cfAccountId,
                                              final TenantDomain tenantDomain )
     {
@@ -54,8 +54,6 @@ import pcrypto.cf.ripple.api.model.RipplePaymentRequest;
 import pcrypto.cf.ripple.api.model.RippleTransaction;
 import pcrypto.cf.ripple.api.model.RippleTransactionStatus;
 import pcrypto.cf.ripple.api.model.RippleTxJsonRequest;
-import pcrypto.cf.ripple.client.RippleTransactionClient;
-import pcrypto.cf.ripple.client.dto.RippleTransactionResponseDto;
 import pcrypto.cf.ripple.domain.entity.RippleTransactionRequestApproverDomain;
 import pcrypto.cf.ripple.domain.entity.RippleTransactionRequestDomain;
 import pcrypto.cf.ripple.domain.entity.RippleTransactionResponseDomain;
@@ -83,7 +81,6 @@ public class RippleTransactionsApiController
     private final AccountService accountService;
     private final AccountConfigurationRepository accountConfigurationRepository;
     private final RippleTransactionService rippleTransactionService;
-    private final RippleTransactionClient rippleTransactionClient;
     private final TotpService totpService;
     private final AuthyPushApprovalService authyPushApprovalService;
     private final IdempotencyService idempotencyService;
@@ -94,7 +91,6 @@ public class RippleTransactionsApiController
                                             final AccountService accountService,
                                             final AccountConfigurationRepository accountConfigurationRepository,
                                             final RippleTransactionService rippleTransactionService,
-                                            final RippleTransactionClient rippleTransactionClient,
                                             final TotpService totpService,
                                             final AuthyPushApprovalService authyPushApprovalService,
                                             final IdempotencyService idempotencyService )
@@ -103,7 +99,6 @@ public class RippleTransactionsApiController
         this.accountService = accountService;
         this.accountConfigurationRepository = accountConfigurationRepository;
         this.rippleTransactionService = rippleTransactionService;
-        this.rippleTransactionClient = rippleTransactionClient;
         this.totpService = totpService;
         this.authyPushApprovalService = authyPushApprovalService;
         this.idempotencyService = idempotencyService;
@@ -307,24 +302,53 @@ public class RippleTransactionsApiController
         // Add in the response values if available
         transaction.setSignedTransaction( rippleTransactionResponseDomain.getSignedTransaction() );
 
-        // TODO: Get status from the db
-        //transaction.setStatus( rippleTransactionResponseDomain.getSuccess()  );
-
         final String transactionHash = rippleTransactionResponseDomain.getTransactionHash();
-        // If we have a transaction hash we know that the tx was submitted to the Ripple network. So we fetch the details from rippled here.
+        // If we have a transaction hash we know that the tx was submitted to the Ripple network. Its outcome is
+        // written by the transaction tracker once validated.
         if ( null != transactionHash )
         {
-            final RippleTransactionResponseDto rippleTransactionResponseDto = rippleTransactionClient.getTransaction( transactionHash );
-            transaction.setAccountSequence( new BigDecimal( rippleTransactionResponseDto.getSequence() ) );
-            transaction.setFee( rippleTransactionResponseDto.getFee() );
-            transaction.setLedger( Long.valueOf( rippleTransactionResponseDto.getLedger() ) );
-            transaction.setSourceAddress( rippleTransactionResponseDto.getSourceAddress() );
-            // transaction.setResultCodeMap( rippleTransactionResponseDto.getStatus());
+            final String status;
+            if ( Boolean.TRUE.equals( rippleTransactionResponseDomain.getValidated() ) )
+            {
+                // A 'tec' result is validated and claims the fee, but the payment itself did not happen
+                final boolean succeeded = Boolean.TRUE.equals( rippleTransactionResponseDomain.getSuccess() );
+                transaction.setStatus( succeeded ? RippleTransactionStatus.COMPLETE : RippleTransactionStatus.FAILED );
+                status = succeeded ? "validated" : "failed";
+            }
+            else if ( Boolean.TRUE.equals( rippleTransactionResponseDomain.getResubmitRequired() ) )
+            {
+                transaction.setStatus( RippleTransactionStatus.TIMEOUT );
+                status = "expired";
+            }
+            else if ( Boolean.FALSE.equals( rippleTransactionResponseDomain.getValidated() ) )
+            {
+                // No LastLedgerSequence, and not seen validated within the tracking window
+                transaction.setStatus( RippleTransactionStatus.TIMEOUT );
+                status = "unknown";
+            }
+            else if ( !Boolean.TRUE.equals( rippleTransactionResponseDomain.getSuccess() ) )
+            {
+                transaction.setStatus( RippleTransactionStatus.FAILED );
+                status = "rejected";
+            }
+            else
+            {
+                transaction.setStatus( RippleTransactionStatus.PENDING );
+                status = "pending";
+            }
+
+            if ( null != rippleTransactionResponseDomain.getAccountSequence() )
+            {
+                transaction.setAccountSequence( BigDecimal.valueOf( rippleTransactionResponseDomain.getAccountSequence() ) );
+            }
+            transaction.setFee( rippleTransactionResponseDomain.getFee() );
+            transaction.setLedger( rippleTransactionResponseDomain.getLedger() );
+            transaction.setSourceAddress( rippleTransactionResponseDomain.getSourceAddress() );
             transaction.setTransactionId( transactionHash );
 
             final HashMap<String, String> resultCodeMap = new HashMap<>();
-            resultCodeMap.put( "status", rippleTransactionResponseDto.getStatus() );
-            resultCodeMap.put( "error", rippleTransactionResponseDto.getError() );
+            resultCodeMap.put( "status", status );
+            resultCodeMap.put( "engine_result", rippleTransactionResponseDomain.getTransactionResult() );
             transaction.setResultCodeMap( resultCodeMap );
         }
 
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+@ApiModel
+public class RippleAccountBalances
+{
+
+    @ApiModelProperty( value = "The public address of this account on the Ripple network.",
+                       position = 10,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String address;
+
+    @ApiModelProperty( value = "A page of the balances held by this account. The XRP balance is only included in the first page.",
+                       position = 20,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private List<RippleAccount.Balance> balances = new ArrayList<>();
+
+    @ApiModelProperty( value = "An opaque cursor to pass in order to fetch the next page of balances. Absent on the last page.",
+                       position = 30,
+                       accessMode = ApiModelProperty.AccessMode.READ_ONLY,
+                       readOnly = true )
+    private String cursor;
+
+
+    public String getAddress()
+    {
+        return address;
+    }
+
+    public void setAddress( final String address )
+    {
+        this.address = address;
+    }
+
+    public List<RippleAccount.Balance> getBalances()
+    {
+        return balances;
+    }
+
+    public void setBalances( final List<RippleAccount.Balance> balances )
+    {
+        this.balances = balances;
+    }
+
+    public String getCursor()
+    {
+        return cursor;
+    }
+
+    public void setCursor( final String cursor )
+    {
+        this.cursor = cursor;
+    }
+}
@@ -27,7 +27,8 @@ public enum RippleTransactionStatus
 {
     PENDING( 1 ),
     COMPLETE( 2 ),
-    TIMEOUT( 3 );
+    TIMEOUT( 3 ),
+    FAILED( 4 );
 
 
     private int id;
@@ -80,6 +81,9 @@ public enum RippleTransactionStatus
             case 3:
                 return RippleTransactionStatus.TIMEOUT;
 
+            case 4:
+                return RippleTransactionStatus.FAILED;
+
             default:
                 throw new IllegalArgumentException( "RippleTransactionStatus id [" + id + "] not supported." );
         }
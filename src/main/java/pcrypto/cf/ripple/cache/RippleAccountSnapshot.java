@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.cache;
+
+import com.ripple.core.coretypes.Amount;
+import lombok.Getter;
+import pcrypto.cf.ripple.client.dto.RippleAccountLineDto;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Immutable point-in-time view of a Ripple account's XRP balance and trust lines.
+ */
+@Getter
+public class RippleAccountSnapshot
+{
+    private final Amount balance;
+    private final Integer sequence;
+
+    /**
+     * Null when a trust line has changed since the lines were last fetched.
+     */
+    private final List<RippleAccountLineDto> accountLines;
+
+    private final long refreshedAtMillis;
+
+
+    public RippleAccountSnapshot( final Amount balance,
+                                  final Integer sequence,
+                                  final List<RippleAccountLineDto> accountLines,
+                                  final long refreshedAtMillis )
+    {
+        this.balance = balance;
+        this.sequence = sequence;
+        this.accountLines = null == accountLines ? null : Collections.unmodifiableList( accountLines );
+        this.refreshedAtMillis = refreshedAtMillis;
+    }
+
+
+    public boolean hasAccountLines()
+    {
+        return null != accountLines;
+    }
+
+    public RippleAccountSnapshot withAccountRoot( final Amount newBalance,
+                                                  final Integer newSequence )
+    {
+        return new RippleAccountSnapshot( newBalance, newSequence, accountLines, System.currentTimeMillis() );
+    }
+
+    public RippleAccountSnapshot withoutAccountLines()
+    {
+        return new RippleAccountSnapshot( balance, sequence, null, refreshedAtMillis );
+    }
+}
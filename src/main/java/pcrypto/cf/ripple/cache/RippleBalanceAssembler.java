@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pcrypto.cf.ripple.client.RippleAccountClient;
+import pcrypto.cf.ripple.client.RippleAccountLinesIterator;
+import pcrypto.cf.ripple.client.RippledConnectionPool;
+import pcrypto.cf.ripple.client.dto.RippleAccountInfoDto;
+import pcrypto.cf.ripple.client.dto.RippleAccountLineDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Builds a full account snapshot from 'account_info' and 'account_lines' read at the same validated ledger. The
+ * first page of trust lines fixes the ledger, and 'account_info' is then issued against it while the remaining
+ * pages are fetched.
+ */
+@Component
+public class RippleBalanceAssembler
+{
+    private final RippleAccountClient rippleAccountClient;
+
+
+    @Autowired
+    public RippleBalanceAssembler( final RippleAccountClient rippleAccountClient )
+    {
+        this.rippleAccountClient = rippleAccountClient;
+    }
+
+
+    public RippleAccountSnapshot assemble( final String rippleAddress )
+    {
+        final RippleAccountLinesIterator accountLines = rippleAccountClient.iterateAccountLines( rippleAddress );
+
+        final List<RippleAccountLineDto> lines = new ArrayList<>();
+        if ( accountLines.hasNext() )
+        {
+            lines.add( accountLines.next() );
+        }
+
+        final CompletableFuture<RippleAccountInfoDto> accountInfo = rippleAccountClient.getAccountInfoAsync( rippleAddress, accountLines.getLedgerIndex() );
+        accountLines.forEachRemaining( lines::add );
+
+        final RippleAccountInfoDto info = RippledConnectionPool.await( accountInfo );
+        return new RippleAccountSnapshot( info.getBalance(),
+                                          info.getSequence(),
+                                          lines,
+                                          System.currentTimeMillis() );
+    }
+}
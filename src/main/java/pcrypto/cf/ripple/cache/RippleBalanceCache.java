@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.ripple.core.coretypes.Amount;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pcrypto.cf.ripple.client.RippleAccountClient;
+import pcrypto.cf.ripple.client.RippledStreamClient;
+import pcrypto.cf.ripple.client.RippledStreamListener;
+import pcrypto.cf.ripple.client.dto.RippleAccountLineDto;
+import pcrypto.cf.ripple.domain.entity.RippleAccountDomain;
+import pcrypto.cf.ripple.domain.repository.RippleAccountRepository;
+import pcrypto.cf.security.web.TenantContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * In-memory cache of Ripple account balances which is kept current by rippled's account subscription stream.
+ * <p>
+ * XRP balances are updated in place from the AccountRoot entries of each validated transaction. A change to a
+ * trust line only marks the account's lines as stale, and they are re-fetched on the next read. Snapshots older
+ * than the configured staleness bound, or any snapshot while the stream connection is down, are refreshed from
+ * rippled before being served.
+ */
+@Slf4j
+@Component
+public class RippleBalanceCache
+      implements RippledStreamListener
+{
+    private final RippleAccountClient rippleAccountClient;
+    private final RippleBalanceAssembler rippleBalanceAssembler;
+    private final RippledStreamClient rippledStreamClient;
+    private final RippleAccountRepository rippleAccountRepository;
+
+    private final Map<String, RippleAccountSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    // Every account that has been read; only updates to these are of interest
+    private final Set<String> tracked = ConcurrentHashMap.newKeySet();
+
+    // When each account was last touched by a stream update, so a read racing with an update doesn't overwrite it
+    private final Map<String, Long> invalidations = new ConcurrentHashMap<>();
+    private final AtomicLong invalidationCounter = new AtomicLong();
+    private volatile long disconnectedAt = -1L;
+
+    @Value( "${ripple.balance-cache.max-staleness-ms:60000}" )
+    private long maxStalenessMs;
+
+    @Value( "${cf.tenants:}" )
+    private String[] tenants;
+
+
+    @Autowired
+    public RippleBalanceCache( final RippleAccountClient rippleAccountClient,
+                               final RippleBalanceAssembler rippleBalanceAssembler,
+                               final RippledStreamClient rippledStreamClient,
+                               final RippleAccountRepository rippleAccountRepository )
+    {
+        this.rippleAccountClient = rippleAccountClient;
+        this.rippleBalanceAssembler = rippleBalanceAssembler;
+        this.rippledStreamClient = rippledStreamClient;
+        this.rippleAccountRepository = rippleAccountRepository;
+
+        rippledStreamClient.addListener( this );
+    }
+
+
+    /**
+     * Subscribe to every Ripple account we manage once the application is up.
+     */
+    @EventListener( ApplicationReadyEvent.class )
+    public void subscribeExistingAccounts()
+    {
+        final List<String> addresses = new ArrayList<>();
+        for ( final String tenant : tenants )
+        {
+            TenantContext.setCurrentTenant( tenant.toLowerCase() );
+            try
+            {
+                for ( final RippleAccountDomain rippleAccountDomain : rippleAccountRepository.findAll() )
+                {
+                    addresses.add( rippleAccountDomain.getRippleAddress() );
+                }
+            }
+            catch ( final Exception e )
+            {
+                log.error( "Unable to load Ripple accounts for tenant " + tenant, e );
+            }
+            finally
+            {
+                TenantContext.clear();
+            }
+        }
+
+        log.info( "Subscribing to {} Ripple accounts", addresses.size() );
+        rippledStreamClient.subscribeAccounts( addresses );
+    }
+
+
+    /**
+     * Start tracking an account (ex. one that was just created).
+     */
+    public void watch( final String rippleAddress )
+    {
+        rippledStreamClient.subscribeAccounts( Collections.singleton( rippleAddress ) );
+    }
+
+
+    /**
+     * Returns the balances for the account, going to rippled only if we have no usable snapshot.
+     */
+    public RippleAccountSnapshot getSnapshot( final String rippleAddress )
+    {
+        tracked.add( rippleAddress );
+        final long readAt = invalidationCounter.get();
+
+        final RippleAccountSnapshot snapshot = snapshots.get( rippleAddress );
+        final boolean usable = null != snapshot
+                               && rippledStreamClient.isConnected()
+                               && System.currentTimeMillis() - snapshot.getRefreshedAtMillis() <= maxStalenessMs;
+        if ( usable && snapshot.hasAccountLines() )
+        {
+            return snapshot;
+        }
+
+        final RippleAccountSnapshot refreshed;
+        if ( usable )
+        {
+            // Only the trust lines have changed
+            final List<RippleAccountLineDto> accountLines = new ArrayList<>();
+            rippleAccountClient.iterateAccountLines( rippleAddress ).forEachRemaining( accountLines::add );
+            refreshed = new RippleAccountSnapshot( snapshot.getBalance(), snapshot.getSequence(), accountLines, snapshot.getRefreshedAtMillis() );
+        }
+        else
+        {
+            refreshed = rippleBalanceAssembler.assemble( rippleAddress );
+        }
+
+        snapshots.put( rippleAddress, refreshed );
+
+        // An update arrived while we were reading, so what we read may already be out of date
+        if ( invalidations.getOrDefault( rippleAddress, -1L ) > readAt || disconnectedAt > readAt )
+        {
+            snapshots.remove( rippleAddress );
+        }
+
+        watch( rippleAddress );
+
+        return refreshed;
+    }
+
+
+    @Override
+    public void onStreamMessage( final JsonNode message )
+    {
+        if ( !"transaction".equals( message.path( "type" ).asText() ) || !message.path( "validated" ).asBoolean( false ) )
+        {
+            return;
+        }
+
+        for ( final JsonNode affectedNode : message.path( "meta" ).path( "AffectedNodes" ) )
+        {
+            final Iterator<Map.Entry<String, JsonNode>> fields = affectedNode.fields();
+            if ( !fields.hasNext() )
+            {
+                continue;
+            }
+            final Map.Entry<String, JsonNode> entry = fields.next();
+            final String nodeType = entry.getKey();
+            final JsonNode node = entry.getValue();
+            final JsonNode finalFields = node.has( "FinalFields" ) ? node.get( "FinalFields" ) : node.path( "NewFields" );
+
+            final String ledgerEntryType = node.path( "LedgerEntryType" ).asText();
+            if ( "AccountRoot".equals( ledgerEntryType ) )
+            {
+                final String account = finalFields.path( "Account" ).asText();
+                invalidate( account );
+                if ( "DeletedNode".equals( nodeType ) )
+                {
+                    snapshots.remove( account );
+                }
+                else if ( finalFields.has( "Balance" ) )
+                {
+                    final Amount balance = Amount.fromDropString( finalFields.get( "Balance" ).asText() );
+                    final int sequence = finalFields.path( "Sequence" ).asInt();
+                    snapshots.computeIfPresent( account, ( address, current ) -> current.withAccountRoot( balance, sequence ) );
+                }
+            }
+            else if ( "RippleState".equals( ledgerEntryType ) )
+            {
+                final String highAccount = finalFields.path( "HighLimit" ).path( "issuer" ).asText();
+                final String lowAccount = finalFields.path( "LowLimit" ).path( "issuer" ).asText();
+                invalidate( highAccount );
+                invalidate( lowAccount );
+                snapshots.computeIfPresent( highAccount, ( address, current ) -> current.withoutAccountLines() );
+                snapshots.computeIfPresent( lowAccount, ( address, current ) -> current.withoutAccountLines() );
+            }
+        }
+    }
+
+    @Override
+    public void onStreamDisconnected()
+    {
+        // We may miss updates while disconnected, so nothing we hold can be trusted
+        disconnectedAt = invalidationCounter.incrementAndGet();
+        snapshots.clear();
+    }
+
+
+    private void invalidate( final String rippleAddress )
+    {
+        if ( tracked.contains( rippleAddress ) )
+        {
+            invalidations.put( rippleAddress, invalidationCounter.incrementAndGet() );
+        }
+    }
+}
@@ -16,29 +16,21 @@
 
 package pcrypto.cf.ripple.client;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.BooleanNode;
-import com.fasterxml.jackson.databind.node.IntNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.ripple.core.coretypes.AccountID;
-import com.ripple.core.coretypes.Amount;
-import com.ripple.core.coretypes.Currency;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import pcrypto.cf.exception.BlockchainServiceException;
 import pcrypto.cf.ripple.client.dto.RippleAccountInfoDto;
-import pcrypto.cf.ripple.client.dto.RippleAccountLineDto;
+import pcrypto.cf.ripple.client.dto.RippleAccountLinesPageDto;
+import pcrypto.cf.security.web.TenantContext;
 
-import java.io.IOException;
-import java.math.BigDecimal;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 
 /**
@@ -49,18 +41,51 @@ import java.util.Optional;
 public class RippleAccountClient
 {
     private final ObjectMapper objectMapper;
+    private final RippledConnectionPool rippledConnectionPool;
+    private final Executor rippleClientExecutor;
+    private final RippledResponseDecoder rippledResponseDecoder;
 
-    @Value( "${ripple.wss-url}" )
-    private String rippleUrl;
+    @Value( "${ripple.account-lines-page-size:400}" )
+    private int accountLinesPageSize;
 
     @Autowired
-    public RippleAccountClient( final ObjectMapper objectMapper )
+    public RippleAccountClient( final ObjectMapper objectMapper,
+                                final RippledConnectionPool rippledConnectionPool,
+                                @Qualifier( "rippleClientExecutor" ) final Executor rippleClientExecutor )
     {
         this.objectMapper = objectMapper;
+        this.rippledConnectionPool = rippledConnectionPool;
+        this.rippleClientExecutor = rippleClientExecutor;
+        this.rippledResponseDecoder = new RippledResponseDecoder( objectMapper.getFactory() );
     }
 
 
     public RippleAccountInfoDto getAccountInfo( final String rippleAddress )
+    {
+        return RippledConnectionPool.await( getAccountInfoAsync( rippleAddress ) );
+    }
+
+    public RippleAccountInfoDto getAccountInfo( final String rippleAddress,
+                                                final Long ledgerIndex )
+    {
+        return RippledConnectionPool.await( getAccountInfoAsync( rippleAddress, ledgerIndex ) );
+    }
+
+
+    public CompletableFuture<RippleAccountInfoDto> getAccountInfoAsync( final String rippleAddress )
+    {
+        return getAccountInfoAsync( rippleAddress, null );
+    }
+
+
+    /**
+     * Fetch the account's XRP balance and sequence.
+     *
+     * @param rippleAddress the account
+     * @param ledgerIndex   the ledger to read from, or null to read from the current (open) ledger
+     */
+    public CompletableFuture<RippleAccountInfoDto> getAccountInfoAsync( final String rippleAddress,
+                                                                        final Long ledgerIndex )
     {
         // Get the XRP balance via 'account_info'
         final String command = "account_info";
@@ -72,37 +97,53 @@ public class RippleAccountClient
         payload.put( "command", command );
         payload.put( "account", rippleAddress );
         payload.put( "strict", true );
-        payload.put( "ledger_index", "current" );
-        payload.put( "queue", true );
-
-        try
+        if ( null == ledgerIndex )
         {
-            final BlockingWebSocketClient client = new BlockingWebSocketClient( new URI( rippleUrl ) );
-            final String response = client.sendBlocking( payload.toString() );
-
-            final JsonNode body = this.objectMapper.readTree( response );
+            payload.put( "ledger_index", "current" );
+            payload.put( "queue", true );
+        }
+        else
+        {
+            payload.put( "ledger_index", ledgerIndex );
+        }
 
-            final RippleAccountInfoDto rippleAccountInfoDto = new RippleAccountInfoDto();
-            rippleAccountInfoDto.setAccountID( accountID );
+        final String tenant = TenantContext.getCurrentTenant();
+        return rippledConnectionPool.sendAsync( payload )
+                                    .thenApplyAsync( TenantContext.withTenant( tenant, response -> rippledResponseDecoder.decodeAccountInfo( accountID, response ) ), rippleClientExecutor );
+    }
 
-            final JsonNode accountDataNode = body.get( "result" ).get( "account_data" );
 
-            final Amount balance = Amount.fromDropString( accountDataNode.get( "Balance" ).textValue() );
-            rippleAccountInfoDto.setBalance( balance );
+    /**
+     * Walk every trust line for the account from the latest validated ledger, following 'account_lines' pagination
+     * markers as the lines are consumed.
+     */
+    public RippleAccountLinesIterator iterateAccountLines( final String rippleAddress )
+    {
+        return new RippleAccountLinesIterator( this, rippleAddress, accountLinesPageSize );
+    }
 
-            final int sequence = accountDataNode.get( "Sequence" ).asInt();
-            rippleAccountInfoDto.setSequence( sequence );
 
-            return rippleAccountInfoDto;
-        }
-        catch ( final InterruptedException | IOException | URISyntaxException e )
-        {
-            throw new BlockchainServiceException( e.getMessage(), e );
-        }
+    public RippleAccountLinesPageDto getAccountLinesPage( final String rippleAddress,
+                                                          final Long ledgerIndex,
+                                                          final String marker,
+                                                          final int limit )
+    {
+        return RippledConnectionPool.await( getAccountLinesPageAsync( rippleAddress, ledgerIndex, marker, limit ) );
     }
 
 
-    public List<RippleAccountLineDto> getAccountLines( final String rippleAddress )
+    /**
+     * Fetch a single page of trust lines.
+     *
+     * @param rippleAddress the account
+     * @param ledgerIndex   the ledger to read from, or null to read from the latest validated ledger
+     * @param marker        the marker returned with the previous page, or null for the first page
+     * @param limit         the maximum number of lines to return
+     */
+    public CompletableFuture<RippleAccountLinesPageDto> getAccountLinesPageAsync( final String rippleAddress,
+                                                                                  final Long ledgerIndex,
+                                                                                  final String marker,
+                                                                                  final int limit )
     {
         // Get the balances via 'account_lines'
         final String command = "account_lines";
@@ -113,66 +154,44 @@ public class RippleAccountClient
 
         payload.put( "command", command );
         payload.put( "account", rippleAddress );
-        payload.put( "ledger_index", "current" );
+        payload.put( "limit", limit );
 
-        String response = null;
-        try
+        // Markers are only valid against the ledger the first page was read from
+        if ( null == ledgerIndex )
         {
-            final BlockingWebSocketClient client = new BlockingWebSocketClient( new URI( rippleUrl ) );
-            response = client.sendBlocking( payload.toString() );
-
-            final JsonNode body = this.objectMapper.readTree( response );
-
-            final List<RippleAccountLineDto> accountLines = new ArrayList<>();
-            final JsonNode jsonNode = body.get( "result" ).get( "lines" );
-            if ( jsonNode.isArray() )
-            {
-                for ( final JsonNode lineNode : jsonNode )
-                {
-                    final RippleAccountLineDto accountLine = buildAccountLine( accountID, lineNode );
-                    accountLines.add( accountLine );
-                }
-            }
-
-            return accountLines;
+            payload.put( "ledger_index", "validated" );
         }
-        catch ( final InterruptedException | IOException | URISyntaxException e )
+        else
         {
-            throw new BlockchainServiceException( e.getMessage(), e );
+            payload.put( "ledger_index", ledgerIndex );
+        }
+        if ( null != marker )
+        {
+            payload.put( "marker", marker );
         }
-    }
 
+        final String tenant = TenantContext.getCurrentTenant();
+        return rippledConnectionPool.sendAsync( payload )
+                                    .thenApplyAsync( TenantContext.withTenant( tenant, response -> rippledResponseDecoder.decodeAccountLinesPage( accountID, response ) ), rippleClientExecutor );
+    }
 
 
-    private RippleAccountLineDto buildAccountLine( final AccountID orientedTo,
-                                                   final JsonNode line )
+    /**
+     * Fetch the TicketSequence of every ticket the account holds in the latest validated ledger. An account can hold
+     * at most 250 tickets, so they always fit in one page.
+     */
+    public CompletableFuture<List<Long>> getTicketSequencesAsync( final String rippleAddress )
     {
-        final RippleAccountLineDto accountLine = new RippleAccountLineDto();
-
-        final AccountID peer = AccountID.fromAddress( line.get( "account" ).textValue() );
-
-        final BigDecimal balance = new BigDecimal( line.get( "balance" ).textValue() );
-        final BigDecimal limit = new BigDecimal( line.get( "limit" ).textValue() );
-        final BigDecimal limit_peer = new BigDecimal( line.get( "limit_peer" ).textValue() );
-
-        accountLine.currency = Currency.fromString( line.get( "currency" ).textValue() );
-        accountLine.balance = new Amount( balance, accountLine.currency, peer );
-
-        accountLine.limit = new Amount( limit, accountLine.currency, peer );
-        accountLine.limit_peer = new Amount( limit_peer, accountLine.currency, orientedTo );
-
-        accountLine.freeze = Optional.ofNullable( line.get( "freeze" ) ).orElse( BooleanNode.FALSE ).asBoolean( false );
-        accountLine.freeze_peer = Optional.ofNullable( line.get( "freeze_peer" ) ).orElse( BooleanNode.FALSE ).asBoolean( false );
-
-        accountLine.authorized = Optional.ofNullable( line.get( "authorized" ) ).orElse( BooleanNode.FALSE ).asBoolean( false );
-        accountLine.authorized_peer = Optional.ofNullable( line.get( "authorized_peer" ) ).orElse( BooleanNode.FALSE ).asBoolean( false );
-
-        accountLine.no_ripple = Optional.ofNullable( line.get( "no_ripple" ) ).orElse( BooleanNode.FALSE ).asBoolean();
-        accountLine.no_ripple_peer = Optional.ofNullable( line.get( "no_ripple_peer" ) ).orElse( BooleanNode.FALSE ).asBoolean();
+        final ObjectNode payload = this.objectMapper.createObjectNode();
 
-        accountLine.quality_in = Optional.ofNullable( line.get( "quality_in" ) ).orElse( IntNode.valueOf( 0 ) ).asInt( 0 );
-        accountLine.quality_out = Optional.ofNullable( line.get( "quality_out" ) ).orElse( IntNode.valueOf( 0 ) ).asInt( 0 );
+        payload.put( "command", "account_objects" );
+        payload.put( "account", rippleAddress );
+        payload.put( "type", "ticket" );
+        payload.put( "ledger_index", "validated" );
+        payload.put( "limit", 400 );
 
-        return accountLine;
+        final String tenant = TenantContext.getCurrentTenant();
+        return rippledConnectionPool.sendAsync( payload )
+                                    .thenApplyAsync( TenantContext.withTenant( tenant, rippledResponseDecoder::decodeTicketSequences ), rippleClientExecutor );
     }
 }
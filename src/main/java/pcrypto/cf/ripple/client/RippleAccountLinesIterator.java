@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.client;
+
+import pcrypto.cf.ripple.client.dto.RippleAccountLineDto;
+import pcrypto.cf.ripple.client.dto.RippleAccountLinesPageDto;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Lazily walks all of an account's trust lines, fetching the next 'account_lines' page from rippled only when
+ * the current one has been consumed. All pages are read from the ledger of the first page.
+ */
+public class RippleAccountLinesIterator
+      implements Iterator<RippleAccountLineDto>
+{
+    private final RippleAccountClient rippleAccountClient;
+    private final String rippleAddress;
+    private final int pageSize;
+
+    private Iterator<RippleAccountLineDto> currentPage = Collections.emptyIterator();
+    private Long ledgerIndex;
+    private String marker;
+    private boolean lastPageFetched = false;
+
+
+    RippleAccountLinesIterator( final RippleAccountClient rippleAccountClient,
+                                final String rippleAddress,
+                                final int pageSize )
+    {
+        this.rippleAccountClient = rippleAccountClient;
+        this.rippleAddress = rippleAddress;
+        this.pageSize = pageSize;
+    }
+
+
+    /**
+     * The ledger every page is read from, or null until the first page has been fetched.
+     */
+    public Long getLedgerIndex()
+    {
+        return ledgerIndex;
+    }
+
+
+    @Override
+    public boolean hasNext()
+    {
+        while ( !currentPage.hasNext() && !lastPageFetched )
+        {
+            final RippleAccountLinesPageDto page = rippleAccountClient.getAccountLinesPage( rippleAddress, ledgerIndex, marker, pageSize );
+            currentPage = page.getLines().iterator();
+            ledgerIndex = page.getLedgerIndex();
+            marker = page.getMarker();
+            lastPageFetched = null == marker;
+        }
+        return currentPage.hasNext();
+    }
+
+    @Override
+    public RippleAccountLineDto next()
+    {
+        if ( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+        return currentPage.next();
+    }
+}
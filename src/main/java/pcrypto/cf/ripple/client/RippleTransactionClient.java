@@ -16,25 +16,16 @@
 
 package pcrypto.cf.ripple.client;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
-import com.ripple.client.enums.RPCErr;
-import com.ripple.core.serialized.enums.EngineResult;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import pcrypto.cf.exception.BlockchainServiceException;
+import pcrypto.cf.ripple.client.dto.RippleFeeDto;
 import pcrypto.cf.ripple.client.dto.RippleSubmitResponseDto;
 import pcrypto.cf.ripple.client.dto.RippleTransactionResponseDto;
 
-import java.io.IOException;
-import java.math.BigDecimal;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -45,15 +36,16 @@ import java.util.Optional;
 public class RippleTransactionClient
 {
     private final ObjectMapper objectMapper;
-
-    @Value( "${ripple.wss-url}" )
-    private String rippleUrl;
-
+    private final RippledConnectionPool rippledConnectionPool;
+    private final RippledResponseDecoder rippledResponseDecoder;
 
     @Autowired
-    public RippleTransactionClient( final ObjectMapper objectMapper )
+    public RippleTransactionClient( final ObjectMapper objectMapper,
+                                    final RippledConnectionPool rippledConnectionPool )
     {
         this.objectMapper = objectMapper;
+        this.rippledConnectionPool = rippledConnectionPool;
+        this.rippledResponseDecoder = new RippledResponseDecoder( objectMapper.getFactory() );
     }
 
 
@@ -66,59 +58,21 @@ public class RippleTransactionClient
         payload.put( "command", command );
         payload.put( "tx_blob", signedTx );
 
-        try
-        {
-            final BlockingWebSocketClient client = new BlockingWebSocketClient( new URI( rippleUrl ) );
-            final String response = client.sendBlocking( payload.toString() );
-
-            final JsonNode body = this.objectMapper.readTree( response );
-
-            final RippleSubmitResponseDto rippleSubmitResponseDto = new RippleSubmitResponseDto();
-
-            final String status = body.get( "status" ).asText();
-            rippleSubmitResponseDto.setStatus( status );
-            final boolean succeeded = status.equals( "success" );
-            rippleSubmitResponseDto.setSucceeded( succeeded );
-
-            if ( succeeded )
-            {
-                final JsonNode resultNode = body.get( "result" );
-
-                final EngineResult engineResult = EngineResult.valueOf( resultNode.get( "engine_result" ).asText() );
-                rippleSubmitResponseDto.setEngineResult( engineResult );
-
-                final JsonNode txJson = resultNode.get( "tx_json" );
-
-                final String fee = txJson.get( "Fee" ).asText();
-                rippleSubmitResponseDto.setFee( new BigDecimal( fee ) );
-
-                final String sequence = txJson.get( "Sequence" ).asText();
-                rippleSubmitResponseDto.setSequence( sequence );
-
-                final String hash = txJson.get( "hash" ).asText();
-                rippleSubmitResponseDto.setHash( hash );
-            }
-            else
-            {
-                final String error = body.get( "error" ).asText();
-                rippleSubmitResponseDto.setError( error );
-                try
-                {
-                    final RPCErr rpcErr = RPCErr.valueOf( error );
-                    rippleSubmitResponseDto.setRpcerr( rpcErr );
-                }
-                catch ( final Exception e )
-                {
-                    rippleSubmitResponseDto.setRpcerr( RPCErr.unknownError );
-                }
-            }
-
-            return rippleSubmitResponseDto;
-        }
-        catch ( final InterruptedException | IOException | URISyntaxException e )
-        {
-            throw new BlockchainServiceException( e.getMessage(), e );
-        }
+        final String response = rippledConnectionPool.submit( payload );
+
+        return rippledResponseDecoder.decodeSubmit( response );
+    }
+
+    /**
+     * Fetch the current transaction cost and queue levels via 'fee'.
+     */
+    public CompletableFuture<RippleFeeDto> getFeeAsync()
+    {
+        final ObjectNode payload = this.objectMapper.createObjectNode();
+        payload.put( "command", "fee" );
+
+        return rippledConnectionPool.sendAsync( payload )
+                                    .thenApply( rippledResponseDecoder::decodeFee );
     }
 
     public RippleTransactionResponseDto getTransaction( final String transactionHash )
@@ -130,59 +84,8 @@ public class RippleTransactionClient
         payload.put( "command", command );
         payload.put( "transaction", transactionHash );
 
-        try
-        {
-            final BlockingWebSocketClient client = new BlockingWebSocketClient( new URI( rippleUrl ) );
-            final String response = client.sendBlocking( payload.toString() );
-
-            final JsonNode body = this.objectMapper.readTree( response );
-
-            final RippleTransactionResponseDto rippleTransactionResponseDto = new RippleTransactionResponseDto();
-
-            final String status = body.get( "status" ).asText();
-            rippleTransactionResponseDto.setStatus( status );
-            final boolean succeeded = status.equals( "success" );
-            rippleTransactionResponseDto.setSucceeded( succeeded );
-
-            if ( succeeded )
-            {
-                final JsonNode resultNode = body.get( "result" );
-
-                final String hash = resultNode.get( "hash" ).asText();
-                rippleTransactionResponseDto.setHash( hash );
-
-                final String sequence = resultNode.get( "Sequence" ).asText();
-                rippleTransactionResponseDto.setSequence( sequence );
-
-                final String ledgerIndex = Optional.ofNullable( resultNode.get( "ledger_index" ) ).orElse( TextNode.valueOf( "0" ) ).asText();
-                rippleTransactionResponseDto.setLedger( ledgerIndex );
-
-                final int fee = resultNode.get( "Fee" ).asInt();
-                rippleTransactionResponseDto.setFee( new BigDecimal( fee ) );
-
-                final String sourceAddress = resultNode.get( "Account" ).asText();
-                rippleTransactionResponseDto.setSourceAddress( sourceAddress );
-            }
-            else
-            {
-                final String error = body.get( "error" ).asText();
-                rippleTransactionResponseDto.setError( error );
-                try
-                {
-                    final RPCErr rpcErr = RPCErr.valueOf( error );
-                    rippleTransactionResponseDto.setRpcerr( rpcErr );
-                }
-                catch ( final Exception e )
-                {
-                    rippleTransactionResponseDto.setRpcerr( RPCErr.unknownError );
-                }
-            }
-
-            return rippleTransactionResponseDto;
-        }
-        catch ( final InterruptedException | IOException | URISyntaxException e )
-        {
-            throw new BlockchainServiceException( e.getMessage(), e );
-        }
+        final String response = rippledConnectionPool.send( payload );
+
+        return rippledResponseDecoder.decodeTransaction( response );
     }
 }
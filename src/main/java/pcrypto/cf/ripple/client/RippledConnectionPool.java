@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pcrypto.cf.config.concurrent.Futures;
+import pcrypto.cf.exception.BlockchainServiceException;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Persistent websocket connections to one or more rippled servers. Many commands can be in flight on each
+ * connection at once, and connections that have dropped are re-established the next time they are needed.
+ * <p>
+ * Reads go to the healthy node with the best latency/error score, and are retried on the next best node if they
+ * fail. Submits go to the node with the most recent validated ledger and are never re-sent once they have been
+ * written to a connection. Nodes are polled with 'server_info' to keep their validated ledger current and to bring
+ * failed nodes back into rotation.
+ */
+@Slf4j
+@Component
+public class RippledConnectionPool
+{
+    private final ObjectMapper objectMapper;
+
+    private final AtomicLong requestIds = new AtomicLong();
+
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "rippled-request-timeout" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    // Connecting blocks, so it never runs on the timeout scheduler or a websocket thread (where failovers are started)
+    private final ExecutorService connectExecutor = Executors.newCachedThreadPool( runnable -> {
+        final Thread thread = new Thread( runnable, "rippled-connect" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    private final ScheduledExecutorService healthCheckScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "rippled-health-check" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    // Comma separated list of rippled servers
+    @Value( "${ripple.wss-url}" )
+    private String[] rippleUrls;
+
+    @Value( "${ripple.connection-pool-size:2}" )
+    private int poolSize;
+
+    @Value( "${ripple.request-timeout-ms:20000}" )
+    private long requestTimeoutMs;
+
+    @Value( "${ripple.routing.max-attempts:2}" )
+    private int maxAttempts;
+
+    @Value( "${ripple.routing.node-retry-delay-ms:5000}" )
+    private long nodeRetryDelayMs;
+
+    @Value( "${ripple.routing.health-check-interval-ms:10000}" )
+    private long healthCheckIntervalMs;
+
+    private volatile List<RippledNode> nodes;
+
+
+    @Autowired
+    public RippledConnectionPool( final ObjectMapper objectMapper )
+    {
+        this.objectMapper = objectMapper;
+    }
+
+
+    /**
+     * Send a read-only command to rippled. The command is tagged with a unique 'id' before being sent.
+     *
+     * @param payload the json command
+     * @return a future which completes with the raw json response, or exceptionally once every attempt has failed
+     */
+    public CompletableFuture<String> sendAsync( final ObjectNode payload )
+    {
+        final List<RippledNode> candidates = sortNodes( getNodes(), false );
+
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        sendWithFailover( payload, candidates.subList( 0, Math.min( Math.max( 1, this.maxAttempts ), candidates.size() ) ), 0, result );
+        return result;
+    }
+
+
+    /**
+     * Send a read-only command to rippled and wait for the response.
+     *
+     * @param payload the json command
+     * @return the raw json response
+     */
+    public String send( final ObjectNode payload )
+    {
+        return await( sendAsync( payload ) );
+    }
+
+
+    /**
+     * Send a transaction submission to the node with the most recent validated ledger. The command is only ever
+     * written to one connection, so a timeout never results in a duplicate submission.
+     *
+     * @param payload the json command
+     * @return the raw json response
+     */
+    public String submit( final ObjectNode payload )
+    {
+        final List<RippledNode> candidates = sortNodes( getNodes(), true );
+
+        BlockchainServiceException lastException = null;
+        for ( final RippledNode node : candidates )
+        {
+            final RippledWebSocketClient connection;
+            try
+            {
+                connection = node.nextOpenConnection();
+            }
+            catch ( final BlockchainServiceException e )
+            {
+                log.warn( "Unable to submit via rippled node {}: {}", node.getUrl(), e.getMessage() );
+                lastException = e;
+                continue;
+            }
+            return await( sendToConnection( node, connection, payload ) );
+        }
+        throw new RippledNotSentException( "Unable to open a connection to any rippled node.", lastException );
+    }
+
+
+    /**
+     * Wait for a rippled future, unwrapping any failure into a {@link BlockchainServiceException}. Every request
+     * already times out after 'ripple.request-timeout-ms'.
+     */
+    public static <T> T await( final CompletableFuture<T> future )
+    {
+        return Futures.await( future );
+    }
+
+
+    @PreDestroy
+    public void close()
+    {
+        this.timeoutScheduler.shutdownNow();
+        this.healthCheckScheduler.shutdownNow();
+        this.connectExecutor.shutdownNow();
+
+        final List<RippledNode> current = this.nodes;
+        if ( null != current )
+        {
+            current.forEach( RippledNode::close );
+        }
+    }
+
+
+    List<RippledNode> getNodes()
+    {
+        List<RippledNode> current = this.nodes;
+        if ( null == current )
+        {
+            synchronized ( this )
+            {
+                if ( null == this.nodes )
+                {
+                    final List<RippledNode> created = new ArrayList<>();
+                    for ( final String rippleUrl : this.rippleUrls )
+                    {
+                        created.add( new RippledNode( rippleUrl.trim(), this.objectMapper.getFactory(), this.poolSize, this.nodeRetryDelayMs ) );
+                    }
+                    this.nodes = Collections.unmodifiableList( created );
+
+                    if ( created.size() > 1 )
+                    {
+                        this.healthCheckScheduler.scheduleWithFixedDelay( this::checkNodes, 0, this.healthCheckIntervalMs, TimeUnit.MILLISECONDS );
+                    }
+                }
+                current = this.nodes;
+            }
+        }
+        return current;
+    }
+
+
+    private void sendWithFailover( final ObjectNode payload,
+                                   final List<RippledNode> candidates,
+                                   final int attempt,
+                                   final CompletableFuture<String> result )
+    {
+        final RippledNode node = candidates.get( attempt );
+        sendToNode( node, payload ).whenComplete( ( response, throwable ) -> {
+            if ( null == throwable )
+            {
+                result.complete( response );
+            }
+            else if ( attempt + 1 < candidates.size() )
+            {
+                log.warn( "rippled node {} failed ({}), retrying on {}", node.getUrl(), throwable.getMessage(), candidates.get( attempt + 1 ).getUrl() );
+                sendWithFailover( payload, candidates, attempt + 1, result );
+            }
+            else
+            {
+                result.completeExceptionally( throwable );
+            }
+        } );
+    }
+
+    private CompletableFuture<String> sendToNode( final RippledNode node,
+                                                  final ObjectNode payload )
+    {
+        final RippledWebSocketClient connection = node.nextConnectionIfOpen();
+        if ( null != connection )
+        {
+            return sendToConnection( node, connection, payload );
+        }
+        return CompletableFuture.supplyAsync( node::nextOpenConnection, this.connectExecutor )
+                                .thenCompose( opened -> sendToConnection( node, opened, payload ) );
+    }
+
+    private CompletableFuture<String> sendToConnection( final RippledNode node,
+                                                        final RippledWebSocketClient connection,
+                                                        final ObjectNode payload )
+    {
+        final long id = this.requestIds.incrementAndGet();
+        payload.put( "id", id );
+
+        final long start = System.currentTimeMillis();
+        final CompletableFuture<String> future = connection.send( id, payload.toString() );
+
+        // Fail the request if rippled doesn't answer in time
+        final ScheduledFuture<?> timeout = this.timeoutScheduler.schedule(
+              () -> future.completeExceptionally( new TimeoutException( "No response from rippled " + node.getUrl() + " for request " + id + " after " + this.requestTimeoutMs + "ms" ) ),
+              this.requestTimeoutMs,
+              TimeUnit.MILLISECONDS );
+        future.whenComplete( ( response, throwable ) -> {
+            timeout.cancel( false );
+            if ( null == throwable )
+            {
+                node.recordSuccess( System.currentTimeMillis() - start );
+            }
+            else
+            {
+                node.recordFailure( System.currentTimeMillis() - start );
+            }
+        } );
+
+        return future;
+    }
+
+    /**
+     * Poll every node for its latest validated ledger. This also measures nodes that are out of rotation, so that
+     * they come back once they recover.
+     */
+    private void checkNodes()
+    {
+        for ( final RippledNode node : this.nodes )
+        {
+            final ObjectNode payload = this.objectMapper.createObjectNode();
+            payload.put( "command", "server_info" );
+            try
+            {
+                final String response = await( sendToNode( node, payload ) );
+                final JsonNode validatedLedger = this.objectMapper.readTree( response ).path( "result" ).path( "info" ).path( "validated_ledger" );
+                node.setValidatedLedgerIndex( validatedLedger.path( "seq" ).asLong( 0 ) );
+            }
+            catch ( final BlockchainServiceException | IOException e )
+            {
+                log.debug( "rippled health check of {} failed: {}", node.getUrl(), e.getMessage() );
+            }
+        }
+    }
+
+
+    /**
+     * Order nodes healthy first, then (for submits) by most recent validated ledger, then by score. These change as
+     * other requests complete, so they are read once per node before sorting, which keeps the comparison consistent.
+     */
+    private static List<RippledNode> sortNodes( final List<RippledNode> nodes,
+                                                final boolean byValidatedLedger )
+    {
+        final List<NodeSnapshot> snapshots = new ArrayList<>( nodes.size() );
+        for ( final RippledNode node : nodes )
+        {
+            snapshots.add( new NodeSnapshot( node ) );
+        }
+        Comparator<NodeSnapshot> comparator = Comparator.comparing( ( NodeSnapshot snapshot ) -> !snapshot.healthy );
+        if ( byValidatedLedger )
+        {
+            comparator = comparator.thenComparing( Comparator.comparingLong( ( NodeSnapshot snapshot ) -> snapshot.validatedLedgerIndex ).reversed() );
+        }
+        snapshots.sort( comparator.thenComparingDouble( snapshot -> snapshot.score ) );
+
+        final List<RippledNode> sorted = new ArrayList<>( snapshots.size() );
+        for ( final NodeSnapshot snapshot : snapshots )
+        {
+            sorted.add( snapshot.node );
+        }
+        return sorted;
+    }
+
+
+    private static final class NodeSnapshot
+    {
+        private final RippledNode node;
+        private final boolean healthy;
+        private final long validatedLedgerIndex;
+        private final double score;
+
+        private NodeSnapshot( final RippledNode node )
+        {
+            this.node = node;
+            this.healthy = node.isHealthy();
+            this.validatedLedgerIndex = node.getValidatedLedgerIndex();
+            this.score = node.getScore();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import lombok.extern.slf4j.Slf4j;
+import pcrypto.cf.exception.BlockchainServiceException;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * One rippled server along with its connections and the health statistics used to route commands to it.
+ * Latency and error rate are tracked as exponentially weighted moving averages so that recent behaviour dominates.
+ */
+@Slf4j
+class RippledNode
+{
+    private static final double ALPHA = 0.3;
+
+    // Consecutive failures after which the node is taken out of rotation until the retry delay has passed
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    private final String url;
+    private final JsonFactory jsonFactory;
+    private final long retryDelayMs;
+    private final RippledWebSocketClient[] connections;
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    private double latencyEwmaMs = 0;
+    private double errorRateEwma = 0;
+    private int consecutiveFailures = 0;
+    private volatile long downUntilMillis = 0;
+    private volatile long validatedLedgerIndex = 0;
+
+
+    RippledNode( final String url,
+                 final JsonFactory jsonFactory,
+                 final int poolSize,
+                 final long retryDelayMs )
+    {
+        this.url = url;
+        this.jsonFactory = jsonFactory;
+        this.retryDelayMs = retryDelayMs;
+        this.connections = new RippledWebSocketClient[Math.max( 1, poolSize )];
+    }
+
+
+    String getUrl()
+    {
+        return url;
+    }
+
+    long getValidatedLedgerIndex()
+    {
+        return validatedLedgerIndex;
+    }
+
+    void setValidatedLedgerIndex( final long validatedLedgerIndex )
+    {
+        this.validatedLedgerIndex = validatedLedgerIndex;
+    }
+
+    boolean isHealthy()
+    {
+        return System.currentTimeMillis() >= downUntilMillis;
+    }
+
+    /**
+     * Lower is better. Untried nodes score zero so that they get sampled.
+     */
+    synchronized double getScore()
+    {
+        return latencyEwmaMs * ( 1 + 10 * errorRateEwma );
+    }
+
+    synchronized void recordSuccess( final long latencyMs )
+    {
+        latencyEwmaMs = ALPHA * latencyMs + ( 1 - ALPHA ) * latencyEwmaMs;
+        errorRateEwma = ( 1 - ALPHA ) * errorRateEwma;
+        consecutiveFailures = 0;
+        downUntilMillis = 0;
+    }
+
+    synchronized void recordFailure( final long latencyMs )
+    {
+        latencyEwmaMs = ALPHA * latencyMs + ( 1 - ALPHA ) * latencyEwmaMs;
+        errorRateEwma = ALPHA + ( 1 - ALPHA ) * errorRateEwma;
+        consecutiveFailures++;
+        if ( consecutiveFailures >= MAX_CONSECUTIVE_FAILURES )
+        {
+            markDown();
+        }
+    }
+
+    synchronized void markDown()
+    {
+        if ( isHealthy() )
+        {
+            log.warn( "Taking rippled node {} out of rotation for {}ms", url, retryDelayMs );
+        }
+        downUntilMillis = System.currentTimeMillis() + retryDelayMs;
+    }
+
+
+    /**
+     * Returns the next connection in round-robin order if it is open, or null if it would have to be (re-)connected.
+     */
+    RippledWebSocketClient nextConnectionIfOpen()
+    {
+        final int slot = Math.floorMod( this.nextConnection.getAndIncrement(), connections.length );
+        final RippledWebSocketClient connection = connections[slot];
+        return null != connection && connection.isOpen() ? connection : null;
+    }
+
+    /**
+     * Returns an open connection to this node, round-robin across its connections, (re-)connecting if needed. This
+     * blocks while connecting.
+     */
+    RippledWebSocketClient nextOpenConnection()
+    {
+        final int slot = Math.floorMod( this.nextConnection.getAndIncrement(), connections.length );
+        final RippledWebSocketClient connection = connections[slot];
+        if ( null != connection && connection.isOpen() )
+        {
+            return connection;
+        }
+
+        synchronized ( connections )
+        {
+            // Another thread may have already reconnected this slot
+            if ( null != connections[slot] && connections[slot].isOpen() )
+            {
+                return connections[slot];
+            }
+            try
+            {
+                connections[slot] = connect();
+            }
+            catch ( final BlockchainServiceException e )
+            {
+                markDown();
+                throw e;
+            }
+            return connections[slot];
+        }
+    }
+
+    void close()
+    {
+        for ( final RippledWebSocketClient connection : connections )
+        {
+            if ( null != connection )
+            {
+                connection.close();
+            }
+        }
+    }
+
+
+    private RippledWebSocketClient connect()
+    {
+        try
+        {
+            final RippledWebSocketClient client = new RippledWebSocketClient( new URI( this.url ), this.jsonFactory );
+            if ( !client.connectBlocking() )
+            {
+                throw new BlockchainServiceException( "Unable to connect to rippled at " + this.url, null );
+            }
+            log.info( "Opened rippled connection to {}", this.url );
+            return client;
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+        catch ( final URISyntaxException e )
+        {
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+    }
+}
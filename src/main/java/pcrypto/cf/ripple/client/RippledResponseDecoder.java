@@ -0,0 +1,643 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.ripple.client.enums.RPCErr;
+import com.ripple.core.coretypes.AccountID;
+import com.ripple.core.coretypes.Amount;
+import com.ripple.core.coretypes.Currency;
+import com.ripple.core.serialized.enums.EngineResult;
+import pcrypto.cf.exception.BlockchainServiceException;
+import pcrypto.cf.ripple.client.dto.RippleAccountInfoDto;
+import pcrypto.cf.ripple.client.dto.RippleAccountLineDto;
+import pcrypto.cf.ripple.client.dto.RippleAccountLinesPageDto;
+import pcrypto.cf.ripple.client.dto.RippleFeeDto;
+import pcrypto.cf.ripple.client.dto.RippleSubmitResponseDto;
+import pcrypto.cf.ripple.client.dto.RippleTransactionResponseDto;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Decodes rippled responses straight from parser tokens into our DTOs, without building a JsonNode tree.
+ * Only the fields we use are read; everything else (ex. transaction metadata) is skipped over.
+ * <p>
+ * rippled does not guarantee field order, so 'status' may arrive after 'result'. Each decoder collects what it
+ * finds and only interprets it once the whole message has been read.
+ */
+public class RippledResponseDecoder
+{
+    private final JsonFactory jsonFactory;
+
+
+    public RippledResponseDecoder( final JsonFactory jsonFactory )
+    {
+        this.jsonFactory = jsonFactory;
+    }
+
+
+    /**
+     * Decode an 'account_info' response.
+     */
+    public RippleAccountInfoDto decodeAccountInfo( final AccountID accountID,
+                                                   final String response )
+    {
+        final RippleAccountInfoDto rippleAccountInfoDto = new RippleAccountInfoDto();
+        rippleAccountInfoDto.setAccountID( accountID );
+
+        String error = null;
+        try ( final JsonParser parser = this.jsonFactory.createParser( response ) )
+        {
+            expectStartObject( parser );
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ( "result".equals( fieldName ) )
+                {
+                    while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                    {
+                        final String resultField = parser.getCurrentName();
+                        parser.nextToken();
+                        if ( "account_data".equals( resultField ) )
+                        {
+                            decodeAccountData( parser, rippleAccountInfoDto );
+                        }
+                        else
+                        {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+                else if ( "error".equals( fieldName ) )
+                {
+                    error = parser.getText();
+                }
+                else
+                {
+                    parser.skipChildren();
+                }
+            }
+        }
+        catch ( final IOException e )
+        {
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+
+        if ( null == rippleAccountInfoDto.getBalance() )
+        {
+            throw new BlockchainServiceException( "rippled account_info failed: " + error, null );
+        }
+        return rippleAccountInfoDto;
+    }
+
+
+    /**
+     * Decode one page of an 'account_lines' response.
+     *
+     * @param orientedTo the account whose lines were requested
+     */
+    public RippleAccountLinesPageDto decodeAccountLinesPage( final AccountID orientedTo,
+                                                             final String response )
+    {
+        final RippleAccountLinesPageDto page = new RippleAccountLinesPageDto();
+        final List<RippleAccountLineDto> accountLines = new ArrayList<>();
+        page.setLines( accountLines );
+
+        String error = null;
+        boolean linesFound = false;
+        try ( final JsonParser parser = this.jsonFactory.createParser( response ) )
+        {
+            expectStartObject( parser );
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ( "result".equals( fieldName ) )
+                {
+                    while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                    {
+                        final String resultField = parser.getCurrentName();
+                        final JsonToken valueToken = parser.nextToken();
+                        if ( "lines".equals( resultField ) && valueToken == JsonToken.START_ARRAY )
+                        {
+                            linesFound = true;
+                            while ( parser.nextToken() == JsonToken.START_OBJECT )
+                            {
+                                accountLines.add( decodeAccountLine( parser, orientedTo ) );
+                            }
+                        }
+                        else if ( "ledger_index".equals( resultField ) )
+                        {
+                            page.setLedgerIndex( parser.getValueAsLong() );
+                        }
+                        else if ( "marker".equals( resultField ) && valueToken != JsonToken.VALUE_NULL )
+                        {
+                            page.setMarker( parser.getText() );
+                        }
+                        else
+                        {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+                else if ( "error".equals( fieldName ) )
+                {
+                    error = parser.getText();
+                }
+                else
+                {
+                    parser.skipChildren();
+                }
+            }
+        }
+        catch ( final IOException e )
+        {
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+
+        if ( !linesFound )
+        {
+            throw new BlockchainServiceException( "rippled account_lines failed: " + error, null );
+        }
+        return page;
+    }
+
+
+    /**
+     * Decode a 'submit' response.
+     */
+    public RippleSubmitResponseDto decodeSubmit( final String response )
+    {
+        final RippleSubmitResponseDto rippleSubmitResponseDto = new RippleSubmitResponseDto();
+
+        try ( final JsonParser parser = this.jsonFactory.createParser( response ) )
+        {
+            expectStartObject( parser );
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ( "result".equals( fieldName ) )
+                {
+                    while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                    {
+                        final String resultField = parser.getCurrentName();
+                        parser.nextToken();
+                        if ( "engine_result".equals( resultField ) )
+                        {
+                            rippleSubmitResponseDto.setEngineResult( EngineResult.valueOf( parser.getText() ) );
+                        }
+                        else if ( "tx_json".equals( resultField ) )
+                        {
+                            decodeSubmittedTxJson( parser, rippleSubmitResponseDto );
+                        }
+                        else
+                        {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+                else
+                {
+                    decodeStatusField( parser, fieldName, rippleSubmitResponseDto );
+                }
+            }
+        }
+        catch ( final IOException e )
+        {
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+
+        return rippleSubmitResponseDto;
+    }
+
+
+    /**
+     * Decode a 'tx' response.
+     */
+    public RippleTransactionResponseDto decodeTransaction( final String response )
+    {
+        final RippleTransactionResponseDto rippleTransactionResponseDto = new RippleTransactionResponseDto();
+
+        try ( final JsonParser parser = this.jsonFactory.createParser( response ) )
+        {
+            expectStartObject( parser );
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ( "result".equals( fieldName ) )
+                {
+                    rippleTransactionResponseDto.setLedger( "0" );
+                    while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                    {
+                        final String resultField = parser.getCurrentName();
+                        parser.nextToken();
+                        switch ( resultField )
+                        {
+                            case "hash":
+                                rippleTransactionResponseDto.setHash( parser.getText() );
+                                break;
+                            case "Sequence":
+                                rippleTransactionResponseDto.setSequence( parser.getText() );
+                                break;
+                            case "ledger_index":
+                                rippleTransactionResponseDto.setLedger( parser.getText() );
+                                break;
+                            case "Fee":
+                                rippleTransactionResponseDto.setFee( new BigDecimal( parser.getText() ) );
+                                break;
+                            case "Account":
+                                rippleTransactionResponseDto.setSourceAddress( parser.getText() );
+                                break;
+                            case "validated":
+                                rippleTransactionResponseDto.setValidated( parser.getValueAsBoolean() );
+                                break;
+                            case "meta":
+                                rippleTransactionResponseDto.setResult( decodeTransactionResult( parser ) );
+                                break;
+                            default:
+                                parser.skipChildren();
+                        }
+                    }
+                }
+                else
+                {
+                    decodeStatusField( parser, fieldName, rippleTransactionResponseDto );
+                }
+            }
+        }
+        catch ( final IOException e )
+        {
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+
+        return rippleTransactionResponseDto;
+    }
+
+
+    /**
+     * Decode the TicketSequence of each ticket in an 'account_objects' response.
+     */
+    public List<Long> decodeTicketSequences( final String response )
+    {
+        final List<Long> ticketSequences = new ArrayList<>();
+
+        String error = null;
+        boolean objectsFound = false;
+        try ( final JsonParser parser = this.jsonFactory.createParser( response ) )
+        {
+            expectStartObject( parser );
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ( "result".equals( fieldName ) )
+                {
+                    while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                    {
+                        final String resultField = parser.getCurrentName();
+                        final JsonToken valueToken = parser.nextToken();
+                        if ( "account_objects".equals( resultField ) && valueToken == JsonToken.START_ARRAY )
+                        {
+                            objectsFound = true;
+                            while ( parser.nextToken() == JsonToken.START_OBJECT )
+                            {
+                                while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                                {
+                                    final String objectField = parser.getCurrentName();
+                                    parser.nextToken();
+                                    if ( "TicketSequence".equals( objectField ) )
+                                    {
+                                        ticketSequences.add( parser.getValueAsLong() );
+                                    }
+                                    else
+                                    {
+                                        parser.skipChildren();
+                                    }
+                                }
+                            }
+                        }
+                        else
+                        {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+                else if ( "error".equals( fieldName ) )
+                {
+                    error = parser.getText();
+                }
+                else
+                {
+                    parser.skipChildren();
+                }
+            }
+        }
+        catch ( final IOException e )
+        {
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+
+        if ( !objectsFound )
+        {
+            throw new BlockchainServiceException( "rippled account_objects failed: " + error, null );
+        }
+        return ticketSequences;
+    }
+
+
+    /**
+     * Decode a 'fee' response.
+     */
+    public RippleFeeDto decodeFee( final String response )
+    {
+        final RippleFeeDto rippleFeeDto = new RippleFeeDto();
+
+        String error = null;
+        long openLedgerLevel = 0;
+        long referenceLevel = 0;
+        try ( final JsonParser parser = this.jsonFactory.createParser( response ) )
+        {
+            expectStartObject( parser );
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ( "result".equals( fieldName ) )
+                {
+                    while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                    {
+                        final String resultField = parser.getCurrentName();
+                        parser.nextToken();
+                        if ( "ledger_current_index".equals( resultField ) )
+                        {
+                            rippleFeeDto.setLedgerCurrentIndex( parser.getValueAsLong() );
+                        }
+                        else if ( "drops".equals( resultField ) || "levels".equals( resultField ) )
+                        {
+                            // All values in these objects are strings
+                            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                            {
+                                final String name = parser.getCurrentName();
+                                parser.nextToken();
+                                switch ( name )
+                                {
+                                    case "base_fee":
+                                        rippleFeeDto.setBaseFee( parser.getValueAsLong() );
+                                        break;
+                                    case "open_ledger_fee":
+                                        rippleFeeDto.setOpenLedgerFee( parser.getValueAsLong() );
+                                        break;
+                                    case "open_ledger_level":
+                                        openLedgerLevel = parser.getValueAsLong();
+                                        break;
+                                    case "reference_level":
+                                        referenceLevel = parser.getValueAsLong();
+                                        break;
+                                    default:
+                                        parser.skipChildren();
+                                }
+                            }
+                        }
+                        else
+                        {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+                else if ( "error".equals( fieldName ) )
+                {
+                    error = parser.getText();
+                }
+                else
+                {
+                    parser.skipChildren();
+                }
+            }
+        }
+        catch ( final IOException e )
+        {
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+
+        if ( 0 == rippleFeeDto.getBaseFee() || 0 == referenceLevel )
+        {
+            throw new BlockchainServiceException( "rippled fee failed: " + error, null );
+        }
+        rippleFeeDto.setLoadFactor( (double) openLedgerLevel / referenceLevel );
+        return rippleFeeDto;
+    }
+
+
+    private void expectStartObject( final JsonParser parser )
+          throws IOException
+    {
+        if ( parser.nextToken() != JsonToken.START_OBJECT )
+        {
+            throw new BlockchainServiceException( "Unexpected response from rippled.", null );
+        }
+    }
+
+    private void decodeStatusField( final JsonParser parser,
+                                    final String fieldName,
+                                    final RippleTransactionResponseDto rippleTransactionResponseDto )
+          throws IOException
+    {
+        if ( "status".equals( fieldName ) )
+        {
+            final String status = parser.getText();
+            rippleTransactionResponseDto.setStatus( status );
+            rippleTransactionResponseDto.setSucceeded( "success".equals( status ) );
+        }
+        else if ( "error".equals( fieldName ) )
+        {
+            final String error = parser.getText();
+            rippleTransactionResponseDto.setError( error );
+            try
+            {
+                rippleTransactionResponseDto.setRpcerr( RPCErr.valueOf( error ) );
+            }
+            catch ( final Exception e )
+            {
+                rippleTransactionResponseDto.setRpcerr( RPCErr.unknownError );
+            }
+        }
+        else
+        {
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Read 'TransactionResult' from a transaction's metadata, skipping the (potentially large) affected nodes.
+     */
+    private String decodeTransactionResult( final JsonParser parser )
+          throws IOException
+    {
+        String transactionResult = null;
+        if ( parser.currentToken() != JsonToken.START_OBJECT )
+        {
+            parser.skipChildren();
+            return null;
+        }
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ( "TransactionResult".equals( fieldName ) )
+            {
+                transactionResult = parser.getText();
+            }
+            else
+            {
+                parser.skipChildren();
+            }
+        }
+        return transactionResult;
+    }
+
+    private void decodeAccountData( final JsonParser parser,
+                                    final RippleAccountInfoDto rippleAccountInfoDto )
+          throws IOException
+    {
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ( "Balance".equals( fieldName ) )
+            {
+                rippleAccountInfoDto.setBalance( Amount.fromDropString( parser.getText() ) );
+            }
+            else if ( "Sequence".equals( fieldName ) )
+            {
+                rippleAccountInfoDto.setSequence( parser.getIntValue() );
+            }
+            else
+            {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void decodeSubmittedTxJson( final JsonParser parser,
+                                        final RippleSubmitResponseDto rippleSubmitResponseDto )
+          throws IOException
+    {
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ( "Fee".equals( fieldName ) )
+            {
+                rippleSubmitResponseDto.setFee( new BigDecimal( parser.getText() ) );
+            }
+            else if ( "Sequence".equals( fieldName ) )
+            {
+                rippleSubmitResponseDto.setSequence( parser.getText() );
+            }
+            else if ( "hash".equals( fieldName ) )
+            {
+                rippleSubmitResponseDto.setHash( parser.getText() );
+            }
+            else
+            {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Decode a single trust line. The parser is positioned on the line's START_OBJECT and is left on its END_OBJECT.
+     */
+    private RippleAccountLineDto decodeAccountLine( final JsonParser parser,
+                                                    final AccountID orientedTo )
+          throws IOException
+    {
+        final RippleAccountLineDto accountLine = new RippleAccountLineDto();
+
+        // The amounts can only be built once the currency is known
+        String account = null;
+        String balance = null;
+        String limit = null;
+        String limitPeer = null;
+
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch ( fieldName )
+            {
+                case "account":
+                    account = parser.getText();
+                    break;
+                case "balance":
+                    balance = parser.getText();
+                    break;
+                case "limit":
+                    limit = parser.getText();
+                    break;
+                case "limit_peer":
+                    limitPeer = parser.getText();
+                    break;
+                case "currency":
+                    accountLine.currency = Currency.fromString( parser.getText() );
+                    break;
+                case "freeze":
+                    accountLine.freeze = parser.getValueAsBoolean();
+                    break;
+                case "freeze_peer":
+                    accountLine.freeze_peer = parser.getValueAsBoolean();
+                    break;
+                case "authorized":
+                    accountLine.authorized = parser.getValueAsBoolean();
+                    break;
+                case "authorized_peer":
+                    accountLine.authorized_peer = parser.getValueAsBoolean();
+                    break;
+                case "no_ripple":
+                    accountLine.no_ripple = parser.getValueAsBoolean();
+                    break;
+                case "no_ripple_peer":
+                    accountLine.no_ripple_peer = parser.getValueAsBoolean();
+                    break;
+                case "quality_in":
+                    accountLine.quality_in = parser.getValueAsInt();
+                    break;
+                case "quality_out":
+                    accountLine.quality_out = parser.getValueAsInt();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        final AccountID peer = AccountID.fromAddress( account );
+        accountLine.balance = new Amount( new BigDecimal( balance ), accountLine.currency, peer );
+        accountLine.limit = new Amount( new BigDecimal( limit ), accountLine.currency, peer );
+        accountLine.limit_peer = new Amount( new BigDecimal( limitPeer ), accountLine.currency, orientedTo );
+
+        return accountLine;
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Maintains a dedicated websocket connection to rippled for subscriptions (accounts and streams such as 'ledger'
+ * and 'transactions'). Subscriptions are remembered and replayed whenever the connection is re-established, and
+ * every pushed message is handed to the registered {@link RippledStreamListener}s.
+ */
+@Slf4j
+@Component
+public class RippledStreamClient
+{
+    private final ObjectMapper objectMapper;
+
+    private final Set<String> accounts = ConcurrentHashMap.newKeySet();
+    private final Set<String> streams = ConcurrentHashMap.newKeySet();
+    private final List<RippledStreamListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong requestIds = new AtomicLong();
+
+    private final ScheduledExecutorService reconnectScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "rippled-stream-reconnect" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    // Comma separated list of rippled servers; we stream from one at a time and move on to the next when it fails
+    @Value( "${ripple.wss-url}" )
+    private String[] rippleUrls;
+
+    @Value( "${ripple.stream-reconnect-delay-ms:5000}" )
+    private long reconnectDelayMs;
+
+    private volatile RippledWebSocketClient connection;
+    private int urlIndex = 0;
+    private volatile boolean closed = false;
+
+
+    @Autowired
+    public RippledStreamClient( final ObjectMapper objectMapper )
+    {
+        this.objectMapper = objectMapper;
+    }
+
+
+    public void addListener( final RippledStreamListener listener )
+    {
+        this.listeners.add( listener );
+    }
+
+    /**
+     * Subscribe to transactions affecting the given accounts.
+     */
+    public void subscribeAccounts( final Collection<String> rippleAddresses )
+    {
+        final Set<String> added = new HashSet<>();
+        for ( final String rippleAddress : rippleAddresses )
+        {
+            if ( this.accounts.add( rippleAddress ) )
+            {
+                added.add( rippleAddress );
+            }
+        }
+        if ( !added.isEmpty() )
+        {
+            sendSubscribe( added, Collections.emptySet() );
+        }
+    }
+
+    /**
+     * Subscribe to one or more of rippled's named streams (ex. 'ledger', 'transactions').
+     */
+    public void subscribeStreams( final Collection<String> streamNames )
+    {
+        final Set<String> added = new HashSet<>();
+        for ( final String streamName : streamNames )
+        {
+            if ( this.streams.add( streamName ) )
+            {
+                added.add( streamName );
+            }
+        }
+        if ( !added.isEmpty() )
+        {
+            sendSubscribe( Collections.emptySet(), added );
+        }
+    }
+
+    public boolean isConnected()
+    {
+        final RippledWebSocketClient current = this.connection;
+        return null != current && current.isOpen();
+    }
+
+
+    @PreDestroy
+    public void close()
+    {
+        this.closed = true;
+        this.reconnectScheduler.shutdownNow();
+
+        final RippledWebSocketClient current = this.connection;
+        if ( null != current )
+        {
+            current.close();
+        }
+    }
+
+
+    private void sendSubscribe( final Collection<String> accountsToAdd,
+                                final Collection<String> streamsToAdd )
+    {
+        if ( accountsToAdd.isEmpty() && streamsToAdd.isEmpty() )
+        {
+            return;
+        }
+
+        final RippledWebSocketClient current = this.connection;
+        if ( null == current || !current.isOpen() )
+        {
+            // The subscriptions are replayed once the connection is (re-)established
+            if ( !this.closed )
+            {
+                this.reconnectScheduler.execute( this::connect );
+            }
+            return;
+        }
+
+        final ObjectNode payload = this.objectMapper.createObjectNode();
+        payload.put( "command", "subscribe" );
+        final long id = this.requestIds.incrementAndGet();
+        payload.put( "id", id );
+        if ( !accountsToAdd.isEmpty() )
+        {
+            final ArrayNode accountsNode = payload.putArray( "accounts" );
+            accountsToAdd.forEach( accountsNode::add );
+        }
+        if ( !streamsToAdd.isEmpty() )
+        {
+            final ArrayNode streamsNode = payload.putArray( "streams" );
+            streamsToAdd.forEach( streamsNode::add );
+        }
+
+        current.send( id, payload.toString() )
+               .whenComplete( ( response, throwable ) -> {
+                   if ( null != throwable )
+                   {
+                       log.warn( "rippled subscribe failed: {}", throwable.getMessage() );
+                   }
+               } );
+    }
+
+    private synchronized void connect()
+    {
+        if ( this.closed || isConnected() )
+        {
+            return;
+        }
+
+        final String rippleUrl = this.rippleUrls[Math.floorMod( this.urlIndex, this.rippleUrls.length )].trim();
+        try
+        {
+            final RippledWebSocketClient client = new RippledWebSocketClient( new URI( rippleUrl ),
+                                                                              this.objectMapper.getFactory(),
+                                                                              this::dispatch )
+            {
+                @Override
+                public void onClose( final int code,
+                                     final String reason,
+                                     final boolean remote )
+                {
+                    super.onClose( code, reason, remote );
+                    handleDisconnect();
+                }
+            };
+
+            if ( !client.connectBlocking() )
+            {
+                log.warn( "Unable to open rippled stream connection to {}", rippleUrl );
+                this.urlIndex++;
+                scheduleReconnect();
+                return;
+            }
+            this.connection = client;
+            log.info( "Opened rippled stream connection to {}", rippleUrl );
+
+            // Replay everything we have subscribed to so far
+            sendSubscribe( this.accounts, this.streams );
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( final URISyntaxException e )
+        {
+            log.error( "Invalid rippled url " + rippleUrl, e );
+            this.urlIndex++;
+            scheduleReconnect();
+        }
+    }
+
+    private void handleDisconnect()
+    {
+        for ( final RippledStreamListener listener : this.listeners )
+        {
+            listener.onStreamDisconnected();
+        }
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect()
+    {
+        if ( this.closed )
+        {
+            return;
+        }
+        this.reconnectScheduler.schedule( this::connect, this.reconnectDelayMs, TimeUnit.MILLISECONDS );
+    }
+
+    private void dispatch( final String message )
+    {
+        final JsonNode jsonNode;
+        try
+        {
+            jsonNode = this.objectMapper.readTree( message );
+        }
+        catch ( final IOException e )
+        {
+            log.warn( "Unable to parse stream message from rippled: {}", e.getMessage() );
+            return;
+        }
+
+        for ( final RippledStreamListener listener : this.listeners )
+        {
+            try
+            {
+                listener.onStreamMessage( jsonNode );
+            }
+            catch ( final Exception e )
+            {
+                log.error( "Error handling rippled stream message", e );
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+
+/**
+ * Receives messages pushed by rippled for our subscriptions.
+ */
+public interface RippledStreamListener
+{
+    /**
+     * Called for every stream message (ledgerClosed, transaction, etc).
+     *
+     * @param message the parsed message
+     */
+    void onStreamMessage( JsonNode message );
+
+    /**
+     * Called when the stream connection drops. Any messages pushed while disconnected are lost, so listeners
+     * holding state derived from the stream should treat it as stale.
+     */
+    default void onStreamDisconnected()
+    {
+    }
+}
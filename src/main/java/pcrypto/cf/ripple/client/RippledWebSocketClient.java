@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.handshake.ServerHandshake;
+import pcrypto.cf.exception.BlockchainServiceException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+
+/**
+ * A long-lived websocket connection to a rippled server which allows many commands to be in flight at once.
+ * Each command is tagged with a unique 'id' which rippled echoes back in its response, and which we use to
+ * complete the matching future. Messages without an 'id' (subscription stream messages) are passed to the
+ * optional stream handler.
+ */
+@Slf4j
+public class RippledWebSocketClient
+      extends WebSocketClient
+{
+    private final JsonFactory jsonFactory;
+    private final Consumer<String> streamHandler;
+    private final Map<Long, CompletableFuture<String>> pendingRequests = new ConcurrentHashMap<>();
+
+
+    public RippledWebSocketClient( final URI serverUri,
+                                   final JsonFactory jsonFactory )
+    {
+        this( serverUri, jsonFactory, null );
+    }
+
+    public RippledWebSocketClient( final URI serverUri,
+                                   final JsonFactory jsonFactory,
+                                   final Consumer<String> streamHandler )
+    {
+        super( serverUri );
+        this.jsonFactory = jsonFactory;
+        this.streamHandler = streamHandler;
+    }
+
+
+    /**
+     * Send a command which has already been tagged with the given id.
+     *
+     * @param id      the value of the 'id' field in the command
+     * @param command the json command
+     * @return a future which completes with the raw json response
+     */
+    public CompletableFuture<String> send( final long id,
+                                           final String command )
+    {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        this.pendingRequests.put( id, future );
+        future.whenComplete( ( response, throwable ) -> this.pendingRequests.remove( id ) );
+
+        try
+        {
+            this.send( command );
+        }
+        catch ( final WebsocketNotConnectedException e )
+        {
+            future.completeExceptionally( new RippledNotSentException( "Connection to rippled is not open.", e ) );
+        }
+        return future;
+    }
+
+    public int getPendingRequestCount()
+    {
+        return this.pendingRequests.size();
+    }
+
+    @Override
+    public void onOpen( final ServerHandshake handshakedata )
+    {
+        log.debug( "connected to {}", this.getURI() );
+    }
+
+    @Override
+    public void onMessage( final String message )
+    {
+        final Long id = readId( message );
+        if ( null == id )
+        {
+            if ( null != this.streamHandler )
+            {
+                this.streamHandler.accept( message );
+            }
+            else
+            {
+                log.debug( "unsolicited message received" );
+            }
+            return;
+        }
+
+        final CompletableFuture<String> future = this.pendingRequests.remove( id );
+        if ( null == future )
+        {
+            log.debug( "response received for unknown or expired request {}", id );
+            return;
+        }
+        future.complete( message );
+    }
+
+    @Override
+    public void onClose( final int code,
+                         final String reason,
+                         final boolean remote )
+    {
+        log.debug( "connection to {} closed ({}: {})", this.getURI(), code, reason );
+
+        // Nothing more will arrive on this connection, so fail anything still waiting
+        final BlockchainServiceException exception = new BlockchainServiceException( "Connection to rippled closed: " + reason, null );
+        for ( final CompletableFuture<String> future : this.pendingRequests.values() )
+        {
+            future.completeExceptionally( exception );
+        }
+        this.pendingRequests.clear();
+    }
+
+    @Override
+    public void onError( final Exception ex )
+    {
+        log.error( ex.getMessage(), ex );
+    }
+
+
+    /**
+     * Scan the top level of the message for the 'id' field without building a tree.
+     */
+    private Long readId( final String message )
+    {
+        try ( final JsonParser parser = this.jsonFactory.createParser( message ) )
+        {
+            if ( parser.nextToken() != JsonToken.START_OBJECT )
+            {
+                return null;
+            }
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                final String fieldName = parser.getCurrentName();
+                final JsonToken valueToken = parser.nextToken();
+                if ( "id".equals( fieldName ) && valueToken == JsonToken.VALUE_NUMBER_INT )
+                {
+                    return parser.getLongValue();
+                }
+                parser.skipChildren();
+            }
+        }
+        catch ( final IOException e )
+        {
+            log.warn( "Unable to parse message from rippled: {}", e.getMessage() );
+        }
+        return null;
+    }
+}
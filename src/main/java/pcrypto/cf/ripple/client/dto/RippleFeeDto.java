@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.client.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+
+@Getter
+@Setter
+public class RippleFeeDto
+{
+    // Transaction cost in drops for a reference transaction with no load
+    private long baseFee;
+
+    // Cost in drops to get into the current open ledger rather than being queued
+    private long openLedgerFee;
+
+    // Open ledger cost relative to the reference cost (1.0 when there is no load)
+    private double loadFactor;
+
+    private long ledgerCurrentIndex;
+}
@@ -39,4 +39,7 @@ public class RippleTransactionResponseDto
     private BigDecimal fee;
     private String ledger;
     private String result;
+
+    // True once the transaction is in a validated ledger, at which point 'result' is final
+    private boolean validated;
 }
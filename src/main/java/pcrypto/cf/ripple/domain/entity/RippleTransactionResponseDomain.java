@@ -29,6 +29,7 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 
 
@@ -59,4 +60,15 @@ public class RippleTransactionResponseDomain
     private Long ledger;
     private String signedTransaction;
     private OffsetDateTime createdDate;
+
+    // Recorded from the signed transaction when it is submitted
+    private String sourceAddress;
+    private Long accountSequence;
+    private Long lastLedgerSequence;
+
+    // Set by the transaction tracker once the outcome is final
+    private Boolean validated;
+    private BigDecimal fee;
+    private Boolean resubmitRequired;
+    private OffsetDateTime validatedDate;
 }
@@ -20,6 +20,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import pcrypto.cf.ripple.domain.entity.RippleTransactionResponseDomain;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -29,4 +31,10 @@ public interface RippleTransactionResponseRepository
 {
     @Query( "SELECT s FROM RippleTransactionResponseDomain s WHERE s.rippleTransactionRequest.uuid = ?1" )
     Optional<RippleTransactionResponseDomain> findByTransactionRequestUUID( UUID transactionRequestUUID );
+
+    List<RippleTransactionResponseDomain> findByTransactionHashIn( Collection<String> transactionHashes );
+
+    // Accepted by rippled and not yet given an outcome by the transaction tracker
+    @Query( "SELECT s FROM RippleTransactionResponseDomain s WHERE s.transactionHash IS NOT NULL AND s.success = true AND s.validated IS NULL" )
+    List<RippleTransactionResponseDomain> findPending();
 }
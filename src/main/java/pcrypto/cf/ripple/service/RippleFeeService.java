@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import pcrypto.cf.ripple.client.RippleTransactionClient;
+import pcrypto.cf.ripple.client.RippledConnectionPool;
+import pcrypto.cf.ripple.client.RippledStreamClient;
+import pcrypto.cf.ripple.client.RippledStreamListener;
+import pcrypto.cf.ripple.client.dto.RippleFeeDto;
+
+import java.util.Collections;
+
+
+/**
+ * Caches the network transaction cost so that payments can be signed with an explicit fee. The cache is refreshed
+ * in the background as each ledger is validated, and on demand if it is older than the configured TTL.
+ */
+@Slf4j
+@Service
+public class RippleFeeService
+      implements RippledStreamListener
+{
+    private final RippleTransactionClient rippleTransactionClient;
+    private final RippledStreamClient rippledStreamClient;
+
+    private volatile RippleFeeDto currentFee;
+    private volatile long refreshedAtMillis = 0;
+
+    @Value( "${ripple.fee.cache-ttl-ms:10000}" )
+    private long cacheTtlMs;
+
+    // Upper bound on what we are willing to pay; above this the transaction is left to wait in the queue
+    @Value( "${ripple.fee.max-drops:1000}" )
+    private long maxFeeDrops;
+
+    // How many ledgers past the current one a transaction stays valid for
+    @Value( "${ripple.fee.last-ledger-offset:20}" )
+    private int lastLedgerOffset;
+
+
+    @Autowired
+    public RippleFeeService( final RippleTransactionClient rippleTransactionClient,
+                             final RippledStreamClient rippledStreamClient )
+    {
+        this.rippleTransactionClient = rippleTransactionClient;
+        this.rippledStreamClient = rippledStreamClient;
+
+        rippledStreamClient.addListener( this );
+    }
+
+
+    @EventListener( ApplicationReadyEvent.class )
+    public void subscribe()
+    {
+        rippledStreamClient.subscribeStreams( Collections.singleton( "ledger" ) );
+    }
+
+
+    /**
+     * The fee in drops to sign a transaction with: enough to get into the open ledger, capped at the configured maximum.
+     */
+    public long getFeeDrops()
+    {
+        final RippleFeeDto fee = getFee();
+        return Math.min( Math.max( fee.getBaseFee(), fee.getOpenLedgerFee() ), Math.max( fee.getBaseFee(), maxFeeDrops ) );
+    }
+
+    public double getLoadFactor()
+    {
+        return getFee().getLoadFactor();
+    }
+
+    /**
+     * The LastLedgerSequence to sign a transaction with.
+     */
+    public long getLastLedgerSequence()
+    {
+        return getFee().getLedgerCurrentIndex() + lastLedgerOffset;
+    }
+
+    /**
+     * Drop the cached fee (ex. after a submit was rejected for too low a fee).
+     */
+    public void invalidate()
+    {
+        refreshedAtMillis = 0;
+    }
+
+
+    @Override
+    public void onStreamMessage( final JsonNode message )
+    {
+        if ( "ledgerClosed".equals( message.path( "type" ).asText() ) )
+        {
+            rippleTransactionClient.getFeeAsync()
+                                   .whenComplete( ( fee, throwable ) -> {
+                                       if ( null == throwable )
+                                       {
+                                           update( fee );
+                                       }
+                                       else
+                                       {
+                                           log.debug( "Unable to refresh the Ripple fee: {}", throwable.getMessage() );
+                                       }
+                                   } );
+        }
+    }
+
+
+    private RippleFeeDto getFee()
+    {
+        final RippleFeeDto fee = currentFee;
+        if ( null != fee && System.currentTimeMillis() - refreshedAtMillis <= cacheTtlMs )
+        {
+            return fee;
+        }
+        final RippleFeeDto refreshed = RippledConnectionPool.await( rippleTransactionClient.getFeeAsync() );
+        update( refreshed );
+        return refreshed;
+    }
+
+    private void update( final RippleFeeDto fee )
+    {
+        currentFee = fee;
+        refreshedAtMillis = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.service;
+
+import com.ripple.core.serialized.enums.EngineResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pcrypto.cf.ripple.client.RippleAccountClient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Hands out account sequence numbers so that back-to-back payments from one account can be signed without asking
+ * rippled for the sequence each time. Each address is seeded from 'account_info' on first use, and re-seeded after
+ * any submit that did not consume its sequence.
+ */
+@Slf4j
+@Component
+public class RippleSequenceAllocator
+{
+    private final RippleAccountClient rippleAccountClient;
+
+    private final Map<String, AccountSequence> sequences = new ConcurrentHashMap<>();
+
+
+    @Autowired
+    public RippleSequenceAllocator( final RippleAccountClient rippleAccountClient )
+    {
+        this.rippleAccountClient = rippleAccountClient;
+    }
+
+
+    /**
+     * Reserve the next sequence number for the account.
+     */
+    public long allocate( final String rippleAddress )
+    {
+        final AccountSequence accountSequence = sequences.computeIfAbsent( rippleAddress, address -> new AccountSequence() );
+        synchronized ( accountSequence )
+        {
+            if ( null == accountSequence.next )
+            {
+                accountSequence.next = rippleAccountClient.getAccountInfo( rippleAddress ).getSequence().longValue();
+            }
+            return accountSequence.next++;
+        }
+    }
+
+    /**
+     * Forget what we know about the account's sequence, so that the next allocation is re-seeded from rippled.
+     * Called when a submitted sequence was not consumed, since every later allocation would otherwise be stuck
+     * behind the gap.
+     */
+    public void reset( final String rippleAddress )
+    {
+        final AccountSequence accountSequence = sequences.get( rippleAddress );
+        if ( null != accountSequence )
+        {
+            synchronized ( accountSequence )
+            {
+                log.debug( "Resetting the sequence for Ripple account {}", rippleAddress );
+                accountSequence.next = null;
+            }
+        }
+    }
+
+
+    /**
+     * Whether a submitted transaction took up its sequence number (or ticket): it was applied, even if it failed
+     * with a 'tec' code, or queued for a later ledger.
+     */
+    public static boolean isConsumed( final EngineResult engineResult )
+    {
+        if ( null == engineResult )
+        {
+            return false;
+        }
+        final String name = engineResult.name();
+        return name.startsWith( "tes" ) || name.startsWith( "tec" ) || "terQUEUED".equals( name );
+    }
+
+
+    private static final class AccountSequence
+    {
+        private Long next;
+    }
+}
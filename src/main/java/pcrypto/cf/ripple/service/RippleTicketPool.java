@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.service;
+
+import com.ripple.core.serialized.enums.EngineResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.VaultException;
+import org.springframework.vault.core.VaultOperations;
+import org.springframework.vault.support.VaultResponse;
+import pcrypto.cf.ripple.client.RippleAccountClient;
+import pcrypto.cf.ripple.client.RippleTransactionClient;
+import pcrypto.cf.ripple.client.RippledConnectionPool;
+import pcrypto.cf.ripple.client.dto.RippleSubmitResponseDto;
+import pcrypto.cf.ripple.domain.entity.RippleAccountDomain;
+import pcrypto.cf.ripple.domain.repository.RippleAccountRepository;
+import pcrypto.cf.ripple.vault.dto.VaultRippleTicketCreateDomain;
+import pcrypto.cf.security.web.TenantContext;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Keeps a pool of XRPL Tickets for designated hot accounts. A payment which leases a ticket is signed with its
+ * TicketSequence instead of the account's next sequence, so many payments from the same account can be signed and
+ * submitted in parallel, and one that fails does not hold up the others.
+ * <p>
+ * Tickets are created in batches with TicketCreate whenever an account runs low, and the pool is reconciled against
+ * the account's ticket objects in the validated ledger. A ticket whose payment was accepted is kept out of the pool
+ * until it is gone from the validated ledger. A ticket whose payment was never validated is still on the ledger once
+ * its lease expires, and is put back in the pool.
+ */
+@Slf4j
+@Component
+public class RippleTicketPool
+{
+    // The protocol limit on tickets held by one account
+    private static final int MAX_TICKETS_PER_ACCOUNT = 250;
+
+    private final RippleAccountClient rippleAccountClient;
+    private final RippleTransactionClient rippleTransactionClient;
+    private final RippleFeeService rippleFeeService;
+    private final RippleSequenceAllocator rippleSequenceAllocator;
+    private final RippleAccountRepository rippleAccountRepository;
+    private final VaultOperations vaultOperations;
+
+    private final Map<String, AccountTickets> pools = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService refillScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "ripple-ticket-refill" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    // Hot accounts, as a comma separated list of '<tenant>:<cfAccountId>'
+    @Value( "${ripple.tickets.accounts:}" )
+    private String[] ticketAccounts;
+
+    @Value( "${ripple.tickets.batch-size:50}" )
+    private int batchSize;
+
+    @Value( "${ripple.tickets.low-water-mark:10}" )
+    private int lowWaterMark;
+
+    @Value( "${ripple.tickets.refill-interval-ms:10000}" )
+    private long refillIntervalMs;
+
+    // Longer than a payment can stay pending (see ripple.fee.last-ledger-offset)
+    @Value( "${ripple.tickets.lease-timeout-ms:180000}" )
+    private long leaseTimeoutMs;
+
+
+    @Autowired
+    public RippleTicketPool( final RippleAccountClient rippleAccountClient,
+                             final RippleTransactionClient rippleTransactionClient,
+                             final RippleFeeService rippleFeeService,
+                             final RippleSequenceAllocator rippleSequenceAllocator,
+                             final RippleAccountRepository rippleAccountRepository,
+                             final VaultOperations vaultOperations )
+    {
+        this.rippleAccountClient = rippleAccountClient;
+        this.rippleTransactionClient = rippleTransactionClient;
+        this.rippleFeeService = rippleFeeService;
+        this.rippleSequenceAllocator = rippleSequenceAllocator;
+        this.rippleAccountRepository = rippleAccountRepository;
+        this.vaultOperations = vaultOperations;
+    }
+
+
+    @EventListener( ApplicationReadyEvent.class )
+    public void start()
+    {
+        for ( final String ticketAccount : ticketAccounts )
+        {
+            final String[] parts = ticketAccount.trim().split( ":" );
+            if ( parts.length != 2 )
+            {
+                log.error( "Invalid ripple.tickets.accounts entry '{}', expected <tenant>:<cfAccountId>", ticketAccount );
+                continue;
+            }
+            final Long cfAccountId = Long.valueOf( parts[1] );
+
+            TenantContext.setCurrentTenant( parts[0].toLowerCase() );
+            try
+            {
+                final Optional<RippleAccountDomain> rippleAccountDomain = rippleAccountRepository.findByCfAccountId( cfAccountId );
+                if ( !rippleAccountDomain.isPresent() )
+                {
+                    log.error( "No Ripple account for ticket account '{}'", ticketAccount );
+                    continue;
+                }
+                final String vaultPath = "/ripple/" + rippleAccountDomain.get().getTenantDomain().getId() + "/accounts/" + cfAccountId + "/tickets";
+                final String rippleAddress = rippleAccountDomain.get().getRippleAddress();
+                pools.put( rippleAddress, new AccountTickets( rippleAddress, vaultPath ) );
+            }
+            finally
+            {
+                TenantContext.clear();
+            }
+        }
+
+        if ( !pools.isEmpty() )
+        {
+            log.info( "Maintaining Ripple ticket pools for {} accounts", pools.size() );
+            refillScheduler.scheduleWithFixedDelay( this::refillAll, 0, refillIntervalMs, TimeUnit.MILLISECONDS );
+        }
+    }
+
+
+    /**
+     * Lease a ticket for a payment from the given account.
+     *
+     * @return the TicketSequence to sign with, or null if the account has no ticket pool or it is empty
+     */
+    public Long lease( final String rippleAddress )
+    {
+        final AccountTickets accountTickets = pools.get( rippleAddress );
+        if ( null == accountTickets )
+        {
+            return null;
+        }
+        synchronized ( accountTickets )
+        {
+            final Long ticketSequence = accountTickets.available.poll();
+            if ( null != ticketSequence )
+            {
+                accountTickets.leasedAt.put( ticketSequence, System.currentTimeMillis() );
+            }
+            return ticketSequence;
+        }
+    }
+
+    /**
+     * Return a ticket whose payment never reached the network, or was discarded by rippled without being relayed (see
+     * {@link #isDiscarded(EngineResult)}). Any other ticket is left to its lease, since the payment may still use it.
+     */
+    public void release( final String rippleAddress,
+                         final Long ticketSequence )
+    {
+        final AccountTickets accountTickets = pools.get( rippleAddress );
+        if ( null == accountTickets )
+        {
+            return;
+        }
+        synchronized ( accountTickets )
+        {
+            if ( null != accountTickets.leasedAt.remove( ticketSequence ) )
+            {
+                accountTickets.available.addFirst( ticketSequence );
+            }
+        }
+    }
+
+    /**
+     * Record that a ticket's payment was accepted, so the ticket will be used up. It stays out of the pool while the
+     * last validated ledger still shows it.
+     */
+    public void consumed( final String rippleAddress,
+                          final Long ticketSequence )
+    {
+        final AccountTickets accountTickets = pools.get( rippleAddress );
+        if ( null == accountTickets )
+        {
+            return;
+        }
+        synchronized ( accountTickets )
+        {
+            accountTickets.leasedAt.remove( ticketSequence );
+            accountTickets.consumedAt.put( ticketSequence, System.currentTimeMillis() );
+        }
+    }
+
+    /**
+     * @return true if rippled dropped the transaction without applying or relaying it, so its ticket is still unused
+     */
+    public static boolean isDiscarded( final EngineResult engineResult )
+    {
+        if ( null == engineResult )
+        {
+            return true;
+        }
+        final String name = engineResult.name();
+        return name.startsWith( "tel" ) || name.startsWith( "tem" );
+    }
+
+
+    @PreDestroy
+    public void close()
+    {
+        refillScheduler.shutdownNow();
+    }
+
+
+    private void refillAll()
+    {
+        for ( final AccountTickets accountTickets : pools.values() )
+        {
+            try
+            {
+                refill( accountTickets );
+            }
+            catch ( final Exception e )
+            {
+                log.error( "Unable to refill Ripple tickets for " + accountTickets.rippleAddress, e );
+            }
+        }
+    }
+
+    private void refill( final AccountTickets accountTickets )
+    {
+        final List<Long> onLedger = RippledConnectionPool.await( rippleAccountClient.getTicketSequencesAsync( accountTickets.rippleAddress ) );
+        final Set<Long> onLedgerSet = new HashSet<>( onLedger );
+
+        final int held;
+        synchronized ( accountTickets )
+        {
+            // Drop tickets that have been used up, and reclaim leases and accepted payments which can no longer be validated
+            accountTickets.available.removeIf( ticketSequence -> !onLedgerSet.contains( ticketSequence ) );
+            accountTickets.consumedAt.keySet().removeIf( ticketSequence -> !onLedgerSet.contains( ticketSequence ) );
+            final long expiredBefore = System.currentTimeMillis() - leaseTimeoutMs;
+            accountTickets.leasedAt.values().removeIf( leasedAt -> leasedAt < expiredBefore );
+            accountTickets.consumedAt.values().removeIf( consumedAt -> consumedAt < expiredBefore );
+
+            for ( final Long ticketSequence : onLedger )
+            {
+                if ( !accountTickets.leasedAt.containsKey( ticketSequence )
+                     && !accountTickets.consumedAt.containsKey( ticketSequence )
+                     && !accountTickets.available.contains( ticketSequence ) )
+                {
+                    accountTickets.available.addLast( ticketSequence );
+                }
+            }
+            held = accountTickets.available.size() + accountTickets.leasedAt.size();
+        }
+
+        // Tickets from a TicketCreate we already submitted show up once it is validated
+        if ( held >= lowWaterMark || System.currentTimeMillis() < accountTickets.createPendingUntilMillis )
+        {
+            return;
+        }
+        final int ticketCount = Math.min( batchSize, MAX_TICKETS_PER_ACCOUNT - onLedger.size() );
+        if ( ticketCount > 0 )
+        {
+            createTickets( accountTickets, ticketCount );
+        }
+    }
+
+    private void createTickets( final AccountTickets accountTickets,
+                                final int ticketCount )
+    {
+        final VaultRippleTicketCreateDomain ticketCreateDomain = new VaultRippleTicketCreateDomain();
+        ticketCreateDomain.setTicketCount( ticketCount );
+        ticketCreateDomain.setFee( rippleFeeService.getFeeDrops() );
+        ticketCreateDomain.setSequence( rippleSequenceAllocator.allocate( accountTickets.rippleAddress ) );
+        ticketCreateDomain.setLastLedgerSequence( rippleFeeService.getLastLedgerSequence() );
+
+        final VaultResponse vaultResponse = vaultOperations.write( accountTickets.vaultPath, ticketCreateDomain );
+        if ( null == vaultResponse || null == vaultResponse.getData() )
+        {
+            rippleSequenceAllocator.reset( accountTickets.rippleAddress );
+            throw new VaultException( "An error occurred while creating Ripple tickets." );
+        }
+        final String signedTx = (String) vaultResponse.getData().get( "signed_transaction" );
+
+        final RippleSubmitResponseDto txResponse = rippleTransactionClient.submitTransaction( signedTx );
+        final EngineResult engineResult = txResponse.getEngineResult();
+        if ( !txResponse.isSucceeded() || !RippleSequenceAllocator.isConsumed( engineResult ) )
+        {
+            rippleSequenceAllocator.reset( accountTickets.rippleAddress );
+            log.warn( "TicketCreate for {} was rejected: {}", accountTickets.rippleAddress, null == engineResult ? txResponse.getError() : engineResult );
+            return;
+        }
+
+        log.info( "Creating {} Ripple tickets for {}", ticketCount, accountTickets.rippleAddress );
+        accountTickets.createPendingUntilMillis = System.currentTimeMillis() + leaseTimeoutMs;
+    }
+
+
+    private static final class AccountTickets
+    {
+        private final String rippleAddress;
+        private final String vaultPath;
+        private final ArrayDeque<Long> available = new ArrayDeque<>();
+        private final Map<Long, Long> leasedAt = new HashMap<>();
+        private final Map<Long, Long> consumedAt = new HashMap<>();
+        private volatile long createPendingUntilMillis = 0;
+
+        private AccountTickets( final String rippleAddress,
+                                final String vaultPath )
+        {
+            this.rippleAddress = rippleAddress;
+            this.vaultPath = vaultPath;
+        }
+    }
+}
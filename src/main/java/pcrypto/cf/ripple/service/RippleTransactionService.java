@@ -18,6 +18,10 @@ package pcrypto.cf.ripple.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ripple.core.coretypes.AccountID;
+import com.ripple.core.coretypes.STObject;
+import com.ripple.core.coretypes.uint.UInt32;
+import com.ripple.core.serialized.enums.EngineResult;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.MessageChannel;
@@ -41,10 +45,12 @@ import pcrypto.cf.exception.NotFoundException;
 import pcrypto.cf.mfa.service.authy.AuthyPushApprovalService;
 import pcrypto.cf.ripple.api.model.RipplePaymentRequest;
 import pcrypto.cf.ripple.client.RippleTransactionClient;
+import pcrypto.cf.ripple.client.RippledNotSentException;
 import pcrypto.cf.ripple.client.dto.RippleSubmitResponseDto;
 import pcrypto.cf.ripple.domain.entity.RippleTransactionRequestApproverDomain;
 import pcrypto.cf.ripple.domain.entity.RippleTransactionRequestDomain;
 import pcrypto.cf.ripple.domain.entity.RippleTransactionResponseDomain;
+import pcrypto.cf.ripple.domain.repository.RippleAccountRepository;
 import pcrypto.cf.ripple.domain.repository.RippleTransactionRequestApproverRepository;
 import pcrypto.cf.ripple.domain.repository.RippleTransactionRequestRepository;
 import pcrypto.cf.ripple.domain.repository.RippleTransactionResponseRepository;
@@ -53,6 +59,7 @@ import pcrypto.cf.ripple.stream.RippleTransactionApprovalStream;
 import pcrypto.cf.ripple.value.TransactionApprovalStatusEnum;
 import pcrypto.cf.ripple.vault.dto.VaultRipplePaymentDomain;
 import pcrypto.cf.security.domain.CustomUserDetails;
+import pcrypto.cf.security.web.TenantContext;
 
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
@@ -72,6 +79,11 @@ public class RippleTransactionService
     private final RippleTransactionResponseRepository rippleTransactionResponseRepository;
     private final RippleTransactionApprovalStream rippleTransactionApprovalStream;
     private final RippleTransactionClient rippleTransactionClient;
+    private final RippleTransactionTracker rippleTransactionTracker;
+    private final RippleFeeService rippleFeeService;
+    private final RippleSequenceAllocator rippleSequenceAllocator;
+    private final RippleTicketPool rippleTicketPool;
+    private final RippleAccountRepository rippleAccountRepository;
     private final AccountConfigurationRepository accountConfigurationRepository;
     private final AuthyPushApprovalService authyPushApprovalService;
     private final VaultOperations vaultOperations;
@@ -84,6 +96,11 @@ public class RippleTransactionService
                                      final RippleTransactionResponseRepository rippleTransactionResponseRepository,
                                      @SuppressWarnings( "SpringJavaInjectionPointsAutowiringInspection" ) final RippleTransactionApprovalStream rippleTransactionApprovalStream,
                                      final RippleTransactionClient rippleTransactionClient,
+                                     final RippleTransactionTracker rippleTransactionTracker,
+                                     final RippleFeeService rippleFeeService,
+                                     final RippleSequenceAllocator rippleSequenceAllocator,
+                                     final RippleTicketPool rippleTicketPool,
+                                     final RippleAccountRepository rippleAccountRepository,
                                      final AccountConfigurationRepository accountConfigurationRepository,
                                      final AuthyPushApprovalService authyPushApprovalService,
                                      final VaultOperations vaultOperations,
@@ -94,6 +111,11 @@ public class RippleTransactionService
         this.rippleTransactionResponseRepository = rippleTransactionResponseRepository;
         this.rippleTransactionApprovalStream = rippleTransactionApprovalStream;
         this.rippleTransactionClient = rippleTransactionClient;
+        this.rippleTransactionTracker = rippleTransactionTracker;
+        this.rippleFeeService = rippleFeeService;
+        this.rippleSequenceAllocator = rippleSequenceAllocator;
+        this.rippleTicketPool = rippleTicketPool;
+        this.rippleAccountRepository = rippleAccountRepository;
         this.accountConfigurationRepository = accountConfigurationRepository;
         this.authyPushApprovalService = authyPushApprovalService;
         this.vaultOperations = vaultOperations;
@@ -250,7 +272,7 @@ public class RippleTransactionService
     {
         final TenantDomain tenantDomain = rippleTransactionRequestDomain.getTenantDomain();
 
-        // Obtain a signed tx from Vault
+        // Build the payment for Vault to sign
         final VaultRipplePaymentDomain paymentDomain = new VaultRipplePaymentDomain();
         paymentDomain.setSource( String.valueOf( rippleTransactionRequestDomain.getAccountDomain().getId() ) );
         paymentDomain.setDestination( String.valueOf( rippleTransactionRequestDomain.getDestAccountDomain().getId() ) );
@@ -265,34 +287,126 @@ public class RippleTransactionService
         paymentDomain.setAssetIssuer( rippleTransactionRequestDomain.getAssetIssuer() );
         paymentDomain.setMemo( rippleTransactionRequestDomain.getMemo() );
 
-        final VaultResponse vaultResponse = vaultOperations.write( getRippleVaultPluginPath( tenantDomain ) + "/payments", paymentDomain );
-        if ( null == vaultResponse )
+        // The sequence belongs to the account which sends the transaction
+        final AccountDomain sendingAccountDomain = null != rippleTransactionRequestDomain.getPaymentChannelAccountDomain()
+                                                   ? rippleTransactionRequestDomain.getPaymentChannelAccountDomain()
+                                                   : rippleTransactionRequestDomain.getAccountDomain();
+        final String sendingAddress = rippleAccountRepository.findByCfAccountId( sendingAccountDomain.getId() )
+                                                             .orElseThrow( () -> new NotFoundException( "Ripple account for cfAccountId " + sendingAccountDomain.getId() + " not found." ) )
+                                                             .getRippleAddress();
+
+        String signedTx;
+        String transactionHash;
+        RippleSubmitResponseDto txResponse;
+        for ( int attempt = 1; ; attempt++ )
         {
-            throw new VaultException( "An error occurred while creating the payment transaction." );
-        }
+            // Hot accounts sign against a pre-created ticket, which lets many of their payments be in flight at once
+            final Long ticketSequence = rippleTicketPool.lease( sendingAddress );
+            paymentDomain.setFee( rippleFeeService.getFeeDrops() );
+            paymentDomain.setTicketSequence( ticketSequence );
+            paymentDomain.setSequence( null != ticketSequence ? 0L : rippleSequenceAllocator.allocate( sendingAddress ) );
+            paymentDomain.setLastLedgerSequence( rippleFeeService.getLastLedgerSequence() );
+
+            // Obtain a signed tx from Vault
+            final VaultResponse vaultResponse;
+            try
+            {
+                vaultResponse = vaultOperations.write( getRippleVaultPluginPath( tenantDomain ) + "/payments", paymentDomain );
+            }
+            catch ( final RuntimeException e )
+            {
+                releaseSequence( sendingAddress, ticketSequence );
+                throw e;
+            }
+            if ( null == vaultResponse )
+            {
+                releaseSequence( sendingAddress, ticketSequence );
+                throw new VaultException( "An error occurred while creating the payment transaction." );
+            }
 
-        final Map<String, Object> data = vaultResponse.getData();
-        if ( null == data )
-        {
-            throw new VaultException( "Vault response when signing transaction contained a null data map." );
-        }
-        final String signedTx = (String) data.get( "signed_transaction" );
-        final String transactionHash = (String) data.get( "transaction_hash" );
+            final Map<String, Object> data = vaultResponse.getData();
+            if ( null == data )
+            {
+                releaseSequence( sendingAddress, ticketSequence );
+                throw new VaultException( "Vault response when signing transaction contained a null data map." );
+            }
+            signedTx = (String) data.get( "signed_transaction" );
+            transactionHash = (String) data.get( "transaction_hash" );
+
+            // Submit the signed tx to Ripple
+            try
+            {
+                txResponse = rippleTransactionClient.submitTransaction( signedTx );
+            }
+            catch ( final RippledNotSentException e )
+            {
+                releaseSequence( sendingAddress, ticketSequence );
+                throw e;
+            }
+            catch ( final RuntimeException e )
+            {
+                abandonSequence( sendingAddress, ticketSequence );
+                throw e;
+            }
 
-        // Submit the signed tx to Ripple
-        final RippleSubmitResponseDto txResponse = rippleTransactionClient.submitTransaction( signedTx );
+            final EngineResult engineResult = txResponse.getEngineResult();
+            if ( txResponse.isSucceeded() && RippleSequenceAllocator.isConsumed( engineResult ) )
+            {
+                if ( null != ticketSequence )
+                {
+                    rippleTicketPool.consumed( sendingAddress, ticketSequence );
+                }
+                break;
+            }
 
-        // Save the transaction response
+            // A ter result may still be applied later, and a tef result may already have used up the ticket
+            if ( RippleTicketPool.isDiscarded( engineResult ) )
+            {
+                releaseSequence( sendingAddress, ticketSequence );
+            }
+            else
+            {
+                abandonSequence( sendingAddress, ticketSequence );
+            }
+            if ( EngineResult.telINSUF_FEE_P == engineResult )
+            {
+                rippleFeeService.invalidate();
+            }
+
+            // Retry once with a fresh fee and sequence if that is what was wrong
+            if ( attempt >= 2 || !( EngineResult.telINSUF_FEE_P == engineResult || EngineResult.tefPAST_SEQ == engineResult ) )
+            {
+                break;
+            }
+            log.info( "Ripple payment rejected with {}, re-signing with a fresh fee and sequence", engineResult );
+        }
+
+        // Save the transaction response. Until the tracker records the validated outcome, success only means that
+        // rippled accepted the transaction; anything it turned away is never tracked.
+        final boolean accepted = txResponse.isSucceeded() && RippleSequenceAllocator.isConsumed( txResponse.getEngineResult() );
         //rippleTransactionResponseDomain.setLedger( txResponse.getLedger() );
-        rippleTransactionResponseDomain.setSuccess( txResponse.isSucceeded() );
+        rippleTransactionResponseDomain.setSuccess( accepted );
         rippleTransactionResponseDomain.setTransactionHash( transactionHash );
         rippleTransactionResponseDomain.setSignedTransaction( signedTx );
-        rippleTransactionResponseDomain.setTransactionResult( txResponse.getEngineResult().toString() );
+        rippleTransactionResponseDomain.setTransactionResult( null == txResponse.getEngineResult() ? txResponse.getError() : txResponse.getEngineResult().toString() );
 
         rippleTransactionResponseDomain.setCreatedDate( OffsetDateTime.now() );
 
+        // Record what we need to track the transaction through to validation
+        final STObject signedTransaction = STObject.translate.fromHex( signedTx );
+        final String sourceAddress = signedTransaction.get( AccountID.Account ).toString();
+        rippleTransactionResponseDomain.setSourceAddress( sourceAddress );
+        rippleTransactionResponseDomain.setAccountSequence( signedTransaction.get( UInt32.Sequence ).longValue() );
+        final UInt32 lastLedgerSequence = signedTransaction.get( UInt32.LastLedgerSequence );
+        rippleTransactionResponseDomain.setLastLedgerSequence( null == lastLedgerSequence ? null : lastLedgerSequence.longValue() );
+
         final RippleTransactionResponseDomain savedResponse = rippleTransactionResponseRepository.save( rippleTransactionResponseDomain );
 
+        if ( accepted )
+        {
+            rippleTransactionTracker.track( TenantContext.getCurrentTenant(), transactionHash, sourceAddress, savedResponse.getLastLedgerSequence() );
+        }
+
         return savedResponse;
     }
 
@@ -448,6 +562,36 @@ public class RippleTransactionService
     //    }
     //    // TODO: support other MFA flows
 
+    /**
+     * Give back a ticket or sequence that was not used up by a submit.
+     */
+    private void releaseSequence( final String sendingAddress,
+                                  final Long ticketSequence )
+    {
+        if ( null != ticketSequence )
+        {
+            rippleTicketPool.release( sendingAddress, ticketSequence );
+        }
+        else
+        {
+            // Later allocations would be stuck behind this sequence, so start again from what rippled knows
+            rippleSequenceAllocator.reset( sendingAddress );
+        }
+    }
+
+    /**
+     * Forget a ticket or sequence whose submit may or may not have reached rippled. A ticket stays leased until its
+     * lease runs out and the pool reconciles it with the ledger.
+     */
+    private void abandonSequence( final String sendingAddress,
+                                  final Long ticketSequence )
+    {
+        if ( null == ticketSequence )
+        {
+            rippleSequenceAllocator.reset( sendingAddress );
+        }
+    }
+
     private String getRippleVaultPluginPath( final TenantDomain tenantDomain )
     {
         return "/ripple/" + tenantDomain.getId();
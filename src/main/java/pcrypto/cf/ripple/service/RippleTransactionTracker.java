@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pcrypto.cf.ripple.client.RippleTransactionClient;
+import pcrypto.cf.ripple.client.RippledStreamClient;
+import pcrypto.cf.ripple.client.RippledStreamListener;
+import pcrypto.cf.ripple.client.dto.RippleTransactionResponseDto;
+import pcrypto.cf.ripple.domain.entity.RippleTransactionResponseDomain;
+import pcrypto.cf.ripple.domain.repository.RippleTransactionResponseRepository;
+import pcrypto.cf.security.web.TenantContext;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Tracks submitted Ripple transactions until their outcome is final, so that transaction status can be served
+ * from the database.
+ * <p>
+ * Validated transactions are picked up from the account subscriptions on the rippled stream, and the 'ledger'
+ * stream tells us how far the network has validated. Outcomes are written in batches. A transaction which has not
+ * been validated by the time its LastLedgerSequence has passed can never be, and is flagged for resubmission. One
+ * without a LastLedgerSequence could be validated at any time, so we give up on it after 'max-untracked-ms' and
+ * leave its outcome unknown rather than flag it. Anything pushed while the stream was down is recovered with a 'tx'
+ * lookup once it is back.
+ */
+@Slf4j
+@Component
+public class RippleTransactionTracker
+      implements RippledStreamListener
+{
+    private final RippledStreamClient rippledStreamClient;
+    private final RippleTransactionClient rippleTransactionClient;
+    private final RippleTransactionResponseRepository rippleTransactionResponseRepository;
+
+    private final Map<String, PendingTransaction> pendingTransactions = new ConcurrentHashMap<>();
+    private final Map<String, RippleTransactionResponseDto> validatedTransactions = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "ripple-transaction-tracker" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    private volatile long validatedLedgerIndex = 0;
+
+    // Set whenever stream messages may have been missed (at startup and after a disconnect)
+    private volatile boolean reconcileRequired = true;
+
+    @Value( "${ripple.transaction-tracker.flush-interval-ms:2000}" )
+    private long flushIntervalMs;
+
+    @Value( "${ripple.transaction-tracker.max-untracked-ms:3600000}" )
+    private long maxUntrackedMs;
+
+    @Value( "${cf.tenants:}" )
+    private String[] tenants;
+
+
+    @Autowired
+    public RippleTransactionTracker( final RippledStreamClient rippledStreamClient,
+                                     final RippleTransactionClient rippleTransactionClient,
+                                     final RippleTransactionResponseRepository rippleTransactionResponseRepository )
+    {
+        this.rippledStreamClient = rippledStreamClient;
+        this.rippleTransactionClient = rippleTransactionClient;
+        this.rippleTransactionResponseRepository = rippleTransactionResponseRepository;
+
+        rippledStreamClient.addListener( this );
+    }
+
+
+    /**
+     * Pick up every transaction that was still pending when we last stopped, and start tracking.
+     */
+    @EventListener( ApplicationReadyEvent.class )
+    public void start()
+    {
+        final Set<String> sourceAddresses = new HashSet<>();
+        for ( final String tenant : tenants )
+        {
+            TenantContext.setCurrentTenant( tenant.toLowerCase() );
+            try
+            {
+                for ( final RippleTransactionResponseDomain responseDomain : rippleTransactionResponseRepository.findPending() )
+                {
+                    final long submittedAt = null == responseDomain.getCreatedDate() ? System.currentTimeMillis() : responseDomain.getCreatedDate().toInstant().toEpochMilli();
+                    pendingTransactions.put( responseDomain.getTransactionHash(),
+                                             new PendingTransaction( tenant.toLowerCase(), responseDomain.getLastLedgerSequence(), submittedAt ) );
+                    if ( null != responseDomain.getSourceAddress() )
+                    {
+                        sourceAddresses.add( responseDomain.getSourceAddress() );
+                    }
+                }
+            }
+            catch ( final Exception e )
+            {
+                log.error( "Unable to load pending Ripple transactions for tenant " + tenant, e );
+            }
+            finally
+            {
+                TenantContext.clear();
+            }
+        }
+
+        log.info( "Tracking {} pending Ripple transactions", pendingTransactions.size() );
+        rippledStreamClient.subscribeAccounts( sourceAddresses );
+        rippledStreamClient.subscribeStreams( Collections.singleton( "ledger" ) );
+        flushScheduler.scheduleWithFixedDelay( this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS );
+    }
+
+
+    /**
+     * Start tracking a transaction which has just been submitted.
+     *
+     * @param tenant             the tenant which owns the transaction
+     * @param transactionHash    the hash of the signed transaction
+     * @param sourceAddress      the sending account, which we subscribe to in order to see the transaction validated
+     * @param lastLedgerSequence the last ledger the transaction can appear in, or null if it has none
+     */
+    public void track( final String tenant,
+                       final String transactionHash,
+                       final String sourceAddress,
+                       final Long lastLedgerSequence )
+    {
+        pendingTransactions.put( transactionHash, new PendingTransaction( tenant, lastLedgerSequence, System.currentTimeMillis() ) );
+        if ( null != sourceAddress )
+        {
+            rippledStreamClient.subscribeAccounts( Collections.singleton( sourceAddress ) );
+        }
+    }
+
+
+    @Override
+    public void onStreamMessage( final JsonNode message )
+    {
+        final String type = message.path( "type" ).asText();
+        if ( "ledgerClosed".equals( type ) )
+        {
+            // The ledger stream only reports validated ledgers
+            validatedLedgerIndex = Math.max( validatedLedgerIndex, message.path( "ledger_index" ).asLong() );
+        }
+        else if ( "transaction".equals( type ) && message.path( "validated" ).asBoolean( false ) )
+        {
+            final JsonNode transaction = message.path( "transaction" );
+            final String hash = transaction.path( "hash" ).asText();
+            if ( !pendingTransactions.containsKey( hash ) )
+            {
+                return;
+            }
+
+            final RippleTransactionResponseDto outcome = new RippleTransactionResponseDto();
+            outcome.setHash( hash );
+            outcome.setValidated( true );
+            outcome.setLedger( message.path( "ledger_index" ).asText() );
+            outcome.setResult( message.path( "meta" ).path( "TransactionResult" ).asText( message.path( "engine_result" ).asText() ) );
+            outcome.setFee( new BigDecimal( transaction.path( "Fee" ).asText( "0" ) ) );
+            outcome.setSequence( transaction.path( "Sequence" ).asText() );
+            outcome.setSourceAddress( transaction.path( "Account" ).asText() );
+            validatedTransactions.put( hash, outcome );
+        }
+    }
+
+    @Override
+    public void onStreamDisconnected()
+    {
+        reconcileRequired = true;
+    }
+
+
+    @PreDestroy
+    public void close()
+    {
+        flushScheduler.shutdownNow();
+    }
+
+
+    /**
+     * Write every outcome collected since the last flush, one batch per tenant.
+     */
+    void flush()
+    {
+        try
+        {
+            if ( reconcileRequired && rippledStreamClient.isConnected() )
+            {
+                reconcile();
+            }
+
+            final Map<String, List<String>> hashesByTenant = new HashMap<>();
+            for ( final Map.Entry<String, PendingTransaction> entry : pendingTransactions.entrySet() )
+            {
+                final String hash = entry.getKey();
+                final PendingTransaction pendingTransaction = entry.getValue();
+                if ( validatedTransactions.containsKey( hash ) || isExpired( pendingTransaction ) )
+                {
+                    hashesByTenant.computeIfAbsent( pendingTransaction.tenant, key -> new ArrayList<>() ).add( hash );
+                }
+            }
+
+            for ( final Map.Entry<String, List<String>> entry : hashesByTenant.entrySet() )
+            {
+                writeOutcomes( entry.getKey(), entry.getValue() );
+            }
+        }
+        catch ( final Exception e )
+        {
+            log.error( "Error writing Ripple transaction outcomes", e );
+        }
+    }
+
+
+    private boolean isExpired( final PendingTransaction pendingTransaction )
+    {
+        // We can only be sure a transaction was not validated if we have not missed any stream messages
+        if ( reconcileRequired )
+        {
+            return false;
+        }
+        if ( null == pendingTransaction.lastLedgerSequence )
+        {
+            return System.currentTimeMillis() - pendingTransaction.submittedAtMillis > maxUntrackedMs;
+        }
+        return validatedLedgerIndex > pendingTransaction.lastLedgerSequence;
+    }
+
+    /**
+     * Look up every pending transaction we have not seen validated, in case it was validated while we weren't listening.
+     */
+    private void reconcile()
+    {
+        reconcileRequired = false;
+        for ( final String hash : pendingTransactions.keySet() )
+        {
+            if ( validatedTransactions.containsKey( hash ) )
+            {
+                continue;
+            }
+            try
+            {
+                final RippleTransactionResponseDto transaction = rippleTransactionClient.getTransaction( hash );
+                if ( transaction.isSucceeded() && transaction.isValidated() )
+                {
+                    validatedTransactions.put( hash, transaction );
+                }
+            }
+            catch ( final Exception e )
+            {
+                log.warn( "Unable to look up Ripple transaction {}: {}", hash, e.getMessage() );
+                reconcileRequired = true;
+            }
+        }
+    }
+
+    private void writeOutcomes( final String tenant,
+                                final List<String> hashes )
+    {
+        TenantContext.setCurrentTenant( tenant );
+        try
+        {
+            final List<RippleTransactionResponseDomain> responseDomains = rippleTransactionResponseRepository.findByTransactionHashIn( hashes );
+            for ( final RippleTransactionResponseDomain responseDomain : responseDomains )
+            {
+                final RippleTransactionResponseDto outcome = validatedTransactions.get( responseDomain.getTransactionHash() );
+                if ( null != outcome )
+                {
+                    responseDomain.setValidated( true );
+                    responseDomain.setValidatedDate( OffsetDateTime.now() );
+                    responseDomain.setLedger( Long.valueOf( outcome.getLedger() ) );
+                    responseDomain.setTransactionResult( outcome.getResult() );
+                    responseDomain.setSuccess( "tesSUCCESS".equals( outcome.getResult() ) );
+                    responseDomain.setFee( outcome.getFee() );
+                }
+                else if ( null == responseDomain.getLastLedgerSequence() )
+                {
+                    log.warn( "Ripple transaction {} has no LastLedgerSequence and was not validated within {}ms; no longer tracking it",
+                              responseDomain.getTransactionHash(), maxUntrackedMs );
+                    responseDomain.setValidated( false );
+                }
+                else
+                {
+                    log.warn( "Ripple transaction {} was not validated by its LastLedgerSequence {} and must be resubmitted",
+                              responseDomain.getTransactionHash(), responseDomain.getLastLedgerSequence() );
+                    responseDomain.setValidated( false );
+                    responseDomain.setResubmitRequired( true );
+                }
+            }
+            rippleTransactionResponseRepository.saveAll( responseDomains );
+
+            for ( final String hash : hashes )
+            {
+                pendingTransactions.remove( hash );
+                validatedTransactions.remove( hash );
+            }
+        }
+        finally
+        {
+            TenantContext.clear();
+        }
+    }
+
+
+    private static final class PendingTransaction
+    {
+        private final String tenant;
+        private final Long lastLedgerSequence;
+        private final long submittedAtMillis;
+
+        private PendingTransaction( final String tenant,
+                                    final Long lastLedgerSequence,
+                                    final long submittedAtMillis )
+        {
+            this.tenant = tenant;
+            this.lastLedgerSequence = lastLedgerSequence;
+            this.submittedAtMillis = submittedAtMillis;
+        }
+    }
+}
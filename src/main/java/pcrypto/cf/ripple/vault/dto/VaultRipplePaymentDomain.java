@@ -29,6 +29,14 @@ public class VaultRipplePaymentDomain
     private String assetIssuer;
     private String memo;
 
+    // Set explicitly so that Vault does not need to look them up from rippled
+    private Long fee;
+    private Long sequence;
+    private Long lastLedgerSequence;
+
+    // When set, the payment consumes this ticket instead of a sequence number (and sequence must be 0)
+    private Long ticketSequence;
+
 
     public String getSource()
     {
@@ -99,4 +107,44 @@ public class VaultRipplePaymentDomain
     {
         this.memo = memo;
     }
+
+    public Long getFee()
+    {
+        return fee;
+    }
+
+    public void setFee( final Long fee )
+    {
+        this.fee = fee;
+    }
+
+    public Long getSequence()
+    {
+        return sequence;
+    }
+
+    public void setSequence( final Long sequence )
+    {
+        this.sequence = sequence;
+    }
+
+    public Long getLastLedgerSequence()
+    {
+        return lastLedgerSequence;
+    }
+
+    public void setLastLedgerSequence( final Long lastLedgerSequence )
+    {
+        this.lastLedgerSequence = lastLedgerSequence;
+    }
+
+    public Long getTicketSequence()
+    {
+        return ticketSequence;
+    }
+
+    public void setTicketSequence( final Long ticketSequence )
+    {
+        this.ticketSequence = ticketSequence;
+    }
 }
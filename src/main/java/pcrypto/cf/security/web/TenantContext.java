@@ -16,6 +16,8 @@
 
 package pcrypto.cf.security.web;
 
+import java.util.function.Function;
+
 public class TenantContext
 {
     public static final String DEFAULT_TENANT = "test";
@@ -36,4 +38,25 @@ public class TenantContext
     {
         currentTenant.remove();
     }
+
+    /**
+     * Wrap a future's continuation so that it runs as the given tenant, whichever thread ends up running it. Capture
+     * the tenant when the call is made; the thread that completes the future belongs to no tenant.
+     */
+    public static <T, R> Function<T, R> withTenant( final String tenant,
+                                                    final Function<T, R> function )
+    {
+        return value -> {
+            final String previousTenant = currentTenant.get();
+            currentTenant.set( tenant );
+            try
+            {
+                return function.apply( value );
+            }
+            finally
+            {
+                currentTenant.set( previousTenant );
+            }
+        };
+    }
 }
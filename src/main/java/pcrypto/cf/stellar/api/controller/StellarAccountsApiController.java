@@ -51,7 +51,7 @@ import pcrypto.cf.mfa.service.totp.TotpService;
 import pcrypto.cf.security.domain.CustomUserDetails;
 import pcrypto.cf.stellar.api.model.StellarAccount;
 import pcrypto.cf.stellar.api.model.StellarAccountTrustline;
-import pcrypto.cf.stellar.client.StellarNetworkService;
+import pcrypto.cf.stellar.cache.StellarBalanceCache;
 import pcrypto.cf.stellar.domain.entity.StellarAccountDomain;
 import pcrypto.cf.stellar.domain.repository.StellarAccountRepository;
 import pcrypto.cf.stellar.vault.dto.VaultStellarAccountDomain;
@@ -80,7 +80,7 @@ public class StellarAccountsApiController
 
     private final StellarAccountRepository stellarAccountRepository;
 
-    private final StellarNetworkService stellarNetworkService;
+    private final StellarBalanceCache stellarBalanceCache;
 
     private final TotpService totpService;
 
@@ -91,14 +91,14 @@ public class StellarAccountsApiController
     public StellarAccountsApiController( final VaultOperations vaultOperations,
                                          final AccountRepository accountRepository,
                                          final StellarAccountRepository stellarAccountRepository,
-                                         final StellarNetworkService stellarNetworkService,
+                                         final StellarBalanceCache stellarBalanceCache,
                                          final TotpService totpService,
                                          final EmailService emailService )
     {
         this.vaultOperations = vaultOperations;
         this.accountRepository = accountRepository;
         this.stellarAccountRepository = stellarAccountRepository;
-        this.stellarNetworkService = stellarNetworkService;
+        this.stellarBalanceCache = stellarBalanceCache;
         this.totpService = totpService;
         this.emailService = emailService;
     }
@@ -297,7 +297,7 @@ public class StellarAccountsApiController
     private List<StellarAccount.Balance> getBalances( final StellarAccount stellarAccount )
     {
         final List<StellarAccount.Balance> balances = new ArrayList<>();
-        final AccountResponse.Balance[] stellarAccountBalances = stellarNetworkService.getAccountBalances( stellarAccount.getAddress() );
+        final AccountResponse.Balance[] stellarAccountBalances = stellarBalanceCache.getBalances( stellarAccount.getAddress() );
         for ( final AccountResponse.Balance stellarAccountBalance : stellarAccountBalances )
         {
             final Asset asset = stellarAccountBalance.getAsset();
@@ -70,8 +70,8 @@ public class StellarPaymentRequest
     private String assetIssuer = null;
 
     @ApiModelProperty( value = "The optional ChainFront account to be used as the payment channel. This " +
-                               "account will be used to pay transaction fees. If not set, the source account will be used " +
-                               "to pay all fees.",
+                               "account will be used to pay transaction fees. If not set, a channel from the tenant's managed pool is " +
+                               "used if one is free, and otherwise the source account pays all fees.",
                        position = 60 )
     private AccountIdentifier paymentChannelCfAccountIdentifier = null;
 
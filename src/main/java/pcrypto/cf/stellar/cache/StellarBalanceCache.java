@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.stellar.sdk.responses.AccountResponse;
+import pcrypto.cf.stellar.client.HorizonStreamClient;
+import pcrypto.cf.stellar.client.HorizonStreamListener;
+import pcrypto.cf.stellar.client.StellarNetworkService;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * In-memory cache of Stellar account balances which is kept current by Horizon's effects stream.
+ * <p>
+ * Any effect on an account we hold (credit, debit, trust line change, trade, ...) drops its snapshot, and it is
+ * re-read from Horizon on the next read. Fees are charged without an effect, but the operations that pay them always
+ * produce one for their source account. Snapshots older than the configured staleness bound, or any snapshot while
+ * the stream is down, are refreshed from Horizon before being served.
+ */
+@Slf4j
+@Component
+public class StellarBalanceCache
+      implements HorizonStreamListener
+{
+    private final StellarNetworkService stellarNetworkService;
+    private final HorizonStreamClient horizonStreamClient;
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    // Every account that has been read; only effects on these are of interest
+    private final Set<String> tracked = ConcurrentHashMap.newKeySet();
+
+    // When each account was last touched by an effect, so a read racing with an effect doesn't keep stale balances
+    private final Map<String, Long> invalidations = new ConcurrentHashMap<>();
+    private final AtomicLong invalidationCounter = new AtomicLong();
+
+    @Value( "${stellar.balance-cache.max-staleness-ms:60000}" )
+    private long maxStalenessMs;
+
+
+    @Autowired
+    public StellarBalanceCache( final StellarNetworkService stellarNetworkService,
+                                final HorizonStreamClient horizonStreamClient )
+    {
+        this.stellarNetworkService = stellarNetworkService;
+        this.horizonStreamClient = horizonStreamClient;
+
+        horizonStreamClient.addListener( this );
+    }
+
+
+    /**
+     * Returns the balances of the account, going to Horizon only if we have no usable snapshot.
+     */
+    public AccountResponse.Balance[] getBalances( final String stellarAddress )
+    {
+        final Snapshot snapshot = snapshots.get( stellarAddress );
+        if ( null != snapshot
+             && horizonStreamClient.isConnected()
+             && System.currentTimeMillis() - snapshot.refreshedAtMillis <= maxStalenessMs )
+        {
+            return snapshot.balances;
+        }
+
+        tracked.add( stellarAddress );
+        final long readAt = invalidationCounter.get();
+        final AccountResponse.Balance[] balances = stellarNetworkService.getAccountBalances( stellarAddress );
+        snapshots.put( stellarAddress, new Snapshot( balances ) );
+
+        // An effect arrived while we were reading, so what we read may already be out of date
+        if ( invalidations.getOrDefault( stellarAddress, -1L ) >= readAt )
+        {
+            snapshots.remove( stellarAddress );
+        }
+
+        return balances;
+    }
+
+
+    @Override
+    public void onStreamEvent( final JsonNode event )
+    {
+        final String account = event.path( "account" ).asText( null );
+        if ( null == account || !tracked.contains( account ) )
+        {
+            return;
+        }
+
+        invalidations.put( account, invalidationCounter.incrementAndGet() );
+        snapshots.remove( account );
+    }
+
+
+    private static final class Snapshot
+    {
+        private final AccountResponse.Balance[] balances;
+        private final long refreshedAtMillis = System.currentTimeMillis();
+
+        private Snapshot( final AccountResponse.Balance[] balances )
+        {
+            this.balances = balances;
+        }
+    }
+}
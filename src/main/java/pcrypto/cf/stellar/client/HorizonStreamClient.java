@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Follows Horizon's server-sent event streams (ex. '/effects', every effect on the network), each over its own
+ * long-lived HTTP connection. A single network-wide stream covers any number of accounts, so the number of
+ * connections doesn't grow with the number of accounts we manage; listeners pick out the events they care about.
+ * <p>
+ * The id of the last event received on each stream is kept as its cursor. When a connection drops we reconnect
+ * with 'Last-Event-ID' set to it, and Horizon replays everything we missed before carrying on.
+ */
+@Slf4j
+@Component
+public class HorizonStreamClient
+{
+    private final ObjectMapper objectMapper;
+
+    private final List<HorizonStreamListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<HorizonStream> streams = new ArrayList<>();
+
+    // Comma separated list of Horizon servers; each stream follows one at a time and moves on to the next when it fails
+    @Value( "${stellar.horizon-url:https://horizon-testnet.stellar.org}" )
+    private String[] horizonUrls;
+
+    // Comma separated list of streams to follow, relative to the Horizon url
+    @Value( "${stellar.horizon-stream.paths:/effects}" )
+    private String[] streamPaths;
+
+    @Value( "${stellar.horizon-stream.read-timeout-ms:60000}" )
+    private long readTimeoutMs;
+
+    @Value( "${stellar.horizon-stream.reconnect-delay-ms:5000}" )
+    private long reconnectDelayMs;
+
+    private OkHttpClient httpClient;
+    private volatile boolean closed = false;
+
+
+    @Autowired
+    public HorizonStreamClient( final ObjectMapper objectMapper )
+    {
+        this.objectMapper = objectMapper;
+    }
+
+
+    public void addListener( final HorizonStreamListener listener )
+    {
+        this.listeners.add( listener );
+    }
+
+    /**
+     * Whether every stream is currently connected.
+     */
+    public boolean isConnected()
+    {
+        synchronized ( this.streams )
+        {
+            return !this.streams.isEmpty() && this.streams.stream().allMatch( stream -> stream.connected );
+        }
+    }
+
+
+    @EventListener( ApplicationReadyEvent.class )
+    public void start()
+    {
+        // Horizon sends a message at least every ledger close, so a long silence means the connection is dead
+        this.httpClient = new OkHttpClient.Builder()
+              .readTimeout( this.readTimeoutMs, TimeUnit.MILLISECONDS )
+              .retryOnConnectionFailure( true )
+              .build();
+
+        synchronized ( this.streams )
+        {
+            for ( final String streamPath : this.streamPaths )
+            {
+                final HorizonStream stream = new HorizonStream( streamPath.trim() );
+                this.streams.add( stream );
+
+                final Thread thread = new Thread( stream, "horizon-stream" + streamPath.trim().replace( '/', '-' ) );
+                thread.setDaemon( true );
+                thread.start();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close()
+    {
+        this.closed = true;
+        synchronized ( this.streams )
+        {
+            this.streams.forEach( HorizonStream::cancel );
+        }
+    }
+
+
+    private void dispatch( final String data )
+    {
+        final JsonNode event;
+        try
+        {
+            event = this.objectMapper.readTree( data );
+        }
+        catch ( final IOException e )
+        {
+            log.warn( "Unable to parse stream event from Horizon: {}", e.getMessage() );
+            return;
+        }
+
+        for ( final HorizonStreamListener listener : this.listeners )
+        {
+            try
+            {
+                listener.onStreamEvent( event );
+            }
+            catch ( final Exception e )
+            {
+                log.error( "Error handling Horizon stream event", e );
+            }
+        }
+    }
+
+    private static String stripTrailingSlash( final String url )
+    {
+        return url.endsWith( "/" ) ? url.substring( 0, url.length() - 1 ) : url;
+    }
+
+
+    /**
+     * One stream, read on its own thread until the client is closed.
+     */
+    private final class HorizonStream
+          implements Runnable
+    {
+        private final String path;
+
+        // Id of the last event received; we start from events happening now. Paging tokens are the same on every
+        // Horizon server of a network, so the cursor carries over when we move to another server.
+        private String cursor = "now";
+        private int urlIndex = 0;
+        private String url;
+        private volatile boolean connected = false;
+        private volatile Call call;
+
+        private HorizonStream( final String path )
+        {
+            this.path = path;
+        }
+
+        @Override
+        public void run()
+        {
+            while ( !closed )
+            {
+                this.url = stripTrailingSlash( horizonUrls[Math.floorMod( this.urlIndex, horizonUrls.length )].trim() ) + this.path;
+                try
+                {
+                    follow();
+                }
+                catch ( final IOException e )
+                {
+                    if ( !closed )
+                    {
+                        log.warn( "Horizon stream {} failed: {}", this.url, e.getMessage() );
+                    }
+                }
+                finally
+                {
+                    disconnected();
+                }
+                this.urlIndex++;
+
+                try
+                {
+                    Thread.sleep( reconnectDelayMs );
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void follow()
+              throws IOException
+        {
+            final Request.Builder requestBuilder = new Request.Builder()
+                  .url( this.url + "?cursor=" + this.cursor )
+                  .header( "Accept", "text/event-stream" );
+            if ( !"now".equals( this.cursor ) )
+            {
+                requestBuilder.header( "Last-Event-ID", this.cursor );
+            }
+            this.call = httpClient.newCall( requestBuilder.build() );
+            if ( closed )
+            {
+                return;
+            }
+
+            try ( final Response response = this.call.execute() )
+            {
+                final ResponseBody body = response.body();
+                if ( !response.isSuccessful() || null == body )
+                {
+                    log.warn( "Unable to open Horizon stream {}: HTTP {}", this.url, response.code() );
+                    return;
+                }
+
+                this.connected = true;
+                log.info( "Opened Horizon stream {} from cursor {}", this.url, this.cursor );
+                for ( final HorizonStreamListener listener : listeners )
+                {
+                    listener.onStreamConnected();
+                }
+
+                readEvents( body.source() );
+            }
+        }
+
+        private void readEvents( final BufferedSource source )
+              throws IOException
+        {
+            String id = null;
+            final StringBuilder data = new StringBuilder();
+
+            String line;
+            while ( null != ( line = source.readUtf8Line() ) )
+            {
+                if ( line.isEmpty() )
+                {
+                    // A blank line ends the event
+                    if ( data.length() > 0 && '{' == data.charAt( 0 ) )
+                    {
+                        dispatch( data.toString() );
+                    }
+                    if ( null != id )
+                    {
+                        this.cursor = id;
+                    }
+                    id = null;
+                    data.setLength( 0 );
+                }
+                else if ( line.startsWith( "id:" ) )
+                {
+                    id = line.substring( 3 ).trim();
+                }
+                else if ( line.startsWith( "data:" ) )
+                {
+                    if ( data.length() > 0 )
+                    {
+                        data.append( '\n' );
+                    }
+                    data.append( line.substring( 5 ).trim() );
+                }
+                // Comments (':') and other fields such as 'retry' and 'event' are ignored
+            }
+        }
+
+        private void disconnected()
+        {
+            if ( this.connected )
+            {
+                this.connected = false;
+                for ( final HorizonStreamListener listener : listeners )
+                {
+                    listener.onStreamDisconnected();
+                }
+            }
+        }
+
+        private void cancel()
+        {
+            final Call current = this.call;
+            if ( null != current )
+            {
+                current.cancel();
+            }
+        }
+    }
+}
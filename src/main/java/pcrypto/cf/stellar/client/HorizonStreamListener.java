@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+
+/**
+ * Receives the events pushed by Horizon on our server-sent event streams.
+ */
+public interface HorizonStreamListener
+{
+    /**
+     * Called for every event (an effect, operation, etc. depending on the stream).
+     *
+     * @param event the parsed event
+     */
+    void onStreamEvent( JsonNode event );
+
+    /**
+     * Called when a stream connection drops. The stream resumes from the last event received once it reconnects,
+     * but anything that happened in between is only delivered after that.
+     */
+    default void onStreamDisconnected()
+    {
+    }
+
+    /**
+     * Called when a stream connection is (re-)established and is about to replay anything missed.
+     */
+    default void onStreamConnected()
+    {
+    }
+}
@@ -22,11 +22,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.stellar.sdk.KeyPair;
 import org.stellar.sdk.Transaction;
+import org.stellar.sdk.Util;
+import org.stellar.sdk.requests.ErrorResponse;
 import org.stellar.sdk.responses.AccountResponse;
 import pcrypto.cf.exception.BlockchainServiceException;
 import pcrypto.cf.stellar.client.response.DecoratedSubmitTransactionResponse;
 import pcrypto.cf.stellar.client.response.DecoratedTransactionResponse;
+import pcrypto.cf.stellar.client.template.StellarSubmitOutcomeUnknownException;
 import pcrypto.cf.stellar.client.template.StellarTemplate;
+import pcrypto.cf.stellar.client.template.StellarTransactionFailedException;
 
 import java.io.IOException;
 
@@ -49,6 +53,12 @@ public class StellarNetworkService
     }
 
 
+    /**
+     * Submit a signed transaction. If Horizon turns it away, a {@link StellarTransactionFailedException} carries the
+     * result codes. If the outcome is not known (no answer, or {@link StellarSubmitOutcomeUnknownException}), the
+     * transaction may still be applied: callers must look it up by hash (see {@link #findTransaction(String)}) before
+     * signing the payment again, and must never re-sign on 'tx_bad_seq' without doing so either.
+     */
     public DecoratedSubmitTransactionResponse submitTransaction( final String signedTx )
     {
         try
@@ -75,6 +85,45 @@ public class StellarNetworkService
         }
     }
 
+    /**
+     * Look a transaction up by hash, or return null if Horizon has no record of it.
+     */
+    public DecoratedTransactionResponse findTransaction( final String transactionHash )
+    {
+        try
+        {
+            return getTransaction( transactionHash );
+        }
+        catch ( final BlockchainServiceException e )
+        {
+            if ( e.getCause() instanceof ErrorResponse && 404 == ( (ErrorResponse) e.getCause() ).getCode() )
+            {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    public Transaction decodeTransaction( final String signedTx )
+    {
+        try
+        {
+            return Transaction.fromEnvelopeXdr( signedTx );
+        }
+        catch ( final IOException e )
+        {
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * The hash Horizon knows a signed transaction by, whether or not it was ever submitted.
+     */
+    public String getTransactionHash( final String signedTx )
+    {
+        return Util.bytesToHex( decodeTransaction( signedTx ).hash() ).toLowerCase();
+    }
+
     public AccountResponse.Balance[] getAccountBalances( final String stellarAddress )
     {
         final AccountResponse account;
@@ -89,4 +138,17 @@ public class StellarNetworkService
         }
         return account.getBalances();
     }
+
+    public long getSequenceNumber( final String stellarAddress )
+    {
+        try
+        {
+            final KeyPair keyPair = KeyPair.fromAccountId( stellarAddress );
+            return stellarTemplate.account( keyPair ).getSequenceNumber();
+        }
+        catch ( final IOException e )
+        {
+            throw new BlockchainServiceException( e.getMessage(), e );
+        }
+    }
 }
@@ -18,7 +18,9 @@ package pcrypto.cf.stellar.client.response;
 
 import org.stellar.sdk.responses.SubmitTransactionResponse;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -29,6 +31,7 @@ public class DecoratedSubmitTransactionResponse
 {
     private final SubmitTransactionResponse original;
     private final Map<String, String> resultCodeMap = new HashMap<>();
+    private final List<String> operationResultCodes = new ArrayList<>();
 
     public DecoratedSubmitTransactionResponse( final SubmitTransactionResponse original )
     {
@@ -51,6 +54,20 @@ public class DecoratedSubmitTransactionResponse
         this.resultCodeMap.putAll( resultCodeMap );
     }
 
+    /**
+     * The result code of each operation, in operation order.
+     */
+    public List<String> getOperationResultCodes()
+    {
+        return this.operationResultCodes;
+    }
+
+    public void setOperationResultCodes( final List<String> operationResultCodes )
+    {
+        this.operationResultCodes.clear();
+        this.operationResultCodes.addAll( operationResultCodes );
+    }
+
     public boolean isSuccess()
     {
         return getOriginal().isSuccess();
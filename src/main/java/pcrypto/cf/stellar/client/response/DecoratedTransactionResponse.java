@@ -19,6 +19,7 @@ package pcrypto.cf.stellar.client.response;
 import org.stellar.sdk.KeyPair;
 import org.stellar.sdk.Memo;
 import org.stellar.sdk.responses.TransactionResponse;
+import org.stellar.sdk.xdr.TransactionResultCode;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -31,6 +32,7 @@ public class DecoratedTransactionResponse
 {
     private final TransactionResponse original;
     private final Map<String, String> resultCodeMap = new HashMap<>();
+    private String transactionResultCode;
 
     public DecoratedTransactionResponse( final TransactionResponse original )
     {
@@ -53,6 +55,24 @@ public class DecoratedTransactionResponse
         this.resultCodeMap.putAll( resultCodeMap );
     }
 
+    /**
+     * The transaction's result code (ex. 'txSUCCESS', 'txFAILED').
+     */
+    public String getTransactionResultCode()
+    {
+        return this.transactionResultCode;
+    }
+
+    public void setTransactionResultCode( final String transactionResultCode )
+    {
+        this.transactionResultCode = transactionResultCode;
+    }
+
+    public boolean isSuccess()
+    {
+        return TransactionResultCode.txSUCCESS.toString().equals( this.transactionResultCode );
+    }
+
     public String getHash()
     {
         return getOriginal().getHash();
@@ -46,6 +46,6 @@ public class DefaultStellarErrorHandler
             }
         }
 
-        throw new BlockchainServiceException( sb.toString() );
+        throw new StellarTransactionFailedException( sb.toString(), transactionResultCode, operationsResultCodes );
     }
 }
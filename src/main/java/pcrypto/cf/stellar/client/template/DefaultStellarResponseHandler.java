@@ -30,8 +30,10 @@ import pcrypto.cf.stellar.client.response.DecoratedTransactionResponse;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -47,10 +49,10 @@ public class DefaultStellarResponseHandler
     {
         final DecoratedSubmitTransactionResponse decoratedSubmitTransactionResponse = new DecoratedSubmitTransactionResponse( response );
 
-        final String resultXdr = response.getResultXdr();
-        final Map<String, String> resultCodeMap = parseResultCodeMap( resultXdr );
+        final OperationResult[] results = getOperationResults( decodeTransactionResult( response.getResultXdr() ) );
 
-        decoratedSubmitTransactionResponse.setResultCodeMap( resultCodeMap );
+        decoratedSubmitTransactionResponse.setResultCodeMap( parseResultCodeMap( results ) );
+        decoratedSubmitTransactionResponse.setOperationResultCodes( parseOperationResultCodes( results ) );
         return decoratedSubmitTransactionResponse;
     }
 
@@ -62,24 +64,64 @@ public class DefaultStellarResponseHandler
     {
         final DecoratedTransactionResponse decoratedTransactionResponse = new DecoratedTransactionResponse( response );
 
-        final String resultXdr = response.getResultXdr();
-        final Map<String, String> resultCodeMap = parseResultCodeMap( resultXdr );
+        final TransactionResult transactionResult = decodeTransactionResult( response.getResultXdr() );
+        final Map<String, String> resultCodeMap = parseResultCodeMap( getOperationResults( transactionResult ) );
 
         decoratedTransactionResponse.setResultCodeMap( resultCodeMap );
+        decoratedTransactionResponse.setTransactionResultCode( transactionResult.getResult().getDiscriminant().toString() );
         return decoratedTransactionResponse;
     }
 
 
-    private Map<String, String> parseResultCodeMap( final String resultXdr )
+    private TransactionResult decodeTransactionResult( final String resultXdr )
           throws IOException
     {
-        final Map<String, String> resultCodeMap = new HashMap<>();
-
         final byte[] decodedResultXdr = Base64.getDecoder().decode( resultXdr );
 
         final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream( decodedResultXdr );
-        final TransactionResult transactionResult = TransactionResult.decode( new XdrDataInputStream( byteArrayInputStream ) );
+        return TransactionResult.decode( new XdrDataInputStream( byteArrayInputStream ) );
+    }
+
+    private OperationResult[] getOperationResults( final TransactionResult transactionResult )
+    {
         final OperationResult[] results = transactionResult.getResult().getResults();
+        return null == results ? new OperationResult[0] : results;
+    }
+
+    /**
+     * The result code of each operation, in operation order, so that the operations of a batched transaction can
+     * be matched back to the payments they came from.
+     */
+    private List<String> parseOperationResultCodes( final OperationResult[] results )
+    {
+        final List<String> operationResultCodes = new ArrayList<>();
+        for ( final OperationResult result : results )
+        {
+            final OperationResult.OperationResultTr tr = result.getTr();
+            if ( null == tr )
+            {
+                operationResultCodes.add( result.getDiscriminant().toString() );
+                continue;
+            }
+            switch ( tr.getDiscriminant() )
+            {
+                case CHANGE_TRUST:
+                    operationResultCodes.add( tr.getChangeTrustResult().getDiscriminant().toString() );
+                    break;
+                case PAYMENT:
+                    operationResultCodes.add( tr.getPaymentResult().getDiscriminant().toString() );
+                    break;
+                default:
+                    operationResultCodes.add( tr.getDiscriminant().toString() );
+                    break;
+            }
+        }
+        return operationResultCodes;
+    }
+
+    private Map<String, String> parseResultCodeMap( final OperationResult[] results )
+    {
+        final Map<String, String> resultCodeMap = new HashMap<>();
         for ( final OperationResult result : results )
         {
             final OperationResult.OperationResultTr tr = result.getTr();
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.client.template;
+
+import lombok.extern.slf4j.Slf4j;
+import org.stellar.sdk.Server;
+
+
+/**
+ * One Horizon server along with the health statistics used to route requests to it. Latency and error rate are
+ * tracked as exponentially weighted moving averages so that recent behaviour dominates, and the remaining request
+ * allowance Horizon reports in 'X-RateLimit-Remaining' is kept so that we move off a server before it throttles us.
+ */
+@Slf4j
+class HorizonNode
+{
+    private static final double ALPHA = 0.3;
+
+    // Consecutive failures after which the node is taken out of rotation until the retry delay has passed
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    // Score multiplier for a node that is nearly out of its rate limit allowance
+    private static final double RATE_LIMITED_PENALTY = 10;
+
+    private final String url;
+    private final Server server;
+    private final long retryDelayMs;
+    private final int rateLimitReserve;
+
+    private double latencyEwmaMs = 0;
+    private double errorRateEwma = 0;
+    private int consecutiveFailures = 0;
+    private volatile long downUntilMillis = 0;
+
+    // -1 until Horizon has told us
+    private volatile int rateLimitRemaining = -1;
+
+
+    HorizonNode( final String url,
+                 final Server server,
+                 final long retryDelayMs,
+                 final int rateLimitReserve )
+    {
+        this.url = url;
+        this.server = server;
+        this.retryDelayMs = retryDelayMs;
+        this.rateLimitReserve = rateLimitReserve;
+    }
+
+
+    String getUrl()
+    {
+        return url;
+    }
+
+    Server getServer()
+    {
+        return server;
+    }
+
+    boolean isHealthy()
+    {
+        return System.currentTimeMillis() >= downUntilMillis;
+    }
+
+    /**
+     * Lower is better. Untried nodes score zero so that they get sampled.
+     */
+    synchronized double getScore()
+    {
+        final double score = latencyEwmaMs * ( 1 + 10 * errorRateEwma );
+        final int remaining = rateLimitRemaining;
+        if ( remaining >= 0 && remaining < rateLimitReserve )
+        {
+            return ( score + 1 ) * RATE_LIMITED_PENALTY;
+        }
+        return score;
+    }
+
+    void setRateLimitRemaining( final int rateLimitRemaining )
+    {
+        this.rateLimitRemaining = rateLimitRemaining;
+    }
+
+    synchronized void recordSuccess( final long latencyMs )
+    {
+        latencyEwmaMs = ALPHA * latencyMs + ( 1 - ALPHA ) * latencyEwmaMs;
+        errorRateEwma = ( 1 - ALPHA ) * errorRateEwma;
+        consecutiveFailures = 0;
+        downUntilMillis = 0;
+    }
+
+    synchronized void recordFailure( final long latencyMs )
+    {
+        latencyEwmaMs = ALPHA * latencyMs + ( 1 - ALPHA ) * latencyEwmaMs;
+        errorRateEwma = ALPHA + ( 1 - ALPHA ) * errorRateEwma;
+        consecutiveFailures++;
+        if ( consecutiveFailures >= MAX_CONSECUTIVE_FAILURES )
+        {
+            markDown();
+        }
+    }
+
+    synchronized void markDown()
+    {
+        if ( isHealthy() )
+        {
+            log.warn( "Taking Horizon node {} out of rotation for {}ms", url, retryDelayMs );
+        }
+        downUntilMillis = System.currentTimeMillis() + retryDelayMs;
+    }
+}
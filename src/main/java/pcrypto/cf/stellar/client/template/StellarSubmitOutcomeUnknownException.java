@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.client.template;
+
+import pcrypto.cf.exception.BlockchainServiceException;
+
+
+/**
+ * Thrown when a submitted transaction was sent to more than one Horizon server and the answer doesn't tell whether it
+ * was applied: a server which failed to answer may have applied it, in which case the resend is turned away with
+ * 'tx_bad_seq'. The caller must look the transaction up by hash before signing the payment again.
+ */
+public class StellarSubmitOutcomeUnknownException
+      extends BlockchainServiceException
+{
+    private final String transactionHash;
+
+
+    public StellarSubmitOutcomeUnknownException( final String message,
+                                                 final String transactionHash )
+    {
+        super( message );
+        this.transactionHash = transactionHash;
+    }
+
+
+    public String getTransactionHash()
+    {
+        return transactionHash;
+    }
+}
@@ -18,13 +18,17 @@ package pcrypto.cf.stellar.client.template;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.stellar.sdk.KeyPair;
 import org.stellar.sdk.Network;
 import org.stellar.sdk.Server;
 import org.stellar.sdk.Transaction;
+import org.stellar.sdk.Util;
 import org.stellar.sdk.requests.ErrorResponse;
 import org.stellar.sdk.responses.AccountResponse;
+import org.stellar.sdk.responses.Response;
 import org.stellar.sdk.responses.SubmitTransactionResponse;
 import org.stellar.sdk.responses.TransactionResponse;
 import pcrypto.cf.exception.BlockchainServiceException;
@@ -32,18 +36,37 @@ import pcrypto.cf.stellar.client.response.DecoratedSubmitTransactionResponse;
 import pcrypto.cf.stellar.client.response.DecoratedTransactionResponse;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
+/**
+ * Sends requests to one or more Horizon servers.
+ * <p>
+ * Reads go to the healthy server with the best latency/error score, moving off servers that are close to their
+ * rate limit, and are retried on the next best server if they fail. Submits go to the preferred server (the first
+ * one configured) while it is healthy. They only move to another server when the request never got an answer or was
+ * turned away. A server which failed to answer may still have applied the transaction, so a resend that comes back
+ * 'tx_bad_seq' is reported as {@link StellarSubmitOutcomeUnknownException} rather than as a failure; callers must
+ * then look the transaction up by hash, and never sign the payment again without doing so.
+ */
 @Component
 public class StellarTemplate
 {
+    private static final String TX_BAD_SEQ = "tx_bad_seq";
+
     /**
      * Logger available to subclasses.
      */
     protected final Logger logger = LoggerFactory.getLogger( getClass() );
 
 
-    private Server server;
+    private final List<HorizonNode> nodes;
+
+    private final int maxAttempts;
 
     private StellarErrorHandler errorHandler = new DefaultStellarErrorHandler();
 
@@ -51,12 +74,27 @@ public class StellarTemplate
 
 
     /**
-     * Default constructor which points to Stellar testnet.
+     * Constructor which takes the configured Horizon servers and network.
+     *
+     * @param horizonUrls       the Horizon servers, the first of which is preferred for submits
+     * @param networkPassphrase the passphrase of the network the servers are on
      */
-    public StellarTemplate()
+    @Autowired
+    public StellarTemplate( @Value( "${stellar.horizon-url:https://horizon-testnet.stellar.org}" ) final String[] horizonUrls,
+                            @Value( "${stellar.network-passphrase:Test SDF Network ; September 2015}" ) final String networkPassphrase,
+                            @Value( "${stellar.routing.max-attempts:2}" ) final int maxAttempts,
+                            @Value( "${stellar.routing.node-retry-delay-ms:5000}" ) final long nodeRetryDelayMs,
+                            @Value( "${stellar.routing.rate-limit-reserve:10}" ) final int rateLimitReserve )
     {
-        Network.useTestNetwork();
-        server = new Server( "https://horizon-testnet.stellar.org" );
+        Network.use( new Network( networkPassphrase ) );
+
+        final List<HorizonNode> configuredNodes = new ArrayList<>();
+        for ( final String horizonUrl : horizonUrls )
+        {
+            configuredNodes.add( new HorizonNode( horizonUrl.trim(), new Server( horizonUrl.trim() ), nodeRetryDelayMs, rateLimitReserve ) );
+        }
+        this.nodes = Collections.unmodifiableList( configuredNodes );
+        this.maxAttempts = Math.max( 1, maxAttempts );
     }
 
     /**
@@ -66,16 +104,36 @@ public class StellarTemplate
      */
     public StellarTemplate( final Server pServer )
     {
-        server = pServer;
+        nodes = Collections.singletonList( new HorizonNode( "custom", pServer, 0, 0 ) );
+        maxAttempts = 1;
     }
 
 
     public DecoratedSubmitTransactionResponse submitTransaction( final Transaction transaction )
           throws IOException
     {
-        final SubmitTransactionResponse submitTransactionResponse = server.submitTransaction( transaction );
+        final List<HorizonNode> candidates = new ArrayList<>( nodes );
+        final HorizonNode preferred = candidates.remove( 0 );
+        sortByHealthAndScore( candidates );
+        if ( preferred.isHealthy() )
+        {
+            candidates.add( 0, preferred );
+        }
+        else
+        {
+            candidates.add( preferred );
+        }
+
+        final AtomicInteger failedAttempts = new AtomicInteger();
+        final SubmitTransactionResponse submitTransactionResponse = send( candidates, server -> server.submitTransaction( transaction ), true, failedAttempts );
         if ( !submitTransactionResponse.isSuccess() )
         {
+            if ( failedAttempts.get() > 0 && TX_BAD_SEQ.equals( getTransactionResultCode( submitTransactionResponse ) ) )
+            {
+                final String transactionHash = Util.bytesToHex( transaction.hash() ).toLowerCase();
+                throw new StellarSubmitOutcomeUnknownException( "Transaction " + transactionHash + " was turned away with tx_bad_seq after "
+                                                                + failedAttempts.get() + " unanswered submit(s); it may already be applied", transactionHash );
+            }
             getErrorHandler().handleError( submitTransactionResponse );
         }
 
@@ -89,7 +147,7 @@ public class StellarTemplate
         final TransactionResponse transactionResponse;
         try
         {
-            transactionResponse = server.transactions().transaction( transactionId );
+            transactionResponse = read( server -> server.transactions().transaction( transactionId ) );
         }
         catch ( final ErrorResponse err )
         {
@@ -102,7 +160,7 @@ public class StellarTemplate
     public AccountResponse account( final KeyPair keyPair )
           throws IOException
     {
-        final AccountResponse accountResponse = server.accounts().account( keyPair );
+        final AccountResponse accountResponse = read( server -> server.accounts().account( keyPair ) );
         return accountResponse;
     }
 
@@ -125,4 +183,130 @@ public class StellarTemplate
     {
         errorHandler = pErrorHandler;
     }
+
+
+    private <T> T read( final HorizonCall<T> call )
+          throws IOException
+    {
+        final List<HorizonNode> candidates = new ArrayList<>( nodes );
+        sortByHealthAndScore( candidates );
+        return send( candidates.subList( 0, Math.min( maxAttempts, candidates.size() ) ), call, false, new AtomicInteger() );
+    }
+
+    /**
+     * Try the call on each node in turn until one answers.
+     *
+     * @param submit         whether this is a submit, which is only retried when it got no answer or was turned away
+     * @param failedAttempts counts the servers which failed before the one that answered
+     */
+    private <T> T send( final List<HorizonNode> candidates,
+                        final HorizonCall<T> call,
+                        final boolean submit,
+                        final AtomicInteger failedAttempts )
+          throws IOException
+    {
+        RuntimeException lastErrorResponse = null;
+        IOException lastIOException = null;
+        for ( final HorizonNode node : candidates )
+        {
+            final long start = System.currentTimeMillis();
+            try
+            {
+                final T response = call.call( node.getServer() );
+                node.recordSuccess( System.currentTimeMillis() - start );
+                if ( response instanceof Response )
+                {
+                    node.setRateLimitRemaining( ( (Response) response ).getRateLimitRemaining() );
+                }
+                return response;
+            }
+            catch ( final ErrorResponse e )
+            {
+                final boolean throttled = 429 == e.getCode();
+                final boolean retryable = throttled || 503 == e.getCode() || ( !submit && e.getCode() >= 500 );
+                if ( !retryable )
+                {
+                    // The server answered (ex. not found), so it is healthy
+                    node.recordSuccess( System.currentTimeMillis() - start );
+                    throw e;
+                }
+                node.recordFailure( System.currentTimeMillis() - start );
+                if ( throttled )
+                {
+                    node.setRateLimitRemaining( 0 );
+                }
+                logger.warn( "Horizon node {} failed with HTTP {}", node.getUrl(), e.getCode() );
+                failedAttempts.incrementAndGet();
+                lastErrorResponse = e;
+                lastIOException = null;
+            }
+            catch ( final IOException e )
+            {
+                node.recordFailure( System.currentTimeMillis() - start );
+                logger.warn( "Horizon node {} failed: {}", node.getUrl(), e.getMessage() );
+                failedAttempts.incrementAndGet();
+                lastIOException = e;
+                lastErrorResponse = null;
+            }
+        }
+
+        if ( null != lastIOException )
+        {
+            throw lastIOException;
+        }
+        throw lastErrorResponse;
+    }
+
+    private static String getTransactionResultCode( final SubmitTransactionResponse response )
+    {
+        if ( null == response.getExtras() || null == response.getExtras().getResultCodes() )
+        {
+            return null;
+        }
+        return response.getExtras().getResultCodes().getTransactionResultCode();
+    }
+
+    /**
+     * Order nodes healthy first, then by score. Both change as other requests complete, so they are read once per
+     * node before sorting, which keeps the comparison consistent for the whole sort.
+     */
+    private static void sortByHealthAndScore( final List<HorizonNode> candidates )
+    {
+        final List<NodeSnapshot> snapshots = new ArrayList<>( candidates.size() );
+        for ( final HorizonNode node : candidates )
+        {
+            snapshots.add( new NodeSnapshot( node ) );
+        }
+        snapshots.sort( Comparator.comparing( ( NodeSnapshot snapshot ) -> !snapshot.healthy )
+                                  .thenComparingDouble( snapshot -> snapshot.score ) );
+
+        candidates.clear();
+        for ( final NodeSnapshot snapshot : snapshots )
+        {
+            candidates.add( snapshot.node );
+        }
+    }
+
+
+    private static final class NodeSnapshot
+    {
+        private final HorizonNode node;
+        private final boolean healthy;
+        private final double score;
+
+        private NodeSnapshot( final HorizonNode node )
+        {
+            this.node = node;
+            this.healthy = node.isHealthy();
+            this.score = node.getScore();
+        }
+    }
+
+
+    @FunctionalInterface
+    private interface HorizonCall<T>
+    {
+        T call( Server server )
+              throws IOException;
+    }
 }
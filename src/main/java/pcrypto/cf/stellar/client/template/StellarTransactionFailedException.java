@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.client.template;
+
+import pcrypto.cf.exception.BlockchainServiceException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Thrown when Horizon rejects a submitted transaction. Carries Horizon's result codes so that the operations of a
+ * batched transaction can be matched back to the payments they came from.
+ */
+public class StellarTransactionFailedException
+      extends BlockchainServiceException
+{
+    private final String transactionResultCode;
+    private final List<String> operationResultCodes;
+
+
+    public StellarTransactionFailedException( final String message,
+                                              final String transactionResultCode,
+                                              final List<String> operationResultCodes )
+    {
+        super( message );
+        this.transactionResultCode = transactionResultCode;
+        this.operationResultCodes = null == operationResultCodes ? new ArrayList<>() : new ArrayList<>( operationResultCodes );
+    }
+
+
+    public String getTransactionResultCode()
+    {
+        return transactionResultCode;
+    }
+
+    /**
+     * Horizon's code for each operation (ex. 'op_success', 'op_underfunded') in operation order, or empty if the
+     * transaction failed before its operations were applied.
+     */
+    public List<String> getOperationResultCodes()
+    {
+        return operationResultCodes;
+    }
+}
@@ -20,6 +20,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import pcrypto.cf.stellar.domain.entity.StellarTransactionRequestDomain;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -29,4 +30,13 @@ public interface StellarTransactionRequestRepository
 {
     @Query( "SELECT s FROM StellarTransactionRequestDomain s WHERE s.accountDomain.id = ?1" )
     Optional<StellarTransactionRequestDomain> findByCfAccountId( Long cfAccountId );
+
+    /**
+     * Requests which every approver has approved (approval status 'approvedStatus'), but which have not been signed
+     * and have no outcome yet.
+     */
+    @Query( "SELECT r FROM StellarTransactionRequestDomain r, StellarTransactionResponseDomain s WHERE s.stellarTransactionRequest = r"
+            + " AND s.success IS NULL AND s.signedTransaction IS NULL"
+            + " AND NOT EXISTS ( SELECT a FROM StellarTransactionRequestApproverDomain a WHERE a.stellarTransactionRequest = r AND a.status <> ?1 )" )
+    List<StellarTransactionRequestDomain> findApprovedWithoutOutcome( int approvedStatus );
 }
@@ -20,6 +20,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import pcrypto.cf.stellar.domain.entity.StellarTransactionResponseDomain;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -29,4 +31,13 @@ public interface StellarTransactionResponseRepository
 {
     @Query( "SELECT s FROM StellarTransactionResponseDomain s WHERE s.stellarTransactionRequest.uuid = ?1" )
     Optional<StellarTransactionResponseDomain> findByTransactionRequestUUID( UUID transactionRequestUUID );
+
+    @Query( "SELECT s FROM StellarTransactionResponseDomain s WHERE s.stellarTransactionRequest.uuid IN ?1" )
+    List<StellarTransactionResponseDomain> findByTransactionRequestUUIDIn( Collection<UUID> transactionRequestUUIDs );
+
+    /**
+     * Responses whose transaction was signed and sent, but whose outcome is not yet known.
+     */
+    @Query( "SELECT s FROM StellarTransactionResponseDomain s WHERE s.success IS NULL AND s.signedTransaction IS NOT NULL" )
+    List<StellarTransactionResponseDomain> findUnresolved();
 }
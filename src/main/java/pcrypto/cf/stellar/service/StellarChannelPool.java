@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.VaultException;
+import org.springframework.vault.core.VaultOperations;
+import org.springframework.vault.support.VaultResponse;
+import org.stellar.sdk.responses.AccountResponse;
+import pcrypto.cf.security.web.TenantContext;
+import pcrypto.cf.stellar.cache.StellarBalanceCache;
+import pcrypto.cf.stellar.client.StellarNetworkService;
+import pcrypto.cf.stellar.client.response.DecoratedSubmitTransactionResponse;
+import pcrypto.cf.stellar.client.template.StellarTransactionFailedException;
+import pcrypto.cf.stellar.domain.entity.StellarAccountDomain;
+import pcrypto.cf.stellar.domain.repository.StellarAccountRepository;
+import pcrypto.cf.stellar.vault.dto.VaultStellarPaymentDomain;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Keeps a pool of payment channel accounts for each tenant. A payment which leases a channel is signed with the
+ * channel as the transaction source and fee payer, and the real source as the source of its payment operation, so
+ * payments from the same source no longer queue up behind each other's sequence numbers.
+ * <p>
+ * A channel is leased for one submission and released as soon as its outcome is known. A lease whose outcome is
+ * never learned (ex. Horizon timed out) is only reclaimed once 'lease-timeout-ms' has passed. Channels are checked
+ * periodically and topped up from the tenant's funding account when their XLM runs low; a channel that can't pay
+ * fees is held out of the pool until it can.
+ */
+@Slf4j
+@Component
+public class StellarChannelPool
+{
+    private static final String NATIVE_ASSET = "native";
+
+    private final StellarAccountRepository stellarAccountRepository;
+    private final StellarBalanceCache stellarBalanceCache;
+    private final StellarNetworkService stellarNetworkService;
+    private final StellarSequenceAllocator stellarSequenceAllocator;
+    private final VaultOperations vaultOperations;
+
+    private final Map<String, TenantChannels> pools = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService maintenanceScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "stellar-channel-pool" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    // Channel accounts, as a comma separated list of '<tenant>:<cfAccountId>'
+    @Value( "${stellar.channels.accounts:}" )
+    private String[] channelAccounts;
+
+    // At most one per tenant, as a comma separated list of '<tenant>:<cfAccountId>'
+    @Value( "${stellar.channels.funding-accounts:}" )
+    private String[] fundingAccounts;
+
+    @Value( "${stellar.channels.min-balance:5}" )
+    private BigDecimal minBalance;
+
+    @Value( "${stellar.channels.top-up-amount:20}" )
+    private BigDecimal topUpAmount;
+
+    @Value( "${stellar.channels.maintenance-interval-ms:60000}" )
+    private long maintenanceIntervalMs;
+
+    @Value( "${stellar.channels.lease-wait-ms:2000}" )
+    private long leaseWaitMs;
+
+    // Longer than Horizon can take to answer a submit
+    @Value( "${stellar.channels.lease-timeout-ms:120000}" )
+    private long leaseTimeoutMs;
+
+
+    @Autowired
+    public StellarChannelPool( final StellarAccountRepository stellarAccountRepository,
+                               final StellarBalanceCache stellarBalanceCache,
+                               final StellarNetworkService stellarNetworkService,
+                               final StellarSequenceAllocator stellarSequenceAllocator,
+                               final VaultOperations vaultOperations )
+    {
+        this.stellarAccountRepository = stellarAccountRepository;
+        this.stellarBalanceCache = stellarBalanceCache;
+        this.stellarNetworkService = stellarNetworkService;
+        this.stellarSequenceAllocator = stellarSequenceAllocator;
+        this.vaultOperations = vaultOperations;
+    }
+
+
+    @EventListener( ApplicationReadyEvent.class )
+    public void start()
+    {
+        final Map<String, Long> fundingByTenant = new HashMap<>();
+        for ( final String fundingAccount : fundingAccounts )
+        {
+            final String[] parts = fundingAccount.trim().split( ":" );
+            if ( parts.length != 2 )
+            {
+                log.error( "Invalid stellar.channels.funding-accounts entry '{}', expected <tenant>:<cfAccountId>", fundingAccount );
+                continue;
+            }
+            fundingByTenant.put( parts[0].toLowerCase(), Long.valueOf( parts[1] ) );
+        }
+
+        for ( final String channelAccount : channelAccounts )
+        {
+            final String[] parts = channelAccount.trim().split( ":" );
+            if ( parts.length != 2 )
+            {
+                log.error( "Invalid stellar.channels.accounts entry '{}', expected <tenant>:<cfAccountId>", channelAccount );
+                continue;
+            }
+            final String tenant = parts[0].toLowerCase();
+            final Long cfAccountId = Long.valueOf( parts[1] );
+
+            TenantContext.setCurrentTenant( tenant );
+            try
+            {
+                final Optional<StellarAccountDomain> stellarAccountDomain = stellarAccountRepository.findByCfAccountId( cfAccountId );
+                if ( !stellarAccountDomain.isPresent() )
+                {
+                    log.error( "No Stellar account for channel account '{}'", channelAccount );
+                    continue;
+                }
+                final String vaultPath = "/stellar/" + stellarAccountDomain.get().getTenantDomain().getId();
+                final TenantChannels tenantChannels = pools.computeIfAbsent( tenant, key -> new TenantChannels( vaultPath, fundingByTenant.get( key ) ) );
+                tenantChannels.channels.put( cfAccountId, new Channel( cfAccountId, stellarAccountDomain.get().getStellarAddress() ) );
+            }
+            finally
+            {
+                TenantContext.clear();
+            }
+        }
+
+        if ( !pools.isEmpty() )
+        {
+            log.info( "Maintaining Stellar payment channel pools for {} tenants", pools.size() );
+            maintenanceScheduler.scheduleWithFixedDelay( this::maintainAll, 0, maintenanceIntervalMs, TimeUnit.MILLISECONDS );
+        }
+    }
+
+
+    /**
+     * Lease a payment channel for one submission, waiting up to 'lease-wait-ms' for one to be released if they are
+     * all in use.
+     *
+     * @return the ChainFront account id of the channel, or null if the tenant has no channel pool or none is free
+     */
+    public Long lease( final String tenant )
+    {
+        final TenantChannels tenantChannels = pools.get( tenant );
+        if ( null == tenantChannels )
+        {
+            return null;
+        }
+        synchronized ( tenantChannels )
+        {
+            final long deadline = System.currentTimeMillis() + leaseWaitMs;
+            long remaining = leaseWaitMs;
+            while ( tenantChannels.available.isEmpty() && remaining > 0 )
+            {
+                try
+                {
+                    tenantChannels.wait( remaining );
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+
+            final Long cfAccountId = tenantChannels.available.poll();
+            if ( null != cfAccountId )
+            {
+                tenantChannels.leasedAt.put( cfAccountId, System.currentTimeMillis() );
+            }
+            return cfAccountId;
+        }
+    }
+
+    /**
+     * Return a channel once the outcome of the submission that leased it is known.
+     */
+    public void release( final String tenant,
+                         final Long cfAccountId )
+    {
+        final TenantChannels tenantChannels = pools.get( tenant );
+        if ( null == tenantChannels || null == cfAccountId )
+        {
+            return;
+        }
+        synchronized ( tenantChannels )
+        {
+            if ( null != tenantChannels.leasedAt.remove( cfAccountId ) && tenantChannels.channels.get( cfAccountId ).usable )
+            {
+                tenantChannels.available.addLast( cfAccountId );
+                tenantChannels.notify();
+            }
+        }
+    }
+
+
+    @PreDestroy
+    public void close()
+    {
+        maintenanceScheduler.shutdownNow();
+    }
+
+
+    private void maintainAll()
+    {
+        for ( final Map.Entry<String, TenantChannels> entry : pools.entrySet() )
+        {
+            TenantContext.setCurrentTenant( entry.getKey() );
+            try
+            {
+                maintain( entry.getValue() );
+            }
+            catch ( final Exception e )
+            {
+                log.error( "Unable to maintain Stellar payment channels for tenant " + entry.getKey(), e );
+            }
+            finally
+            {
+                TenantContext.clear();
+            }
+        }
+    }
+
+    private void maintain( final TenantChannels tenantChannels )
+    {
+        for ( final Channel channel : tenantChannels.channels.values() )
+        {
+            try
+            {
+                BigDecimal balance = getNativeBalance( channel.stellarAddress );
+                if ( balance.compareTo( minBalance ) < 0 && null != tenantChannels.fundingCfAccountId && topUp( tenantChannels, channel ) )
+                {
+                    balance = balance.add( topUpAmount );
+                }
+                channel.usable = balance.compareTo( minBalance ) >= 0;
+                if ( !channel.usable )
+                {
+                    log.warn( "Stellar payment channel {} has {} XLM, below the minimum of {}", channel.stellarAddress, balance, minBalance );
+                }
+            }
+            catch ( final RuntimeException e )
+            {
+                // Most likely the account doesn't exist on the ledger (yet)
+                log.warn( "Unable to check Stellar payment channel {}: {}", channel.stellarAddress, e.getMessage() );
+                channel.usable = false;
+            }
+        }
+
+        synchronized ( tenantChannels )
+        {
+            // Reclaim leases whose outcome never came back
+            final long expiredBefore = System.currentTimeMillis() - leaseTimeoutMs;
+            tenantChannels.leasedAt.values().removeIf( leasedAt -> leasedAt < expiredBefore );
+
+            tenantChannels.available.clear();
+            for ( final Channel channel : tenantChannels.channels.values() )
+            {
+                if ( channel.usable && !tenantChannels.leasedAt.containsKey( channel.cfAccountId ) )
+                {
+                    tenantChannels.available.addLast( channel.cfAccountId );
+                }
+            }
+            tenantChannels.notifyAll();
+        }
+    }
+
+    private BigDecimal getNativeBalance( final String stellarAddress )
+    {
+        for ( final AccountResponse.Balance balance : stellarBalanceCache.getBalances( stellarAddress ) )
+        {
+            if ( NATIVE_ASSET.equals( balance.getAssetType() ) )
+            {
+                return new BigDecimal( balance.getBalance() );
+            }
+        }
+        return BigDecimal.ZERO;
+    }
+
+    private boolean topUp( final TenantChannels tenantChannels,
+                           final Channel channel )
+    {
+        final VaultStellarPaymentDomain paymentDomain = new VaultStellarPaymentDomain();
+        paymentDomain.setSource( String.valueOf( tenantChannels.fundingCfAccountId ) );
+        paymentDomain.setDestination( String.valueOf( channel.cfAccountId ) );
+        paymentDomain.setAmount( topUpAmount.toPlainString() );
+        paymentDomain.setAssetCode( NATIVE_ASSET );
+        final long sequence = stellarSequenceAllocator.allocate( tenantChannels.fundingCfAccountId );
+        paymentDomain.setSequence( sequence );
+
+        final VaultResponse vaultResponse = vaultOperations.write( tenantChannels.vaultPath + "/payments", paymentDomain );
+        if ( null == vaultResponse || null == vaultResponse.getData() )
+        {
+            stellarSequenceAllocator.release( tenantChannels.fundingCfAccountId, sequence );
+            throw new VaultException( "An error occurred while creating the payment channel top up." );
+        }
+        final String signedTx = (String) vaultResponse.getData().get( "signed_transaction" );
+
+        final DecoratedSubmitTransactionResponse txResponse;
+        try
+        {
+            txResponse = stellarNetworkService.submitTransaction( signedTx );
+        }
+        catch ( final StellarTransactionFailedException e )
+        {
+            stellarSequenceAllocator.rejected( tenantChannels.fundingCfAccountId, sequence, e.getTransactionResultCode() );
+            throw e;
+        }
+        if ( txResponse.isSuccess() )
+        {
+            log.info( "Topped up Stellar payment channel {} with {} XLM", channel.stellarAddress, topUpAmount );
+        }
+        return txResponse.isSuccess();
+    }
+
+
+    private static final class TenantChannels
+    {
+        private final String vaultPath;
+        private final Long fundingCfAccountId;
+        private final Map<Long, Channel> channels = new LinkedHashMap<>();
+        private final ArrayDeque<Long> available = new ArrayDeque<>();
+        private final Map<Long, Long> leasedAt = new HashMap<>();
+
+        private TenantChannels( final String vaultPath,
+                                final Long fundingCfAccountId )
+        {
+            this.vaultPath = vaultPath;
+            this.fundingCfAccountId = fundingCfAccountId;
+        }
+    }
+
+    private static final class Channel
+    {
+        private final Long cfAccountId;
+        private final String stellarAddress;
+        private volatile boolean usable = false;
+
+        private Channel( final Long cfAccountId,
+                         final String stellarAddress )
+        {
+            this.cfAccountId = cfAccountId;
+            this.stellarAddress = stellarAddress;
+        }
+    }
+}
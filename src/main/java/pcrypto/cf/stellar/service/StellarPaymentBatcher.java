@@ -0,0 +1,722 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.VaultException;
+import org.springframework.vault.core.VaultOperations;
+import org.springframework.vault.support.VaultResponse;
+import org.stellar.sdk.Transaction;
+import pcrypto.cf.common.domain.TenantDomain;
+import pcrypto.cf.security.web.TenantContext;
+import pcrypto.cf.stellar.client.StellarNetworkService;
+import pcrypto.cf.stellar.client.response.DecoratedSubmitTransactionResponse;
+import pcrypto.cf.stellar.client.response.DecoratedTransactionResponse;
+import pcrypto.cf.stellar.client.template.StellarTransactionFailedException;
+import pcrypto.cf.stellar.domain.entity.StellarTransactionRequestDomain;
+import pcrypto.cf.stellar.domain.entity.StellarTransactionResponseDomain;
+import pcrypto.cf.stellar.domain.repository.StellarTransactionRequestRepository;
+import pcrypto.cf.stellar.domain.repository.StellarTransactionResponseRepository;
+import pcrypto.cf.stellar.value.TransactionApprovalStatusEnum;
+import pcrypto.cf.stellar.vault.dto.VaultStellarBatchPaymentDomain;
+import pcrypto.cf.stellar.vault.dto.VaultStellarPaymentDomain;
+
+import javax.annotation.PreDestroy;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Packs approved Stellar payments into multi-operation transactions.
+ * <p>
+ * Payments which share a source account, payment channel and memo are collected for 'stellar.batching.window-ms'
+ * (or until 'max-operations' have been collected) and then signed by Vault as one transaction with a payment
+ * operation each, so the whole batch takes one sequence number, one fee and one ledger slot. Every payment's
+ * response record gets the transaction's outcome along with the result code of its own operation.
+ * <p>
+ * A Stellar transaction is all-or-nothing, so one bad payment fails the rest of its batch. When that happens the
+ * payments whose operations succeeded are queued once more, without the failing ones.
+ * <p>
+ * A batch which was signed and sent but got no answer may still make it into a ledger, so its payments are left
+ * pending (with the transaction's hash) rather than failed, and are settled once Horizon can tell what became of the
+ * transaction. Payments still collecting are submitted on shutdown, and approved payments which were never signed
+ * (ex. because we stopped before their batch was flushed) are queued again at startup.
+ */
+@Slf4j
+@Component
+public class StellarPaymentBatcher
+{
+    // Horizon's code for an operation which would have succeeded
+    private static final String OPERATION_SUCCESS = "op_success";
+
+    // A batch whose sequence turns out to be out of step is signed and submitted once more
+    private static final int SUBMIT_ATTEMPTS = 2;
+
+    private static final String PAYMENT_SUCCESS = "PAYMENT_SUCCESS";
+
+    // Horizon's codes for operation failures which are not specific to payments, with their XDR names
+    private static final Map<String, String> OPERATION_RESULT_CODES = new HashMap<>();
+
+    static
+    {
+        OPERATION_RESULT_CODES.put( "op_inner", "opINNER" );
+        OPERATION_RESULT_CODES.put( "op_bad_auth", "opBAD_AUTH" );
+        OPERATION_RESULT_CODES.put( "op_no_source_account", "opNO_ACCOUNT" );
+        OPERATION_RESULT_CODES.put( "op_not_supported", "opNOT_SUPPORTED" );
+    }
+
+    private final StellarTransactionRequestRepository stellarTransactionRequestRepository;
+    private final StellarTransactionResponseRepository stellarTransactionResponseRepository;
+    private final StellarNetworkService stellarNetworkService;
+    private final StellarChannelPool stellarChannelPool;
+    private final StellarSequenceAllocator stellarSequenceAllocator;
+    private final VaultOperations vaultOperations;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, PendingBatch> pendingBatches = new HashMap<>();
+
+    // Payments collecting in a batch or being submitted, so that one queued twice is only paid once
+    private final Set<UUID> queuedPayments = ConcurrentHashMap.newKeySet();
+
+    // Payments already put back once after their batch failed because of another payment
+    private final Set<UUID> requeuedPayments = ConcurrentHashMap.newKeySet();
+
+    // Hashes of unanswered transactions whose sequence number was seen used up while Horizon had no record of them
+    private final Set<String> unmatchedTransactions = new HashSet<>();
+
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "stellar-payment-batcher" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    @Value( "${stellar.batching.enabled:false}" )
+    private boolean enabled;
+
+    @Value( "${stellar.batching.window-ms:500}" )
+    private long windowMs;
+
+    @Value( "${stellar.batching.max-operations:100}" )
+    private int maxOperations;
+
+    @Value( "${stellar.batching.resolve-interval-ms:30000}" )
+    private long resolveIntervalMs;
+
+    @Value( "${stellar.batching.shutdown-timeout-ms:10000}" )
+    private long shutdownTimeoutMs;
+
+    @Value( "${cf.tenants:}" )
+    private String[] tenants;
+
+
+    @Autowired
+    public StellarPaymentBatcher( final StellarTransactionRequestRepository stellarTransactionRequestRepository,
+                                  final StellarTransactionResponseRepository stellarTransactionResponseRepository,
+                                  final StellarNetworkService stellarNetworkService,
+                                  final StellarChannelPool stellarChannelPool,
+                                  final StellarSequenceAllocator stellarSequenceAllocator,
+                                  final VaultOperations vaultOperations,
+                                  final ObjectMapper objectMapper )
+    {
+        this.stellarTransactionRequestRepository = stellarTransactionRequestRepository;
+        this.stellarTransactionResponseRepository = stellarTransactionResponseRepository;
+        this.stellarNetworkService = stellarNetworkService;
+        this.stellarChannelPool = stellarChannelPool;
+        this.stellarSequenceAllocator = stellarSequenceAllocator;
+        this.vaultOperations = vaultOperations;
+        this.objectMapper = objectMapper;
+    }
+
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Queue an approved payment to be signed and submitted with the next batch from its source.
+     *
+     * @param tenant the tenant the payment belongs to
+     */
+    public void add( final String tenant,
+                     final StellarTransactionRequestDomain stellarTransactionRequestDomain )
+    {
+        if ( !queuedPayments.add( stellarTransactionRequestDomain.getUuid() ) )
+        {
+            return;
+        }
+
+        final String key = tenant + ":" + stellarTransactionRequestDomain.getAccountDomain().getId()
+                           + ":" + ( null == stellarTransactionRequestDomain.getPaymentChannelAccountDomain() ? "" : stellarTransactionRequestDomain.getPaymentChannelAccountDomain().getId() )
+                           + ":" + stellarTransactionRequestDomain.getMemo();
+
+        synchronized ( pendingBatches )
+        {
+            try
+            {
+                PendingBatch pendingBatch = pendingBatches.get( key );
+                if ( null == pendingBatch )
+                {
+                    flushScheduler.schedule( () -> flush( key ), windowMs, TimeUnit.MILLISECONDS );
+                    pendingBatch = new PendingBatch( tenant );
+                    pendingBatches.put( key, pendingBatch );
+                }
+                pendingBatch.requestUUIDs.add( stellarTransactionRequestDomain.getUuid() );
+
+                if ( pendingBatch.requestUUIDs.size() >= maxOperations )
+                {
+                    flushScheduler.execute( () -> flush( key ) );
+                }
+            }
+            catch ( final RejectedExecutionException e )
+            {
+                // Shutting down; the payment is queued again at the next startup
+                log.warn( "Not queueing Stellar payment {} while shutting down", stellarTransactionRequestDomain.getUuid() );
+            }
+        }
+    }
+
+    /**
+     * Queue the approved payments which were never signed, and start settling the batches which got no answer.
+     */
+    @EventListener( ApplicationReadyEvent.class )
+    public void start()
+    {
+        if ( !enabled )
+        {
+            return;
+        }
+
+        for ( final String tenant : tenants )
+        {
+            TenantContext.setCurrentTenant( tenant.toLowerCase() );
+            try
+            {
+                final List<StellarTransactionRequestDomain> requests = stellarTransactionRequestRepository.findApprovedWithoutOutcome( TransactionApprovalStatusEnum.APPROVED.getId() );
+                if ( !requests.isEmpty() )
+                {
+                    log.info( "Queueing {} approved Stellar payments for tenant {}", requests.size(), tenant );
+                }
+                requests.forEach( request -> add( tenant.toLowerCase(), request ) );
+            }
+            catch ( final Exception e )
+            {
+                log.error( "Unable to queue approved Stellar payments for tenant " + tenant, e );
+            }
+            finally
+            {
+                TenantContext.clear();
+            }
+        }
+
+        flushScheduler.scheduleWithFixedDelay( this::resolveUnanswered, resolveIntervalMs, resolveIntervalMs, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Submit the batches still collecting before stopping.
+     */
+    @PreDestroy
+    public void close()
+    {
+        synchronized ( pendingBatches )
+        {
+            for ( final String key : pendingBatches.keySet() )
+            {
+                flushScheduler.execute( () -> flush( key ) );
+            }
+        }
+        flushScheduler.shutdown();
+        try
+        {
+            if ( !flushScheduler.awaitTermination( shutdownTimeoutMs, TimeUnit.MILLISECONDS ) )
+            {
+                log.warn( "Stellar payment batches still submitting after {} ms", shutdownTimeoutMs );
+                flushScheduler.shutdownNow();
+            }
+        }
+        catch ( final InterruptedException e )
+        {
+            flushScheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private void flush( final String key )
+    {
+        final PendingBatch pendingBatch;
+        synchronized ( pendingBatches )
+        {
+            pendingBatch = pendingBatches.remove( key );
+        }
+        if ( null == pendingBatch )
+        {
+            // Already flushed when it filled up
+            return;
+        }
+
+        final List<UUID> requestUUIDs = pendingBatch.requestUUIDs;
+        for ( int from = 0; from < requestUUIDs.size(); from += maxOperations )
+        {
+            submitBatch( pendingBatch.tenant, requestUUIDs.subList( from, Math.min( from + maxOperations, requestUUIDs.size() ) ) );
+        }
+    }
+
+    private void submitBatch( final String tenant,
+                              final List<UUID> requestUUIDs )
+    {
+        final Set<UUID> requeued = new HashSet<>();
+        TenantContext.setCurrentTenant( tenant );
+        try
+        {
+            // Keep the requests in queue order, which is the order of the operations
+            final Map<UUID, StellarTransactionRequestDomain> requestsByUUID = new LinkedHashMap<>();
+            requestUUIDs.forEach( uuid -> requestsByUUID.put( uuid, null ) );
+            stellarTransactionRequestRepository.findAllById( requestUUIDs ).forEach( request -> requestsByUUID.put( request.getUuid(), request ) );
+
+            final Map<UUID, StellarTransactionResponseDomain> responsesByUUID = new HashMap<>();
+            for ( final StellarTransactionResponseDomain responseDomain : stellarTransactionResponseRepository.findByTransactionRequestUUIDIn( requestUUIDs ) )
+            {
+                responsesByUUID.put( responseDomain.getStellarTransactionRequest().getUuid(), responseDomain );
+            }
+
+            // Leave out payments which have already been signed (ex. queued again by the startup scan while in flight)
+            requestsByUUID.entrySet().removeIf( entry -> {
+                final StellarTransactionResponseDomain responseDomain = responsesByUUID.get( entry.getKey() );
+                return null == entry.getValue() || null == responseDomain || null != responseDomain.getSuccess() || null != responseDomain.getSignedTransaction();
+            } );
+            if ( requestsByUUID.isEmpty() )
+            {
+                return;
+            }
+            final List<StellarTransactionRequestDomain> requests = new ArrayList<>( requestsByUUID.values() );
+            responsesByUUID.keySet().retainAll( requestsByUUID.keySet() );
+
+            // Batches without a channel of their own borrow one from the tenant's pool
+            final StellarTransactionRequestDomain first = requests.get( 0 );
+            final Long leasedChannel = null == first.getPaymentChannelAccountDomain() ? stellarChannelPool.lease( tenant ) : null;
+
+            // The transaction takes its sequence number from the payment channel, if there is one
+            final Long sequenceAccountId = null != first.getPaymentChannelAccountDomain() ? first.getPaymentChannelAccountDomain().getId()
+                                                                                           : null != leasedChannel ? leasedChannel : first.getAccountDomain().getId();
+            Long sequence = null;
+            String signedTx = null;
+            try
+            {
+                DecoratedSubmitTransactionResponse txResponse = null;
+                boolean appliedEarlier = false;
+                for ( int attempt = 1; null == txResponse; attempt++ )
+                {
+                    sequence = stellarSequenceAllocator.allocate( sequenceAccountId );
+                    signedTx = signBatch( requests, leasedChannel, sequence );
+                    try
+                    {
+                        txResponse = stellarNetworkService.submitTransaction( signedTx );
+                    }
+                    catch ( final StellarTransactionFailedException e )
+                    {
+                        if ( attempt >= SUBMIT_ATTEMPTS || !StellarSequenceAllocator.isBadSequence( e.getTransactionResultCode() ) )
+                        {
+                            throw e;
+                        }
+                        // A server may have applied the tx and then failed to answer, so that this is our own resend
+                        // being turned away; signing again would pay twice
+                        if ( null != stellarNetworkService.findTransaction( stellarNetworkService.getTransactionHash( signedTx ) ) )
+                        {
+                            appliedEarlier = true;
+                            break;
+                        }
+                        // Resync and sign again; the rejected tx can't be applied, so it is no longer outstanding
+                        log.info( "Sequence {} out of step for Stellar account {}; signing the batch again", sequence, sequenceAccountId );
+                        stellarSequenceAllocator.rejected( sequenceAccountId, sequence, e.getTransactionResultCode() );
+                        sequence = null;
+                        signedTx = null;
+                    }
+                }
+                stellarChannelPool.release( tenant, leasedChannel );
+
+                if ( appliedEarlier )
+                {
+                    // Recorded by resolveUnanswered(), as for a batch that got no answer
+                    log.warn( "Stellar batch of {} payments was applied before its resend; leaving it to be resolved", requests.size() );
+                    final String transactionHash = stellarNetworkService.getTransactionHash( signedTx );
+                    for ( final StellarTransactionRequestDomain request : requests )
+                    {
+                        recordPending( responsesByUUID.get( request.getUuid() ), transactionHash, signedTx );
+                        requeuedPayments.remove( request.getUuid() );
+                    }
+                }
+                else
+                {
+                    final List<String> operationResultCodes = txResponse.getOperationResultCodes();
+                    for ( int i = 0; i < requests.size(); i++ )
+                    {
+                        final StellarTransactionResponseDomain responseDomain = responsesByUUID.get( requests.get( i ).getUuid() );
+                        final String operationResultCode = i < operationResultCodes.size() ? operationResultCodes.get( i ) : null;
+                        recordResult( responseDomain, txResponse.isSuccess(), txResponse.getHash(), txResponse.getLedger(), signedTx, null, operationResultCode );
+                        requeuedPayments.remove( requests.get( i ).getUuid() );
+                    }
+                }
+            }
+            catch ( final StellarTransactionFailedException e )
+            {
+                stellarSequenceAllocator.rejected( sequenceAccountId, sequence, e.getTransactionResultCode() );
+                stellarChannelPool.release( tenant, leasedChannel );
+                log.warn( "Stellar batch of {} payments failed: {}", requests.size(), e.getMessage() );
+                final List<String> operationResultCodes = e.getOperationResultCodes();
+                for ( int i = 0; i < requests.size(); i++ )
+                {
+                    final StellarTransactionRequestDomain request = requests.get( i );
+                    final String operationResultCode = i < operationResultCodes.size() ? operationResultCodes.get( i ) : null;
+                    if ( OPERATION_SUCCESS.equals( operationResultCode ) && requests.size() > 1 && requeuedPayments.add( request.getUuid() ) )
+                    {
+                        // Only failed because of another payment in the batch
+                        requeued.add( request.getUuid() );
+                        queuedPayments.remove( request.getUuid() );
+                        add( tenant, request );
+                        continue;
+                    }
+                    recordResult( responsesByUUID.get( request.getUuid() ), false, null, null, signedTx,
+                                  toTransactionResultCode( e.getTransactionResultCode() ), toPaymentResultCode( operationResultCode ) );
+                    requeuedPayments.remove( request.getUuid() );
+                }
+                responsesByUUID.keySet().removeAll( requeued );
+            }
+            catch ( final RuntimeException e )
+            {
+                if ( null == signedTx )
+                {
+                    // Never sent, so it can safely be failed
+                    if ( null != sequence )
+                    {
+                        stellarSequenceAllocator.release( sequenceAccountId, sequence );
+                    }
+                    stellarChannelPool.release( tenant, leasedChannel );
+                    log.error( "Unable to sign Stellar batch of " + requests.size() + " payments", e );
+                    for ( final StellarTransactionRequestDomain request : requests )
+                    {
+                        recordResult( responsesByUUID.get( request.getUuid() ), false, null, null, null, e.getMessage(), null );
+                        requeuedPayments.remove( request.getUuid() );
+                    }
+                }
+                else
+                {
+                    // A signed batch that got no answer may still be applied, so its payments are left pending until
+                    // resolveUnanswered() finds out, and its channel is kept until the lease runs out
+                    log.error( "No answer to Stellar batch of " + requests.size() + " payments; leaving them pending", e );
+                    final String transactionHash = stellarNetworkService.getTransactionHash( signedTx );
+                    for ( final StellarTransactionRequestDomain request : requests )
+                    {
+                        recordPending( responsesByUUID.get( request.getUuid() ), transactionHash, signedTx );
+                        requeuedPayments.remove( request.getUuid() );
+                    }
+                }
+            }
+
+            stellarTransactionResponseRepository.saveAll( responsesByUUID.values() );
+        }
+        catch ( final RuntimeException e )
+        {
+            log.error( "Unable to process Stellar payment batch for tenant " + tenant, e );
+        }
+        finally
+        {
+            TenantContext.clear();
+            for ( final UUID uuid : requestUUIDs )
+            {
+                if ( !requeued.contains( uuid ) )
+                {
+                    queuedPayments.remove( uuid );
+                }
+            }
+        }
+    }
+
+    /**
+     * Settle the payments of batches which were signed and sent but got no answer. Horizon is asked for each batch's
+     * transaction by hash, and a transaction it has no record of is sent again (the same signed transaction can only
+     * be applied once). It is only failed once its sequence number has been used up by some other transaction.
+     * <p>
+     * The batch's payments are settled together, as a transaction succeeds or fails as a whole.
+     */
+    private void resolveUnanswered()
+    {
+        for ( final String tenant : tenants )
+        {
+            TenantContext.setCurrentTenant( tenant.toLowerCase() );
+            try
+            {
+                final Map<String, List<StellarTransactionResponseDomain>> responsesByHash = new LinkedHashMap<>();
+                for ( final StellarTransactionResponseDomain responseDomain : stellarTransactionResponseRepository.findUnresolved() )
+                {
+                    responsesByHash.computeIfAbsent( responseDomain.getTransactionHash(), hash -> new ArrayList<>() ).add( responseDomain );
+                }
+
+                for ( final Map.Entry<String, List<StellarTransactionResponseDomain>> entry : responsesByHash.entrySet() )
+                {
+                    try
+                    {
+                        if ( resolve( entry.getKey(), entry.getValue() ) )
+                        {
+                            stellarTransactionResponseRepository.saveAll( entry.getValue() );
+                        }
+                    }
+                    catch ( final RuntimeException e )
+                    {
+                        log.warn( "Unable to resolve Stellar transaction {}: {}", entry.getKey(), e.getMessage() );
+                    }
+                }
+            }
+            catch ( final RuntimeException e )
+            {
+                log.error( "Unable to resolve unanswered Stellar payment batches for tenant " + tenant, e );
+            }
+            finally
+            {
+                TenantContext.clear();
+            }
+        }
+    }
+
+    /**
+     * @return true if the outcome of the transaction is now recorded in its responses
+     */
+    private boolean resolve( final String transactionHash,
+                             final List<StellarTransactionResponseDomain> responses )
+    {
+        final String signedTx = responses.get( 0 ).getSignedTransaction();
+        final Transaction transaction = stellarNetworkService.decodeTransaction( signedTx );
+
+        // Read before the lookup, so that a used up sequence number with no record of the transaction means it was
+        // beaten to the sequence number, rather than applied in between
+        final long accountSequence = stellarNetworkService.getSequenceNumber( transaction.getSourceAccount().getAccountId() );
+
+        final DecoratedTransactionResponse found = stellarNetworkService.findTransaction( transactionHash );
+        if ( null != found )
+        {
+            unmatchedTransactions.remove( transactionHash );
+            for ( final StellarTransactionResponseDomain responseDomain : responses )
+            {
+                recordResult( responseDomain, found.isSuccess(), transactionHash, found.getLedger(), signedTx,
+                              found.isSuccess() ? null : found.getTransactionResultCode(), found.isSuccess() ? PAYMENT_SUCCESS : null );
+            }
+            return true;
+        }
+
+        if ( accountSequence >= transaction.getSequenceNumber() )
+        {
+            // Horizon servers may lag one another, so this has to be seen on two passes in a row
+            if ( unmatchedTransactions.add( transactionHash ) )
+            {
+                return false;
+            }
+            unmatchedTransactions.remove( transactionHash );
+            log.warn( "Stellar transaction {} was never applied; failing its {} payments", transactionHash, responses.size() );
+            for ( final StellarTransactionResponseDomain responseDomain : responses )
+            {
+                recordResult( responseDomain, false, transactionHash, null, signedTx, "txBAD_SEQ", null );
+            }
+            return true;
+        }
+
+        unmatchedTransactions.remove( transactionHash );
+        try
+        {
+            final DecoratedSubmitTransactionResponse txResponse = stellarNetworkService.submitTransaction( signedTx );
+            for ( final StellarTransactionResponseDomain responseDomain : responses )
+            {
+                recordResult( responseDomain, txResponse.isSuccess(), txResponse.getHash(), txResponse.getLedger(), signedTx, null, PAYMENT_SUCCESS );
+            }
+            return true;
+        }
+        catch ( final StellarTransactionFailedException e )
+        {
+            if ( StellarSequenceAllocator.isBadSequence( e.getTransactionResultCode() ) )
+            {
+                // Either applied just now or beaten to the sequence number; the next pass tells which
+                return false;
+            }
+            for ( final StellarTransactionResponseDomain responseDomain : responses )
+            {
+                recordResult( responseDomain, false, transactionHash, null, signedTx, toTransactionResultCode( e.getTransactionResultCode() ), null );
+            }
+            return true;
+        }
+    }
+
+    private String signBatch( final List<StellarTransactionRequestDomain> requests,
+                              final Long leasedChannel,
+                              final long sequence )
+    {
+        final StellarTransactionRequestDomain first = requests.get( 0 );
+        final TenantDomain tenantDomain = first.getTenantDomain();
+
+        final VaultStellarBatchPaymentDomain batchPaymentDomain = new VaultStellarBatchPaymentDomain();
+        batchPaymentDomain.setSource( String.valueOf( first.getAccountDomain().getId() ) );
+        if ( null != first.getPaymentChannelAccountDomain() )
+        {
+            batchPaymentDomain.setPaymentChannel( String.valueOf( first.getPaymentChannelAccountDomain().getId() ) );
+        }
+        else if ( null != leasedChannel )
+        {
+            batchPaymentDomain.setPaymentChannel( String.valueOf( leasedChannel ) );
+        }
+        batchPaymentDomain.setMemo( first.getMemo() );
+        batchPaymentDomain.setSequence( sequence );
+
+        for ( final StellarTransactionRequestDomain request : requests )
+        {
+            final VaultStellarPaymentDomain paymentDomain = new VaultStellarPaymentDomain();
+            paymentDomain.setDestination( String.valueOf( request.getDestAccountDomain().getId() ) );
+            paymentDomain.setAmount( request.getAmount().toString() );
+            paymentDomain.setAssetCode( request.getAssetCode() );
+            paymentDomain.setAssetIssuer( request.getAssetIssuer() );
+            batchPaymentDomain.getPayments().add( paymentDomain );
+        }
+
+        final VaultResponse vaultResponse = vaultOperations.write( "/stellar/" + tenantDomain.getId() + "/batchpayments", batchPaymentDomain );
+        if ( null == vaultResponse )
+        {
+            throw new VaultException( "An error occurred while creating the batch payment transaction." );
+        }
+
+        final Map<String, Object> data = vaultResponse.getData();
+        if ( null == data )
+        {
+            throw new VaultException( "Vault response when signing transaction contained a null data map." );
+        }
+        return (String) data.get( "signed_transaction" );
+    }
+
+    private void recordPending( final StellarTransactionResponseDomain responseDomain,
+                                final String transactionHash,
+                                final String signedTx )
+    {
+        if ( null == responseDomain )
+        {
+            return;
+        }
+
+        responseDomain.setSuccess( null );
+        responseDomain.setTransactionHash( transactionHash );
+        responseDomain.setSignedTransaction( signedTx );
+        responseDomain.setCreatedDate( OffsetDateTime.now() );
+    }
+
+    /**
+     * Record a payment's outcome. Result codes are in the form of the XDR names (ex. 'txFAILED',
+     * 'PAYMENT_UNDERFUNDED'), as decoded from the ledger for a successful transaction.
+     */
+    private void recordResult( final StellarTransactionResponseDomain responseDomain,
+                               final boolean success,
+                               final String transactionHash,
+                               final Long ledger,
+                               final String signedTx,
+                               final String transactionResultCode,
+                               final String operationResultCode )
+    {
+        if ( null == responseDomain )
+        {
+            return;
+        }
+
+        final Map<String, String> resultCodeMap = new LinkedHashMap<>();
+        if ( null != transactionResultCode )
+        {
+            resultCodeMap.put( "TRANSACTION", transactionResultCode );
+        }
+        if ( null != operationResultCode )
+        {
+            resultCodeMap.put( "PAYMENT", operationResultCode );
+        }
+
+        responseDomain.setLedger( ledger );
+        responseDomain.setSuccess( success );
+        responseDomain.setTransactionHash( transactionHash );
+        responseDomain.setSignedTransaction( signedTx );
+        try
+        {
+            responseDomain.setTransactionResult( objectMapper.writeValueAsString( resultCodeMap ) );
+        }
+        catch ( final JsonProcessingException e )
+        {
+            responseDomain.setTransactionResult( resultCodeMap.toString() );
+        }
+        responseDomain.setCreatedDate( OffsetDateTime.now() );
+    }
+
+    /**
+     * Horizon's code for a transaction failure (ex. 'tx_bad_seq') as its XDR name (ex. 'txBAD_SEQ').
+     */
+    static String toTransactionResultCode( final String horizonCode )
+    {
+        if ( null == horizonCode || !horizonCode.startsWith( "tx_" ) )
+        {
+            return horizonCode;
+        }
+        return "tx" + horizonCode.substring( "tx_".length() ).toUpperCase();
+    }
+
+    /**
+     * Horizon's code for the result of a payment operation (ex. 'op_underfunded') as its XDR name (ex.
+     * 'PAYMENT_UNDERFUNDED').
+     */
+    static String toPaymentResultCode( final String horizonCode )
+    {
+        if ( null == horizonCode || !horizonCode.startsWith( "op_" ) )
+        {
+            return horizonCode;
+        }
+        if ( OPERATION_RESULT_CODES.containsKey( horizonCode ) )
+        {
+            return OPERATION_RESULT_CODES.get( horizonCode );
+        }
+        return "PAYMENT_" + horizonCode.substring( "op_".length() ).toUpperCase();
+    }
+
+
+    private static final class PendingBatch
+    {
+        private final String tenant;
+        private final List<UUID> requestUUIDs = new ArrayList<>();
+
+        private PendingBatch( final String tenant )
+        {
+            this.tenant = tenant;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import pcrypto.cf.exception.NotFoundException;
+import pcrypto.cf.security.web.TenantContext;
+import pcrypto.cf.stellar.client.StellarNetworkService;
+import pcrypto.cf.stellar.domain.entity.StellarAccountDomain;
+import pcrypto.cf.stellar.domain.repository.StellarAccountRepository;
+
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Hands out sequence numbers for the accounts our transactions are sourced from (source accounts and payment
+ * channels), so that Vault can sign without loading the account from Horizon each time. Each account is seeded
+ * from Horizon on first use, and only re-seeded after Horizon answers 'tx_bad_seq'. A sequence number whose
+ * transaction never reached a ledger is released and handed out again before the counter moves on, so it doesn't
+ * leave a gap that every later transaction would fail on.
+ * <p>
+ * Accounts are identified by their ChainFront account id within the current tenant, as they are to Vault.
+ */
+@Slf4j
+@Component
+public class StellarSequenceAllocator
+{
+    // The transaction made it into a ledger, but an operation failed; the sequence number is used up all the same
+    private static final String TX_FAILED = "tx_failed";
+
+    private static final String TX_BAD_SEQ = "tx_bad_seq";
+
+    private final StellarNetworkService stellarNetworkService;
+    private final StellarAccountRepository stellarAccountRepository;
+
+    private final Map<String, AccountSequence> sequences = new ConcurrentHashMap<>();
+
+
+    @Autowired
+    public StellarSequenceAllocator( final StellarNetworkService stellarNetworkService,
+                                     final StellarAccountRepository stellarAccountRepository )
+    {
+        this.stellarNetworkService = stellarNetworkService;
+        this.stellarAccountRepository = stellarAccountRepository;
+    }
+
+
+    /**
+     * Reserve the next sequence number for a transaction sourced from the account.
+     */
+    public long allocate( final Long cfAccountId )
+    {
+        final AccountSequence accountSequence = sequences.computeIfAbsent( getKey( cfAccountId ), key -> new AccountSequence() );
+        synchronized ( accountSequence )
+        {
+            if ( null == accountSequence.stellarAddress )
+            {
+                final StellarAccountDomain stellarAccountDomain = stellarAccountRepository.findByCfAccountId( cfAccountId )
+                                                                                          .orElseThrow( () -> new NotFoundException( "Stellar account for cfAccountId " + cfAccountId + " not found." ) );
+                accountSequence.stellarAddress = stellarAccountDomain.getStellarAddress();
+            }
+            if ( null == accountSequence.next )
+            {
+                accountSequence.next = stellarNetworkService.getSequenceNumber( accountSequence.stellarAddress ) + 1;
+            }
+
+            final Long released = accountSequence.released.pollFirst();
+            if ( null != released )
+            {
+                return released;
+            }
+            return accountSequence.next++;
+        }
+    }
+
+    /**
+     * Hand back a sequence number whose transaction was never submitted, or was turned away before reaching a
+     * ledger.
+     */
+    public void release( final Long cfAccountId,
+                         final long sequence )
+    {
+        final AccountSequence accountSequence = sequences.get( getKey( cfAccountId ) );
+        if ( null != accountSequence )
+        {
+            synchronized ( accountSequence )
+            {
+                if ( null == accountSequence.next || sequence >= accountSequence.next )
+                {
+                    // Handed out before a reset, or never handed out
+                    return;
+                }
+
+                // If it was the last one handed out, wind the counter back (past any released just below it);
+                // otherwise keep it for the next allocation
+                accountSequence.released.add( sequence );
+                while ( accountSequence.released.remove( accountSequence.next - 1 ) )
+                {
+                    accountSequence.next--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget the account's sequence, so that the next allocation is re-seeded from Horizon.
+     */
+    public void reset( final Long cfAccountId )
+    {
+        final AccountSequence accountSequence = sequences.get( getKey( cfAccountId ) );
+        if ( null != accountSequence )
+        {
+            synchronized ( accountSequence )
+            {
+                log.debug( "Resetting the sequence for Stellar account {}", accountSequence.stellarAddress );
+                accountSequence.next = null;
+                accountSequence.released.clear();
+            }
+        }
+    }
+
+    /**
+     * Account for a transaction that Horizon rejected with the given result code. After 'tx_bad_seq' (see
+     * {@link #isBadSequence(String)}) the account is resynced, and the transaction can be signed again with a newly
+     * allocated sequence number.
+     */
+    public void rejected( final Long cfAccountId,
+                          final long sequence,
+                          final String transactionResultCode )
+    {
+        if ( TX_BAD_SEQ.equals( transactionResultCode ) )
+        {
+            reset( cfAccountId );
+        }
+        else if ( !TX_FAILED.equals( transactionResultCode ) )
+        {
+            release( cfAccountId, sequence );
+        }
+    }
+
+
+    public static boolean isBadSequence( final String transactionResultCode )
+    {
+        return TX_BAD_SEQ.equals( transactionResultCode );
+    }
+
+
+    private String getKey( final Long cfAccountId )
+    {
+        return TenantContext.getCurrentTenant() + ":" + cfAccountId;
+    }
+
+
+    private static final class AccountSequence
+    {
+        private String stellarAddress;
+        private Long next;
+        private final NavigableSet<Long> released = new TreeSet<>();
+    }
+}
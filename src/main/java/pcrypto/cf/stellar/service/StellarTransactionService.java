@@ -41,9 +41,13 @@ import pcrypto.cf.exception.ErrorMessage;
 import pcrypto.cf.exception.NotFoundException;
 import pcrypto.cf.mfa.service.authy.AuthyPushApprovalService;
 import pcrypto.cf.security.domain.CustomUserDetails;
+import pcrypto.cf.security.web.TenantContext;
 import pcrypto.cf.stellar.api.model.StellarPaymentRequest;
 import pcrypto.cf.stellar.client.StellarNetworkService;
 import pcrypto.cf.stellar.client.response.DecoratedSubmitTransactionResponse;
+import pcrypto.cf.stellar.client.response.DecoratedTransactionResponse;
+import pcrypto.cf.stellar.client.template.StellarSubmitOutcomeUnknownException;
+import pcrypto.cf.stellar.client.template.StellarTransactionFailedException;
 import pcrypto.cf.stellar.domain.entity.StellarTransactionRequestApproverDomain;
 import pcrypto.cf.stellar.domain.entity.StellarTransactionRequestDomain;
 import pcrypto.cf.stellar.domain.entity.StellarTransactionResponseDomain;
@@ -67,12 +71,17 @@ import java.util.UUID;
 @Service
 public class StellarTransactionService
 {
+    // A payment whose sequence turns out to be out of step is signed and submitted once more
+    private static final int SUBMIT_ATTEMPTS = 2;
 
     private final StellarTransactionRequestRepository stellarTransactionRequestRepository;
     private final StellarTransactionRequestApproverRepository stellarTransactionRequestApproverRepository;
     private final StellarTransactionResponseRepository stellarTransactionResponseRepository;
     private final StellarTransactionApprovalStream stellarTransactionApprovalStream;
     private final StellarNetworkService stellarNetworkService;
+    private final StellarPaymentBatcher stellarPaymentBatcher;
+    private final StellarChannelPool stellarChannelPool;
+    private final StellarSequenceAllocator stellarSequenceAllocator;
     private final AccountConfigurationRepository accountConfigurationRepository;
     private final AuthyPushApprovalService authyPushApprovalService;
     private final VaultOperations vaultOperations;
@@ -85,6 +94,9 @@ public class StellarTransactionService
                                       final StellarTransactionResponseRepository stellarTransactionResponseRepository,
                                       @SuppressWarnings( "SpringJavaInjectionPointsAutowiringInspection" ) final StellarTransactionApprovalStream stellarTransactionApprovalStream,
                                       final StellarNetworkService stellarNetworkService,
+                                      final StellarPaymentBatcher stellarPaymentBatcher,
+                                      final StellarChannelPool stellarChannelPool,
+                                      final StellarSequenceAllocator stellarSequenceAllocator,
                                       final AccountConfigurationRepository accountConfigurationRepository,
                                       final AuthyPushApprovalService authyPushApprovalService,
                                       final VaultOperations vaultOperations,
@@ -95,6 +107,9 @@ public class StellarTransactionService
         this.stellarTransactionResponseRepository = stellarTransactionResponseRepository;
         this.stellarTransactionApprovalStream = stellarTransactionApprovalStream;
         this.stellarNetworkService = stellarNetworkService;
+        this.stellarPaymentBatcher = stellarPaymentBatcher;
+        this.stellarChannelPool = stellarChannelPool;
+        this.stellarSequenceAllocator = stellarSequenceAllocator;
         this.accountConfigurationRepository = accountConfigurationRepository;
         this.authyPushApprovalService = authyPushApprovalService;
         this.vaultOperations = vaultOperations;
@@ -242,7 +257,12 @@ public class StellarTransactionService
             }
         }
 
-        // All approvals granted, send the transaction to Vault for signing, and then submit to Stellar
+        // All approvals granted, send the transaction to Vault for signing (alone or as part of a batch), and then submit to Stellar
+        if ( stellarPaymentBatcher.isEnabled() )
+        {
+            stellarPaymentBatcher.add( TenantContext.getCurrentTenant(), stellarTransactionRequestDomain );
+            return;
+        }
         submitTransaction( stellarTransactionRequestDomain, stellarTransactionResponseDomain );
     }
 
@@ -250,6 +270,7 @@ public class StellarTransactionService
                                                                final StellarTransactionResponseDomain stellarTransactionResponseDomain )
     {
         final TenantDomain tenantDomain = stellarTransactionRequestDomain.getTenantDomain();
+        final String tenant = TenantContext.getCurrentTenant();
 
         // Obtain a signed tx from Vault
         final VaultStellarPaymentDomain paymentDomain = new VaultStellarPaymentDomain();
@@ -261,35 +282,108 @@ public class StellarTransactionService
             paymentDomain.setPaymentChannel( String.valueOf( stellarTransactionRequestDomain.getPaymentChannelAccountDomain().getId() ) );
         }
 
+        // Without a channel of its own, the payment borrows one from the tenant's pool (if there is one free)
+        Long leasedChannel = null;
+        if ( null == paymentDomain.getPaymentChannel() )
+        {
+            leasedChannel = stellarChannelPool.lease( tenant );
+            if ( null != leasedChannel )
+            {
+                paymentDomain.setPaymentChannel( String.valueOf( leasedChannel ) );
+            }
+        }
+
         paymentDomain.setAmount( stellarTransactionRequestDomain.getAmount().toString() );
         paymentDomain.setAssetCode( stellarTransactionRequestDomain.getAssetCode() );
         paymentDomain.setAssetIssuer( stellarTransactionRequestDomain.getAssetIssuer() );
         paymentDomain.setMemo( stellarTransactionRequestDomain.getMemo() );
 
-        final VaultResponse vaultResponse = vaultOperations.write( getStellarVaultPluginPath( tenantDomain ) + "/payments", paymentDomain );
-        if ( null == vaultResponse )
+        // The transaction takes its sequence number from the payment channel, if there is one
+        final Long sequenceAccountId = Long.valueOf( null == paymentDomain.getPaymentChannel() ? paymentDomain.getSource() : paymentDomain.getPaymentChannel() );
+        // A tx turned away with 'tx_bad_seq' is signed again once the sequence has been resynced, unless it turns out
+        // to have been applied already
+        DecoratedSubmitTransactionResponse txResponse = null;
+        DecoratedTransactionResponse appliedTx = null;
+        String signedTx = null;
+        for ( int attempt = 1; null == txResponse; attempt++ )
         {
-            throw new VaultException( "An error occurred while creating the payment transaction." );
-        }
+            Long sequence = null;
+            try
+            {
+                sequence = stellarSequenceAllocator.allocate( sequenceAccountId );
+                paymentDomain.setSequence( sequence );
+                signedTx = signPayment( tenantDomain, paymentDomain );
+            }
+            catch ( final RuntimeException e )
+            {
+                if ( null != sequence )
+                {
+                    stellarSequenceAllocator.release( sequenceAccountId, sequence );
+                }
+                stellarChannelPool.release( tenant, leasedChannel );
+                throw e;
+            }
 
-        final Map<String, Object> data = vaultResponse.getData();
-        if ( null == data )
-        {
-            throw new VaultException( "Vault response when signing transaction contained a null data map." );
-        }
-        final String signedTx = (String) data.get( "signed_transaction" );
+            // Submit the signed tx to Stellar. If we don't hear back, the channel is kept until its lease runs out, as
+            // the tx may still make it into a ledger.
+            try
+            {
+                txResponse = stellarNetworkService.submitTransaction( signedTx );
+            }
+            catch ( final StellarSubmitOutcomeUnknownException e )
+            {
+                // Record it if it was applied; otherwise its outcome is left unknown, as when no server answers
+                appliedTx = stellarNetworkService.findTransaction( e.getTransactionHash() );
+                if ( null == appliedTx )
+                {
+                    throw e;
+                }
+                break;
+            }
+            catch ( final StellarTransactionFailedException e )
+            {
+                if ( attempt < SUBMIT_ATTEMPTS && StellarSequenceAllocator.isBadSequence( e.getTransactionResultCode() ) )
+                {
+                    // A server may have applied the tx and then failed to answer, so that this is our own resend
+                    // being turned away
+                    appliedTx = stellarNetworkService.findTransaction( stellarNetworkService.getTransactionHash( signedTx ) );
+                    if ( null != appliedTx )
+                    {
+                        break;
+                    }
+                }
 
-        // Submit the signed tx to Stellar
-        final DecoratedSubmitTransactionResponse txResponse = stellarNetworkService.submitTransaction( signedTx );
+                stellarSequenceAllocator.rejected( sequenceAccountId, sequence, e.getTransactionResultCode() );
+                if ( attempt >= SUBMIT_ATTEMPTS || !StellarSequenceAllocator.isBadSequence( e.getTransactionResultCode() ) )
+                {
+                    stellarChannelPool.release( tenant, leasedChannel );
+                    throw e;
+                }
+                log.info( "Sequence {} out of step for Stellar account {}; signing the payment again", sequence, sequenceAccountId );
+            }
+        }
+        stellarChannelPool.release( tenant, leasedChannel );
 
         // Save the transaction response
-        stellarTransactionResponseDomain.setLedger( txResponse.getLedger() );
-        stellarTransactionResponseDomain.setSuccess( txResponse.isSuccess() );
-        stellarTransactionResponseDomain.setTransactionHash( txResponse.getHash() );
+        final Map<String, String> resultCodeMap;
+        if ( null != appliedTx )
+        {
+            stellarTransactionResponseDomain.setLedger( appliedTx.getLedger() );
+            stellarTransactionResponseDomain.setSuccess( appliedTx.isSuccess() );
+            stellarTransactionResponseDomain.setTransactionHash( appliedTx.getHash() );
+            resultCodeMap = appliedTx.getResultCodeMap();
+        }
+        else
+        {
+            stellarTransactionResponseDomain.setLedger( txResponse.getLedger() );
+            stellarTransactionResponseDomain.setSuccess( txResponse.isSuccess() );
+            stellarTransactionResponseDomain.setTransactionHash( txResponse.getHash() );
+            resultCodeMap = txResponse.getResultCodeMap();
+        }
         stellarTransactionResponseDomain.setSignedTransaction( signedTx );
         try
         {
-            stellarTransactionResponseDomain.setTransactionResult( objectMapper.writeValueAsString( txResponse.getResultCodeMap() ) );
+            stellarTransactionResponseDomain.setTransactionResult( objectMapper.writeValueAsString( resultCodeMap ) );
         }
         catch ( final JsonProcessingException e )
         {
@@ -303,6 +397,23 @@ public class StellarTransactionService
     }
 
 
+    private String signPayment( final TenantDomain tenantDomain,
+                                final VaultStellarPaymentDomain paymentDomain )
+    {
+        final VaultResponse vaultResponse = vaultOperations.write( getStellarVaultPluginPath( tenantDomain ) + "/payments", paymentDomain );
+        if ( null == vaultResponse )
+        {
+            throw new VaultException( "An error occurred while creating the payment transaction." );
+        }
+
+        final Map<String, Object> data = vaultResponse.getData();
+        if ( null == data )
+        {
+            throw new VaultException( "Vault response when signing transaction contained a null data map." );
+        }
+        return (String) data.get( "signed_transaction" );
+    }
+
     private void validateMfaApprovers( final List<AccountDomain> approvers )
     {
         final List<ErrorMessage> invalidApprovers = new ArrayList<>();
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.vault.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Represents several Stellar payments from one source, signed by the Stellar vault plugin as a single transaction
+ * with one payment operation per entry.
+ */
+public class VaultStellarBatchPaymentDomain
+{
+    private String source;
+    private String paymentChannel;
+    private String memo;
+    // Sequence number of the payment channel, or of the source without one (the plugin looks it up if not set)
+    private Long sequence;
+    // Only the destination, amount and asset of each payment are used
+    private List<VaultStellarPaymentDomain> payments = new ArrayList<>();
+
+
+    public String getSource()
+    {
+        return source;
+    }
+
+    public void setSource( final String source )
+    {
+        this.source = source;
+    }
+
+    public String getPaymentChannel()
+    {
+        return paymentChannel;
+    }
+
+    public void setPaymentChannel( final String paymentChannel )
+    {
+        this.paymentChannel = paymentChannel;
+    }
+
+    public String getMemo()
+    {
+        return memo;
+    }
+
+    public void setMemo( final String memo )
+    {
+        this.memo = memo;
+    }
+
+    public Long getSequence()
+    {
+        return sequence;
+    }
+
+    public void setSequence( final Long sequence )
+    {
+        this.sequence = sequence;
+    }
+
+    public List<VaultStellarPaymentDomain> getPayments()
+    {
+        return payments;
+    }
+
+    public void setPayments( final List<VaultStellarPaymentDomain> payments )
+    {
+        this.payments = payments;
+    }
+}
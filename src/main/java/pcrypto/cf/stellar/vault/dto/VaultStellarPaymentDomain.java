@@ -28,6 +28,8 @@ public class VaultStellarPaymentDomain
     private String assetCode;
     private String assetIssuer;
     private String memo;
+    // Sequence number of the transaction's source (the payment channel, if there is one); looked up by the plugin if not set
+    private Long sequence;
 
 
     public String getSource()
@@ -99,4 +101,14 @@ public class VaultStellarPaymentDomain
     {
         this.memo = memo;
     }
+
+    public Long getSequence()
+    {
+        return sequence;
+    }
+
+    public void setSequence( final Long sequence )
+    {
+        this.sequence = sequence;
+    }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.config.concurrent
+
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor
+import java.util.concurrent.ThreadPoolExecutor
+
+
+@Configuration
+class ExecutorConfig {
+
+    @Value("\${ripple.client-executor.pool-size:8}")
+    private val ripplePoolSize: Int = 8
+
+    @Value("\${ripple.client-executor.queue-capacity:500}")
+    private val rippleQueueCapacity: Int = 500
+
+
+    /**
+     * Bounded pool used to decode rippled responses and combine concurrent rippled calls. Its tasks are submitted by
+     * the websocket threads as responses arrive, so each continuation carries the tenant of the original caller
+     * itself (see TenantContext.withTenant). When full, new work is rejected and the caller's future fails, rather
+     * than running on (and stalling) a websocket reader thread.
+     */
+    @Bean(destroyMethod = "shutdown")
+    fun rippleClientExecutor(): ThreadPoolTaskExecutor {
+        val executor = ThreadPoolTaskExecutor()
+        executor.corePoolSize = ripplePoolSize
+        executor.maxPoolSize = ripplePoolSize
+        executor.setQueueCapacity(rippleQueueCapacity)
+        executor.setThreadNamePrefix("ripple-client-")
+        executor.setRejectedExecutionHandler(ThreadPoolExecutor.AbortPolicy())
+        return executor
+    }
+}
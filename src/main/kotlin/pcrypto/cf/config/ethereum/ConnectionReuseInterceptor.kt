@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.config.ethereum
+
+import io.micrometer.core.instrument.Counter
+import io.micrometer.core.instrument.MeterRegistry
+import okhttp3.Connection
+import okhttp3.Interceptor
+import okhttp3.Response
+import java.util.Collections
+import java.util.WeakHashMap
+
+
+/**
+ * Counts requests made over a new connection versus a pooled one. Registered as a network interceptor so that
+ * the connection is known by the time it runs.
+ */
+class ConnectionReuseInterceptor(meterRegistry: MeterRegistry) : Interceptor {
+
+    private val seenConnections: MutableSet<Connection> = Collections.synchronizedSet(Collections.newSetFromMap(WeakHashMap<Connection, Boolean>()))
+
+    private val newConnections: Counter = meterRegistry.counter("ethereum.http.requests", "connection", "new")
+    private val reusedConnections: Counter = meterRegistry.counter("ethereum.http.requests", "connection", "reused")
+
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val connection = chain.connection()
+        if (null != connection) {
+            if (seenConnections.add(connection)) newConnections.increment() else reusedConnections.increment()
+        }
+        return chain.proceed(chain.request())
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.config.ethereum
+
+import io.micrometer.core.instrument.MeterRegistry
+import okhttp3.ConnectionPool
+import okhttp3.Dispatcher
+import okhttp3.OkHttpClient
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import org.web3j.protocol.Web3j
+import org.web3j.protocol.http.HttpService
+import java.util.concurrent.TimeUnit
+import javax.annotation.PreDestroy
+
+
+/**
+ * A single Web3j client, and the OkHttp client under it, shared by everything that talks to geth. Connections are
+ * kept alive and reused across calls rather than re-established for every request.
+ */
+@Configuration
+class Web3jConfig {
+
+    @Value("\${ethereum.geth-url}")
+    private val ethereumUrl: String = ""
+
+    @Value("\${ethereum.http.max-idle-connections:20}")
+    private val maxIdleConnections: Int = 20
+
+    @Value("\${ethereum.http.keep-alive-ms:300000}")
+    private val keepAliveMs: Long = 300000
+
+    @Value("\${ethereum.http.max-requests:64}")
+    private val maxRequests: Int = 64
+
+    @Value("\${ethereum.http.connect-timeout-ms:5000}")
+    private val connectTimeoutMs: Long = 5000
+
+    @Value("\${ethereum.http.read-timeout-ms:30000}")
+    private val readTimeoutMs: Long = 30000
+
+    private var httpClient: OkHttpClient? = null
+
+
+    @Bean
+    fun ethereumHttpClient(meterRegistry: MeterRegistry): OkHttpClient {
+        val connectionPool = ConnectionPool(maxIdleConnections, keepAliveMs, TimeUnit.MILLISECONDS)
+        meterRegistry.gauge("ethereum.http.connections.open", connectionPool) { it.connectionCount().toDouble() }
+        meterRegistry.gauge("ethereum.http.connections.idle", connectionPool) { it.idleConnectionCount().toDouble() }
+
+        // All calls go to the one geth host, so allow as many concurrent requests to it as in total
+        val dispatcher = Dispatcher()
+        dispatcher.maxRequests = maxRequests
+        dispatcher.maxRequestsPerHost = maxRequests
+
+        val client = OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .addNetworkInterceptor(ConnectionReuseInterceptor(meterRegistry))
+                .build()
+        httpClient = client
+        return client
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    fun web3j(ethereumHttpClient: OkHttpClient): Web3j {
+        return Web3j.build(HttpService(ethereumUrl, ethereumHttpClient, false))
+    }
+
+    @PreDestroy
+    fun close() {
+        httpClient?.let {
+            it.dispatcher().executorService().shutdown()
+            it.connectionPool().evictAll()
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.abi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import pcrypto.cf.exception.BadRequestException;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class ContractAbiTest
+{
+    private static final String ABI = "["
+                                      + "{\"type\":\"constructor\",\"inputs\":[{\"name\":\"supply\",\"type\":\"uint256\"}]},"
+                                      + "{\"type\":\"function\",\"name\":\"transfer\",\"inputs\":[{\"name\":\"to\",\"type\":\"address\"},{\"name\":\"value\",\"type\":\"uint256\"}]},"
+                                      + "{\"type\":\"function\",\"name\":\"mint\",\"inputs\":[{\"name\":\"value\",\"type\":\"uint256\"}]},"
+                                      + "{\"type\":\"function\",\"name\":\"mint\",\"inputs\":[{\"name\":\"to\",\"type\":\"address\"},{\"name\":\"value\",\"type\":\"uint256\"}]},"
+                                      + "{\"type\":\"event\",\"name\":\"Transfer\",\"inputs\":[]}"
+                                      + "]";
+
+    private static final String TO = "0x3b9b4c2d6e0b5c1d0b6d6bf11f3d2aa7d7e0f2c4";
+
+    private final ContractAbi contractAbi = ContractAbi.parse( new ObjectMapper(), ABI );
+
+
+    @Test
+    void testEncodeByName()
+    {
+        final String data = contractAbi.getFunction( "transfer" ).encode( Arrays.asList( TO, "10" ) );
+
+        assertEquals( "0xa9059cbb"
+                      + "000000000000000000000000" + TO.substring( 2 )
+                      + "000000000000000000000000000000000000000000000000000000000000000a", data );
+    }
+
+
+    @Test
+    void testOverloadedFunctionNeedsSignature()
+    {
+        assertThrows( BadRequestException.class, () -> contractAbi.getFunction( "mint" ) );
+        assertEquals( "mint(address,uint256)", contractAbi.getFunction( "mint(address,uint256)" ).getSignature() );
+    }
+
+
+    @Test
+    void testEncodeConstructor()
+    {
+        final String data = contractAbi.getConstructor().encode( Collections.singletonList( "1" ) );
+
+        assertEquals( "0x0000000000000000000000000000000000000000000000000000000000000001", data );
+    }
+
+
+    @Test
+    void testWrongParameterCount()
+    {
+        assertThrows( BadRequestException.class, () -> contractAbi.getFunction( "transfer" ).encode( Collections.singletonList( TO ) ) );
+    }
+
+
+    @Test
+    void testInvalidIntegerSize()
+    {
+        for ( final String type : new String[] { "uint0", "uint7", "uint12", "int264", "int1000" } )
+        {
+            final String abi = "[{\"type\":\"function\",\"name\":\"set\",\"inputs\":[{\"name\":\"value\",\"type\":\"" + type + "\"}]}]";
+            assertThrows( BadRequestException.class, () -> ContractAbi.parse( new ObjectMapper(), abi ), type );
+        }
+    }
+
+
+    @Test
+    void testIntegerOutOfRange()
+    {
+        final ContractAbi abi = ContractAbi.parse( new ObjectMapper(), "[{\"type\":\"function\",\"name\":\"set\",\"inputs\":[{\"name\":\"value\",\"type\":\"uint8\"}]}]" );
+
+        assertThrows( BadRequestException.class, () -> abi.getFunction( "set" ).encode( Collections.singletonList( "256" ) ) );
+        assertThrows( BadRequestException.class, () -> abi.getFunction( "set" ).encode( Collections.singletonList( "-1" ) ) );
+    }
+}
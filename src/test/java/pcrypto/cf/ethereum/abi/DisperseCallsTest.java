@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.abi;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class DisperseCallsTest
+{
+    private static final String ALICE = "0x3b9b4c2d6e0b5c1d0b6d6bf11f3d2aa7d7e0f2c4";
+    private static final String BOB = "0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48";
+    private static final String TOKEN = "0xdac17f958d2ee523a2206206994597c13d831ec7";
+
+
+    @Test
+    void testEncodeDisperseEther()
+    {
+        final String data = DisperseCalls.encodeDisperseEther( Arrays.asList( ALICE, BOB ), Arrays.asList( BigInteger.ONE, BigInteger.TEN ) );
+
+        assertEquals( "0xe63d38ed"
+                      + word( "40" )
+                      + word( "a0" )
+                      + word( "2" )
+                      + word( ALICE.substring( 2 ) )
+                      + word( BOB.substring( 2 ) )
+                      + word( "2" )
+                      + word( "1" )
+                      + word( "a" ), data );
+    }
+
+
+    @Test
+    void testEncodeDisperseToken()
+    {
+        final String data = DisperseCalls.encodeDisperseToken( TOKEN, Arrays.asList( ALICE ), Arrays.asList( BigInteger.ONE ) );
+
+        assertEquals( "0xc73a2d60"
+                      + word( TOKEN.substring( 2 ) )
+                      + word( "60" )
+                      + word( "a0" )
+                      + word( "1" )
+                      + word( ALICE.substring( 2 ) )
+                      + word( "1" )
+                      + word( "1" ), data );
+    }
+
+
+    private static String word( final String hex )
+    {
+        return String.format( "%64s", hex ).replace( ' ', '0' );
+    }
+}
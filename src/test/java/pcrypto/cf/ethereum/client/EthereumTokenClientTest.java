@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class EthereumTokenClientTest
+{
+    private static final String HOLDER = "0x3b9b4c2d6e0b5c1d0b6d6bf11f3d2aa7d7e0f2c4";
+    private static final String TOKEN_A = "0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48";
+    private static final String TOKEN_B = "0xdac17f958d2ee523a2206206994597c13d831ec7";
+
+
+    @Test
+    void testEncodeBalanceOf()
+    {
+        final String data = EthereumTokenClient.encodeBalanceOf( HOLDER );
+
+        assertEquals( "0x70a08231000000000000000000000000" + HOLDER.substring( 2 ), data );
+    }
+
+
+    @Test
+    void testEncodeAggregate()
+    {
+        final String data = EthereumTokenClient.encodeAggregate( Arrays.asList( HOLDER, HOLDER ), Arrays.asList( TOKEN_A, TOKEN_B ) );
+
+        // selector, array offset, length, 2 element offsets, then 2 x (target, bytes offset, bytes length, 36 bytes padded to 64)
+        assertTrue( data.startsWith( "0x252dba42" ) );
+        assertEquals( 2 + ( 4 + 32 + 32 + 2 * 32 + 2 * 160 ) * 2, data.length() );
+        assertEquals( BigInteger.valueOf( 2 ), word( data, 1 ) );
+        assertEquals( BigInteger.valueOf( 64 ), word( data, 2 ) );
+        assertEquals( BigInteger.valueOf( 64 + 160 ), word( data, 3 ) );
+        assertEquals( new BigInteger( TOKEN_B.substring( 2 ), 16 ), word( data, 4 + 5 ) );
+    }
+
+
+    @Test
+    void testDecodeAggregate()
+    {
+        // (blockNumber 100, [uint256 1000, empty])
+        final String value = "0x"
+                             + hexWord( 100 ) + hexWord( 64 )
+                             + hexWord( 2 ) + hexWord( 64 ) + hexWord( 128 )
+                             + hexWord( 32 ) + hexWord( 1000 )
+                             + hexWord( 0 );
+
+        final List<BigInteger> balances = EthereumTokenClient.decodeAggregate( value );
+
+        assertEquals( 2, balances.size() );
+        assertEquals( BigInteger.valueOf( 1000 ), balances.get( 0 ) );
+        assertNull( balances.get( 1 ) );
+    }
+
+
+    private static String hexWord( final long value )
+    {
+        return String.format( "%064x", value );
+    }
+
+    /**
+     * The n'th 32 byte word after the 4 byte selector.
+     */
+    private static BigInteger word( final String data,
+                                    final int index )
+    {
+        final int start = 2 + 8 + index * 64;
+        return new BigInteger( data.substring( start, start + 64 ), 16 );
+    }
+}
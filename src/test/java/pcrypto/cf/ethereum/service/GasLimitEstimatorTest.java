@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.ethereum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import pcrypto.cf.ethereum.client.EthereumTransactionClient;
+import pcrypto.cf.exception.BlockchainServiceException;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+class GasLimitEstimatorTest
+{
+    private static final String TRANSFER = "0xa9059cbb"
+                                           + "0000000000000000000000003b9b4c2d6e0b5c1d0b6d6bf11f3d2aa7d7e0f2c4"
+                                           + "00000000000000000000000000000000000000000000000000000000000003e8";
+
+    private static final String FROM = "0x1f9090aae28b8a3dceadf281b0f12828e676c326";
+    private static final String TOKEN = "0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48";
+    private static final BigInteger FALLBACK = BigInteger.valueOf( 200000 );
+
+    private final EthereumTransactionClient ethereumTransactionClient = mock( EthereumTransactionClient.class );
+    private GasLimitEstimator gasLimitEstimator;
+
+
+    @BeforeEach
+    void setUp()
+    {
+        when( ethereumTransactionClient.getCode( anyString() ) ).thenReturn( "0x6080" );
+        when( ethereumTransactionClient.estimateGas( anyString(), anyString(), any(), anyString() ) ).thenReturn( BigInteger.valueOf( 100000 ) );
+        gasLimitEstimator = newEstimator( 1000 );
+    }
+
+
+    @Test
+    void testPlainTransferHasNoSignature()
+    {
+        assertEquals( "", GasLimitEstimator.getCallSignature( null ) );
+        assertEquals( "", GasLimitEstimator.getCallSignature( "0x" ) );
+    }
+
+
+    @Test
+    void testCallSignatureIsSelectorAndLength()
+    {
+        assertEquals( "a9059cbb:68", GasLimitEstimator.getCallSignature( TRANSFER ) );
+        assertEquals( "a9059cbb:68", GasLimitEstimator.getCallSignature( TRANSFER.toUpperCase().replace( "0X", "0x" ) ) );
+    }
+
+
+    @Test
+    void testLongerCallsHaveTheirOwnSignature()
+    {
+        assertNotEquals( GasLimitEstimator.getCallSignature( TRANSFER ), GasLimitEstimator.getCallSignature( TRANSFER + "00" ) );
+    }
+
+
+    @Test
+    void testCacheHitSkipsEstimate()
+    {
+        assertEquals( BigInteger.valueOf( 150000 ), gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, TRANSFER, FALLBACK ) );
+        assertEquals( BigInteger.valueOf( 150000 ), gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, TRANSFER, FALLBACK ) );
+
+        verify( ethereumTransactionClient, times( 1 ) ).estimateGas( anyString(), anyString(), any(), anyString() );
+        verify( ethereumTransactionClient, times( 1 ) ).getCode( anyString() );
+    }
+
+
+    @Test
+    void testExpiredEntryIsReestimatedAndDecays()
+    {
+        ReflectionTestUtils.setField( gasLimitEstimator, "maxAgeMs", -1L );
+        gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, TRANSFER, FALLBACK );
+
+        // A cheaper estimate only lowers the limit by the decay (150000 less 10%)
+        when( ethereumTransactionClient.estimateGas( anyString(), anyString(), any(), anyString() ) ).thenReturn( BigInteger.valueOf( 50000 ) );
+        assertEquals( BigInteger.valueOf( 135000 ), gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, TRANSFER, FALLBACK ) );
+
+        verify( ethereumTransactionClient, times( 2 ) ).estimateGas( anyString(), anyString(), any(), anyString() );
+    }
+
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted()
+    {
+        gasLimitEstimator = newEstimator( 2 );
+        final String first = "0xaaaaaaaa";
+        final String second = "0xbbbbbbbb";
+        final String third = "0xcccccccc";
+
+        gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, first, FALLBACK );
+        gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, second, FALLBACK );
+        gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, first, FALLBACK );
+        gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, third, FALLBACK );
+
+        // 'second' was used least recently, so adding 'third' evicted it
+        gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, first, FALLBACK );
+        gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, second, FALLBACK );
+
+        verify( ethereumTransactionClient, times( 1 ) ).estimateGas( anyString(), anyString(), any(), eq( first ) );
+        verify( ethereumTransactionClient, times( 2 ) ).estimateGas( anyString(), anyString(), any(), eq( second ) );
+        verify( ethereumTransactionClient, times( 1 ) ).estimateGas( anyString(), anyString(), any(), eq( third ) );
+    }
+
+
+    @Test
+    void testFallbackWhenEstimateFails()
+    {
+        when( ethereumTransactionClient.estimateGas( anyString(), anyString(), any(), anyString() ) )
+              .thenThrow( new BlockchainServiceException( "execution reverted", null ) );
+
+        assertEquals( FALLBACK, gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, TRANSFER, FALLBACK ) );
+
+        // A failed estimate is not cached
+        gasLimitEstimator.getGasLimit( FROM, TOKEN, BigInteger.ZERO, TRANSFER, FALLBACK );
+        verify( ethereumTransactionClient, times( 2 ) ).estimateGas( anyString(), anyString(), any(), anyString() );
+    }
+
+
+    private GasLimitEstimator newEstimator( final int maxEntries )
+    {
+        final GasLimitEstimator estimator = new GasLimitEstimator( ethereumTransactionClient, maxEntries );
+        ReflectionTestUtils.setField( estimator, "marginPercent", 50 );
+        ReflectionTestUtils.setField( estimator, "decayPercent", 10 );
+        ReflectionTestUtils.setField( estimator, "maxAgeMs", 3600000L );
+        return estimator;
+    }
+}
@@ -24,7 +24,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 import pcrypto.cf.ripple.client.dto.RippleAccountInfoDto;
 import pcrypto.cf.ripple.client.dto.RippleAccountLineDto;
 
-import java.util.List;
+import java.util.Iterator;
 
 
 @Slf4j
@@ -36,8 +36,12 @@ class RippleAccountClientTest
     static void setup()
     {
         final ObjectMapper objectMapper = new ObjectMapper();
-        rippleAccountClient = new RippleAccountClient( objectMapper );
-        ReflectionTestUtils.setField( rippleAccountClient, "rippleUrl", "wss://s.altnet.rippletest.net:51233" );
+        final RippledConnectionPool rippledConnectionPool = new RippledConnectionPool( objectMapper );
+        ReflectionTestUtils.setField( rippledConnectionPool, "rippleUrls", new String[]{ "wss://s.altnet.rippletest.net:51233" } );
+        ReflectionTestUtils.setField( rippledConnectionPool, "poolSize", 1 );
+        ReflectionTestUtils.setField( rippledConnectionPool, "requestTimeoutMs", 20000L );
+        rippleAccountClient = new RippleAccountClient( objectMapper, rippledConnectionPool, Runnable::run );
+        ReflectionTestUtils.setField( rippleAccountClient, "accountLinesPageSize", 400 );
     }
 
     @Test
@@ -52,15 +56,15 @@ class RippleAccountClientTest
 
 
     @Test
-    void testGetAccountLines()
+    void testIterateAccountLines()
     {
         final String address = "r4oSY6JSHL67GzU9G3zSB6e9eX4Vy6CRAA";
 
-        final List<RippleAccountLineDto> rippleAccountLineDtos = rippleAccountClient.getAccountLines( address );
+        final Iterator<RippleAccountLineDto> accountLines = rippleAccountClient.iterateAccountLines( address );
 
-        for ( final RippleAccountLineDto rippleAccountLineDto : rippleAccountLineDtos )
+        while ( accountLines.hasNext() )
         {
-            log.info( rippleAccountLineDto.currency.toString() );
+            log.info( accountLines.next().currency.toString() );
         }
     }
-}
\ No newline at end of file
+}
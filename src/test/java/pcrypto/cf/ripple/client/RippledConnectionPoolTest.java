@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Routing tests against local stub rippled servers.
+ */
+class RippledConnectionPoolTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<StubRippled> servers = new ArrayList<>();
+    private RippledConnectionPool rippledConnectionPool;
+
+
+    @AfterEach
+    void tearDown()
+          throws Exception
+    {
+        if ( null != rippledConnectionPool )
+        {
+            rippledConnectionPool.close();
+        }
+        for ( final StubRippled server : servers )
+        {
+            server.shutdown();
+        }
+    }
+
+
+    @Test
+    void testReadsPreferFasterNode()
+          throws Exception
+    {
+        final StubRippled fast = startServer( 0, 100 );
+        final StubRippled slow = startServer( 200, 100 );
+        rippledConnectionPool = createPool( fast.url(), slow.url() );
+
+        for ( int i = 0; i < 20; i++ )
+        {
+            rippledConnectionPool.send( accountInfoCommand() );
+        }
+
+        assertTrue( fast.count( "account_info" ) > slow.count( "account_info" ) );
+    }
+
+
+    @Test
+    void testReadsFailOverToHealthyNode()
+          throws Exception
+    {
+        final StubRippled healthy = startServer( 0, 100 );
+        rippledConnectionPool = createPool( "ws://localhost:" + freePort(), healthy.url() );
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            final JsonNode response = objectMapper.readTree( rippledConnectionPool.send( accountInfoCommand() ) );
+            assertEquals( "success", response.get( "status" ).asText() );
+        }
+
+        assertEquals( 5, healthy.count( "account_info" ) );
+    }
+
+
+    @Test
+    void testSubmitGoesToLatestValidatedLedger()
+          throws Exception
+    {
+        final StubRippled behind = startServer( 0, 100 );
+        final StubRippled current = startServer( 0, 105 );
+        rippledConnectionPool = createPool( behind.url(), current.url() );
+
+        // Run a health check now, rather than waiting for the scheduled one, to learn each node's validated ledger
+        rippledConnectionPool.getNodes();
+        ReflectionTestUtils.invokeMethod( rippledConnectionPool, "checkNodes" );
+        for ( final RippledNode node : rippledConnectionPool.getNodes() )
+        {
+            assertTrue( node.getValidatedLedgerIndex() > 0 );
+        }
+
+        final ObjectNode payload = objectMapper.createObjectNode();
+        payload.put( "command", "submit" );
+        payload.put( "tx_blob", "1200" );
+        rippledConnectionPool.submit( payload );
+
+        assertEquals( 1, current.count( "submit" ) );
+        assertEquals( 0, behind.count( "submit" ) );
+    }
+
+
+    private RippledConnectionPool createPool( final String... urls )
+    {
+        final RippledConnectionPool pool = new RippledConnectionPool( objectMapper );
+        ReflectionTestUtils.setField( pool, "rippleUrls", urls );
+        ReflectionTestUtils.setField( pool, "poolSize", 1 );
+        ReflectionTestUtils.setField( pool, "requestTimeoutMs", 2000L );
+        ReflectionTestUtils.setField( pool, "maxAttempts", 2 );
+        ReflectionTestUtils.setField( pool, "nodeRetryDelayMs", 5000L );
+        ReflectionTestUtils.setField( pool, "healthCheckIntervalMs", 60000L );
+        return pool;
+    }
+
+    private ObjectNode accountInfoCommand()
+    {
+        final ObjectNode payload = objectMapper.createObjectNode();
+        payload.put( "command", "account_info" );
+        payload.put( "account", "r4oSY6JSHL67GzU9G3zSB6e9eX4Vy6CRAA" );
+        return payload;
+    }
+
+    private StubRippled startServer( final long delayMs,
+                                     final long validatedLedger )
+          throws Exception
+    {
+        final int port = freePort();
+        final StubRippled server = new StubRippled( port, delayMs, validatedLedger );
+        server.start();
+        servers.add( server );
+
+        // Wait until the server is accepting connections
+        final long deadline = System.currentTimeMillis() + 5000;
+        while ( true )
+        {
+            try ( final Socket ignored = new Socket( "localhost", port ) )
+            {
+                return server;
+            }
+            catch ( final IOException e )
+            {
+                assertTrue( System.currentTimeMillis() < deadline );
+                Thread.sleep( 20 );
+            }
+        }
+    }
+
+    private static int freePort()
+          throws IOException
+    {
+        try ( final ServerSocket socket = new ServerSocket( 0 ) )
+        {
+            return socket.getLocalPort();
+        }
+    }
+
+
+    /**
+     * Answers every command successfully after a fixed delay, and reports a fixed validated ledger from 'server_info'.
+     */
+    private class StubRippled
+          extends WebSocketServer
+    {
+        private final int port;
+        private final long delayMs;
+        private final long validatedLedger;
+        private final Map<String, AtomicInteger> commandCounts = new ConcurrentHashMap<>();
+        private final ScheduledExecutorService responder = Executors.newSingleThreadScheduledExecutor();
+
+        StubRippled( final int port,
+                     final long delayMs,
+                     final long validatedLedger )
+        {
+            super( new InetSocketAddress( "localhost", port ) );
+            this.port = port;
+            this.delayMs = delayMs;
+            this.validatedLedger = validatedLedger;
+        }
+
+        String url()
+        {
+            return "ws://localhost:" + port;
+        }
+
+        int count( final String command )
+        {
+            return commandCounts.computeIfAbsent( command, key -> new AtomicInteger() ).get();
+        }
+
+        void shutdown()
+              throws Exception
+        {
+            responder.shutdownNow();
+            stop();
+        }
+
+        @Override
+        public void onOpen( final WebSocket conn,
+                            final ClientHandshake handshake )
+        {
+        }
+
+        @Override
+        public void onClose( final WebSocket conn,
+                             final int code,
+                             final String reason,
+                             final boolean remote )
+        {
+        }
+
+        @Override
+        public void onMessage( final WebSocket conn,
+                               final String message )
+        {
+            try
+            {
+                final JsonNode request = objectMapper.readTree( message );
+                final String command = request.get( "command" ).asText();
+                commandCounts.computeIfAbsent( command, key -> new AtomicInteger() ).incrementAndGet();
+
+                final ObjectNode response = objectMapper.createObjectNode();
+                response.put( "id", request.get( "id" ).asLong() );
+                response.put( "status", "success" );
+                response.put( "type", "response" );
+                final ObjectNode result = response.putObject( "result" );
+                if ( "server_info".equals( command ) )
+                {
+                    result.putObject( "info" ).putObject( "validated_ledger" ).put( "seq", validatedLedger );
+                }
+
+                responder.schedule( () -> conn.send( response.toString() ), delayMs, TimeUnit.MILLISECONDS );
+            }
+            catch ( final IOException e )
+            {
+                throw new IllegalStateException( e );
+            }
+        }
+
+        @Override
+        public void onError( final WebSocket conn,
+                             final Exception ex )
+        {
+        }
+
+        // Not present in every Java-WebSocket version, so deliberately not marked @Override
+        public void onStart()
+        {
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pcrypto.cf.ripple.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ripple.core.coretypes.AccountID;
+import com.ripple.core.serialized.enums.EngineResult;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import pcrypto.cf.ripple.client.dto.RippleAccountInfoDto;
+import pcrypto.cf.ripple.client.dto.RippleAccountLineDto;
+import pcrypto.cf.ripple.client.dto.RippleAccountLinesPageDto;
+import pcrypto.cf.ripple.client.dto.RippleSubmitResponseDto;
+import pcrypto.cf.ripple.client.dto.RippleTransactionResponseDto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class RippledResponseDecoderTest
+{
+    private static final String ADDRESS = "r4oSY6JSHL67GzU9G3zSB6e9eX4Vy6CRAA";
+    private static final String ISSUER = "rvYAfWj5gh67oV6fW32ZzP3Aw4Eubs59B";
+
+    private static ObjectMapper objectMapper;
+    private static RippledResponseDecoder rippledResponseDecoder;
+
+    @BeforeAll
+    static void setup()
+    {
+        objectMapper = new ObjectMapper();
+        rippledResponseDecoder = new RippledResponseDecoder( objectMapper.getFactory() );
+    }
+
+
+    @Test
+    void testDecodeAccountInfo()
+    {
+        final String response = "{\"id\":1,\"result\":{\"account_data\":{\"Account\":\"" + ADDRESS + "\",\"Balance\":\"999999988\"," +
+                                "\"Flags\":0,\"Sequence\":42},\"queue_data\":{\"txn_count\":0},\"validated\":false},\"status\":\"success\",\"type\":\"response\"}";
+
+        final RippleAccountInfoDto accountInfo = rippledResponseDecoder.decodeAccountInfo( AccountID.fromAddress( ADDRESS ), response );
+
+        assertEquals( "999.999988", accountInfo.getBalance().valueText() );
+        assertEquals( Integer.valueOf( 42 ), accountInfo.getSequence() );
+    }
+
+
+    @Test
+    void testDecodeAccountLinesPage()
+    {
+        final String response = "{\"id\":2,\"status\":\"success\",\"type\":\"response\",\"result\":{\"account\":\"" + ADDRESS + "\"," +
+                                "\"ledger_index\":1234,\"marker\":\"ABC123,0\",\"lines\":[" + line( 0 ) + "," + line( 1 ) + "]}}";
+
+        final RippleAccountLinesPageDto page = rippledResponseDecoder.decodeAccountLinesPage( AccountID.fromAddress( ADDRESS ), response );
+
+        assertEquals( 2, page.getLines().size() );
+        assertEquals( Long.valueOf( 1234 ), page.getLedgerIndex() );
+        assertEquals( "ABC123,0", page.getMarker() );
+
+        final RippleAccountLineDto accountLine = page.getLines().get( 1 );
+        assertEquals( "USD", accountLine.getCurrency().humanCode() );
+        assertEquals( "1.5", accountLine.getBalance().valueText() );
+        assertEquals( ISSUER, accountLine.getBalance().issuerString() );
+        assertEquals( ADDRESS, accountLine.getLimit_peer().issuerString() );
+        assertTrue( accountLine.isNo_ripple() );
+        assertFalse( accountLine.isFreeze() );
+    }
+
+
+    @Test
+    void testDecodeSubmit()
+    {
+        final String response = "{\"id\":3,\"result\":{\"engine_result\":\"tesSUCCESS\",\"engine_result_code\":0," +
+                                "\"tx_blob\":\"1200\",\"tx_json\":{\"Account\":\"" + ADDRESS + "\",\"Fee\":\"12\",\"Sequence\":7," +
+                                "\"hash\":\"C53ECF838647FA5A4C780377025FEC7999AB4182590510CA461444B207AB74A9\"}},\"status\":\"success\",\"type\":\"response\"}";
+
+        final RippleSubmitResponseDto submitResponse = rippledResponseDecoder.decodeSubmit( response );
+
+        assertTrue( submitResponse.isSucceeded() );
+        assertEquals( EngineResult.tesSUCCESS, submitResponse.getEngineResult() );
+        assertEquals( "7", submitResponse.getSequence() );
+        assertEquals( "C53ECF838647FA5A4C780377025FEC7999AB4182590510CA461444B207AB74A9", submitResponse.getHash() );
+    }
+
+
+    @Test
+    void testDecodeTransactionError()
+    {
+        final String response = "{\"error\":\"txnNotFound\",\"error_code\":29,\"id\":4,\"request\":{\"command\":\"tx\"},\"status\":\"error\",\"type\":\"response\"}";
+
+        final RippleTransactionResponseDto transactionResponse = rippledResponseDecoder.decodeTransaction( response );
+
+        assertFalse( transactionResponse.isSucceeded() );
+        assertEquals( "txnNotFound", transactionResponse.getError() );
+        assertNull( transactionResponse.getHash() );
+    }
+
+
+    /**
+     * A full 400-line account_lines page, the largest rippled returns, decodes in one pass.
+     */
+    @Test
+    void testDecodeLargeAccountLinesPage()
+    {
+        final StringBuilder lines = new StringBuilder();
+        for ( int i = 0; i < 400; i++ )
+        {
+            lines.append( i == 0 ? "" : "," ).append( line( i ) );
+        }
+        final String response = "{\"id\":5,\"result\":{\"account\":\"" + ADDRESS + "\",\"ledger_index\":1,\"lines\":[" + lines + "]},\"status\":\"success\"}";
+
+        final RippleAccountLinesPageDto page = rippledResponseDecoder.decodeAccountLinesPage( AccountID.fromAddress( ADDRESS ), response );
+
+        assertEquals( 400, page.getLines().size() );
+        assertNull( page.getMarker() );
+        assertEquals( "399.5", page.getLines().get( 399 ).getBalance().valueText() );
+        assertEquals( "USD", page.getLines().get( 399 ).getCurrency().humanCode() );
+    }
+
+
+    private static String line( final int i )
+    {
+        return "{\"account\":\"" + ISSUER + "\",\"balance\":\"" + ( i + 0.5 ) + "\",\"currency\":\"" + ( i % 2 == 0 ? "EUR" : "USD" ) + "\"," +
+               "\"limit\":\"1000\",\"limit_peer\":\"0\",\"no_ripple\":true,\"no_ripple_peer\":false,\"quality_in\":0,\"quality_out\":0}";
+    }
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.vault.core.VaultOperations;
+import org.springframework.vault.support.VaultResponse;
+import org.stellar.sdk.KeyPair;
+import org.stellar.sdk.Transaction;
+import pcrypto.cf.account.domain.entity.AccountDomain;
+import pcrypto.cf.common.domain.TenantDomain;
+import pcrypto.cf.stellar.client.StellarNetworkService;
+import pcrypto.cf.stellar.client.response.DecoratedSubmitTransactionResponse;
+import pcrypto.cf.stellar.client.response.DecoratedTransactionResponse;
+import pcrypto.cf.stellar.client.template.StellarTransactionFailedException;
+import pcrypto.cf.stellar.domain.entity.StellarTransactionRequestDomain;
+import pcrypto.cf.stellar.domain.entity.StellarTransactionResponseDomain;
+import pcrypto.cf.stellar.domain.repository.StellarTransactionRequestRepository;
+import pcrypto.cf.stellar.domain.repository.StellarTransactionResponseRepository;
+import pcrypto.cf.stellar.vault.dto.VaultStellarBatchPaymentDomain;
+import pcrypto.cf.stellar.vault.dto.VaultStellarPaymentDomain;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+class StellarPaymentBatcherTest
+{
+    private static final String TENANT = "tenant";
+    private static final Long SOURCE_ACCOUNT_ID = 10L;
+    private static final Long OTHER_SOURCE_ACCOUNT_ID = 20L;
+    private static final String SIGNED_TX = "AAAAAFIRSTSIGNEDTX";
+    private static final String RESIGNED_TX = "AAAAASECONDSIGNEDTX";
+    private static final String SOURCE_ADDRESS = "GBRPYHIL2CI3FNQ4BXLFMNDLFJUNPU2HY3ZMFSHONUCEOASW7QC7OX2H";
+
+    private final StellarTransactionRequestRepository stellarTransactionRequestRepository = mock( StellarTransactionRequestRepository.class );
+    private final StellarTransactionResponseRepository stellarTransactionResponseRepository = mock( StellarTransactionResponseRepository.class );
+    private final StellarNetworkService stellarNetworkService = mock( StellarNetworkService.class );
+    private final StellarChannelPool stellarChannelPool = mock( StellarChannelPool.class );
+    private final StellarSequenceAllocator stellarSequenceAllocator = mock( StellarSequenceAllocator.class );
+    private final VaultOperations vaultOperations = mock( VaultOperations.class );
+
+    private final TenantDomain tenantDomain = mock( TenantDomain.class );
+    private final Map<Long, AccountDomain> accounts = new HashMap<>();
+    private final Map<UUID, StellarTransactionRequestDomain> requests = new LinkedHashMap<>();
+    private final Map<UUID, StellarTransactionResponseDomain> responses = new HashMap<>();
+
+    private StellarPaymentBatcher stellarPaymentBatcher;
+
+
+    @BeforeEach
+    void setUp()
+    {
+        when( tenantDomain.getId() ).thenReturn( 1L );
+
+        when( stellarTransactionRequestRepository.findAllById( any() ) ).thenAnswer( invocation -> {
+            final Collection<UUID> uuids = invocation.getArgument( 0 );
+            return uuids.stream().map( requests::get ).collect( Collectors.toList() );
+        } );
+        when( stellarTransactionResponseRepository.findByTransactionRequestUUIDIn( any() ) ).thenAnswer( invocation -> {
+            final Collection<UUID> uuids = invocation.getArgument( 0 );
+            return uuids.stream().map( responses::get ).collect( Collectors.toList() );
+        } );
+
+        when( stellarSequenceAllocator.allocate( anyLong() ) ).thenReturn( 101L, 102L );
+        when( vaultOperations.write( anyString(), any() ) ).thenReturn( signed( SIGNED_TX ), signed( RESIGNED_TX ) );
+        when( stellarNetworkService.getTransactionHash( anyString() ) ).thenAnswer( invocation -> "hash-" + invocation.getArgument( 0 ) );
+
+        stellarPaymentBatcher = new StellarPaymentBatcher( stellarTransactionRequestRepository,
+                                                           stellarTransactionResponseRepository,
+                                                           stellarNetworkService,
+                                                           stellarChannelPool,
+                                                           stellarSequenceAllocator,
+                                                           vaultOperations,
+                                                           new ObjectMapper() );
+        ReflectionTestUtils.setField( stellarPaymentBatcher, "enabled", true );
+        ReflectionTestUtils.setField( stellarPaymentBatcher, "windowMs", 3600000L );
+        ReflectionTestUtils.setField( stellarPaymentBatcher, "maxOperations", 100 );
+        ReflectionTestUtils.setField( stellarPaymentBatcher, "resolveIntervalMs", 3600000L );
+        ReflectionTestUtils.setField( stellarPaymentBatcher, "shutdownTimeoutMs", 1000L );
+        ReflectionTestUtils.setField( stellarPaymentBatcher, "tenants", new String[]{ TENANT } );
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        ( (ScheduledExecutorService) ReflectionTestUtils.getField( stellarPaymentBatcher, "flushScheduler" ) ).shutdownNow();
+    }
+
+
+    @Test
+    void testPaymentsAreBatchedBySource()
+    {
+        final StellarTransactionRequestDomain lumens = payment( SOURCE_ACCOUNT_ID, "XLM" );
+        final StellarTransactionRequestDomain dollars = payment( SOURCE_ACCOUNT_ID, "USD" );
+        final StellarTransactionRequestDomain other = payment( OTHER_SOURCE_ACCOUNT_ID, "XLM" );
+        when( stellarNetworkService.submitTransaction( anyString() ) ).thenReturn( submitted( "PAYMENT_SUCCESS", "PAYMENT_SUCCESS" ) );
+
+        stellarPaymentBatcher.add( TENANT, lumens );
+        stellarPaymentBatcher.add( TENANT, dollars );
+        stellarPaymentBatcher.add( TENANT, other );
+        flushAll();
+
+        final List<VaultStellarBatchPaymentDomain> batches = signedBatches( 2 );
+        final VaultStellarBatchPaymentDomain sourceBatch = batches.stream().filter( batch -> "10".equals( batch.getSource() ) ).findFirst().get();
+        final VaultStellarBatchPaymentDomain otherBatch = batches.stream().filter( batch -> "20".equals( batch.getSource() ) ).findFirst().get();
+
+        // One operation for each payment, in the order they were queued, whatever their asset
+        assertEquals( Arrays.asList( "XLM", "USD" ), sourceBatch.getPayments().stream().map( VaultStellarPaymentDomain::getAssetCode ).collect( Collectors.toList() ) );
+        assertEquals( 1, otherBatch.getPayments().size() );
+        assertTrue( response( lumens ).getSuccess() );
+        assertTrue( response( dollars ).getSuccess() );
+        assertTrue( response( other ).getSuccess() );
+    }
+
+
+    @Test
+    void testEachPaymentGetsTheResultOfItsOwnOperation()
+    {
+        final StellarTransactionRequestDomain underfunded = payment( SOURCE_ACCOUNT_ID, "XLM" );
+        final StellarTransactionRequestDomain noDestination = payment( SOURCE_ACCOUNT_ID, "XLM" );
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenThrow( failed( "tx_failed", "op_underfunded", "op_no_destination" ) );
+
+        stellarPaymentBatcher.add( TENANT, underfunded );
+        stellarPaymentBatcher.add( TENANT, noDestination );
+        flushAll();
+
+        assertFalse( response( underfunded ).getSuccess() );
+        assertEquals( "{\"TRANSACTION\":\"txFAILED\",\"PAYMENT\":\"PAYMENT_UNDERFUNDED\"}", response( underfunded ).getTransactionResult() );
+        assertFalse( response( noDestination ).getSuccess() );
+        assertEquals( "{\"TRANSACTION\":\"txFAILED\",\"PAYMENT\":\"PAYMENT_NO_DESTINATION\"}", response( noDestination ).getTransactionResult() );
+        verify( stellarSequenceAllocator ).rejected( SOURCE_ACCOUNT_ID, 101L, "tx_failed" );
+    }
+
+
+    @Test
+    void testPaymentsWhichWouldHaveSucceededAreQueuedAgain()
+    {
+        final StellarTransactionRequestDomain good = payment( SOURCE_ACCOUNT_ID, "XLM" );
+        final StellarTransactionRequestDomain bad = payment( SOURCE_ACCOUNT_ID, "XLM" );
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenThrow( failed( "tx_failed", "op_success", "op_underfunded" ) );
+        when( stellarNetworkService.submitTransaction( RESIGNED_TX ) ).thenReturn( submitted( "PAYMENT_SUCCESS" ) );
+
+        stellarPaymentBatcher.add( TENANT, good );
+        stellarPaymentBatcher.add( TENANT, bad );
+        flushAll();
+
+        // Only the payment which caused the failure is failed
+        assertFalse( response( bad ).getSuccess() );
+        assertNull( response( good ).getSuccess() );
+        assertNull( response( good ).getSignedTransaction() );
+
+        flushAll();
+
+        final List<VaultStellarBatchPaymentDomain> batches = signedBatches( 2 );
+        assertEquals( 1, batches.get( 1 ).getPayments().size() );
+        assertTrue( response( good ).getSuccess() );
+        assertEquals( RESIGNED_TX, response( good ).getSignedTransaction() );
+    }
+
+
+    @Test
+    void testApprovedPaymentsAreQueuedAtStartup()
+    {
+        final StellarTransactionRequestDomain first = payment( SOURCE_ACCOUNT_ID, "XLM" );
+        final StellarTransactionRequestDomain second = payment( SOURCE_ACCOUNT_ID, "XLM" );
+        when( stellarTransactionRequestRepository.findApprovedWithoutOutcome( anyInt() ) ).thenReturn( Arrays.asList( first, second ) );
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenReturn( submitted( "PAYMENT_SUCCESS", "PAYMENT_SUCCESS" ) );
+
+        stellarPaymentBatcher.start();
+        flushAll();
+
+        assertEquals( 2, signedBatches( 1 ).get( 0 ).getPayments().size() );
+        assertTrue( response( first ).getSuccess() );
+        assertTrue( response( second ).getSuccess() );
+    }
+
+
+    @Test
+    void testUnansweredBatchIsLeftPending()
+    {
+        final StellarTransactionRequestDomain payment = payment( SOURCE_ACCOUNT_ID, "XLM" );
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenThrow( new RuntimeException( "Read timed out" ) );
+
+        stellarPaymentBatcher.add( TENANT, payment );
+        flushAll();
+
+        // It may still be applied, so it is neither failed nor signed again, and its sequence stays taken
+        assertNull( response( payment ).getSuccess() );
+        assertEquals( "hash-" + SIGNED_TX, response( payment ).getTransactionHash() );
+        assertEquals( SIGNED_TX, response( payment ).getSignedTransaction() );
+        verify( vaultOperations, times( 1 ) ).write( anyString(), any() );
+        verify( stellarSequenceAllocator, never() ).rejected( any(), anyLong(), any() );
+        verify( stellarSequenceAllocator, never() ).release( any(), anyLong() );
+    }
+
+
+    @Test
+    void testBadSequenceIsSignedAgainWhenNotApplied()
+    {
+        final StellarTransactionRequestDomain payment = payment( SOURCE_ACCOUNT_ID, "XLM" );
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenThrow( failed( "tx_bad_seq" ) );
+        when( stellarNetworkService.submitTransaction( RESIGNED_TX ) ).thenReturn( submitted( "PAYMENT_SUCCESS" ) );
+
+        stellarPaymentBatcher.add( TENANT, payment );
+        flushAll();
+
+        verify( stellarNetworkService ).findTransaction( "hash-" + SIGNED_TX );
+        verify( stellarSequenceAllocator ).rejected( SOURCE_ACCOUNT_ID, 101L, "tx_bad_seq" );
+        verify( vaultOperations, times( 2 ) ).write( anyString(), any() );
+        assertTrue( response( payment ).getSuccess() );
+        assertEquals( RESIGNED_TX, response( payment ).getSignedTransaction() );
+    }
+
+
+    @Test
+    void testBadSequenceAfterBatchWasAppliedIsLeftPending()
+    {
+        final StellarTransactionRequestDomain payment = payment( SOURCE_ACCOUNT_ID, "XLM" );
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenThrow( failed( "tx_bad_seq" ) );
+        when( stellarNetworkService.findTransaction( "hash-" + SIGNED_TX ) ).thenReturn( mock( DecoratedTransactionResponse.class ) );
+
+        stellarPaymentBatcher.add( TENANT, payment );
+        flushAll();
+
+        // Our own earlier send was applied, so signing again would pay twice
+        verify( vaultOperations, times( 1 ) ).write( anyString(), any() );
+        verify( stellarSequenceAllocator, never() ).rejected( any(), anyLong(), any() );
+        assertNull( response( payment ).getSuccess() );
+        assertEquals( "hash-" + SIGNED_TX, response( payment ).getTransactionHash() );
+    }
+
+
+    @Test
+    void testResolveRecordsTransactionFoundByHash()
+    {
+        final StellarTransactionResponseDomain unanswered = unanswered();
+        final DecoratedTransactionResponse found = mock( DecoratedTransactionResponse.class );
+        when( found.isSuccess() ).thenReturn( true );
+        when( found.getLedger() ).thenReturn( 5000L );
+        when( stellarNetworkService.findTransaction( "hash-" + SIGNED_TX ) ).thenReturn( found );
+        when( stellarNetworkService.getSequenceNumber( SOURCE_ADDRESS ) ).thenReturn( 101L );
+
+        ReflectionTestUtils.invokeMethod( stellarPaymentBatcher, "resolveUnanswered" );
+
+        assertTrue( unanswered.getSuccess() );
+        assertEquals( Long.valueOf( 5000L ), unanswered.getLedger() );
+        verify( stellarNetworkService, never() ).submitTransaction( anyString() );
+        verify( stellarTransactionResponseRepository ).saveAll( Collections.singletonList( unanswered ) );
+    }
+
+
+    @Test
+    void testResolveSendsTransactionAgainWhileItsSequenceIsUnused()
+    {
+        final StellarTransactionResponseDomain unanswered = unanswered();
+        when( stellarNetworkService.getSequenceNumber( SOURCE_ADDRESS ) ).thenReturn( 100L );
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenReturn( submitted( "PAYMENT_SUCCESS" ) );
+
+        ReflectionTestUtils.invokeMethod( stellarPaymentBatcher, "resolveUnanswered" );
+
+        // The same signed transaction, which can only be applied once
+        verify( vaultOperations, never() ).write( anyString(), any() );
+        assertTrue( unanswered.getSuccess() );
+        assertEquals( SIGNED_TX, unanswered.getSignedTransaction() );
+    }
+
+
+    @Test
+    void testResolveFailsTransactionOnlyAfterTwoPassesWithItsSequenceUsed()
+    {
+        final StellarTransactionResponseDomain unanswered = unanswered();
+        when( stellarNetworkService.getSequenceNumber( SOURCE_ADDRESS ) ).thenReturn( 101L );
+
+        ReflectionTestUtils.invokeMethod( stellarPaymentBatcher, "resolveUnanswered" );
+        assertNull( unanswered.getSuccess() );
+        verify( stellarTransactionResponseRepository, never() ).saveAll( any() );
+
+        ReflectionTestUtils.invokeMethod( stellarPaymentBatcher, "resolveUnanswered" );
+        assertFalse( unanswered.getSuccess() );
+        assertEquals( "{\"TRANSACTION\":\"txBAD_SEQ\"}", unanswered.getTransactionResult() );
+        verify( stellarNetworkService, never() ).submitTransaction( anyString() );
+    }
+
+
+    @Test
+    void testTransactionResultCodesUseXdrNames()
+    {
+        assertEquals( "txFAILED", StellarPaymentBatcher.toTransactionResultCode( "tx_failed" ) );
+        assertEquals( "txBAD_SEQ", StellarPaymentBatcher.toTransactionResultCode( "tx_bad_seq" ) );
+        assertEquals( "txINSUFFICIENT_BALANCE", StellarPaymentBatcher.toTransactionResultCode( "tx_insufficient_balance" ) );
+        assertNull( StellarPaymentBatcher.toTransactionResultCode( null ) );
+    }
+
+
+    @Test
+    void testPaymentResultCodesUseXdrNames()
+    {
+        assertEquals( "PAYMENT_SUCCESS", StellarPaymentBatcher.toPaymentResultCode( "op_success" ) );
+        assertEquals( "PAYMENT_UNDERFUNDED", StellarPaymentBatcher.toPaymentResultCode( "op_underfunded" ) );
+        assertEquals( "PAYMENT_NO_DESTINATION", StellarPaymentBatcher.toPaymentResultCode( "op_no_destination" ) );
+        assertNull( StellarPaymentBatcher.toPaymentResultCode( null ) );
+    }
+
+
+    @Test
+    void testGeneralOperationResultCodesUseXdrNames()
+    {
+        assertEquals( "opBAD_AUTH", StellarPaymentBatcher.toPaymentResultCode( "op_bad_auth" ) );
+        assertEquals( "opNO_ACCOUNT", StellarPaymentBatcher.toPaymentResultCode( "op_no_source_account" ) );
+    }
+
+
+    @Test
+    void testXdrNamesAreKept()
+    {
+        assertEquals( "PAYMENT_SUCCESS", StellarPaymentBatcher.toPaymentResultCode( "PAYMENT_SUCCESS" ) );
+        assertEquals( "txFAILED", StellarPaymentBatcher.toTransactionResultCode( "txFAILED" ) );
+    }
+
+
+    private StellarTransactionRequestDomain payment( final Long sourceAccountId,
+                                                     final String assetCode )
+    {
+        final UUID uuid = UUID.randomUUID();
+        final StellarTransactionRequestDomain request = mock( StellarTransactionRequestDomain.class );
+        when( request.getUuid() ).thenReturn( uuid );
+        when( request.getTenantDomain() ).thenReturn( tenantDomain );
+        when( request.getAccountDomain() ).thenReturn( account( sourceAccountId ) );
+        when( request.getDestAccountDomain() ).thenReturn( account( 30L ) );
+        when( request.getAmount() ).thenReturn( BigDecimal.TEN );
+        when( request.getAssetCode() ).thenReturn( assetCode );
+
+        final StellarTransactionResponseDomain response = new StellarTransactionResponseDomain();
+        response.setStellarTransactionRequest( request );
+
+        requests.put( uuid, request );
+        responses.put( uuid, response );
+        return request;
+    }
+
+    private AccountDomain account( final Long id )
+    {
+        return accounts.computeIfAbsent( id, key -> {
+            final AccountDomain accountDomain = mock( AccountDomain.class );
+            when( accountDomain.getId() ).thenReturn( key );
+            return accountDomain;
+        } );
+    }
+
+    private StellarTransactionResponseDomain response( final StellarTransactionRequestDomain request )
+    {
+        return responses.get( request.getUuid() );
+    }
+
+    /**
+     * A payment whose batch was signed and sent, with its sequence number 101 taken from SOURCE_ADDRESS.
+     */
+    private StellarTransactionResponseDomain unanswered()
+    {
+        final StellarTransactionResponseDomain response = new StellarTransactionResponseDomain();
+        response.setTransactionHash( "hash-" + SIGNED_TX );
+        response.setSignedTransaction( SIGNED_TX );
+        when( stellarTransactionResponseRepository.findUnresolved() ).thenReturn( Collections.singletonList( response ) );
+
+        final KeyPair source = mock( KeyPair.class );
+        when( source.getAccountId() ).thenReturn( SOURCE_ADDRESS );
+        final Transaction transaction = mock( Transaction.class );
+        when( transaction.getSourceAccount() ).thenReturn( source );
+        when( transaction.getSequenceNumber() ).thenReturn( 101L );
+        when( stellarNetworkService.decodeTransaction( SIGNED_TX ) ).thenReturn( transaction );
+        return response;
+    }
+
+    /**
+     * Flush the batches still collecting, as their window running out would.
+     */
+    private void flushAll()
+    {
+        @SuppressWarnings( "unchecked" )
+        final Map<String, ?> pendingBatches = (Map<String, ?>) ReflectionTestUtils.getField( stellarPaymentBatcher, "pendingBatches" );
+        for ( final String key : new ArrayList<>( pendingBatches.keySet() ) )
+        {
+            ReflectionTestUtils.invokeMethod( stellarPaymentBatcher, "flush", key );
+        }
+    }
+
+    private List<VaultStellarBatchPaymentDomain> signedBatches( final int count )
+    {
+        final ArgumentCaptor<VaultStellarBatchPaymentDomain> captor = ArgumentCaptor.forClass( VaultStellarBatchPaymentDomain.class );
+        verify( vaultOperations, times( count ) ).write( anyString(), captor.capture() );
+        return captor.getAllValues();
+    }
+
+    private static VaultResponse signed( final String signedTx )
+    {
+        final VaultResponse vaultResponse = new VaultResponse();
+        vaultResponse.setData( Collections.singletonMap( "signed_transaction", signedTx ) );
+        return vaultResponse;
+    }
+
+    private static DecoratedSubmitTransactionResponse submitted( final String... operationResultCodes )
+    {
+        final DecoratedSubmitTransactionResponse submitted = mock( DecoratedSubmitTransactionResponse.class );
+        when( submitted.isSuccess() ).thenReturn( true );
+        when( submitted.getHash() ).thenReturn( "applied" );
+        when( submitted.getLedger() ).thenReturn( 5000L );
+        when( submitted.getOperationResultCodes() ).thenReturn( Arrays.asList( operationResultCodes ) );
+        return submitted;
+    }
+
+    private static StellarTransactionFailedException failed( final String transactionResultCode,
+                                                             final String... operationResultCodes )
+    {
+        return new StellarTransactionFailedException( "Transaction failed", transactionResultCode, Arrays.asList( operationResultCodes ) );
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pcrypto.cf.stellar.client.StellarNetworkService;
+import pcrypto.cf.stellar.domain.entity.StellarAccountDomain;
+import pcrypto.cf.stellar.domain.repository.StellarAccountRepository;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+class StellarSequenceAllocatorTest
+{
+    private static final Long CF_ACCOUNT_ID = 7L;
+    private static final String STELLAR_ADDRESS = "GBRPYHIL2CI3FNQ4BXLFMNDLFJUNPU2HY3ZMFSHONUCEOASW7QC7OX2H";
+
+    private final StellarNetworkService stellarNetworkService = mock( StellarNetworkService.class );
+    private final StellarAccountRepository stellarAccountRepository = mock( StellarAccountRepository.class );
+    private StellarSequenceAllocator stellarSequenceAllocator;
+
+
+    @BeforeEach
+    void setUp()
+    {
+        final StellarAccountDomain stellarAccountDomain = new StellarAccountDomain();
+        stellarAccountDomain.setStellarAddress( STELLAR_ADDRESS );
+        when( stellarAccountRepository.findByCfAccountId( CF_ACCOUNT_ID ) ).thenReturn( Optional.of( stellarAccountDomain ) );
+        when( stellarNetworkService.getSequenceNumber( STELLAR_ADDRESS ) ).thenReturn( 100L );
+
+        stellarSequenceAllocator = new StellarSequenceAllocator( stellarNetworkService, stellarAccountRepository );
+    }
+
+
+    @Test
+    void testAllocateSeedsFromHorizonOnce()
+    {
+        assertEquals( 101L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+        assertEquals( 102L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+        assertEquals( 103L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+        verify( stellarNetworkService, times( 1 ) ).getSequenceNumber( STELLAR_ADDRESS );
+    }
+
+
+    @Test
+    void testReleaseLastWindsCounterBack()
+    {
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        final long sequence = stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.release( CF_ACCOUNT_ID, sequence );
+
+        assertEquals( 102L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+        assertEquals( 103L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+    }
+
+
+    @Test
+    void testReleasedFromMidBurstIsHandedOutFirst()
+    {
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.release( CF_ACCOUNT_ID, 101L );
+
+        assertEquals( 101L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+        assertEquals( 104L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+    }
+
+
+    @Test
+    void testReleasingUpToLastWindsCounterBackPastEarlierReleases()
+    {
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.release( CF_ACCOUNT_ID, 102L );
+        stellarSequenceAllocator.release( CF_ACCOUNT_ID, 103L );
+
+        assertEquals( 102L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+        assertEquals( 103L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+        assertEquals( 104L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+    }
+
+
+    @Test
+    void testReleaseOfUnallocatedIsIgnored()
+    {
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.release( CF_ACCOUNT_ID, 105L );
+
+        assertEquals( 102L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+    }
+
+
+    @Test
+    void testBadSequenceResyncsFromHorizon()
+    {
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.release( CF_ACCOUNT_ID, 101L );
+        when( stellarNetworkService.getSequenceNumber( STELLAR_ADDRESS ) ).thenReturn( 110L );
+
+        stellarSequenceAllocator.rejected( CF_ACCOUNT_ID, 102L, "tx_bad_seq" );
+
+        // Released sequences are dropped along with the counter
+        assertEquals( 111L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+        assertEquals( 112L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+    }
+
+
+    @Test
+    void testFailedTransactionUsesUpItsSequence()
+    {
+        final long sequence = stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.rejected( CF_ACCOUNT_ID, sequence, "tx_failed" );
+
+        assertEquals( 102L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+    }
+
+
+    @Test
+    void testOtherRejectionReleasesItsSequence()
+    {
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.allocate( CF_ACCOUNT_ID );
+        stellarSequenceAllocator.rejected( CF_ACCOUNT_ID, 101L, "tx_insufficient_fee" );
+
+        assertEquals( 101L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+        assertEquals( 103L, stellarSequenceAllocator.allocate( CF_ACCOUNT_ID ) );
+    }
+
+
+    @Test
+    void testIsBadSequence()
+    {
+        assertTrue( StellarSequenceAllocator.isBadSequence( "tx_bad_seq" ) );
+        assertFalse( StellarSequenceAllocator.isBadSequence( "tx_failed" ) );
+        assertFalse( StellarSequenceAllocator.isBadSequence( null ) );
+    }
+}
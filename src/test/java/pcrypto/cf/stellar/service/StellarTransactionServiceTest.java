@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2019 ChainFront LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pcrypto.cf.stellar.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.vault.core.VaultOperations;
+import org.springframework.vault.support.VaultResponse;
+import pcrypto.cf.account.domain.entity.AccountDomain;
+import pcrypto.cf.account.domain.repository.AccountConfigurationRepository;
+import pcrypto.cf.common.domain.TenantDomain;
+import pcrypto.cf.mfa.service.authy.AuthyPushApprovalService;
+import pcrypto.cf.stellar.client.StellarNetworkService;
+import pcrypto.cf.stellar.client.response.DecoratedSubmitTransactionResponse;
+import pcrypto.cf.stellar.client.response.DecoratedTransactionResponse;
+import pcrypto.cf.stellar.client.template.StellarSubmitOutcomeUnknownException;
+import pcrypto.cf.stellar.client.template.StellarTransactionFailedException;
+import pcrypto.cf.stellar.domain.entity.StellarTransactionRequestDomain;
+import pcrypto.cf.stellar.domain.entity.StellarTransactionResponseDomain;
+import pcrypto.cf.stellar.domain.repository.StellarTransactionRequestApproverRepository;
+import pcrypto.cf.stellar.domain.repository.StellarTransactionRequestRepository;
+import pcrypto.cf.stellar.domain.repository.StellarTransactionResponseRepository;
+import pcrypto.cf.stellar.stream.StellarTransactionApprovalStream;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+class StellarTransactionServiceTest
+{
+    private static final Long SOURCE_ACCOUNT_ID = 10L;
+    private static final String SIGNED_TX = "AAAAAFIRSTSIGNEDTX";
+    private static final String TRANSACTION_HASH = "3389e9f0f1a65f19736cacf544c2e825313e8447f569233bb8db39aa607c8889";
+
+    private final StellarTransactionResponseRepository stellarTransactionResponseRepository = mock( StellarTransactionResponseRepository.class );
+    private final StellarNetworkService stellarNetworkService = mock( StellarNetworkService.class );
+    private final StellarChannelPool stellarChannelPool = mock( StellarChannelPool.class );
+    private final StellarSequenceAllocator stellarSequenceAllocator = mock( StellarSequenceAllocator.class );
+    private final VaultOperations vaultOperations = mock( VaultOperations.class );
+
+    private final StellarTransactionRequestDomain request = mock( StellarTransactionRequestDomain.class );
+    private StellarTransactionService stellarTransactionService;
+
+
+    @BeforeEach
+    void setUp()
+    {
+        final TenantDomain tenantDomain = mock( TenantDomain.class );
+        when( tenantDomain.getId() ).thenReturn( 1L );
+        final AccountDomain source = mock( AccountDomain.class );
+        when( source.getId() ).thenReturn( SOURCE_ACCOUNT_ID );
+        final AccountDomain destination = mock( AccountDomain.class );
+        when( destination.getId() ).thenReturn( 11L );
+
+        when( request.getTenantDomain() ).thenReturn( tenantDomain );
+        when( request.getAccountDomain() ).thenReturn( source );
+        when( request.getDestAccountDomain() ).thenReturn( destination );
+        when( request.getAmount() ).thenReturn( BigDecimal.TEN );
+        when( request.getAssetCode() ).thenReturn( "XLM" );
+
+        when( stellarSequenceAllocator.allocate( SOURCE_ACCOUNT_ID ) ).thenReturn( 101L, 102L );
+
+        final VaultResponse vaultResponse = new VaultResponse();
+        vaultResponse.setData( Collections.singletonMap( "signed_transaction", SIGNED_TX ) );
+        when( vaultOperations.write( anyString(), any() ) ).thenReturn( vaultResponse );
+
+        when( stellarNetworkService.getTransactionHash( SIGNED_TX ) ).thenReturn( TRANSACTION_HASH );
+        when( stellarTransactionResponseRepository.save( any() ) ).thenAnswer( invocation -> invocation.getArgument( 0 ) );
+
+        stellarTransactionService = new StellarTransactionService( mock( StellarTransactionRequestRepository.class ),
+                                                                   mock( StellarTransactionRequestApproverRepository.class ),
+                                                                   stellarTransactionResponseRepository,
+                                                                   mock( StellarTransactionApprovalStream.class ),
+                                                                   stellarNetworkService,
+                                                                   mock( StellarPaymentBatcher.class ),
+                                                                   stellarChannelPool,
+                                                                   stellarSequenceAllocator,
+                                                                   mock( AccountConfigurationRepository.class ),
+                                                                   mock( AuthyPushApprovalService.class ),
+                                                                   vaultOperations,
+                                                                   new ObjectMapper() );
+    }
+
+
+    @Test
+    void testAppliedBeforeBadSequenceIsNotSignedAgain()
+    {
+        // The first server applied the tx but dropped the connection; the resend to the next one is turned away
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenThrow( badSequence() );
+        final DecoratedTransactionResponse applied = mock( DecoratedTransactionResponse.class );
+        when( applied.isSuccess() ).thenReturn( true );
+        when( applied.getHash() ).thenReturn( TRANSACTION_HASH );
+        when( applied.getLedger() ).thenReturn( 5000L );
+        when( applied.getResultCodeMap() ).thenReturn( Collections.singletonMap( "PAYMENT", "PAYMENT_SUCCESS" ) );
+        when( stellarNetworkService.findTransaction( TRANSACTION_HASH ) ).thenReturn( applied );
+
+        final StellarTransactionResponseDomain response = stellarTransactionService.submitTransaction( request, new StellarTransactionResponseDomain() );
+
+        verify( vaultOperations, times( 1 ) ).write( anyString(), any() );
+        verify( stellarSequenceAllocator, times( 1 ) ).allocate( SOURCE_ACCOUNT_ID );
+        verify( stellarSequenceAllocator, never() ).rejected( any(), anyLong(), any() );
+        assertTrue( response.getSuccess() );
+        assertEquals( TRANSACTION_HASH, response.getTransactionHash() );
+        assertEquals( Long.valueOf( 5000L ), response.getLedger() );
+        assertEquals( SIGNED_TX, response.getSignedTransaction() );
+    }
+
+
+    @Test
+    void testBadSequenceIsSignedAgainWhenNotApplied()
+    {
+        final DecoratedSubmitTransactionResponse submitted = mock( DecoratedSubmitTransactionResponse.class );
+        when( submitted.isSuccess() ).thenReturn( true );
+        when( submitted.getHash() ).thenReturn( TRANSACTION_HASH );
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenThrow( badSequence() ).thenReturn( submitted );
+        when( stellarNetworkService.findTransaction( TRANSACTION_HASH ) ).thenReturn( null );
+
+        final StellarTransactionResponseDomain response = stellarTransactionService.submitTransaction( request, new StellarTransactionResponseDomain() );
+
+        verify( vaultOperations, times( 2 ) ).write( anyString(), any() );
+        verify( stellarSequenceAllocator ).rejected( SOURCE_ACCOUNT_ID, 101L, "tx_bad_seq" );
+        assertTrue( response.getSuccess() );
+    }
+
+
+    @Test
+    void testBadSequenceIsOnlyRetriedOnce()
+    {
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenThrow( badSequence() );
+        when( stellarNetworkService.findTransaction( TRANSACTION_HASH ) ).thenReturn( null );
+
+        assertThrows( StellarTransactionFailedException.class,
+                      () -> stellarTransactionService.submitTransaction( request, new StellarTransactionResponseDomain() ) );
+
+        verify( vaultOperations, times( 2 ) ).write( anyString(), any() );
+        verify( stellarChannelPool ).release( any(), any() );
+    }
+
+
+    @Test
+    void testUnknownOutcomeIsLookedUpRatherThanSignedAgain()
+    {
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenThrow( new StellarSubmitOutcomeUnknownException( "unknown", TRANSACTION_HASH ) );
+        final DecoratedTransactionResponse applied = mock( DecoratedTransactionResponse.class );
+        when( applied.isSuccess() ).thenReturn( true );
+        when( applied.getHash() ).thenReturn( TRANSACTION_HASH );
+        when( stellarNetworkService.findTransaction( TRANSACTION_HASH ) ).thenReturn( applied );
+
+        final StellarTransactionResponseDomain response = stellarTransactionService.submitTransaction( request, new StellarTransactionResponseDomain() );
+
+        verify( vaultOperations, times( 1 ) ).write( anyString(), any() );
+        assertTrue( response.getSuccess() );
+    }
+
+
+    @Test
+    void testUnknownOutcomeNotFoundIsLeftUnknown()
+    {
+        when( stellarNetworkService.submitTransaction( SIGNED_TX ) ).thenThrow( new StellarSubmitOutcomeUnknownException( "unknown", TRANSACTION_HASH ) );
+        when( stellarNetworkService.findTransaction( TRANSACTION_HASH ) ).thenReturn( null );
+
+        assertThrows( StellarSubmitOutcomeUnknownException.class,
+                      () -> stellarTransactionService.submitTransaction( request, new StellarTransactionResponseDomain() ) );
+
+        // The channel and sequence stay taken, as the tx may still be applied
+        verify( vaultOperations, times( 1 ) ).write( anyString(), any() );
+        verify( stellarChannelPool, never() ).release( any(), any() );
+        verify( stellarSequenceAllocator, never() ).rejected( any(), anyLong(), any() );
+    }
+
+
+    private static StellarTransactionFailedException badSequence()
+    {
+        return new StellarTransactionFailedException( "tx_bad_seq", "tx_bad_seq", null );
+    }
+}